@@ -296,6 +296,11 @@ myControllerModule.controller('GatewaysControllerAddEdit', function ($scope, Typ
       $scope.gateway.url='';
       $scope.gateway.authorizedUser='';
       $scope.gateway.pollFrequency='5';
+    }else if($scope.gateway.type === 'Load generator'){
+      $scope.gateway.messagesPerSecond='100';
+      $scope.gateway.nodes='10';
+      $scope.gateway.sensorsPerNode='2';
+      $scope.gateway.duration='0';
      }
   };
 
@@ -345,6 +345,8 @@ myControllerModule.factory('StatusFactory', function ($resource) {
    getOsStatus: { method: 'GET', params: {type:'osStatus'} },
    getJvmStatus: { method: 'GET', params: {type:'jvmStatus'} },
    runGarbageCollection: { method: 'PUT', params: {type:'runGarbageCollection'} },
+   getMessageEngineStatistics: { method: 'GET', params: {type:'messageEngineStatistics'} },
+   getMessageEngineLatency: { method: 'GET', params: {type:'messageEngineLatency'} },
    getScriptEngines: { method: 'GET', isArray: true, params: {type:'scriptEngines'} },
    getConfig: { method: 'GET', params: {type:'guiSettings'} },
    getMcAbout: { method: 'GET', params: {type:'mcAbout'} },
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2015-2017 Jeeva Kandasamy (jkandasa@gmail.com)
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mycontroller.standalone.benchmark;
+
+import org.mycontroller.standalone.AppProperties.NETWORK_TYPE;
+import org.mycontroller.standalone.McObjectManager;
+import org.mycontroller.standalone.gateway.GatewayUtils.GATEWAY_TYPE;
+import org.mycontroller.standalone.gateway.IGateway;
+import org.mycontroller.standalone.gateway.model.Gateway;
+import org.mycontroller.standalone.gateway.model.GatewayMQTT;
+import org.mycontroller.standalone.gateway.model.GatewayPhilipsHue;
+import org.mycontroller.standalone.gateway.model.GatewaySerial;
+import org.mycontroller.standalone.message.RawMessage;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+
+/**
+ * Registers in-memory gateways on {@link McObjectManager}, so parsers and serializers can be executed
+ * without database and physical gateways. Messages written to these gateways are discarded.
+ * @author Jeeva Kandasamy (jkandasa)
+ * @since 0.0.3
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class BenchmarkGateways {
+    public static final int MYSENSORS_SERIAL = 1;
+    public static final int MYSENSORS_MQTT = 2;
+    public static final int MY_CONTROLLER_MQTT = 3;
+    public static final int RF_LINK_SERIAL = 4;
+    public static final int PHILIPS_HUE = 5;
+
+    public static final String MYSENSORS_TOPIC = "mygateway1-out";
+    public static final String MY_CONTROLLER_TOPIC = "mycontroller-out";
+
+    public static synchronized void register() {
+        if (McObjectManager.getGateway(MYSENSORS_SERIAL) != null) {
+            return;
+        }
+        add(MYSENSORS_SERIAL, new GatewaySerial(), GATEWAY_TYPE.SERIAL, NETWORK_TYPE.MY_SENSORS);
+        GatewayMQTT mySensorsMqtt = new GatewayMQTT();
+        mySensorsMqtt.setTopicsPublish(MYSENSORS_TOPIC);
+        mySensorsMqtt.setTopicsSubscribe(MYSENSORS_TOPIC);
+        add(MYSENSORS_MQTT, mySensorsMqtt, GATEWAY_TYPE.MQTT, NETWORK_TYPE.MY_SENSORS);
+        GatewayMQTT myControllerMqtt = new GatewayMQTT();
+        myControllerMqtt.setTopicsPublish(MY_CONTROLLER_TOPIC);
+        myControllerMqtt.setTopicsSubscribe(MY_CONTROLLER_TOPIC);
+        add(MY_CONTROLLER_MQTT, myControllerMqtt, GATEWAY_TYPE.MQTT, NETWORK_TYPE.MY_CONTROLLER);
+        add(RF_LINK_SERIAL, new GatewaySerial(), GATEWAY_TYPE.SERIAL, NETWORK_TYPE.RF_LINK);
+        add(PHILIPS_HUE, new GatewayPhilipsHue(), GATEWAY_TYPE.PHILIPS_HUE, NETWORK_TYPE.PHILIPS_HUE);
+    }
+
+    private static void add(Integer id, final Gateway gateway, GATEWAY_TYPE type, NETWORK_TYPE networkType) {
+        gateway.setId(id);
+        gateway.setEnabled(true);
+        gateway.setName("benchmark-" + id);
+        gateway.setType(type);
+        gateway.setNetworkType(networkType);
+        McObjectManager.addGateway(new IGateway() {
+            @Override
+            public void write(RawMessage rawMessage) {
+                //Discard
+            }
+
+            @Override
+            public void close() {
+                //Nothing to close
+            }
+
+            @Override
+            public Gateway getGateway() {
+                return gateway;
+            }
+        });
+    }
+}
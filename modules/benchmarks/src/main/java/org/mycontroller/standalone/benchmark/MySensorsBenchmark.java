@@ -0,0 +1,163 @@
+/*
+ * Copyright 2015-2017 Jeeva Kandasamy (jkandasa@gmail.com)
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mycontroller.standalone.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.mycontroller.standalone.AppProperties.NETWORK_TYPE;
+import org.mycontroller.standalone.McObjectManager;
+import org.mycontroller.standalone.gateway.model.GatewayMQTT;
+import org.mycontroller.standalone.gateway.mqtt.MqttTopicRouter;
+import org.mycontroller.standalone.message.McMessage;
+import org.mycontroller.standalone.message.McMessageUtils.MESSAGE_TYPE;
+import org.mycontroller.standalone.message.McMessageUtils.MESSAGE_TYPE_SET_REQ;
+import org.mycontroller.standalone.message.RawMessage;
+import org.mycontroller.standalone.message.RawMessageException;
+import org.mycontroller.standalone.provider.mysensors.MySensorsFrame;
+import org.mycontroller.standalone.provider.mysensors.MySensorsRawMessage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * MySensors serial and MQTT messages, parse and encode.
+ * @author Jeeva Kandasamy (jkandasa)
+ * @since 0.0.3
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+public class MySensorsBenchmark {
+    private RawMessage serialMessage;
+    private RawMessage mqttMessage;
+    private MySensorsRawMessage serialRawMessage;
+    private MySensorsRawMessage mqttRawMessage;
+    private McMessage txMessage;
+    private byte[] serialBytes;
+    private MySensorsFrame frame;
+    private MqttTopicRouter topicRouter;
+    private String mqttTopic;
+
+    @Setup
+    public void setup() throws RawMessageException {
+        BenchmarkGateways.register();
+        serialMessage = RawMessage.builder()
+                .gatewayId(BenchmarkGateways.MYSENSORS_SERIAL)
+                .networkType(NETWORK_TYPE.MY_SENSORS)
+                .data("12;1;1;0;0;23.5\n")
+                .build();
+        mqttMessage = RawMessage.builder()
+                .gatewayId(BenchmarkGateways.MYSENSORS_MQTT)
+                .networkType(NETWORK_TYPE.MY_SENSORS)
+                .subData(BenchmarkGateways.MYSENSORS_TOPIC + "/12/1/1/0/0")
+                .data("23.5")
+                .build();
+        serialBytes = ((String) serialMessage.getData()).getBytes();
+        frame = new MySensorsFrame();
+        topicRouter = MqttTopicRouter.get(
+                (GatewayMQTT) McObjectManager.getGateway(BenchmarkGateways.MYSENSORS_MQTT).getGateway());
+        mqttTopic = mqttMessage.getSubData();
+        serialRawMessage = new MySensorsRawMessage(serialMessage);
+        mqttRawMessage = new MySensorsRawMessage(mqttMessage);
+        txMessage = McMessage.builder()
+                .gatewayId(BenchmarkGateways.MYSENSORS_SERIAL)
+                .networkType(NETWORK_TYPE.MY_SENSORS)
+                .nodeEui("12")
+                .sensorId("3")
+                .type(MESSAGE_TYPE.C_SET)
+                .subType(MESSAGE_TYPE_SET_REQ.V_STATUS.getText())
+                .payload("1")
+                .isTxMessage(true)
+                .build();
+    }
+
+    @Benchmark
+    public McMessage parseSerial() throws RawMessageException {
+        return new MySensorsRawMessage(serialMessage).getMcMessage();
+    }
+
+    @Benchmark
+    public int parseSerialFrame() {
+        //Gateway byte buffer, as received by serial and ethernet listeners
+        frame.parse(serialBytes, 0, serialBytes.length);
+        return frame.getSubType();
+    }
+
+    @Benchmark
+    public McMessage parseMqtt() throws RawMessageException {
+        return new MySensorsRawMessage(mqttMessage).getMcMessage();
+    }
+
+    @Benchmark
+    public int parseMqttTopic() {
+        frame.parseTopic(mqttTopic, topicRouter.getLevelsOffset(mqttTopic));
+        return frame.getSubType();
+    }
+
+    //Baseline, topic parsing before topic router
+    @Benchmark
+    public int parseMqttTopicSplit() {
+        String[] levels = mqttTopic.split("/");
+        return Integer.valueOf(levels[1]) + Integer.valueOf(levels[2]) + Integer.valueOf(levels[3])
+                + Integer.valueOf(levels[4]) + Integer.valueOf(levels[5]);
+    }
+
+    @Benchmark
+    public String encodeSerial() {
+        return serialRawMessage.getGWString();
+    }
+
+    @Benchmark
+    public String encodeMqttTopic() {
+        return mqttRawMessage.getMqttTopic();
+    }
+
+    //Baseline, outbound topic before topic router
+    @Benchmark
+    public String encodeMqttTopicBuilder() {
+        StringBuilder builder = new StringBuilder();
+        String[] topicsPublish = ((GatewayMQTT) McObjectManager.getGateway(BenchmarkGateways.MYSENSORS_MQTT)
+                .getGateway()).getTopicsPublish().split(GatewayMQTT.TOPICS_SPLITER);
+        for (String topic : topicsPublish) {
+            if (builder.length() > 0) {
+                builder.append(GatewayMQTT.TOPICS_SPLITER);
+            }
+            builder.append(topic.trim());
+            builder.append("/").append(mqttRawMessage.getNodeId());
+            builder.append("/").append(mqttRawMessage.getChildSensorId());
+            builder.append("/").append(mqttRawMessage.getMessageType());
+            builder.append("/").append(mqttRawMessage.getAck());
+            builder.append("/").append(mqttRawMessage.getSubType());
+        }
+        return builder.toString();
+    }
+
+    @Benchmark
+    public RawMessage encodeMcMessage() throws RawMessageException {
+        return new MySensorsRawMessage(txMessage).getRawMessage();
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2015-2017 Jeeva Kandasamy (jkandasa@gmail.com)
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mycontroller.standalone.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.mycontroller.standalone.AppProperties.NETWORK_TYPE;
+import org.mycontroller.standalone.message.McMessage;
+import org.mycontroller.standalone.message.McMessageUtils.MESSAGE_TYPE;
+import org.mycontroller.standalone.message.McMessageUtils.MESSAGE_TYPE_SET_REQ;
+import org.mycontroller.standalone.message.RawMessage;
+import org.mycontroller.standalone.message.RawMessageException;
+import org.mycontroller.standalone.provider.philipshue.PhilipsHueRawMessage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Philips Hue messages, parse and encode.
+ * @author Jeeva Kandasamy (jkandasa)
+ * @since 0.0.3
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+public class PhilipsHueBenchmark {
+    private RawMessage rxMessage;
+    private McMessage txMessage;
+
+    @Setup
+    public void setup() throws RawMessageException {
+        BenchmarkGateways.register();
+        txMessage = McMessage.builder()
+                .gatewayId(BenchmarkGateways.PHILIPS_HUE)
+                .networkType(NETWORK_TYPE.PHILIPS_HUE)
+                .nodeEui("hue-bridge")
+                .sensorId("1")
+                .type(MESSAGE_TYPE.C_SET)
+                .subType(MESSAGE_TYPE_SET_REQ.V_PERCENTAGE.getText())
+                .payload("75")
+                .isTxMessage(true)
+                .build();
+        //Received message has the same structure of Tx message
+        rxMessage = new PhilipsHueRawMessage(txMessage).getRawMessage();
+        rxMessage.setTxMessage(false);
+    }
+
+    @Benchmark
+    public McMessage parse() throws RawMessageException {
+        return new PhilipsHueRawMessage(rxMessage).getMcMessage();
+    }
+
+    @Benchmark
+    public RawMessage encodeMcMessage() throws RawMessageException {
+        return new PhilipsHueRawMessage(txMessage).getRawMessage();
+    }
+}
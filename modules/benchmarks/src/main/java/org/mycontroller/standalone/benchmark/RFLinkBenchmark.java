@@ -0,0 +1,91 @@
+/*
+ * Copyright 2015-2017 Jeeva Kandasamy (jkandasa@gmail.com)
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mycontroller.standalone.benchmark;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.mycontroller.standalone.AppProperties.NETWORK_TYPE;
+import org.mycontroller.standalone.message.McMessage;
+import org.mycontroller.standalone.message.McMessageUtils.MESSAGE_TYPE;
+import org.mycontroller.standalone.message.RawMessage;
+import org.mycontroller.standalone.message.RawMessageException;
+import org.mycontroller.standalone.provider.rflink.RFLinkProviderBridge;
+import org.mycontroller.standalone.provider.rflink.RFLinkRawMessage;
+import org.mycontroller.standalone.provider.rflink.RFLinkUtils.RFLINK_MESSAGE_TYPE;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * RFLink received message parse and Tx message encode.
+ * @author Jeeva Kandasamy (jkandasa)
+ * @since 0.0.3
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+public class RFLinkBenchmark {
+    private RFLinkProviderBridge bridge;
+    private RawMessage rxMessage;
+    private McMessage txMessage;
+
+    @Setup
+    public void setup() {
+        BenchmarkGateways.register();
+        bridge = new RFLinkProviderBridge();
+        rxMessage = RawMessage.builder()
+                .gatewayId(BenchmarkGateways.RF_LINK_SERIAL)
+                .networkType(NETWORK_TYPE.RF_LINK)
+                .data("20;2D;UPM/Esic;ID=0001;TEMP=00cf;HUM=16;BAT=OK;\r\n")
+                .build();
+        HashMap<String, Object> properties = new HashMap<String, Object>();
+        properties.put(RFLinkRawMessage.KEY_PROTOCOL, "NewKaku");
+        txMessage = McMessage.builder()
+                .gatewayId(BenchmarkGateways.RF_LINK_SERIAL)
+                .networkType(NETWORK_TYPE.RF_LINK)
+                .nodeEui("00c0f301")
+                .sensorId("1")
+                .type(MESSAGE_TYPE.C_SET)
+                .subType(RFLINK_MESSAGE_TYPE.CMD.getText())
+                .payload("1")
+                .isTxMessage(true)
+                .properties(properties)
+                .build();
+    }
+
+    @Benchmark
+    public List<McMessage> parse() throws RawMessageException {
+        return bridge.getMcMessages(rxMessage);
+    }
+
+    @Benchmark
+    public RawMessage encodeMcMessage() throws RawMessageException {
+        return new RFLinkRawMessage(txMessage).getRawMessage();
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2015-2017 Jeeva Kandasamy (jkandasa@gmail.com)
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mycontroller.standalone.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.mycontroller.standalone.AppProperties.NETWORK_TYPE;
+import org.mycontroller.standalone.exceptions.McBadRequestException;
+import org.mycontroller.standalone.message.McMessage;
+import org.mycontroller.standalone.message.McMessageUtils;
+import org.mycontroller.standalone.message.McMessageUtils.MESSAGE_TYPE;
+import org.mycontroller.standalone.message.McMessageUtils.MESSAGE_TYPE_SET_REQ;
+import org.mycontroller.standalone.message.RawMessage;
+import org.mycontroller.standalone.message.RawMessageException;
+import org.mycontroller.standalone.provider.mc.McpRawMessage;
+import org.mycontroller.standalone.provider.mysensors.MySensorsRawMessage;
+import org.mycontroller.standalone.provider.philipshue.PhilipsHueRawMessage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Round trip of a Tx message, {@link McMessage} to {@link RawMessage} with {@link McMessageUtils#getRawMessage}
+ * and parsed back to {@link McMessage} with the provider raw message.
+ * RFLink is not included, it does not support parsing of Tx messages.
+ * @author Jeeva Kandasamy (jkandasa)
+ * @since 0.0.3
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+public class RawMessageRoundTripBenchmark {
+    @Param({ "MY_SENSORS", "MY_CONTROLLER", "PHILIPS_HUE" })
+    private NETWORK_TYPE networkType;
+
+    private McMessage txMessage;
+
+    @Setup
+    public void setup() {
+        BenchmarkGateways.register();
+        Integer gatewayId = null;
+        String nodeEui = null;
+        switch (networkType) {
+            case MY_SENSORS:
+                gatewayId = BenchmarkGateways.MYSENSORS_SERIAL;
+                nodeEui = "12";
+                break;
+            case MY_CONTROLLER:
+                gatewayId = BenchmarkGateways.MY_CONTROLLER_MQTT;
+                nodeEui = "node-1";
+                break;
+            case PHILIPS_HUE:
+                gatewayId = BenchmarkGateways.PHILIPS_HUE;
+                nodeEui = "hue-bridge";
+                break;
+            default:
+                throw new IllegalArgumentException("Not supported network type: " + networkType);
+        }
+        txMessage = McMessage.builder()
+                .gatewayId(gatewayId)
+                .networkType(networkType)
+                .nodeEui(nodeEui)
+                .sensorId("3")
+                .type(MESSAGE_TYPE.C_SET)
+                .subType(MESSAGE_TYPE_SET_REQ.V_STATUS.getText())
+                .payload("1")
+                .isTxMessage(true)
+                .build();
+    }
+
+    @Benchmark
+    public McMessage roundTrip() throws RawMessageException, McBadRequestException {
+        RawMessage rawMessage = McMessageUtils.getRawMessage(txMessage);
+        switch (networkType) {
+            case MY_SENSORS:
+                return new MySensorsRawMessage(rawMessage).getMcMessage();
+            case MY_CONTROLLER:
+                return new McpRawMessage(rawMessage).getMcMessage();
+            case PHILIPS_HUE:
+                return new PhilipsHueRawMessage(rawMessage).getMcMessage();
+            default:
+                return null;
+        }
+    }
+}
@@ -18,9 +18,12 @@ package org.mycontroller.standalone;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Properties;
 
 import org.apache.commons.io.FileUtils;
+import org.mycontroller.standalone.executor.ExecutorUtils.EXECUTOR_TYPE;
 import org.mycontroller.standalone.settings.BackupSettings;
 import org.mycontroller.standalone.settings.EmailSettings;
 import org.mycontroller.standalone.settings.LocationSettings;
@@ -78,6 +81,42 @@ public class AppProperties {
     private String mcPersistentStoresLocation;
     private Boolean clearMessagesQueueOnStart;
     private Boolean clearSmartSleepMsgQueueOnStart;
+    private MESSAGE_DISPATCHER_MODE messageDispatcherMode;
+    private int messageEngineShards;
+    private int messageEngineShardQueueCapacity;
+    private MESSAGE_QUEUE_TYPE messageQueueType;
+    private int messageQueueRingBufferSize;
+    private int messageQueueCapacity;
+    private MESSAGE_QUEUE_TELEMETRY_POLICY messageQueueTelemetryPolicy;
+    private MESSAGE_QUEUE_TX_POLICY messageQueueTxPolicy;
+    private long messageQueueTxBlockTimeout;
+    private double gatewayTxRateLimit;
+    private int gatewayTxBurstSize;
+    private int gatewayTxQueueCapacity;
+    private int gatewayMqttMaxInflight;
+    private long messageCoalesceWindow;
+    private boolean executorVirtualThreads;
+    private boolean messageTraceEnabled;
+    private int messageTraceSlowestSize;
+    private int messageTraceRecentSize;
+    private boolean topologyCacheEnabled;
+    private long dbWriteBehindInterval;
+    private long metricsIngestFlushInterval;
+    private int metricsIngestBatchSize;
+    private int metricsIngestBufferSize;
+    private METRICS_INGEST_OVERFLOW_POLICY metricsIngestOverflowPolicy;
+    private long metricsIngestBlockTimeout;
+    private long resourcesLogsFlushInterval;
+    private int resourcesLogsBatchSize;
+    private int resourcesLogsBufferSize;
+    private RESOURCES_LOGS_OVERFLOW_POLICY resourcesLogsOverflowPolicy;
+    private long influxdbWriterLingerTime;
+    private int influxdbWriterBatchSize;
+    private int influxdbWriterBufferSize;
+    private int influxdbWriterRetryCount;
+    private long influxdbWriterRetryBackoff;
+    private Map<EXECUTOR_TYPE, Integer> executorThreads = new HashMap<EXECUTOR_TYPE, Integer>();
+    private Map<EXECUTOR_TYPE, Integer> executorQueueSize = new HashMap<EXECUTOR_TYPE, Integer>();
 
     private Boolean mDNSserviceEnabled = false;
 
@@ -363,6 +402,162 @@ public class AppProperties {
         }
     }
 
+    public enum MESSAGE_DISPATCHER_MODE {
+        EVENT_DRIVEN("Event driven"),
+        POLLING("Polling");
+
+        private final String name;
+
+        private MESSAGE_DISPATCHER_MODE(String name) {
+            this.name = name;
+        }
+
+        public String getText() {
+            return this.name;
+        }
+
+        public static MESSAGE_DISPATCHER_MODE fromString(String text) {
+            if (text != null) {
+                for (MESSAGE_DISPATCHER_MODE type : MESSAGE_DISPATCHER_MODE.values()) {
+                    if (text.equalsIgnoreCase(type.name()) || text.equalsIgnoreCase(type.getText())) {
+                        return type;
+                    }
+                }
+            }
+            return null;
+        }
+    }
+
+    public enum MESSAGE_QUEUE_TYPE {
+        MAPDB("MapDB"),
+        JOURNAL("Journal");
+
+        private final String name;
+
+        private MESSAGE_QUEUE_TYPE(String name) {
+            this.name = name;
+        }
+
+        public String getText() {
+            return this.name;
+        }
+
+        public static MESSAGE_QUEUE_TYPE fromString(String text) {
+            if (text != null) {
+                for (MESSAGE_QUEUE_TYPE type : MESSAGE_QUEUE_TYPE.values()) {
+                    if (text.equalsIgnoreCase(type.name()) || text.equalsIgnoreCase(type.getText())) {
+                        return type;
+                    }
+                }
+            }
+            return null;
+        }
+    }
+
+    public enum MESSAGE_QUEUE_TELEMETRY_POLICY {
+        DROP_OLDEST("Drop oldest"),
+        COALESCE("Coalesce");
+
+        private final String name;
+
+        private MESSAGE_QUEUE_TELEMETRY_POLICY(String name) {
+            this.name = name;
+        }
+
+        public String getText() {
+            return this.name;
+        }
+
+        public static MESSAGE_QUEUE_TELEMETRY_POLICY fromString(String text) {
+            if (text != null) {
+                for (MESSAGE_QUEUE_TELEMETRY_POLICY type : MESSAGE_QUEUE_TELEMETRY_POLICY.values()) {
+                    if (text.equalsIgnoreCase(type.name()) || text.equalsIgnoreCase(type.getText())) {
+                        return type;
+                    }
+                }
+            }
+            return null;
+        }
+    }
+
+    public enum MESSAGE_QUEUE_TX_POLICY {
+        BLOCK("Block"),
+        REJECT("Reject");
+
+        private final String name;
+
+        private MESSAGE_QUEUE_TX_POLICY(String name) {
+            this.name = name;
+        }
+
+        public String getText() {
+            return this.name;
+        }
+
+        public static MESSAGE_QUEUE_TX_POLICY fromString(String text) {
+            if (text != null) {
+                for (MESSAGE_QUEUE_TX_POLICY type : MESSAGE_QUEUE_TX_POLICY.values()) {
+                    if (text.equalsIgnoreCase(type.name()) || text.equalsIgnoreCase(type.getText())) {
+                        return type;
+                    }
+                }
+            }
+            return null;
+        }
+    }
+
+    public enum METRICS_INGEST_OVERFLOW_POLICY {
+        BLOCK("Block"),
+        DROP_NEWEST("Drop newest");
+
+        private final String name;
+
+        private METRICS_INGEST_OVERFLOW_POLICY(String name) {
+            this.name = name;
+        }
+
+        public String getText() {
+            return this.name;
+        }
+
+        public static METRICS_INGEST_OVERFLOW_POLICY fromString(String text) {
+            if (text != null) {
+                for (METRICS_INGEST_OVERFLOW_POLICY type : METRICS_INGEST_OVERFLOW_POLICY.values()) {
+                    if (text.equalsIgnoreCase(type.name()) || text.equalsIgnoreCase(type.getText())) {
+                        return type;
+                    }
+                }
+            }
+            return null;
+        }
+    }
+
+    public enum RESOURCES_LOGS_OVERFLOW_POLICY {
+        DROP_LOWEST_LEVEL("Drop lowest level"),
+        DROP_NEWEST("Drop newest");
+
+        private final String name;
+
+        private RESOURCES_LOGS_OVERFLOW_POLICY(String name) {
+            this.name = name;
+        }
+
+        public String getText() {
+            return this.name;
+        }
+
+        public static RESOURCES_LOGS_OVERFLOW_POLICY fromString(String text) {
+            if (text != null) {
+                for (RESOURCES_LOGS_OVERFLOW_POLICY type : RESOURCES_LOGS_OVERFLOW_POLICY.values()) {
+                    if (text.equalsIgnoreCase(type.name()) || text.equalsIgnoreCase(type.getText())) {
+                        return type;
+                    }
+                }
+            }
+            return null;
+        }
+    }
+
     public enum SMS_VENDOR {
         PLIVO("Plivo"),
         TWILIO("Twilio");
@@ -474,6 +669,105 @@ public class AppProperties {
                 "mcc.clear.message.queue.on.start", "true"));
         clearSmartSleepMsgQueueOnStart = McUtils.getBoolean(getValue(properties,
                 "mcc.clear.smart.sleep.msg.queue.on.start", "true"));
+        //Message dispatcher, EVENT_DRIVEN or POLLING
+        messageDispatcherMode = MESSAGE_DISPATCHER_MODE.fromString(getValue(properties,
+                "mcc.message.dispatcher.mode", "EVENT_DRIVEN"));
+        if (messageDispatcherMode == null) {
+            _logger.warn("Invalid value on 'mcc.message.dispatcher.mode', using default 'EVENT_DRIVEN'");
+            messageDispatcherMode = MESSAGE_DISPATCHER_MODE.EVENT_DRIVEN;
+        }
+        //Number of shards to execute received messages, 0 - executes on message lane itself
+        messageEngineShards = Integer.valueOf(getValue(properties, "mcc.message.engine.shards",
+                String.valueOf(Runtime.getRuntime().availableProcessors())));
+        //Messages waiting on a shard, message lane waits when it is full. 0 - unbounded
+        messageEngineShardQueueCapacity = Integer.valueOf(getValue(properties,
+                "mcc.message.engine.shard.queue.capacity", "1000"));
+        //Raw messages queue store, MAPDB or JOURNAL
+        messageQueueType = MESSAGE_QUEUE_TYPE.fromString(getValue(properties, "mcc.message.queue.type", "MAPDB"));
+        if (messageQueueType == null) {
+            _logger.warn("Invalid value on 'mcc.message.queue.type', using default 'MAPDB'");
+            messageQueueType = MESSAGE_QUEUE_TYPE.MAPDB;
+        }
+        //In-memory ring buffer size per gateway, used on JOURNAL store
+        messageQueueRingBufferSize = Integer.valueOf(getValue(properties, "mcc.message.queue.ring.buffer.size",
+                "16384"));
+        //Capacity of the messages queue per gateway, 0 - unbounded
+        messageQueueCapacity = Integer.valueOf(getValue(properties, "mcc.message.queue.capacity", "10000"));
+        //Policy for Rx C_SET messages when queue is full, DROP_OLDEST or COALESCE
+        messageQueueTelemetryPolicy = MESSAGE_QUEUE_TELEMETRY_POLICY.fromString(getValue(properties,
+                "mcc.message.queue.telemetry.policy", "COALESCE"));
+        if (messageQueueTelemetryPolicy == null) {
+            _logger.warn("Invalid value on 'mcc.message.queue.telemetry.policy', using default 'COALESCE'");
+            messageQueueTelemetryPolicy = MESSAGE_QUEUE_TELEMETRY_POLICY.COALESCE;
+        }
+        //Policy for Tx messages when queue is full, BLOCK or REJECT
+        messageQueueTxPolicy = MESSAGE_QUEUE_TX_POLICY.fromString(getValue(properties,
+                "mcc.message.queue.tx.policy", "BLOCK"));
+        if (messageQueueTxPolicy == null) {
+            _logger.warn("Invalid value on 'mcc.message.queue.tx.policy', using default 'BLOCK'");
+            messageQueueTxPolicy = MESSAGE_QUEUE_TX_POLICY.BLOCK;
+        }
+        messageQueueTxBlockTimeout = Long.valueOf(getValue(properties, "mcc.message.queue.tx.block.timeout",
+                "5000"));
+        //Token bucket limit for Tx messages per gateway, messages per second. 0 - disabled
+        gatewayTxRateLimit = Double.valueOf(getValue(properties, "mcc.gateway.tx.rate.limit", "0"));
+        gatewayTxBurstSize = Integer.valueOf(getValue(properties, "mcc.gateway.tx.burst.size", "10"));
+        //Messages waiting on a gateway tx pacer, sender waits when it is full. 0 - unbounded
+        gatewayTxQueueCapacity = Integer.valueOf(getValue(properties, "mcc.gateway.tx.queue.capacity", "1000"));
+        //Maximum publishes waiting for completion on a MQTT gateway
+        gatewayMqttMaxInflight = Integer.valueOf(getValue(properties, "mcc.gateway.mqtt.max.inflight", "100"));
+        //Coalescing window for Rx C_SET messages of a sensor variable, in milliseconds. 0 - disabled
+        messageCoalesceWindow = Long.valueOf(getValue(properties, "mcc.message.coalesce.window", "0"));
+        //Message traces, slowest and recent messages
+        messageTraceEnabled = McUtils.getBoolean(getValue(properties, "mcc.message.trace.enable", "true"));
+        messageTraceSlowestSize = Integer.valueOf(getValue(properties, "mcc.message.trace.slowest.size", "100"));
+        messageTraceRecentSize = Integer.valueOf(getValue(properties, "mcc.message.trace.recent.size", "1000"));
+        //Executors of side effects, Example: mcc.executor.external.server.threads
+        executorVirtualThreads = McUtils.getBoolean(getValue(properties, "mcc.executor.virtual.threads", "false"));
+        for (EXECUTOR_TYPE type : EXECUTOR_TYPE.values()) {
+            executorThreads.put(type, Integer.valueOf(getValue(properties,
+                    "mcc.executor." + type.getKey() + ".threads", String.valueOf(type.getThreads()))));
+            executorQueueSize.put(type, Integer.valueOf(getValue(properties,
+                    "mcc.executor." + type.getKey() + ".queue.size", String.valueOf(type.getQueueSize()))));
+        }
+        //In-memory cache of nodes, sensors and sensor variables, used by message engine
+        topologyCacheEnabled = McUtils.getBoolean(getValue(properties, "mcc.topology.cache.enable", "true"));
+        //Write behind interval of node and sensor last seen updates, in milliseconds. 0 - disabled
+        dbWriteBehindInterval = Long.valueOf(getValue(properties, "mcc.db.write.behind.interval", "1000"));
+        //Batched inserts of metrics, flush interval in milliseconds. 0 - disabled
+        metricsIngestFlushInterval = Long.valueOf(getValue(properties, "mcc.metrics.ingest.flush.interval", "1000"));
+        metricsIngestBatchSize = Integer.valueOf(getValue(properties, "mcc.metrics.ingest.batch.size", "500"));
+        metricsIngestBufferSize = Integer.valueOf(getValue(properties, "mcc.metrics.ingest.buffer.size", "10000"));
+        //Policy when metrics buffer is full, BLOCK or DROP_NEWEST
+        metricsIngestOverflowPolicy = METRICS_INGEST_OVERFLOW_POLICY.fromString(getValue(properties,
+                "mcc.metrics.ingest.overflow.policy", "BLOCK"));
+        if (metricsIngestOverflowPolicy == null) {
+            _logger.warn("Invalid value on 'mcc.metrics.ingest.overflow.policy', using default 'BLOCK'");
+            metricsIngestOverflowPolicy = METRICS_INGEST_OVERFLOW_POLICY.BLOCK;
+        }
+        metricsIngestBlockTimeout = Long.valueOf(getValue(properties, "mcc.metrics.ingest.block.timeout", "1000"));
+        //Resources logs written on background, flush interval in milliseconds. 0 - disabled
+        resourcesLogsFlushInterval = Long.valueOf(getValue(properties, "mcc.resources.logs.flush.interval", "1000"));
+        resourcesLogsBatchSize = Integer.valueOf(getValue(properties, "mcc.resources.logs.batch.size", "500"));
+        resourcesLogsBufferSize = Integer.valueOf(getValue(properties, "mcc.resources.logs.buffer.size", "10000"));
+        //Policy when resources logs buffer is full, DROP_LOWEST_LEVEL or DROP_NEWEST
+        resourcesLogsOverflowPolicy = RESOURCES_LOGS_OVERFLOW_POLICY.fromString(getValue(properties,
+                "mcc.resources.logs.overflow.policy", "DROP_LOWEST_LEVEL"));
+        if (resourcesLogsOverflowPolicy == null) {
+            _logger.warn("Invalid value on 'mcc.resources.logs.overflow.policy', using default 'DROP_LOWEST_LEVEL'");
+            resourcesLogsOverflowPolicy = RESOURCES_LOGS_OVERFLOW_POLICY.DROP_LOWEST_LEVEL;
+        }
+        //Influxdb external server points written in batches, linger time in milliseconds. 0 - disabled
+        influxdbWriterLingerTime = Long.valueOf(getValue(properties, "mcc.external.server.influxdb.linger.time",
+                "1000"));
+        influxdbWriterBatchSize = Integer.valueOf(getValue(properties, "mcc.external.server.influxdb.batch.size",
+                "500"));
+        influxdbWriterBufferSize = Integer.valueOf(getValue(properties, "mcc.external.server.influxdb.buffer.size",
+                "10000"));
+        influxdbWriterRetryCount = Integer.valueOf(getValue(properties, "mcc.external.server.influxdb.retry.count",
+                "3"));
+        influxdbWriterRetryBackoff = Long.valueOf(getValue(properties,
+                "mcc.external.server.influxdb.retry.backoff", "1000"));
         //mDNS service, enabled or disabled
         mDNSserviceEnabled = McUtils.getBoolean(getValue(properties,
                 "mcc.mdns.service.enable", "false"));
@@ -727,6 +1021,150 @@ public class AppProperties {
         return clearSmartSleepMsgQueueOnStart;
     }
 
+    public MESSAGE_DISPATCHER_MODE getMessageDispatcherMode() {
+        return messageDispatcherMode;
+    }
+
+    public int getMessageEngineShards() {
+        return messageEngineShards;
+    }
+
+    public int getMessageEngineShardQueueCapacity() {
+        return messageEngineShardQueueCapacity;
+    }
+
+    public MESSAGE_QUEUE_TYPE getMessageQueueType() {
+        return messageQueueType;
+    }
+
+    public int getMessageQueueRingBufferSize() {
+        return messageQueueRingBufferSize;
+    }
+
+    public int getMessageQueueCapacity() {
+        return messageQueueCapacity;
+    }
+
+    public MESSAGE_QUEUE_TELEMETRY_POLICY getMessageQueueTelemetryPolicy() {
+        return messageQueueTelemetryPolicy;
+    }
+
+    public MESSAGE_QUEUE_TX_POLICY getMessageQueueTxPolicy() {
+        return messageQueueTxPolicy;
+    }
+
+    public long getMessageQueueTxBlockTimeout() {
+        return messageQueueTxBlockTimeout;
+    }
+
+    public double getGatewayTxRateLimit() {
+        return gatewayTxRateLimit;
+    }
+
+    public int getGatewayTxBurstSize() {
+        return gatewayTxBurstSize;
+    }
+
+    public int getGatewayTxQueueCapacity() {
+        return gatewayTxQueueCapacity;
+    }
+
+    public int getGatewayMqttMaxInflight() {
+        return gatewayMqttMaxInflight;
+    }
+
+    public long getMessageCoalesceWindow() {
+        return messageCoalesceWindow;
+    }
+
+    public boolean isMessageTraceEnabled() {
+        return messageTraceEnabled;
+    }
+
+    public int getMessageTraceSlowestSize() {
+        return messageTraceSlowestSize;
+    }
+
+    public int getMessageTraceRecentSize() {
+        return messageTraceRecentSize;
+    }
+
+    public boolean isExecutorVirtualThreads() {
+        return executorVirtualThreads;
+    }
+
+    public int getExecutorThreads(EXECUTOR_TYPE type) {
+        return Math.max(executorThreads.get(type), 1);
+    }
+
+    public int getExecutorQueueSize(EXECUTOR_TYPE type) {
+        return Math.max(executorQueueSize.get(type), 1);
+    }
+
+    public boolean isTopologyCacheEnabled() {
+        return topologyCacheEnabled;
+    }
+
+    public long getDbWriteBehindInterval() {
+        return dbWriteBehindInterval;
+    }
+
+    public long getMetricsIngestFlushInterval() {
+        return metricsIngestFlushInterval;
+    }
+
+    public int getMetricsIngestBatchSize() {
+        return metricsIngestBatchSize;
+    }
+
+    public int getMetricsIngestBufferSize() {
+        return metricsIngestBufferSize;
+    }
+
+    public METRICS_INGEST_OVERFLOW_POLICY getMetricsIngestOverflowPolicy() {
+        return metricsIngestOverflowPolicy;
+    }
+
+    public long getMetricsIngestBlockTimeout() {
+        return metricsIngestBlockTimeout;
+    }
+
+    public long getResourcesLogsFlushInterval() {
+        return resourcesLogsFlushInterval;
+    }
+
+    public int getResourcesLogsBatchSize() {
+        return resourcesLogsBatchSize;
+    }
+
+    public int getResourcesLogsBufferSize() {
+        return resourcesLogsBufferSize;
+    }
+
+    public RESOURCES_LOGS_OVERFLOW_POLICY getResourcesLogsOverflowPolicy() {
+        return resourcesLogsOverflowPolicy;
+    }
+
+    public long getInfluxdbWriterLingerTime() {
+        return influxdbWriterLingerTime;
+    }
+
+    public int getInfluxdbWriterBatchSize() {
+        return influxdbWriterBatchSize;
+    }
+
+    public int getInfluxdbWriterBufferSize() {
+        return influxdbWriterBufferSize;
+    }
+
+    public int getInfluxdbWriterRetryCount() {
+        return influxdbWriterRetryCount;
+    }
+
+    public long getInfluxdbWriterRetryBackoff() {
+        return influxdbWriterRetryBackoff;
+    }
+
     public String getMcPersistentStoresLocation() {
         return mcPersistentStoresLocation;
     }
@@ -65,10 +65,20 @@ import org.mycontroller.standalone.api.jaxrs.mixins.McJacksonJson2Provider;
 import org.mycontroller.standalone.auth.BasicAthenticationSecurityDomain;
 import org.mycontroller.standalone.auth.McContainerRequestFilter;
 import org.mycontroller.standalone.db.DataBaseUtils;
+import org.mycontroller.standalone.db.ResourcesLogsWriter;
+import org.mycontroller.standalone.db.TopologyCache;
+import org.mycontroller.standalone.db.WriteBehindUpdater;
+import org.mycontroller.standalone.executor.ExecutorUtils;
+import org.mycontroller.standalone.externalserver.ExternalServerRoutingTable;
 import org.mycontroller.standalone.externalserver.ExternalServerUtils;
+import org.mycontroller.standalone.fwpayload.ForwardPayloadIndex;
+import org.mycontroller.standalone.gateway.GatewayTxPacer;
 import org.mycontroller.standalone.gateway.GatewayUtils;
+import org.mycontroller.standalone.gateway.ethernet.EthernetGatewaySelector;
 import org.mycontroller.standalone.mdns.McmDNSFactory;
 import org.mycontroller.standalone.message.MessageMonitorThread;
+import org.mycontroller.standalone.message.RawMessageQueue;
+import org.mycontroller.standalone.metrics.MetricsIngestBuffer;
 import org.mycontroller.standalone.mqttbroker.MoquetteMqttBroker;
 import org.mycontroller.standalone.scheduler.SchedulerUtils;
 import org.mycontroller.standalone.scripts.McScriptEngineUtils;
@@ -275,6 +285,18 @@ public class StartApp {
         // - Load starting values
         loadStartingValues();
 
+        // - Load nodes, sensors and variables to topology cache
+        TopologyCache.load();
+
+        // - Start write behind of last seen updates
+        WriteBehindUpdater.start();
+
+        // - Start metrics ingest buffer
+        MetricsIngestBuffer.start();
+
+        // - Start resources logs writer
+        ResourcesLogsWriter.start();
+
         // - Start MQTT Broker
         MoquetteMqttBroker.start();
 
@@ -293,20 +315,32 @@ public class StartApp {
     public static synchronized void stopServices() {
         //Stop order..
         // - stop web server
-        // - clear external servers
         // - Stop scheduler
         // - Stop GatewayTable Listener
         // - Stop MQTT broker
         // - Stop message Monitor Thread
         // - Clear Raw Message Queue (Optional)
+        // - Stop executors
+        // - clear external servers, flushes queued influxdb points
+        // - Flush write behind updates, metrics and resources logs
         // - Stop DB service
         stopHTTPWebServer();
-        ExternalServerUtils.clearServers();
         SchedulerUtils.stop();
         GatewayUtils.unloadAllGateways();
         MoquetteMqttBroker.stop();
         MessageMonitorThread.shutdown();
+        RawMessageQueue.getInstance().close();
+        GatewayTxPacer.shutdown();
+        EthernetGatewaySelector.shutdown();
+        ExecutorUtils.shutdown();
+        ExternalServerUtils.clearServers();
+        WriteBehindUpdater.shutdown();
+        MetricsIngestBuffer.shutdown();
+        ResourcesLogsWriter.shutdown();
         DataBaseUtils.stop();
+        TopologyCache.clear();
+        ForwardPayloadIndex.invalidate();
+        ExternalServerRoutingTable.invalidate();
         MapDbFactory.close();
         _logger.debug("All services stopped.");
         //Remove references
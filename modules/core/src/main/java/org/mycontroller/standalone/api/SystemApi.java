@@ -29,6 +29,9 @@ import org.mycontroller.standalone.api.jaxrs.utils.StatusOS;
 import org.mycontroller.standalone.db.DaoUtils;
 import org.mycontroller.standalone.db.tables.ResourcesLogs;
 import org.mycontroller.standalone.message.MessageMonitorThread;
+import org.mycontroller.standalone.message.MessageStageLatency;
+import org.mycontroller.standalone.message.MessageTracer;
+import org.mycontroller.standalone.message.MessageTracer.TRACE_TYPE;
 import org.mycontroller.standalone.scripts.McScriptEngineUtils;
 
 import lombok.extern.slf4j.Slf4j;
@@ -95,4 +98,21 @@ public class SystemApi {
     public void printMessageEngineStatistics() {
         MessageMonitorThread.printStatistics();
     }
+
+    public Map<String, Object> getMessageEngineLatency() {
+        return MessageStageLatency.getStatistics();
+    }
+
+    public void resetMessageEngineLatency() {
+        MessageStageLatency.reset();
+    }
+
+    public List<Map<String, Object>> getMessageTraces(TRACE_TYPE traceType, Integer gatewayId, String nodeEui,
+            String sensorId, Integer limit) {
+        return MessageTracer.getTraces(traceType, gatewayId, nodeEui, sensorId, limit);
+    }
+
+    public void clearMessageTraces() {
+        MessageTracer.clear();
+    }
 }
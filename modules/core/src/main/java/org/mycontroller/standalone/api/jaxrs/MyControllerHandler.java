@@ -41,6 +41,7 @@ import org.apache.commons.io.FileUtils;
 import org.mycontroller.standalone.api.SystemApi;
 import org.mycontroller.standalone.api.jaxrs.json.ApiError;
 import org.mycontroller.standalone.api.jaxrs.utils.RestUtils;
+import org.mycontroller.standalone.message.MessageTracer.TRACE_TYPE;
 import org.mycontroller.standalone.utils.McServerFileUtils;
 
 /**
@@ -154,6 +155,50 @@ public class MyControllerHandler extends AccessEngine {
         return RestUtils.getResponse(Status.OK, systemApi.getScriptEngines());
     }
 
+    @GET
+    @Path("/messageEngineStatistics")
+    public Response getMessageEngineStatistics() {
+        return RestUtils.getResponse(Status.OK, systemApi.getMessageEngineStatistics());
+    }
+
+    @GET
+    @Path("/messageEngineLatency")
+    public Response getMessageEngineLatency() {
+        return RestUtils.getResponse(Status.OK, systemApi.getMessageEngineLatency());
+    }
+
+    @RolesAllowed({ "Admin" })
+    @PUT
+    @Path("/messageEngineLatency/reset")
+    public Response resetMessageEngineLatency() {
+        systemApi.resetMessageEngineLatency();
+        return RestUtils.getResponse(Status.OK, systemApi.getMessageEngineLatency());
+    }
+
+    @GET
+    @Path("/messageTraces")
+    public Response getMessageTraces(
+            @QueryParam("type") String type,
+            @QueryParam("gatewayId") Integer gatewayId,
+            @QueryParam("nodeEui") String nodeEui,
+            @QueryParam("sensorId") String sensorId,
+            @QueryParam("limit") Integer limit) {
+        TRACE_TYPE traceType = type == null ? TRACE_TYPE.SLOWEST : TRACE_TYPE.fromString(type);
+        if (traceType == null) {
+            return RestUtils.getResponse(Status.BAD_REQUEST, new ApiError("Unknown trace type: " + type));
+        }
+        return RestUtils.getResponse(Status.OK,
+                systemApi.getMessageTraces(traceType, gatewayId, nodeEui, sensorId, limit));
+    }
+
+    @RolesAllowed({ "Admin" })
+    @PUT
+    @Path("/messageTraces/clear")
+    public Response clearMessageTraces() {
+        systemApi.clearMessageTraces();
+        return RestUtils.getResponse(Status.OK);
+    }
+
     @RolesAllowed({ "Admin" })
     @PUT
     @Path("/runGarbageCollection")
@@ -26,6 +26,7 @@ import org.mycontroller.standalone.gateway.GatewayUtils.GATEWAY_TYPE;
 import org.mycontroller.standalone.gateway.GatewayUtils.SERIAL_PORT_DRIVER;
 import org.mycontroller.standalone.gateway.model.Gateway;
 import org.mycontroller.standalone.gateway.model.GatewayEthernet;
+import org.mycontroller.standalone.gateway.model.GatewayLoadGenerator;
 import org.mycontroller.standalone.gateway.model.GatewayMQTT;
 import org.mycontroller.standalone.gateway.model.GatewayPhantIO;
 import org.mycontroller.standalone.gateway.model.GatewayPhilipsHue;
@@ -129,6 +130,14 @@ class GatewayDeserializer extends JsonDeserializer<Gateway> {
                 gatewayPhilipsHue.setUrl(node.get(GatewayPhilipsHue.KEY_URL).asText());
                 gateway = gatewayPhilipsHue;
                 break;
+            case LOAD_GENERATOR:
+                GatewayLoadGenerator gatewayLoadGenerator = new GatewayLoadGenerator();
+                gatewayLoadGenerator.setMessagesPerSecond(node.get("messagesPerSecond").asInt());
+                gatewayLoadGenerator.setNodes(node.get("nodes").asInt());
+                gatewayLoadGenerator.setSensorsPerNode(node.get("sensorsPerNode").asInt());
+                gatewayLoadGenerator.setDuration(node.get("duration").asLong());
+                gateway = gatewayLoadGenerator;
+                break;
             default:
                 break;
         }
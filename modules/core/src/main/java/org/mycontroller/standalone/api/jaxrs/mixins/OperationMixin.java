@@ -22,6 +22,7 @@ import java.util.HashMap;
 import org.mycontroller.standalone.AppProperties.RESOURCE_TYPE;
 import org.mycontroller.standalone.api.jaxrs.utils.RestUtils;
 import org.mycontroller.standalone.db.tables.OperationTable;
+import org.mycontroller.standalone.message.McMessageUtils.MESSAGE_PRIORITY;
 import org.mycontroller.standalone.operation.OperationUtils;
 import org.mycontroller.standalone.operation.OperationUtils.OPERATION_TYPE;
 import org.mycontroller.standalone.operation.model.Operation;
@@ -113,6 +114,9 @@ class OperationDeserializer extends JsonDeserializer<Operation> {
                 } else {
                     operationSendPayload.setDelayTime(0L);
                 }
+                if (node.get("priority") != null) {
+                    operationSendPayload.setPriority(MESSAGE_PRIORITY.fromString(node.get("priority").asText()));
+                }
                 operation = operationSendPayload;
                 break;
             case REQUEST_PAYLOAD:
@@ -22,6 +22,10 @@ import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.apache.commons.io.FileUtils;
 import org.flywaydb.core.Flyway;
@@ -30,14 +34,20 @@ import org.mycontroller.standalone.AppProperties;
 import org.mycontroller.standalone.AppProperties.DB_TYPE;
 import org.mycontroller.standalone.api.SystemApi;
 import org.mycontroller.standalone.api.jaxrs.json.McAbout;
+import org.mycontroller.standalone.db.dao.BaseDao;
 import org.mycontroller.standalone.db.tables.SystemJob;
 import org.mycontroller.standalone.message.McMessageUtils.MESSAGE_TYPE_PRESENTATION;
 import org.mycontroller.standalone.message.McMessageUtils.MESSAGE_TYPE_SET_REQ;
 import org.mycontroller.standalone.settings.MyControllerSettings;
 import org.mycontroller.standalone.utils.McUtils;
 
+import com.j256.ormlite.dao.Dao;
+import com.j256.ormlite.field.FieldType;
+import com.j256.ormlite.jdbc.JdbcDatabaseConnection;
 import com.j256.ormlite.jdbc.JdbcPooledConnectionSource;
 import com.j256.ormlite.support.ConnectionSource;
+import com.j256.ormlite.support.DatabaseConnection;
+import com.j256.ormlite.table.TableInfo;
 
 import lombok.extern.slf4j.Slf4j;
 
@@ -254,6 +264,119 @@ public class DataBaseUtils {
         return false;
     }
 
+    /**
+     * @return table or column name escaped for the configured database, as escaped by ORMLite
+     */
+    public static String getEscapedName(Dao<?, ?> dao, String name) {
+        StringBuilder builder = new StringBuilder();
+        dao.getConnectionSource().getDatabaseType().appendEscapedEntityName(builder, name);
+        return builder.toString();
+    }
+
+    /**
+     * Executes the statement for all the rows as a single JDBC batch, in one transaction.
+     * @param dao dao of the table, connection is taken from this dao
+     * @param sql statement with parameters
+     * @param rows parameter values of each row
+     * @return number of rows affected
+     */
+    public static int executeBatch(Dao<?, ?> dao, String sql, List<Object[]> rows) throws SQLException {
+        if (rows.isEmpty()) {
+            return 0;
+        }
+        ConnectionSource connectionSource = dao.getConnectionSource();
+        DatabaseConnection databaseConnection = connectionSource.getReadWriteConnection(dao.getTableName());
+        Connection conn = null;
+        PreparedStatement statement = null;
+        //Set only after auto commit is read, connection is restored only when it was changed
+        Boolean autoCommit = null;
+        try {
+            conn = ((JdbcDatabaseConnection) databaseConnection).getInternalConnection();
+            autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            statement = conn.prepareStatement(sql);
+            for (Object[] row : rows) {
+                for (int index = 0; index < row.length; index++) {
+                    if (row[index] == null) {
+                        statement.setNull(index + 1, Types.NULL);
+                    } else {
+                        statement.setObject(index + 1, row[index]);
+                    }
+                }
+                statement.addBatch();
+            }
+            int count = 0;
+            for (int result : statement.executeBatch()) {
+                //Some drivers do not report count of batched statements
+                count += result == Statement.SUCCESS_NO_INFO ? 1 : Math.max(result, 0);
+            }
+            conn.commit();
+            return count;
+        } catch (SQLException ex) {
+            if (autoCommit != null) {
+                try {
+                    conn.rollback();
+                } catch (SQLException rollbackEx) {
+                    _logger.error("Unable to rollback the batch", rollbackEx);
+                }
+            }
+            throw ex;
+        } finally {
+            try {
+                if (statement != null) {
+                    statement.close();
+                }
+                if (autoCommit != null) {
+                    conn.setAutoCommit(autoCommit);
+                }
+            } finally {
+                connectionSource.releaseConnection(databaseConnection);
+            }
+        }
+    }
+
+    /**
+     * Inserts the items with a single JDBC batch, in one transaction.
+     * Values are converted as ORMLite converts on create, generated ids are assigned by database
+     * and not updated on the items.
+     * @param dao dao of the table
+     * @param items items of the table
+     * @return number of rows inserted
+     */
+    public static int insertBatch(BaseDao<?, ?> dao, List<?> items) throws SQLException {
+        TableInfo<?, ?> tableInfo = dao.getTableInfo();
+        List<FieldType> fieldTypes = new ArrayList<FieldType>();
+        for (FieldType fieldType : tableInfo.getFieldTypes()) {
+            if (!fieldType.isGeneratedId() && !fieldType.isForeignCollection()) {
+                fieldTypes.add(fieldType);
+            }
+        }
+        StringBuilder builder = new StringBuilder();
+        StringBuilder values = new StringBuilder();
+        builder.append("INSERT INTO ").append(getEscapedName(dao.getDao(), tableInfo.getTableName())).append(" (");
+        for (int index = 0; index < fieldTypes.size(); index++) {
+            if (index > 0) {
+                builder.append(", ");
+                values.append(", ");
+            }
+            builder.append(getEscapedName(dao.getDao(), fieldTypes.get(index).getColumnName()));
+            values.append("?");
+        }
+        builder.append(") VALUES (").append(values).append(")");
+        List<Object[]> rows = new ArrayList<Object[]>(items.size());
+        for (Object item : items) {
+            Object[] row = new Object[fieldTypes.size()];
+            for (int index = 0; index < fieldTypes.size(); index++) {
+                row[index] = fieldTypes.get(index).extractJavaFieldToSqlArg(item);
+                if (row[index] == null) {
+                    row[index] = fieldTypes.get(index).getDefaultValue();
+                }
+            }
+            rows.add(row);
+        }
+        return executeBatch(dao.getDao(), builder.toString(), rows);
+    }
+
     public static String getDatabaseVersionQuery() {
         switch (AppProperties.getInstance().getDbType()) {
             case H2DB:
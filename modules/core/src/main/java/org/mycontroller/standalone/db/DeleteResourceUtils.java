@@ -25,7 +25,9 @@ import org.mycontroller.standalone.db.tables.Resource;
 import org.mycontroller.standalone.db.tables.ResourcesGroup;
 import org.mycontroller.standalone.db.tables.Sensor;
 import org.mycontroller.standalone.db.tables.SensorVariable;
+import org.mycontroller.standalone.externalserver.ExternalServerRoutingTable;
 import org.mycontroller.standalone.gateway.GatewayUtils;
+import org.mycontroller.standalone.message.MessageMonitorThread;
 import org.mycontroller.standalone.message.SmartSleepMessageQueue;
 
 import lombok.extern.slf4j.Slf4j;
@@ -86,6 +88,9 @@ public class DeleteResourceUtils {
         //Delete from resource table
         deleteResource(RESOURCE_TYPE.SENSOR_VARIABLE, sensorVariable.getId());
 
+        //Remove external server route
+        ExternalServerRoutingTable.invalidate(sensorVariable.getId());
+
         //Delete UID tags
         DaoUtils.getUidTagDao().delete(RESOURCE_TYPE.SENSOR_VARIABLE, sensorVariable.getId());
 
@@ -158,6 +163,8 @@ public class DeleteResourceUtils {
     public static void deleteGateway(Integer id) {
         //Unload gateway
         GatewayUtils.unloadGateway(id);
+        //Remove message lane and the queued messages
+        MessageMonitorThread.removeLane(id);
 
         //Delete nodes
         for (Node node : DaoUtils.getNodeDao().getAllByGatewayId(id)) {
@@ -17,6 +17,7 @@
 package org.mycontroller.standalone.db;
 
 import org.mycontroller.standalone.db.ResourceOperationUtils.SEND_PAYLOAD_OPERATIONS;
+import org.mycontroller.standalone.message.McMessageUtils.MESSAGE_PRIORITY;
 import org.mycontroller.standalone.utils.McUtils;
 
 /**
@@ -28,6 +29,8 @@ public class ResourceOperation {
     private SEND_PAYLOAD_OPERATIONS operationType;
     private Double value;
     private String payload;
+    //Priority of the messages, when null derived from the message
+    private MESSAGE_PRIORITY priority;
 
     public ResourceOperation(String payload) {
         this.payload = payload;
@@ -46,6 +49,14 @@ public class ResourceOperation {
         return this.value;
     }
 
+    public MESSAGE_PRIORITY getPriority() {
+        return priority;
+    }
+
+    public void setPriority(MESSAGE_PRIORITY priority) {
+        this.priority = priority;
+    }
+
     public SEND_PAYLOAD_OPERATIONS getOperationType() {
         return this.operationType;
     }
@@ -56,6 +67,7 @@ public class ResourceOperation {
         builder.append("OperationTable:").append(this.operationType.getText());
         builder.append(", Value:").append(this.value);
         builder.append(", Payload:").append(this.payload);
+        builder.append(", Priority:").append(this.priority);
         return builder.toString();
     }
 
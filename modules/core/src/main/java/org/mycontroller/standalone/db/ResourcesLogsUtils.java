@@ -138,7 +138,7 @@ public class ResourcesLogsUtils {
                 .logLevel(logLevel)
                 .logDirection(LOG_DIRECTION.INTERNAL)
                 .message(builder.toString()).build();
-        DaoUtils.getResourcesLogsDao().add(resourcesLogs);
+        ResourcesLogsWriter.add(resourcesLogs);
     }
 
     public static void setTimerLog(LOG_LEVEL logLevel, Timer timer, String errorMsg) {
@@ -160,7 +160,7 @@ public class ResourcesLogsUtils {
                 .logLevel(logLevel)
                 .logDirection(LOG_DIRECTION.INTERNAL)
                 .message(builder.toString()).build();
-        DaoUtils.getResourcesLogsDao().add(resourcesLogs);
+        ResourcesLogsWriter.add(resourcesLogs);
     }
 
     public static void recordSensorsResourcesLog(RESOURCE_TYPE resourceType, Integer resourceId, LOG_LEVEL logLevel,
@@ -179,7 +179,7 @@ public class ResourcesLogsUtils {
                 .logLevel(logLevel)
                 .logDirection(isTxMessage == true ? LOG_DIRECTION.SENT : LOG_DIRECTION.RECEIVED)
                 .message(message).build();
-        DaoUtils.getResourcesLogsDao().add(resourcesLogs);
+        ResourcesLogsWriter.add(resourcesLogs);
     }
 
     public static void deleteResourcesLog(RESOURCE_TYPE resourceType, Integer resourceId) {
@@ -0,0 +1,249 @@
+/*
+ * Copyright 2015-2017 Jeeva Kandasamy (jkandasa@gmail.com)
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mycontroller.standalone.db;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.mycontroller.standalone.AppProperties;
+import org.mycontroller.standalone.AppProperties.RESOURCES_LOGS_OVERFLOW_POLICY;
+import org.mycontroller.standalone.db.ResourcesLogsUtils.LOG_LEVEL;
+import org.mycontroller.standalone.db.tables.ResourcesLogs;
+import org.mycontroller.standalone.utils.RingBuffer;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Writes resources logs on a background thread, with batched inserts.
+ * Logs are kept on a lock-free ring buffer per log level, so callers never wait for database.
+ * Each level ring can hold the whole buffer size, number of pending logs of all levels is bounded by the buffer size.
+ * When the buffer is full, based on overflow policy, a log of the lowest level available below the new log is
+ * dropped to make room, or the new log is dropped.
+ * When a batch fails, logs of the batch are inserted one by one, so only the failed logs are dropped.
+ * @author Jeeva Kandasamy (jkandasa)
+ * @since 0.0.3
+ */
+@Slf4j
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class ResourcesLogsWriter {
+    private static final int LEVELS = LOG_LEVEL.values().length;
+
+    private static volatile List<RingBuffer<ResourcesLogs>> buffers = null;
+    private static volatile ScheduledThreadPoolExecutor scheduler = null;
+    private static volatile int capacity = 0;
+    private static volatile int batchSize = 0;
+    private static volatile RESOURCES_LOGS_OVERFLOW_POLICY overflowPolicy = null;
+    private static final AtomicInteger PENDING = new AtomicInteger(0);
+    private static final AtomicBoolean FLUSH_REQUESTED = new AtomicBoolean(false);
+
+    private static final AtomicLong WRITTEN_COUNT = new AtomicLong(0);
+    private static final AtomicLong FAILED_COUNT = new AtomicLong(0);
+    private static final AtomicLong FALLBACK_COUNT = new AtomicLong(0);
+    private static final AtomicLongArray DROPPED_COUNT = new AtomicLongArray(LEVELS);
+
+    private static final Comparator<ResourcesLogs> TIMESTAMP_ORDER = new Comparator<ResourcesLogs>() {
+        @Override
+        public int compare(ResourcesLogs log1, ResourcesLogs log2) {
+            return log1.getTimestamp().compareTo(log2.getTimestamp());
+        }
+    };
+
+    private static final Runnable FLUSH_TASK = new Runnable() {
+        @Override
+        public void run() {
+            FLUSH_REQUESTED.set(false);
+            try {
+                flush();
+            } catch (Exception ex) {
+                _logger.error("Exception while writing resources logs,", ex);
+            }
+        }
+    };
+
+    public static synchronized void start() {
+        long interval = AppProperties.getInstance().getResourcesLogsFlushInterval();
+        if (interval <= 0 || scheduler != null) {
+            return;
+        }
+        capacity = Math.max(AppProperties.getInstance().getResourcesLogsBufferSize(), 1);
+        batchSize = Math.max(AppProperties.getInstance().getResourcesLogsBatchSize(), 1);
+        overflowPolicy = AppProperties.getInstance().getResourcesLogsOverflowPolicy();
+        List<RingBuffer<ResourcesLogs>> _buffers = new ArrayList<RingBuffer<ResourcesLogs>>(LEVELS);
+        for (int level = 0; level < LEVELS; level++) {
+            _buffers.add(new RingBuffer<ResourcesLogs>(capacity));
+        }
+        buffers = _buffers;
+        scheduler = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                return new Thread(runnable, "mc-resources-logs-writer");
+            }
+        });
+        scheduler.scheduleWithFixedDelay(FLUSH_TASK, interval, interval, TimeUnit.MILLISECONDS);
+        _logger.info("Resources logs writer started with buffer size:{}, overflow policy:{}", capacity,
+                overflowPolicy.getText());
+    }
+
+    /**
+     * Stops the writer thread and writes all the pending logs.
+     */
+    public static synchronized void shutdown() {
+        ScheduledThreadPoolExecutor _scheduler = scheduler;
+        if (_scheduler == null) {
+            return;
+        }
+        scheduler = null;
+        _scheduler.shutdown();
+        try {
+            _scheduler.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException ex) {
+            _logger.debug("Exception while waiting for resources logs writer termination,", ex);
+        }
+        flush();
+        _logger.debug("Resources logs writer terminated");
+    }
+
+    /**
+     * Adds the log to the buffer. Added to database immediately when the writer is disabled.
+     */
+    public static void add(ResourcesLogs resourcesLogs) {
+        List<RingBuffer<ResourcesLogs>> _buffers = buffers;
+        if (scheduler == null || _buffers == null) {
+            DaoUtils.getResourcesLogsDao().add(resourcesLogs);
+            return;
+        }
+        int level = resourcesLogs.getLogLevel().ordinal();
+        if (PENDING.incrementAndGet() > capacity) {
+            if (overflowPolicy != RESOURCES_LOGS_OVERFLOW_POLICY.DROP_LOWEST_LEVEL || !dropLowerLevel(level)) {
+                PENDING.decrementAndGet();
+                DROPPED_COUNT.incrementAndGet(level);
+                return;
+            }
+        }
+        if (!_buffers.get(level).offer(resourcesLogs)) {
+            PENDING.decrementAndGet();
+            DROPPED_COUNT.incrementAndGet(level);
+            return;
+        }
+        if (PENDING.get() >= batchSize) {
+            requestFlush();
+        }
+    }
+
+    // Drops a log of the lowest level, which is lower than the given level
+    private static boolean dropLowerLevel(int level) {
+        List<RingBuffer<ResourcesLogs>> _buffers = buffers;
+        for (int lowerLevel = 0; lowerLevel < level; lowerLevel++) {
+            if (_buffers.get(lowerLevel).poll() != null) {
+                PENDING.decrementAndGet();
+                DROPPED_COUNT.incrementAndGet(lowerLevel);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void requestFlush() {
+        ScheduledThreadPoolExecutor _scheduler = scheduler;
+        if (_scheduler != null && FLUSH_REQUESTED.compareAndSet(false, true)) {
+            try {
+                _scheduler.execute(FLUSH_TASK);
+            } catch (RejectedExecutionException ex) {
+                //Shutdown in progress, logs will be written on shutdown
+                FLUSH_REQUESTED.set(false);
+            }
+        }
+    }
+
+    public static synchronized void flush() {
+        List<RingBuffer<ResourcesLogs>> _buffers = buffers;
+        if (_buffers == null) {
+            return;
+        }
+        while (PENDING.get() > 0) {
+            List<ResourcesLogs> batch = new ArrayList<ResourcesLogs>(batchSize);
+            for (int level = LEVELS - 1; level >= 0 && batch.size() < batchSize; level--) {
+                ResourcesLogs resourcesLogs;
+                while (batch.size() < batchSize && (resourcesLogs = _buffers.get(level).poll()) != null) {
+                    PENDING.decrementAndGet();
+                    batch.add(resourcesLogs);
+                }
+            }
+            if (batch.isEmpty()) {
+                return;
+            }
+            //Keep the order of logs on the table
+            Collections.sort(batch, TIMESTAMP_ORDER);
+            write(batch);
+        }
+    }
+
+    private static void write(List<ResourcesLogs> batch) {
+        try {
+            DataBaseUtils.insertBatch(DaoUtils.getResourcesLogsDao(), batch);
+            WRITTEN_COUNT.addAndGet(batch.size());
+        } catch (SQLException ex) {
+            _logger.warn("Unable to write batch of {} resources log(s), writing one by one. Error:{}", batch.size(),
+                    ex.getMessage());
+            FALLBACK_COUNT.addAndGet(batch.size());
+            for (ResourcesLogs resourcesLogs : batch) {
+                create(resourcesLogs);
+            }
+        }
+    }
+
+    private static void create(ResourcesLogs resourcesLogs) {
+        try {
+            DaoUtils.getResourcesLogsDao().getDao().create(resourcesLogs);
+            WRITTEN_COUNT.incrementAndGet();
+        } catch (SQLException ex) {
+            FAILED_COUNT.incrementAndGet();
+            _logger.error("unable to add new item:[{}]", resourcesLogs, ex);
+        }
+    }
+
+    public static Map<String, Object> getStatistics() {
+        HashMap<String, Object> statistics = new HashMap<String, Object>();
+        statistics.put("enabled", scheduler != null);
+        statistics.put("capacity", capacity);
+        statistics.put("pending", PENDING.get());
+        statistics.put("writtenCount", WRITTEN_COUNT.get());
+        statistics.put("failedCount", FAILED_COUNT.get());
+        statistics.put("fallbackCount", FALLBACK_COUNT.get());
+        HashMap<String, Long> dropped = new HashMap<String, Long>();
+        for (LOG_LEVEL logLevel : LOG_LEVEL.values()) {
+            dropped.put(logLevel.getText(), DROPPED_COUNT.get(logLevel.ordinal()));
+        }
+        statistics.put("droppedCount", dropped);
+        return statistics;
+    }
+}
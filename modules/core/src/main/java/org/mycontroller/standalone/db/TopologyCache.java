@@ -0,0 +1,560 @@
+/*
+ * Copyright 2015-2017 Jeeva Kandasamy (jkandasa@gmail.com)
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mycontroller.standalone.db;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.mycontroller.standalone.AppProperties;
+import org.mycontroller.standalone.db.tables.Node;
+import org.mycontroller.standalone.db.tables.Sensor;
+import org.mycontroller.standalone.db.tables.SensorVariable;
+import org.mycontroller.standalone.message.McMessageUtils.MESSAGE_TYPE_SET_REQ;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * In-memory index of nodes, sensors and sensor variables, keyed by gateway id, node eui, sensor id and
+ * variable type. Message engine resolves entities from this index, without querying database for each message.
+ * DAOs report every change on these tables. An entity written with its cached instance stays in the index,
+ * a change done with another instance (REST edits, jobs), deletes and updates by id or parent id evict the
+ * matched entities with their children. Other bulk changes clear the index. Evicted entities are loaded again
+ * from database on next lookup.
+ * Each eviction moves the generation forward, an entity loaded while the generation moved is not kept, as
+ * it might be loaded before the change.
+ * @author Jeeva Kandasamy (jkandasa)
+ * @since 0.0.3
+ */
+@Slf4j
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class TopologyCache {
+    private static final AtomicLong GENERATION = new AtomicLong(0);
+    private static volatile Topology topology = new Topology();
+
+    private static final AtomicLong HITS = new AtomicLong(0);
+    private static final AtomicLong MISSES = new AtomicLong(0);
+    private static final AtomicLong EVICTIONS = new AtomicLong(0);
+    private static final AtomicLong CLEARS = new AtomicLong(0);
+
+    public static synchronized void load() {
+        if (!AppProperties.getInstance().isTopologyCacheEnabled()) {
+            topology = new Topology();
+            _logger.info("Topology cache disabled");
+            return;
+        }
+        long startTime = System.currentTimeMillis();
+        while (true) {
+            long generation = GENERATION.get();
+            Topology _topology = new Topology();
+            List<Node> nodes = DaoUtils.getNodeDao().getAll();
+            if (nodes != null) {
+                for (Node node : nodes) {
+                    _topology.putNode(node);
+                }
+            }
+            List<Sensor> sensors = DaoUtils.getSensorDao().getAll();
+            if (sensors != null) {
+                for (Sensor sensor : sensors) {
+                    NodeEntry nodeEntry = _topology.nodesById.get(sensor.getNode().getId());
+                    if (nodeEntry != null) {
+                        _topology.putSensor(nodeEntry, sensor);
+                    }
+                }
+            }
+            List<SensorVariable> variables = DaoUtils.getSensorVariableDao().getAll();
+            if (variables != null) {
+                for (SensorVariable variable : variables) {
+                    SensorEntry sensorEntry = _topology.sensorsById.get(variable.getSensor().getId());
+                    if (sensorEntry != null) {
+                        _topology.putVariable(sensorEntry, variable);
+                    }
+                }
+            }
+            topology = _topology;
+            //Load again when changed while loading, loaded entities might not include the change
+            if (GENERATION.get() == generation) {
+                _logger.info("Topology cache loaded with {} node(s), {} sensor(s) and {} variable(s) in {} ms",
+                        _topology.nodesById.size(), _topology.sensorsById.size(), _topology.variablesById.size(),
+                        System.currentTimeMillis() - startTime);
+                return;
+            }
+        }
+    }
+
+    public static void clear() {
+        GENERATION.incrementAndGet();
+        topology = new Topology();
+        CLEARS.incrementAndGet();
+    }
+
+    public static Node getNode(Integer gatewayId, String nodeEui) {
+        if (!AppProperties.getInstance().isTopologyCacheEnabled()) {
+            return DaoUtils.getNodeDao().get(gatewayId, nodeEui);
+        }
+        NodeEntry nodeEntry = getNodeEntry(topology, gatewayId, nodeEui);
+        return nodeEntry == null ? null : nodeEntry.node;
+    }
+
+    public static Sensor getSensor(Integer gatewayId, String nodeEui, String sensorId) {
+        if (!AppProperties.getInstance().isTopologyCacheEnabled()) {
+            return DaoUtils.getSensorDao().get(gatewayId, nodeEui, sensorId);
+        }
+        Topology _topology = topology;
+        NodeEntry nodeEntry = getNodeEntry(_topology, gatewayId, nodeEui);
+        if (nodeEntry == null) {
+            return null;
+        }
+        SensorEntry sensorEntry = getSensorEntry(_topology, nodeEntry, sensorId);
+        return sensorEntry == null ? null : sensorEntry.sensor;
+    }
+
+    public static SensorVariable getSensorVariable(Integer gatewayId, String nodeEui, String sensorId,
+            MESSAGE_TYPE_SET_REQ variableType) {
+        if (!AppProperties.getInstance().isTopologyCacheEnabled()) {
+            Sensor sensor = DaoUtils.getSensorDao().get(gatewayId, nodeEui, sensorId);
+            return sensor == null ? null : DaoUtils.getSensorVariableDao().get(sensor.getId(), variableType);
+        }
+        Topology _topology = topology;
+        NodeEntry nodeEntry = getNodeEntry(_topology, gatewayId, nodeEui);
+        if (nodeEntry == null) {
+            return null;
+        }
+        SensorEntry sensorEntry = getSensorEntry(_topology, nodeEntry, sensorId);
+        if (sensorEntry == null) {
+            return null;
+        }
+        VariableEntry variableEntry = sensorEntry.variables.get(variableType);
+        if (variableEntry != null) {
+            HITS.incrementAndGet();
+            return variableEntry.variable;
+        }
+        MISSES.incrementAndGet();
+        while (true) {
+            long generation = GENERATION.get();
+            SensorVariable variable = DaoUtils.getSensorVariableDao().get(sensorEntry.sensor.getId(), variableType);
+            if (variable == null) {
+                return null;
+            }
+            variableEntry = _topology.putVariable(sensorEntry, variable);
+            if (isPublished(_topology, variableEntry, generation)) {
+                return variableEntry.variable;
+            }
+            //Parent evicted in between, variable is returned without keeping in the index
+            if (sensorEntry.evicted) {
+                return variableEntry.variable;
+            }
+        }
+    }
+
+    /**
+     * Called by DAOs after a change on node, sensor or sensor variable tables
+     * @param item changed item, null when the change is not on a single item
+     */
+    public static void onChange(Object item) {
+        if (item == null) {
+            clear();
+            return;
+        }
+        Topology _topology = topology;
+        if (item instanceof Node) {
+            Node node = (Node) item;
+            if (node.getId() == null) {
+                clear();
+                return;
+            }
+            NodeEntry nodeEntry = _topology.nodesById.get(node.getId());
+            if (nodeEntry == null || nodeEntry.node != node) {
+                GENERATION.incrementAndGet();
+                _topology.evictNode(node.getId());
+            }
+        } else if (item instanceof Sensor) {
+            Sensor sensor = (Sensor) item;
+            if (sensor.getId() == null) {
+                clear();
+                return;
+            }
+            SensorEntry sensorEntry = _topology.sensorsById.get(sensor.getId());
+            if (sensorEntry == null || sensorEntry.sensor != sensor) {
+                GENERATION.incrementAndGet();
+                _topology.evictSensor(sensor.getId());
+            }
+        } else if (item instanceof SensorVariable) {
+            SensorVariable variable = (SensorVariable) item;
+            if (variable.getId() == null) {
+                clear();
+                return;
+            }
+            VariableEntry variableEntry = _topology.variablesById.get(variable.getId());
+            if (variableEntry == null || variableEntry.variable != variable) {
+                GENERATION.incrementAndGet();
+                _topology.evictVariable(variable.getId());
+            }
+        } else {
+            clear();
+        }
+    }
+
+    /**
+     * Called by DAOs after a change on items of node, sensor or sensor variable tables, matching a column value.
+     * Changes matched by id or parent id evict the matched entities with their children, others clear the index.
+     * @param table changed table
+     * @param key column name, null when the change is not on matching items
+     * @param value column value or list of column values
+     */
+    public static void onChange(Class<?> table, String key, Object value) {
+        List<Integer> ids = toIds(value);
+        if (key == null || ids == null) {
+            clear();
+            return;
+        }
+        Topology _topology = topology;
+        if (table == Node.class && key.equals(Node.KEY_ID)) {
+            GENERATION.incrementAndGet();
+            for (Integer id : ids) {
+                _topology.evictNode(id);
+            }
+        } else if (table == Node.class && key.equals(Node.KEY_GATEWAY_ID)) {
+            GENERATION.incrementAndGet();
+            for (Integer id : ids) {
+                ConcurrentHashMap<String, NodeEntry> gatewayNodes = _topology.nodes.get(id);
+                if (gatewayNodes != null) {
+                    for (NodeEntry nodeEntry : gatewayNodes.values()) {
+                        _topology.evict(nodeEntry);
+                    }
+                }
+            }
+        } else if (table == Sensor.class && key.equals(Sensor.KEY_ID)) {
+            GENERATION.incrementAndGet();
+            for (Integer id : ids) {
+                _topology.evictSensor(id);
+            }
+        } else if (table == Sensor.class && key.equals(Sensor.KEY_NODE_ID)) {
+            GENERATION.incrementAndGet();
+            for (Integer id : ids) {
+                NodeEntry nodeEntry = _topology.nodesById.get(id);
+                if (nodeEntry != null) {
+                    for (SensorEntry sensorEntry : nodeEntry.sensors.values()) {
+                        _topology.evict(sensorEntry);
+                    }
+                }
+            }
+        } else if (table == SensorVariable.class && key.equals(SensorVariable.KEY_ID)) {
+            GENERATION.incrementAndGet();
+            for (Integer id : ids) {
+                _topology.evictVariable(id);
+            }
+        } else if (table == SensorVariable.class && key.equals(SensorVariable.KEY_SENSOR_DB_ID)) {
+            GENERATION.incrementAndGet();
+            for (Integer id : ids) {
+                SensorEntry sensorEntry = _topology.sensorsById.get(id);
+                if (sensorEntry != null) {
+                    for (VariableEntry variableEntry : sensorEntry.variables.values()) {
+                        _topology.evict(variableEntry);
+                    }
+                }
+            }
+        } else {
+            clear();
+        }
+    }
+
+    /**
+     * @return true when the given instance is the cached instance of the sensor
+     */
+    public static boolean isCached(Sensor sensor) {
+        if (sensor.getId() == null) {
+            return false;
+        }
+        SensorEntry sensorEntry = topology.sensorsById.get(sensor.getId());
+        return sensorEntry != null && sensorEntry.sensor == sensor;
+    }
+
+    public static Map<String, Object> getStatistics() {
+        Topology _topology = topology;
+        HashMap<String, Object> statistics = new HashMap<String, Object>();
+        statistics.put("enabled", AppProperties.getInstance().isTopologyCacheEnabled());
+        statistics.put("nodes", _topology.nodesById.size());
+        statistics.put("sensors", _topology.sensorsById.size());
+        statistics.put("variables", _topology.variablesById.size());
+        statistics.put("hits", HITS.get());
+        statistics.put("misses", MISSES.get());
+        statistics.put("evictions", EVICTIONS.get());
+        statistics.put("clears", CLEARS.get());
+        return statistics;
+    }
+
+    private static NodeEntry getNodeEntry(Topology _topology, Integer gatewayId, String nodeEui) {
+        NodeEntry nodeEntry = _topology.getNode(gatewayId, nodeEui);
+        if (nodeEntry != null) {
+            HITS.incrementAndGet();
+            return nodeEntry;
+        }
+        MISSES.incrementAndGet();
+        while (true) {
+            long generation = GENERATION.get();
+            Node node = DaoUtils.getNodeDao().get(gatewayId, nodeEui);
+            if (node == null) {
+                return null;
+            }
+            nodeEntry = _topology.putNode(node);
+            if (isPublished(_topology, nodeEntry, generation)) {
+                return nodeEntry;
+            }
+        }
+    }
+
+    private static SensorEntry getSensorEntry(Topology _topology, NodeEntry nodeEntry, String sensorId) {
+        SensorEntry sensorEntry = nodeEntry.sensors.get(sensorId);
+        if (sensorEntry != null) {
+            HITS.incrementAndGet();
+            return sensorEntry;
+        }
+        MISSES.incrementAndGet();
+        while (true) {
+            long generation = GENERATION.get();
+            Sensor sensor = DaoUtils.getSensorDao().get(nodeEntry.node.getId(), sensorId);
+            if (sensor == null) {
+                return null;
+            }
+            sensorEntry = _topology.putSensor(nodeEntry, sensor);
+            if (isPublished(_topology, sensorEntry, generation)) {
+                return sensorEntry;
+            }
+            //Parent evicted in between, sensor is returned without keeping in the index
+            if (nodeEntry.evicted) {
+                return sensorEntry;
+            }
+        }
+    }
+
+    /**
+     * Checks the entry put on the index, after loading from database. Entry is evicted when the generation moved
+     * or the parent evicted while loading, caller loads it again or returns it without keeping in the index.
+     */
+    private static boolean isPublished(Topology _topology, Entry entry, long generation) {
+        if (GENERATION.get() == generation && (entry.getParent() == null || !entry.getParent().evicted)) {
+            return true;
+        }
+        _topology.evict(entry);
+        return false;
+    }
+
+    private static List<Integer> toIds(Object value) {
+        if (value instanceof Integer) {
+            return Collections.singletonList((Integer) value);
+        } else if (value instanceof Collection) {
+            List<Integer> ids = new ArrayList<Integer>();
+            for (Object id : (Collection<?>) value) {
+                if (!(id instanceof Integer)) {
+                    return null;
+                }
+                ids.add((Integer) id);
+            }
+            return ids;
+        }
+        return null;
+    }
+
+    private static class Topology {
+        // gateway id -> node eui -> node
+        private final ConcurrentHashMap<Integer, ConcurrentHashMap<String, NodeEntry>> nodes =
+                new ConcurrentHashMap<Integer, ConcurrentHashMap<String, NodeEntry>>();
+        private final ConcurrentHashMap<Integer, NodeEntry> nodesById = new ConcurrentHashMap<Integer, NodeEntry>();
+        private final ConcurrentHashMap<Integer, SensorEntry> sensorsById =
+                new ConcurrentHashMap<Integer, SensorEntry>();
+        private final ConcurrentHashMap<Integer, VariableEntry> variablesById =
+                new ConcurrentHashMap<Integer, VariableEntry>();
+
+        private NodeEntry getNode(Integer gatewayId, String nodeEui) {
+            ConcurrentHashMap<String, NodeEntry> gatewayNodes = nodes.get(gatewayId);
+            return gatewayNodes == null ? null : gatewayNodes.get(nodeEui);
+        }
+
+        // Returns existing entry, when the node added by another thread
+        private NodeEntry putNode(Node node) {
+            Integer gatewayId = node.getGatewayTable().getId();
+            ConcurrentHashMap<String, NodeEntry> gatewayNodes = nodes.get(gatewayId);
+            if (gatewayNodes == null) {
+                gatewayNodes = new ConcurrentHashMap<String, NodeEntry>();
+                ConcurrentHashMap<String, NodeEntry> existing = nodes.putIfAbsent(gatewayId, gatewayNodes);
+                if (existing != null) {
+                    gatewayNodes = existing;
+                }
+            }
+            NodeEntry nodeEntry = new NodeEntry(gatewayId, node);
+            NodeEntry existing = gatewayNodes.putIfAbsent(node.getEui(), nodeEntry);
+            if (existing != null) {
+                return existing;
+            }
+            nodesById.put(node.getId(), nodeEntry);
+            return nodeEntry;
+        }
+
+        private SensorEntry putSensor(NodeEntry nodeEntry, Sensor sensor) {
+            //Sensor refers the cached node, keeps a single instance of the node
+            sensor.setNode(nodeEntry.node);
+            SensorEntry sensorEntry = new SensorEntry(nodeEntry, sensor);
+            SensorEntry existing = nodeEntry.sensors.putIfAbsent(sensor.getSensorId(), sensorEntry);
+            if (existing != null) {
+                return existing;
+            }
+            sensorsById.put(sensor.getId(), sensorEntry);
+            return sensorEntry;
+        }
+
+        private VariableEntry putVariable(SensorEntry sensorEntry, SensorVariable variable) {
+            variable.setSensor(sensorEntry.sensor);
+            VariableEntry variableEntry = new VariableEntry(sensorEntry, variable);
+            VariableEntry existing = sensorEntry.variables.putIfAbsent(variable.getVariableType(), variableEntry);
+            if (existing != null) {
+                return existing;
+            }
+            variablesById.put(variable.getId(), variableEntry);
+            return variableEntry;
+        }
+
+        private void evictNode(Integer id) {
+            NodeEntry nodeEntry = nodesById.get(id);
+            if (nodeEntry != null) {
+                evict(nodeEntry);
+            }
+        }
+
+        private void evictSensor(Integer id) {
+            SensorEntry sensorEntry = sensorsById.get(id);
+            if (sensorEntry != null) {
+                evict(sensorEntry);
+            }
+        }
+
+        private void evictVariable(Integer id) {
+            VariableEntry variableEntry = variablesById.get(id);
+            if (variableEntry != null) {
+                evict(variableEntry);
+            }
+        }
+
+        private void evict(Entry entry) {
+            if (entry instanceof NodeEntry) {
+                evict((NodeEntry) entry);
+            } else if (entry instanceof SensorEntry) {
+                evict((SensorEntry) entry);
+            } else {
+                evict((VariableEntry) entry);
+            }
+        }
+
+        private void evict(NodeEntry nodeEntry) {
+            //Marked before removing children, a child put in between sees it
+            nodeEntry.evicted = true;
+            ConcurrentHashMap<String, NodeEntry> gatewayNodes = nodes.get(nodeEntry.gatewayId);
+            if (gatewayNodes != null) {
+                gatewayNodes.remove(nodeEntry.eui, nodeEntry);
+            }
+            nodesById.remove(nodeEntry.node.getId(), nodeEntry);
+            for (SensorEntry sensorEntry : nodeEntry.sensors.values()) {
+                evict(sensorEntry);
+            }
+            EVICTIONS.incrementAndGet();
+        }
+
+        private void evict(SensorEntry sensorEntry) {
+            sensorEntry.evicted = true;
+            sensorEntry.parent.sensors.remove(sensorEntry.sensorId, sensorEntry);
+            sensorsById.remove(sensorEntry.sensor.getId(), sensorEntry);
+            for (VariableEntry variableEntry : sensorEntry.variables.values()) {
+                evict(variableEntry);
+            }
+            EVICTIONS.incrementAndGet();
+        }
+
+        private void evict(VariableEntry variableEntry) {
+            variableEntry.evicted = true;
+            variableEntry.parent.variables.remove(variableEntry.variableType, variableEntry);
+            variablesById.remove(variableEntry.variable.getId(), variableEntry);
+            EVICTIONS.incrementAndGet();
+        }
+    }
+
+    private abstract static class Entry {
+        protected volatile boolean evicted = false;
+
+        protected abstract Entry getParent();
+    }
+
+    private static class NodeEntry extends Entry {
+        private final Integer gatewayId;
+        private final String eui;
+        private final Node node;
+        private final ConcurrentHashMap<String, SensorEntry> sensors = new ConcurrentHashMap<String, SensorEntry>();
+
+        private NodeEntry(Integer gatewayId, Node node) {
+            this.gatewayId = gatewayId;
+            this.eui = node.getEui();
+            this.node = node;
+        }
+
+        @Override
+        protected Entry getParent() {
+            return null;
+        }
+    }
+
+    private static class SensorEntry extends Entry {
+        private final NodeEntry parent;
+        private final String sensorId;
+        private final Sensor sensor;
+        private final ConcurrentHashMap<MESSAGE_TYPE_SET_REQ, VariableEntry> variables =
+                new ConcurrentHashMap<MESSAGE_TYPE_SET_REQ, VariableEntry>();
+
+        private SensorEntry(NodeEntry parent, Sensor sensor) {
+            this.parent = parent;
+            this.sensorId = sensor.getSensorId();
+            this.sensor = sensor;
+        }
+
+        @Override
+        protected Entry getParent() {
+            return parent;
+        }
+    }
+
+    private static class VariableEntry extends Entry {
+        private final SensorEntry parent;
+        private final MESSAGE_TYPE_SET_REQ variableType;
+        private final SensorVariable variable;
+
+        private VariableEntry(SensorEntry parent, SensorVariable variable) {
+            this.parent = parent;
+            this.variableType = variable.getVariableType();
+            this.variable = variable;
+        }
+
+        @Override
+        protected Entry getParent() {
+            return parent;
+        }
+    }
+}
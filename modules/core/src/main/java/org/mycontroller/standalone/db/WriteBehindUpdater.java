@@ -0,0 +1,201 @@
+/*
+ * Copyright 2015-2017 Jeeva Kandasamy (jkandasa@gmail.com)
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mycontroller.standalone.db;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.mycontroller.standalone.AppProperties;
+import org.mycontroller.standalone.db.dao.BaseDao;
+import org.mycontroller.standalone.db.tables.Node;
+import org.mycontroller.standalone.db.tables.Sensor;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Keeps the latest last seen, state, rssi and battery level of nodes and last seen of sensors in memory and
+ * writes them to database as batched updates, on every interval and on shutdown.
+ * Only these columns are updated, other changes on node and sensor are updated immediately by the caller.
+ * Rows of a failed batch are queued again, unless a newer value is recorded in the meantime.
+ * When write behind is disabled, node and sensor are updated immediately.
+ * @author Jeeva Kandasamy (jkandasa)
+ * @since 0.0.3
+ */
+@Slf4j
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class WriteBehindUpdater {
+    private static final ConcurrentHashMap<Integer, Object[]> NODES = new ConcurrentHashMap<Integer, Object[]>();
+    private static final ConcurrentHashMap<Integer, Object[]> SENSORS = new ConcurrentHashMap<Integer, Object[]>();
+    private static final AtomicLong RECORDED_COUNT = new AtomicLong(0);
+    private static final AtomicLong FLUSHED_COUNT = new AtomicLong(0);
+    private static final AtomicLong FAILED_COUNT = new AtomicLong(0);
+    private static volatile ScheduledThreadPoolExecutor scheduler = null;
+    private static volatile long lastFlushTime = -1;
+    private static volatile long lastFlushDuration = -1;
+
+    public static synchronized void start() {
+        long interval = AppProperties.getInstance().getDbWriteBehindInterval();
+        if (interval <= 0 || scheduler != null) {
+            return;
+        }
+        scheduler = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                return new Thread(runnable, "mc-db-write-behind");
+            }
+        });
+        scheduler.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                flush();
+            }
+        }, interval, interval, TimeUnit.MILLISECONDS);
+        _logger.info("Database write behind started with {} ms interval", interval);
+    }
+
+    /**
+     * Stops the updater and writes all the pending updates.
+     */
+    public static synchronized void shutdown() {
+        ScheduledThreadPoolExecutor _scheduler = scheduler;
+        if (_scheduler == null) {
+            return;
+        }
+        scheduler = null;
+        _scheduler.shutdown();
+        flush();
+        _logger.debug("Database write behind terminated");
+    }
+
+    /**
+     * Updates last seen, state, rssi and battery level of the node.
+     */
+    public static void updateNode(Node node) {
+        if (scheduler == null || node.getId() == null) {
+            DaoUtils.getNodeDao().update(node);
+            return;
+        }
+        NODES.put(node.getId(), new Object[] { node.getLastSeen(), node.getState() == null ? null
+                : node.getState().name(), node.getRssi(), node.getBatteryLevel(), node.getId() });
+        RECORDED_COUNT.incrementAndGet();
+    }
+
+    /**
+     * Updates last seen of the sensor.
+     */
+    public static void updateSensor(Sensor sensor) {
+        if (scheduler == null || sensor.getId() == null) {
+            DaoUtils.getSensorDao().update(sensor);
+            return;
+        }
+        SENSORS.put(sensor.getId(), new Object[] { sensor.getLastSeen(), sensor.getId() });
+        RECORDED_COUNT.incrementAndGet();
+    }
+
+    /**
+     * Discards the pending update of the node, used before an immediate state update of the node.
+     * Holds the flush lock, an update being flushed is completed before this returns.
+     * @param nodeId id of the node
+     * @param lastSeenBefore pending update is discarded only when its last seen is before this time
+     * @return false when the pending update is seen after the given time, the immediate update
+     * is superseded by it
+     */
+    public static synchronized boolean discardNode(Integer nodeId, long lastSeenBefore) {
+        Object[] row = NODES.get(nodeId);
+        if (row != null) {
+            Long lastSeen = (Long) row[0];
+            if (lastSeen != null && lastSeen > lastSeenBefore) {
+                return false;
+            }
+            NODES.remove(nodeId, row);
+        }
+        return true;
+    }
+
+    public static synchronized void flush() {
+        if (NODES.isEmpty() && SENSORS.isEmpty()) {
+            return;
+        }
+        long startTime = System.currentTimeMillis();
+        flush(DaoUtils.getNodeDao(), NODES, Node.KEY_ID, Node.KEY_LAST_SEEN, Node.KEY_STATE, Node.KEY_RSSI,
+                Node.KEY_BATTERY_LEVEL);
+        flush(DaoUtils.getSensorDao(), SENSORS, Sensor.KEY_ID, Sensor.KEY_LAST_SEEN);
+        lastFlushTime = System.currentTimeMillis();
+        lastFlushDuration = lastFlushTime - startTime;
+    }
+
+    // Row values are in the order of columns, followed by id
+    private static void flush(BaseDao<?, ?> dao, ConcurrentHashMap<Integer, Object[]> pending, String idColumn,
+            String... columns) {
+        List<Object[]> rows = new ArrayList<Object[]>();
+        for (Integer id : pending.keySet()) {
+            Object[] row = pending.remove(id);
+            if (row != null) {
+                rows.add(row);
+            }
+        }
+        if (rows.isEmpty()) {
+            return;
+        }
+        StringBuilder builder = new StringBuilder();
+        builder.append("UPDATE ").append(DataBaseUtils.getEscapedName(dao.getDao(), dao.getDao().getTableName()))
+                .append(" SET ");
+        for (int index = 0; index < columns.length; index++) {
+            if (index > 0) {
+                builder.append(", ");
+            }
+            builder.append(DataBaseUtils.getEscapedName(dao.getDao(), columns[index])).append(" = ?");
+        }
+        builder.append(" WHERE ").append(DataBaseUtils.getEscapedName(dao.getDao(), idColumn)).append(" = ?");
+        try {
+            int count = DataBaseUtils.executeBatch(dao.getDao(), builder.toString(), rows);
+            FLUSHED_COUNT.addAndGet(rows.size());
+            _logger.debug("Write behind updated {} row(s) of {}", count, dao.getDao().getTableName());
+        } catch (SQLException ex) {
+            FAILED_COUNT.addAndGet(rows.size());
+            //Retry on next interval, a newer value recorded in the meantime replaces the failed one
+            for (Object[] row : rows) {
+                pending.putIfAbsent((Integer) row[row.length - 1], row);
+            }
+            _logger.error("Unable to update {} row(s) of {}, will retry", rows.size(), dao.getDao().getTableName(),
+                    ex);
+        }
+    }
+
+    public static Map<String, Object> getStatistics() {
+        HashMap<String, Object> statistics = new HashMap<String, Object>();
+        statistics.put("enabled", scheduler != null);
+        statistics.put("pendingNodes", NODES.size());
+        statistics.put("pendingSensors", SENSORS.size());
+        statistics.put("recordedCount", RECORDED_COUNT.get());
+        statistics.put("flushedCount", FLUSHED_COUNT.get());
+        statistics.put("failedCount", FAILED_COUNT.get());
+        statistics.put("lastFlushTime", lastFlushTime);
+        statistics.put("lastFlushDuration", lastFlushDuration);
+        return statistics;
+    }
+}
@@ -34,6 +34,7 @@ import com.j256.ormlite.dao.BaseDaoImpl;
 import com.j256.ormlite.dao.Dao;
 import com.j256.ormlite.dao.Dao.CreateOrUpdateStatus;
 import com.j256.ormlite.dao.DaoManager;
+import com.j256.ormlite.field.FieldType;
 import com.j256.ormlite.stmt.DeleteBuilder;
 import com.j256.ormlite.stmt.QueryBuilder;
 import com.j256.ormlite.stmt.UpdateBuilder;
@@ -238,6 +239,38 @@ public abstract class BaseAbstractDaoImpl<Tdao, Tid> {
         return QueryResponse.builder().data(queryBuilder.query()).query(query).build();
     }
 
+    /**
+     * Called after items of this table created, updated or deleted
+     * @param tdao changed item, null when the change is not on a single item
+     */
+    protected void onChange(Tdao tdao) {
+        //Nothing to do by default
+    }
+
+    /**
+     * Called after items of this table matching the column value updated or deleted.
+     * Reported as a change not on a single item by default
+     * @param key column name, null when the change is not on matching items
+     * @param value column value or list of column values
+     */
+    protected void onChange(String key, Object value) {
+        onChange(null);
+    }
+
+    private String getIdColumnName() {
+        FieldType idField = tableInfo.getIdField();
+        return idField == null ? null : idField.getColumnName();
+    }
+
+    private Tid extractId(Tdao tdao) {
+        try {
+            return this.getDao().extractId(tdao);
+        } catch (Exception ex) {
+            _logger.debug("unable to get id of item:[{}]", tdao, ex);
+            return null;
+        }
+    }
+
     //Create new item
     public void create(Tdao tdao) {
         try {
@@ -246,6 +279,7 @@ public abstract class BaseAbstractDaoImpl<Tdao, Tid> {
         } catch (SQLException ex) {
             _logger.error("unable to add new item:[{}]", tdao, ex);
         }
+        onChange(tdao);
     }
 
     //Create or update item
@@ -258,6 +292,7 @@ public abstract class BaseAbstractDaoImpl<Tdao, Tid> {
         } catch (SQLException ex) {
             _logger.error("unable to CreateOrUpdate item:[{}]", tdao, ex);
         }
+        onChange(tdao);
     }
 
     //delete item
@@ -268,6 +303,7 @@ public abstract class BaseAbstractDaoImpl<Tdao, Tid> {
         } catch (SQLException ex) {
             _logger.error("unable to delete item:[{}]", tdao, ex);
         }
+        onChange(getIdColumnName(), extractId(tdao));
     }
 
     //Update item
@@ -278,6 +314,7 @@ public abstract class BaseAbstractDaoImpl<Tdao, Tid> {
         } catch (SQLException ex) {
             _logger.error("unable to update item:[{}]", tdao, ex);
         }
+        onChange(tdao);
     }
 
     public void updateId(Tdao tdao, Tid tid) {
@@ -287,6 +324,7 @@ public abstract class BaseAbstractDaoImpl<Tdao, Tid> {
         } catch (SQLException ex) {
             _logger.error("unable to update item:[{}]", tdao, ex);
         }
+        onChange(null);
     }
 
     //Update items with out where condition
@@ -313,6 +351,7 @@ public abstract class BaseAbstractDaoImpl<Tdao, Tid> {
             _logger.error("unable to update column[{}] with value[{}] where column[{}] == value[{}]", setColName,
                     setColValue, whereColName, whereColValue, ex);
         }
+        onChange(whereColName, whereColValue);
     }
 
     //Get all items
@@ -342,6 +381,7 @@ public abstract class BaseAbstractDaoImpl<Tdao, Tid> {
         } catch (SQLException ex) {
             _logger.error("unable to delete Ids:[{}]", ids, ex);
         }
+        onChange(getIdColumnName(), ids);
     }
 
     public void deleteById(Tid id) {
@@ -350,6 +390,7 @@ public abstract class BaseAbstractDaoImpl<Tdao, Tid> {
         } catch (SQLException ex) {
             _logger.error("unable to delete item, id:[{}]", id, ex);
         }
+        onChange(getIdColumnName(), id);
     }
 
     public void delete(String key, Object value) {
@@ -361,6 +402,7 @@ public abstract class BaseAbstractDaoImpl<Tdao, Tid> {
         } catch (SQLException ex) {
             _logger.error("unable to delete item, key:{}, value:{}", key, value, ex);
         }
+        onChange(key, value);
     }
 
     public void delete(String key, List<?> values) {
@@ -372,6 +414,7 @@ public abstract class BaseAbstractDaoImpl<Tdao, Tid> {
         } catch (SQLException ex) {
             _logger.error("unable to delete item, key:{}, values:{}", key, values, ex);
         }
+        onChange(key, values);
     }
 
     public void delete(HashMap<String, Object> map) {
@@ -397,6 +440,7 @@ public abstract class BaseAbstractDaoImpl<Tdao, Tid> {
         } catch (SQLException ex) {
             _logger.error("unable to delete item, map:{}", map, ex);
         }
+        onChange(null);
     }
 
     public List<Tdao> getAll(String key, List<Tid> ids) {
@@ -22,6 +22,7 @@ import java.util.List;
 import org.mycontroller.standalone.api.jaxrs.json.Query;
 import org.mycontroller.standalone.api.jaxrs.json.QueryResponse;
 import org.mycontroller.standalone.db.tables.ExternalServerTable;
+import org.mycontroller.standalone.externalserver.ExternalServerRoutingTable;
 
 import com.j256.ormlite.support.ConnectionSource;
 
@@ -38,6 +39,11 @@ public class ExternalServerDaoImpl extends BaseAbstractDaoImpl<ExternalServerTab
         super(connectionSource, ExternalServerTable.class);
     }
 
+    @Override
+    protected void onChange(ExternalServerTable externalServer) {
+        ExternalServerRoutingTable.invalidate();
+    }
+
     @Override
     public List<ExternalServerTable> getAllEnabled() {
         return super.getAll(ExternalServerTable.KEY_ENABLED, true);
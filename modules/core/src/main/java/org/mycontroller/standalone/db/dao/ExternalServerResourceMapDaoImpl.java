@@ -20,6 +20,7 @@ import java.sql.SQLException;
 import java.util.List;
 
 import org.mycontroller.standalone.db.tables.ExternalServerResourceMap;
+import org.mycontroller.standalone.externalserver.ExternalServerRoutingTable;
 
 import com.j256.ormlite.support.ConnectionSource;
 
@@ -33,6 +34,11 @@ public class ExternalServerResourceMapDaoImpl extends BaseAbstractDaoImpl<Extern
         super(connectionSource, ExternalServerResourceMap.class);
     }
 
+    @Override
+    protected void onChange(ExternalServerResourceMap resourceMap) {
+        ExternalServerRoutingTable.invalidate();
+    }
+
     @Override
     public void deleteByResourceId(Integer resourceId) {
         super.delete(ExternalServerResourceMap.KEY_RESOURCE_ID, resourceId);
@@ -23,6 +23,7 @@ import org.mycontroller.standalone.api.jaxrs.json.Query;
 import org.mycontroller.standalone.api.jaxrs.json.QueryResponse;
 import org.mycontroller.standalone.db.DaoUtils;
 import org.mycontroller.standalone.db.tables.ForwardPayload;
+import org.mycontroller.standalone.fwpayload.ForwardPayloadIndex;
 
 import com.j256.ormlite.stmt.DeleteBuilder;
 import com.j256.ormlite.stmt.QueryBuilder;
@@ -42,6 +43,11 @@ public class ForwardPayloadDaoImpl extends BaseAbstractDaoImpl<ForwardPayload, I
         super(connectionSource, ForwardPayload.class);
     }
 
+    @Override
+    protected void onChange(ForwardPayload forwardPayload) {
+        ForwardPayloadIndex.invalidate();
+    }
+
     @Override
     public List<ForwardPayload> getAllBySourceSensor(Integer sourceSensorId, Boolean enabled) {
         List<Integer> ids = DaoUtils.getSensorVariableDao().getSensorVariableIds(sourceSensorId);
@@ -90,6 +96,7 @@ public class ForwardPayloadDaoImpl extends BaseAbstractDaoImpl<ForwardPayload, I
         } catch (SQLException ex) {
             _logger.error("unable to delete SensorId:{}", sensorId, ex);
         }
+        onChange(null);
     }
 
     @Override
@@ -112,6 +119,7 @@ public class ForwardPayloadDaoImpl extends BaseAbstractDaoImpl<ForwardPayload, I
         } catch (SQLException ex) {
             _logger.error("Failed to update, Ids:{}", ids, ex);
         }
+        onChange(null);
 
     }
 
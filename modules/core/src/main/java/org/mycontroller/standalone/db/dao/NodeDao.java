@@ -18,6 +18,7 @@ package org.mycontroller.standalone.db.dao;
 
 import java.util.List;
 
+import org.mycontroller.standalone.AppProperties.STATE;
 import org.mycontroller.standalone.api.jaxrs.json.AllowedResources;
 import org.mycontroller.standalone.api.jaxrs.json.Query;
 import org.mycontroller.standalone.api.jaxrs.json.QueryResponse;
@@ -45,4 +46,6 @@ public interface NodeDao extends BaseDao<Node, Integer> {
 
     void update(String key, Object value, Integer nodeId);
 
+    boolean updateState(Integer nodeId, STATE state, long lastSeenBefore);
+
 }
@@ -21,16 +21,20 @@ import java.util.ArrayList;
 import java.util.List;
 
 import org.mycontroller.standalone.AppProperties.RESOURCE_TYPE;
+import org.mycontroller.standalone.AppProperties.STATE;
 import org.mycontroller.standalone.api.jaxrs.json.AllowedResources;
 import org.mycontroller.standalone.api.jaxrs.json.Query;
 import org.mycontroller.standalone.api.jaxrs.json.QueryResponse;
 import org.mycontroller.standalone.auth.AuthUtils;
 import org.mycontroller.standalone.db.DaoUtils;
+import org.mycontroller.standalone.db.TopologyCache;
 import org.mycontroller.standalone.db.tables.GatewayTable;
 import org.mycontroller.standalone.db.tables.Node;
 import org.mycontroller.standalone.message.McMessageUtils.MESSAGE_TYPE_PRESENTATION;
 
 import com.j256.ormlite.stmt.QueryBuilder;
+import com.j256.ormlite.stmt.UpdateBuilder;
+import com.j256.ormlite.stmt.Where;
 import com.j256.ormlite.support.ConnectionSource;
 
 import lombok.extern.slf4j.Slf4j;
@@ -46,6 +50,16 @@ public class NodeDaoImpl extends BaseAbstractDaoImpl<Node, Integer> implements N
         super(connectionSource, Node.class);
     }
 
+    @Override
+    protected void onChange(Node node) {
+        TopologyCache.onChange(node);
+    }
+
+    @Override
+    protected void onChange(String key, Object value) {
+        TopologyCache.onChange(Node.class, key, value);
+    }
+
     @Override
     public List<Node> getAllByGatewayId(Integer gatewayId) {
         return super.getAll(Node.KEY_GATEWAY_ID, gatewayId);
@@ -147,4 +161,22 @@ public class NodeDaoImpl extends BaseAbstractDaoImpl<Node, Integer> implements N
     public void update(String key, Object value, Integer nodeId) {
         super.updateBulk(key, value, Node.KEY_ID, nodeId);
     }
+
+    //Updates state only when the node is not seen after the given time, last seen might be updated in between
+    @Override
+    public boolean updateState(Integer nodeId, STATE state, long lastSeenBefore) {
+        int count = 0;
+        try {
+            UpdateBuilder<Node, Integer> updateBuilder = this.getDao().updateBuilder();
+            updateBuilder.updateColumnValue(Node.KEY_STATE, state);
+            Where<Node, Integer> where = updateBuilder.where();
+            where.and(where.eq(Node.KEY_ID, nodeId),
+                    where.or(where.isNull(Node.KEY_LAST_SEEN), where.le(Node.KEY_LAST_SEEN, lastSeenBefore)));
+            count = updateBuilder.update();
+        } catch (SQLException ex) {
+            _logger.error("unable to update state[{}] of node[id:{}]", state, nodeId, ex);
+        }
+        onChange(Node.KEY_ID, nodeId);
+        return count > 0;
+    }
 }
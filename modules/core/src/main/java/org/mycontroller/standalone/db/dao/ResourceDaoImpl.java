@@ -23,6 +23,7 @@ import org.mycontroller.standalone.AppProperties.RESOURCE_TYPE;
 import org.mycontroller.standalone.api.jaxrs.json.Query;
 import org.mycontroller.standalone.api.jaxrs.json.QueryResponse;
 import org.mycontroller.standalone.db.tables.Resource;
+import org.mycontroller.standalone.externalserver.ExternalServerRoutingTable;
 
 import com.j256.ormlite.stmt.DeleteBuilder;
 import com.j256.ormlite.stmt.QueryBuilder;
@@ -43,6 +44,11 @@ public class ResourceDaoImpl extends BaseAbstractDaoImpl<Resource, Integer>
         super(connectionSource, Resource.class);
     }
 
+    @Override
+    protected void onChange(Resource resource) {
+        ExternalServerRoutingTable.invalidate();
+    }
+
     @Override
     public QueryResponse getAll(Query query) {
         try {
@@ -111,6 +117,7 @@ public class ResourceDaoImpl extends BaseAbstractDaoImpl<Resource, Integer>
             _logger.error("Failed to update! input:[resourceType:{}, resourceId:{}, enabled:{}], ",
                     resourceType, resourceId, enabled, ex);
         }
+        onChange(null);
 
     }
 
@@ -141,6 +148,7 @@ public class ResourceDaoImpl extends BaseAbstractDaoImpl<Resource, Integer>
             _logger.error("Failed to delete! input:[resourceType:{}, resourceId:{}], ",
                     resourceType, resourceId, ex);
         }
+        onChange(null);
     }
 
     @Override
@@ -27,7 +27,7 @@ import org.mycontroller.standalone.db.tables.ResourcesLogs;
  * @author Jeeva Kandasamy (jkandasa)
  * @since 0.0.1
  */
-public interface ResourcesLogsDao {
+public interface ResourcesLogsDao extends BaseDao<ResourcesLogs, Integer> {
     void add(ResourcesLogs resourcesLogs);
 
     void delete(ResourcesLogs resourcesLogs);
@@ -231,4 +231,14 @@ public class ResourcesLogsDaoImpl extends BaseAbstractDaoImpl<ResourcesLogs, Int
         }
 
     }
+
+    @Override
+    public ResourcesLogs get(ResourcesLogs resourcesLogs) {
+        return super.getById(resourcesLogs.getId());
+    }
+
+    @Override
+    public List<ResourcesLogs> getAll(List<Integer> ids) {
+        return super.getAll(ResourcesLogs.KEY_ID, ids);
+    }
 }
\ No newline at end of file
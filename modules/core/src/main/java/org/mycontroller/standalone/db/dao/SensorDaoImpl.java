@@ -27,6 +27,7 @@ import org.mycontroller.standalone.api.jaxrs.json.QueryResponse;
 import org.mycontroller.standalone.auth.AuthUtils;
 import org.mycontroller.standalone.db.DaoUtils;
 import org.mycontroller.standalone.db.DbException;
+import org.mycontroller.standalone.db.TopologyCache;
 import org.mycontroller.standalone.db.tables.Node;
 import org.mycontroller.standalone.db.tables.Sensor;
 import org.mycontroller.standalone.message.McMessageUtils.MESSAGE_TYPE_PRESENTATION;
@@ -48,6 +49,16 @@ public class SensorDaoImpl extends BaseAbstractDaoImpl<Sensor, Integer> implemen
         super(connectionSource, Sensor.class);
     }
 
+    @Override
+    protected void onChange(Sensor sensor) {
+        TopologyCache.onChange(sensor);
+    }
+
+    @Override
+    protected void onChange(String key, Object value) {
+        TopologyCache.onChange(Sensor.class, key, value);
+    }
+
     @Override
     public void create(Integer gatewayId, String nodeEui, Sensor sensor) {
         create(DaoUtils.getNodeDao().get(gatewayId, nodeEui).getId(), sensor);
@@ -91,6 +102,13 @@ public class SensorDaoImpl extends BaseAbstractDaoImpl<Sensor, Integer> implemen
         } catch (DbException dbEx) {
             _logger.error("unable to delete, sensor:{}", sensor, dbEx);
         }
+        if (sensor.getId() != null) {
+            onChange(Sensor.KEY_ID, sensor.getId());
+        } else if (sensor.getNode() != null) {
+            onChange(Sensor.KEY_NODE_ID, sensor.getNode().getId());
+        } else {
+            onChange(null);
+        }
     }
 
     @Override
@@ -102,6 +120,11 @@ public class SensorDaoImpl extends BaseAbstractDaoImpl<Sensor, Integer> implemen
 
     @Override
     public void update(Sensor sensor) {
+        if (TopologyCache.isCached(sensor)) {
+            //Cached instance is complete, no need to merge with stored sensor
+            super.update(sensor);
+            return;
+        }
         Sensor tmpSensor = get(sensor);
         try {
             this.nodeIdSensorIdnullCheck(sensor);
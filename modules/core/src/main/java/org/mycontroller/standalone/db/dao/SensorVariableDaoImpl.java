@@ -28,6 +28,7 @@ import org.mycontroller.standalone.api.jaxrs.json.QueryResponse;
 import org.mycontroller.standalone.auth.AuthUtils;
 import org.mycontroller.standalone.db.DaoUtils;
 import org.mycontroller.standalone.db.DbException;
+import org.mycontroller.standalone.db.TopologyCache;
 import org.mycontroller.standalone.db.tables.Sensor;
 import org.mycontroller.standalone.db.tables.SensorVariable;
 import org.mycontroller.standalone.message.McMessageUtils.MESSAGE_TYPE_SET_REQ;
@@ -51,6 +52,16 @@ public class SensorVariableDaoImpl extends BaseAbstractDaoImpl<SensorVariable, I
         super(connectionSource, SensorVariable.class);
     }
 
+    @Override
+    protected void onChange(SensorVariable sensorVariable) {
+        TopologyCache.onChange(sensorVariable);
+    }
+
+    @Override
+    protected void onChange(String key, Object value) {
+        TopologyCache.onChange(SensorVariable.class, key, value);
+    }
+
     @Override
     public void create(SensorVariable sensorVariable) {
         try {
@@ -125,6 +136,7 @@ public class SensorVariableDaoImpl extends BaseAbstractDaoImpl<SensorVariable, I
         } catch (DbException dbEx) {
             _logger.error("unable to update, sensorValue:{}", sensorVariable, dbEx);
         }
+        onChange(sensorVariable);
     }
 
     @Override
@@ -121,6 +121,26 @@ public class SensorVariable {
         this.value = value;
     }
 
+    /**
+     * @return copy of this sensor variable, later changes on this sensor variable are not reflected on the copy
+     */
+    public SensorVariable copy() {
+        return SensorVariable.builder()
+                .id(id)
+                .sensor(sensor)
+                .variableType(variableType)
+                .metricType(metricType)
+                .timestamp(timestamp)
+                .value(value)
+                .previousValue(previousValue)
+                .unitType(unitType)
+                .readOnly(readOnly)
+                .offset(offset)
+                .priority(priority)
+                .graphProperties(graphProperties == null ? null : new HashMap<String, Object>(graphProperties))
+                .build();
+    }
+
     public HashMap<String, Object> getGraphProperties() {
         if (graphProperties == null || graphProperties.isEmpty()) {
             graphProperties = new HashMap<String, Object>();
@@ -0,0 +1,258 @@
+/*
+ * Copyright 2015-2017 Jeeva Kandasamy (jkandasa@gmail.com)
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mycontroller.standalone.executor;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.mycontroller.standalone.AppProperties;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Bounded and named executors for the side effects of messages and operations.
+ * Each executor type has its own pool and queue, when the queue is full the task is rejected
+ * or executed on the caller thread, based on the executor type. Tasks submitted after shutdown are dropped.
+ * Optionally, executor threads can be virtual threads when the JVM supports it.
+ * @author Jeeva Kandasamy (jkandasa)
+ * @since 0.0.3
+ */
+@Slf4j
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class ExecutorUtils {
+    //Idle threads will be terminated after this time, in seconds
+    private static final long KEEP_ALIVE_TIME = 60;
+
+    public enum EXECUTOR_TYPE {
+        EXTERNAL_SERVER("External server", 4, 1000, false),
+        UID_TAG("Uid tag", 1, 100, true),
+        RESOURCES_GROUP("Resources group", 2, 100, true),
+        NODE_INFO_UPDATE("Node info update", 1, 10, true),
+        SMART_SLEEP("Smart sleep", 2, 1000, true),
+        //Used by ethernet gateway selector thread, should not run the task on the caller thread
+        GATEWAY_HEALTH("Gateway health", 1, 1000, false);
+
+        private final String name;
+        private final int threads;
+        private final int queueSize;
+        private final boolean callerRunsWhenFull;
+
+        private EXECUTOR_TYPE(String name, int threads, int queueSize, boolean callerRunsWhenFull) {
+            this.name = name;
+            this.threads = threads;
+            this.queueSize = queueSize;
+            this.callerRunsWhenFull = callerRunsWhenFull;
+        }
+
+        public String getText() {
+            return this.name;
+        }
+
+        public int getThreads() {
+            return threads;
+        }
+
+        public int getQueueSize() {
+            return queueSize;
+        }
+
+        //Used as a part of property key, Example: mcc.executor.external.server.threads
+        public String getKey() {
+            return name().toLowerCase().replace('_', '.');
+        }
+    }
+
+    private static final ConcurrentHashMap<EXECUTOR_TYPE, ManagedExecutor> EXECUTORS =
+            new ConcurrentHashMap<EXECUTOR_TYPE, ManagedExecutor>();
+    private static volatile boolean terminated = false;
+
+    public static void execute(EXECUTOR_TYPE type, Runnable task) {
+        ManagedExecutor executor = getExecutor(type);
+        if (executor == null) {
+            _logger.warn("Executors terminated, dropped {} task", type.getText());
+            return;
+        }
+        executor.execute(task);
+    }
+
+    /**
+     * Sets the number of threads required by the users of the executor, Example: number of gateways.
+     * Pool will not go below the configured number of threads.
+     * @param type executor type
+     * @param threads required number of threads
+     */
+    public static void setRequiredThreads(EXECUTOR_TYPE type, int threads) {
+        ManagedExecutor executor = getExecutor(type);
+        if (executor == null) {
+            return;
+        }
+        int poolSize = Math.max(AppProperties.getInstance().getExecutorThreads(type), threads);
+        synchronized (executor) {
+            if (poolSize > executor.getMaximumPoolSize()) {
+                executor.setMaximumPoolSize(poolSize);
+                executor.setCorePoolSize(poolSize);
+            } else if (poolSize < executor.getMaximumPoolSize()) {
+                executor.setCorePoolSize(poolSize);
+                executor.setMaximumPoolSize(poolSize);
+            }
+        }
+        _logger.debug("{} executor threads:{}", type.getText(), poolSize);
+    }
+
+    private static ManagedExecutor getExecutor(EXECUTOR_TYPE type) {
+        ManagedExecutor executor = EXECUTORS.get(type);
+        if (executor == null) {
+            synchronized (EXECUTORS) {
+                if (terminated) {
+                    return null;
+                }
+                executor = EXECUTORS.get(type);
+                if (executor == null) {
+                    executor = new ManagedExecutor(type);
+                    EXECUTORS.put(type, executor);
+                }
+            }
+        }
+        return executor;
+    }
+
+    public static void shutdown() {
+        List<ManagedExecutor> executors;
+        synchronized (EXECUTORS) {
+            terminated = true;
+            executors = new ArrayList<ManagedExecutor>(EXECUTORS.values());
+            EXECUTORS.clear();
+        }
+        for (ManagedExecutor executor : executors) {
+            executor.shutdown();
+        }
+        for (ManagedExecutor executor : executors) {
+            try {
+                if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+                    _logger.warn("{} executor terminating with {} task(s) in queue!", executor.type.getText(),
+                            executor.getQueue().size());
+                    executor.shutdownNow();
+                }
+            } catch (InterruptedException ex) {
+                _logger.debug("Exception while waiting for executor termination,", ex);
+            }
+        }
+        _logger.debug("Executors terminated");
+    }
+
+    public static List<Map<String, Object>> getStatistics() {
+        List<Map<String, Object>> statistics = new ArrayList<Map<String, Object>>();
+        for (ManagedExecutor executor : EXECUTORS.values()) {
+            HashMap<String, Object> executorStatistics = new HashMap<String, Object>();
+            executorStatistics.put("name", executor.type.getText());
+            executorStatistics.put("maxThreads", executor.getMaximumPoolSize());
+            executorStatistics.put("activeThreads", executor.getActiveCount());
+            executorStatistics.put("queueSize", executor.getQueue().size());
+            executorStatistics.put("queueCapacity", executor.queueCapacity);
+            executorStatistics.put("completedCount", executor.getCompletedTaskCount());
+            executorStatistics.put("rejectedCount", executor.rejectedCount.get());
+            executorStatistics.put("callerRunsCount", executor.callerRunsCount.get());
+            executorStatistics.put("virtualThreads", executor.virtualThreads);
+            statistics.add(executorStatistics);
+        }
+        return statistics;
+    }
+
+    /**
+     * Returns thread factory of virtual threads, when running on a JVM with virtual threads support.
+     * Loaded with reflection, to keep running on older JVMs.
+     */
+    private static ThreadFactory getVirtualThreadFactory(String namePrefix) {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, namePrefix, 0L);
+            return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+        } catch (Exception ex) {
+            _logger.debug("Virtual threads not supported on this JVM,", ex);
+            return null;
+        }
+    }
+
+    private static class ManagedExecutor extends ThreadPoolExecutor {
+        private final EXECUTOR_TYPE type;
+        private final int queueCapacity;
+        private final AtomicLong rejectedCount = new AtomicLong(0);
+        private final AtomicLong callerRunsCount = new AtomicLong(0);
+        private boolean virtualThreads = false;
+
+        private ManagedExecutor(final EXECUTOR_TYPE type) {
+            super(AppProperties.getInstance().getExecutorThreads(type),
+                    AppProperties.getInstance().getExecutorThreads(type),
+                    KEEP_ALIVE_TIME, TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<Runnable>(AppProperties.getInstance().getExecutorQueueSize(type)));
+            this.type = type;
+            this.queueCapacity = AppProperties.getInstance().getExecutorQueueSize(type);
+            allowCoreThreadTimeOut(true);
+            final String namePrefix = "mc-executor-" + type.getKey().replace('.', '-') + "-";
+            ThreadFactory threadFactory = null;
+            if (AppProperties.getInstance().isExecutorVirtualThreads()) {
+                threadFactory = getVirtualThreadFactory(namePrefix);
+                if (threadFactory == null) {
+                    _logger.warn("Virtual threads not supported on this JVM, using platform threads for {} executor",
+                            type.getText());
+                }
+            }
+            if (threadFactory != null) {
+                virtualThreads = true;
+            } else {
+                threadFactory = new ThreadFactory() {
+                    private final AtomicInteger threadNumber = new AtomicInteger(0);
+
+                    @Override
+                    public Thread newThread(Runnable runnable) {
+                        return new Thread(runnable, namePrefix + threadNumber.getAndIncrement());
+                    }
+                };
+            }
+            setThreadFactory(threadFactory);
+            setRejectedExecutionHandler(new RejectedExecutionHandler() {
+                @Override
+                public void rejectedExecution(Runnable task, ThreadPoolExecutor executor) {
+                    if (type.callerRunsWhenFull && !executor.isShutdown()) {
+                        callerRunsCount.incrementAndGet();
+                        task.run();
+                    } else {
+                        if (rejectedCount.incrementAndGet() % 100 == 1) {
+                            _logger.warn("{} executor queue is full, rejected task(s):{}", type.getText(),
+                                    rejectedCount.get());
+                        }
+                    }
+                }
+            });
+            _logger.debug("{} executor created. Threads:{}, Queue size:{}, Virtual threads:{}", type.getText(),
+                    getMaximumPoolSize(), queueCapacity, virtualThreads);
+        }
+    }
+}
@@ -21,6 +21,7 @@ import java.util.HashMap;
 import org.mycontroller.standalone.db.tables.ExternalServerTable;
 import org.mycontroller.standalone.db.tables.SensorVariable;
 import org.mycontroller.standalone.externalserver.ExternalServerUtils;
+import org.mycontroller.standalone.externalserver.InfluxdbBatchWriter;
 import org.mycontroller.standalone.restclient.ClientResponse;
 import org.mycontroller.standalone.restclient.RestFactory.TRUST_HOST_TYPE;
 import org.mycontroller.standalone.restclient.influxdb.InfluxdbClient;
@@ -105,21 +106,30 @@ public class ExternalServerInfluxdb extends ExternalServer {
     }
 
     @Override
-    public synchronized void send(SensorVariable sensorVariable) {
+    public void send(SensorVariable sensorVariable) {
         if (getEnabled()) {
-            ClientResponse<String> clientResponse = ((InfluxdbClient) ExternalServerUtils.getClient(getId()))
-                    .write(getVariableKey(sensorVariable, getKeyFormat()), getTags(), sensorVariable.getTimestamp(),
-                            sensorVariable.getValue());
-            if (!clientResponse.isSuccess()) {
-                _logger.error("Failed to send data to remote server! {}, Remote server:{}, {}", clientResponse,
-                        toString(), getUrl());
+            Object client = ExternalServerUtils.getClient(getId());
+            if (client instanceof InfluxdbBatchWriter) {
+                ((InfluxdbBatchWriter) client).write(getVariableKey(sensorVariable, getKeyFormat()), getTags(),
+                        sensorVariable.getTimestamp(), sensorVariable.getValue());
             } else {
-                _logger.debug("Remote server update status: {}, Remote server:{}, {}", clientResponse,
-                        toString(), getUrl());
+                send((InfluxdbClient) client, sensorVariable);
             }
         }
     }
 
+    private synchronized void send(InfluxdbClient client, SensorVariable sensorVariable) {
+        ClientResponse<String> clientResponse = client.write(getVariableKey(sensorVariable, getKeyFormat()),
+                getTags(), sensorVariable.getTimestamp(), sensorVariable.getValue());
+        if (!clientResponse.isSuccess()) {
+            _logger.error("Failed to send data to remote server! {}, Remote server:{}, {}", clientResponse,
+                    toString(), getUrl());
+        } else {
+            _logger.debug("Remote server update status: {}, Remote server:{}, {}", clientResponse,
+                    toString(), getUrl());
+        }
+    }
+
     @JsonGetter("trustHostType")
     private String getTrustHost() {
         return getTrustHostType().getText();
@@ -16,10 +16,6 @@
  */
 package org.mycontroller.standalone.externalserver;
 
-import org.mycontroller.standalone.AppProperties.RESOURCE_TYPE;
-import org.mycontroller.standalone.db.DaoUtils;
-import org.mycontroller.standalone.db.tables.ExternalServerTable;
-import org.mycontroller.standalone.db.tables.Resource;
 import org.mycontroller.standalone.db.tables.SensorVariable;
 
 import lombok.AccessLevel;
@@ -40,44 +36,13 @@ public class ExternalServerEngine implements Runnable {
     }
 
     private void selectServers() {
-        //Send gateway level servers
-        Resource resource = DaoUtils.getResourceDao().get(RESOURCE_TYPE.GATEWAY,
-                sensorVariable.getSensor().getNode().getGatewayTable().getId());
-        executeSendPayload(resource);
-
-        //Send node level servers
-        resource = DaoUtils.getResourceDao().get(RESOURCE_TYPE.NODE, sensorVariable.getSensor().getNode().getId());
-        executeSendPayload(resource);
-
-        //Send sensor level servers
-        resource = DaoUtils.getResourceDao().get(RESOURCE_TYPE.SENSOR, sensorVariable.getSensor().getId());
-        executeSendPayload(resource);
-
-        //Send sensor variable level servers
-        resource = DaoUtils.getResourceDao().get(RESOURCE_TYPE.SENSOR_VARIABLE, sensorVariable.getId());
-        executeSendPayload(resource);
-    }
-
-    private void executeSendPayload(Resource resource) {
-        if (resource == null || !resource.getEnabled()) {
-            return;
-        }
-        _logger.debug("Target resource: {}", resource);
-        if (resource.getExternalServersObject() != null) {
-            for (ExternalServerTable extServer : resource.getExternalServersObject()) {
-                if (extServer.getEnabled()) {
-                    IExternalServerEngine extServerEngine = ExternalServerUtils.getExternalServer(extServer);
-                    try {
-                        if (extServerEngine != null) {
-                            extServerEngine.send(sensorVariable);
-                        }
-                    } catch (Exception ex) {
-                        _logger.error("Exception when sending data to server: {}, ", extServerEngine.toString(), ex);
-                    }
-                }
+        for (IExternalServerEngine extServerEngine : ExternalServerRoutingTable.getServers(sensorVariable)) {
+            try {
+                extServerEngine.send(sensorVariable);
+            } catch (Exception ex) {
+                _logger.error("Exception when sending data to server: {}, ", extServerEngine.toString(), ex);
             }
         }
-
     }
 
     @Override
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2015-2017 Jeeva Kandasamy (jkandasa@gmail.com)
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mycontroller.standalone.externalserver;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.mycontroller.standalone.AppProperties.RESOURCE_TYPE;
+import org.mycontroller.standalone.db.DaoUtils;
+import org.mycontroller.standalone.db.tables.ExternalServerTable;
+import org.mycontroller.standalone.db.tables.Resource;
+import org.mycontroller.standalone.db.tables.SensorVariable;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Keeps enabled external servers of a sensor variable, resolved from gateway, node, sensor and
+ * sensor variable level resources. Route of a sensor variable is resolved on first lookup and kept until
+ * a change on resources, external servers or their mappings, which holds the enabled state and mapping of
+ * all the levels. Changes on nodes and sensors do not change the routes, route of a sensor variable is
+ * removed when the sensor variable is deleted.
+ * @author Jeeva Kandasamy (jkandasa)
+ * @since 0.0.3
+ */
+@Slf4j
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class ExternalServerRoutingTable {
+    private static final AtomicLong HITS = new AtomicLong(0);
+    private static final AtomicLong MISSES = new AtomicLong(0);
+    private static final AtomicLong INVALIDATIONS = new AtomicLong(0);
+
+    private static volatile Routes routes = new Routes();
+
+    private static class Routes {
+        // sensor variable id to external servers
+        private final ConcurrentHashMap<Integer, List<IExternalServerEngine>> servers =
+                new ConcurrentHashMap<Integer, List<IExternalServerEngine>>();
+        // external server id to engine, an engine instance is shared by all the routes
+        private final ConcurrentHashMap<Integer, IExternalServerEngine> engines =
+                new ConcurrentHashMap<Integer, IExternalServerEngine>();
+    }
+
+    /**
+     * @return enabled external servers of the sensor variable, empty list when there is none
+     */
+    public static List<IExternalServerEngine> getServers(SensorVariable sensorVariable) {
+        Routes _routes = routes;
+        List<IExternalServerEngine> servers = _routes.servers.get(sensorVariable.getId());
+        if (servers != null) {
+            HITS.incrementAndGet();
+            return servers;
+        }
+        MISSES.incrementAndGet();
+        servers = resolve(_routes, sensorVariable);
+        //When invalidated while resolving, route goes to the discarded table and resolved again on next lookup
+        _routes.servers.put(sensorVariable.getId(), servers);
+        return servers;
+    }
+
+    /**
+     * Drops all the routes, will be resolved again on next lookup
+     */
+    public static void invalidate() {
+        routes = new Routes();
+        INVALIDATIONS.incrementAndGet();
+    }
+
+    /**
+     * Drops the route of the sensor variable
+     */
+    public static void invalidate(Integer sensorVariableId) {
+        if (routes.servers.remove(sensorVariableId) != null) {
+            INVALIDATIONS.incrementAndGet();
+        }
+    }
+
+    private static List<IExternalServerEngine> resolve(Routes _routes, SensorVariable sensorVariable) {
+        ArrayList<IExternalServerEngine> servers = new ArrayList<IExternalServerEngine>();
+        //gateway level servers
+        addServers(_routes, servers, DaoUtils.getResourceDao().get(RESOURCE_TYPE.GATEWAY,
+                sensorVariable.getSensor().getNode().getGatewayTable().getId()));
+        //node level servers
+        addServers(_routes, servers, DaoUtils.getResourceDao().get(RESOURCE_TYPE.NODE,
+                sensorVariable.getSensor().getNode().getId()));
+        //sensor level servers
+        addServers(_routes, servers, DaoUtils.getResourceDao().get(RESOURCE_TYPE.SENSOR,
+                sensorVariable.getSensor().getId()));
+        //sensor variable level servers
+        addServers(_routes, servers, DaoUtils.getResourceDao().get(RESOURCE_TYPE.SENSOR_VARIABLE,
+                sensorVariable.getId()));
+        _logger.debug("Resolved {} external server(s) for {}", servers.size(), sensorVariable);
+        if (servers.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return Collections.unmodifiableList(servers);
+    }
+
+    private static void addServers(Routes _routes, List<IExternalServerEngine> servers, Resource resource) {
+        if (resource == null || !resource.getEnabled() || resource.getExternalServersObject() == null) {
+            return;
+        }
+        for (ExternalServerTable extServer : resource.getExternalServersObject()) {
+            if (!extServer.getEnabled()) {
+                continue;
+            }
+            IExternalServerEngine extServerEngine = _routes.engines.get(extServer.getId());
+            if (extServerEngine == null) {
+                extServerEngine = ExternalServerUtils.getExternalServer(extServer);
+                if (extServerEngine == null) {
+                    continue;
+                }
+                IExternalServerEngine existing = _routes.engines.putIfAbsent(extServer.getId(), extServerEngine);
+                if (existing != null) {
+                    extServerEngine = existing;
+                }
+            }
+            servers.add(extServerEngine);
+        }
+    }
+
+    public static Map<String, Object> getStatistics() {
+        Routes _routes = routes;
+        HashMap<String, Object> statistics = new HashMap<String, Object>();
+        statistics.put("routes", _routes.servers.size());
+        statistics.put("servers", _routes.engines.size());
+        statistics.put("hits", HITS.get());
+        statistics.put("misses", MISSES.get());
+        statistics.put("invalidations", INVALIDATIONS.get());
+        return statistics;
+    }
+}
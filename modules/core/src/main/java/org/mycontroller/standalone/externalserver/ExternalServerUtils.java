@@ -19,6 +19,7 @@ package org.mycontroller.standalone.externalserver;
 import java.util.HashMap;
 import java.util.List;
 
+import org.mycontroller.standalone.AppProperties;
 import org.mycontroller.standalone.db.DaoUtils;
 import org.mycontroller.standalone.db.tables.ExternalServerTable;
 import org.mycontroller.standalone.exernalserver.model.ExternalServer;
@@ -96,7 +97,7 @@ public class ExternalServerUtils {
         return null;
     }
 
-    private static Object getClientByExtSerId(Integer extServerId) {
+    private static synchronized Object getClientByExtSerId(Integer extServerId) {
         try {
             ExternalServerTable extServerTable = DaoUtils.getExternalServerTableDao().getById(extServerId);
             if (extServerTable != null) {
@@ -112,7 +113,20 @@ public class ExternalServerUtils {
                                 phantIOServer.getPrivateKey(), phantIOServer.getTrustHostType());
                     case INFLUXDB:
                         ExternalServerInfluxdb influxdbServer = (ExternalServerInfluxdb) externalServer;
-                        if (influxdbServer.getUsername() != null && influxdbServer.getUsername().length() > 0) {
+                        if (AppProperties.getInstance().getInfluxdbWriterLingerTime() > 0) {
+                            return new InfluxdbBatchWriter(
+                                    influxdbServer.getName(),
+                                    influxdbServer.getUrl(),
+                                    influxdbServer.getUsername(),
+                                    influxdbServer.getPassword(),
+                                    influxdbServer.getDatabase(),
+                                    influxdbServer.getTrustHostType(),
+                                    AppProperties.getInstance().getInfluxdbWriterBatchSize(),
+                                    AppProperties.getInstance().getInfluxdbWriterLingerTime(),
+                                    AppProperties.getInstance().getInfluxdbWriterBufferSize(),
+                                    AppProperties.getInstance().getInfluxdbWriterRetryCount(),
+                                    AppProperties.getInstance().getInfluxdbWriterRetryBackoff());
+                        } else if (influxdbServer.getUsername() != null && influxdbServer.getUsername().length() > 0) {
                             return new InfluxdbClientImpl(influxdbServer.getUrl(), influxdbServer.getUsername(),
                                     influxdbServer.getPassword(), influxdbServer.getDatabase(),
                                     influxdbServer.getTrustHostType());
@@ -140,19 +154,21 @@ public class ExternalServerUtils {
         return null;
     }
 
-    public static Object getClient(Integer extServerId) {
+    public static synchronized Object getClient(Integer extServerId) {
         if (EXTERNAL_SERVER_CLIENTS.get(extServerId) == null) {
             EXTERNAL_SERVER_CLIENTS.put(extServerId, getClientByExtSerId(extServerId));
         }
         return EXTERNAL_SERVER_CLIENTS.get(extServerId);
     }
 
-    public static void removeRestClient(Integer extServerId) {
+    public static synchronized void removeRestClient(Integer extServerId) {
         if (EXTERNAL_SERVER_CLIENTS.get(extServerId) != null) {
             ExternalServerTable extServer = DaoUtils.getExternalServerTableDao().getById(extServerId);
             if (extServer.getType() == EXTERNAL_SERVER_TYPE.MQTT) {
                 ExternalMqttClient client = (ExternalMqttClient) EXTERNAL_SERVER_CLIENTS.get(extServerId);
                 client.disconnect();
+            } else if (EXTERNAL_SERVER_CLIENTS.get(extServerId) instanceof InfluxdbBatchWriter) {
+                ((InfluxdbBatchWriter) EXTERNAL_SERVER_CLIENTS.get(extServerId)).shutdown();
             }
             EXTERNAL_SERVER_CLIENTS.put(extServerId, null);
         }
@@ -0,0 +1,425 @@
+/*
+ * Copyright 2015-2017 Jeeva Kandasamy (jkandasa@gmail.com)
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mycontroller.standalone.externalserver;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.codec.binary.Base64;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHeaders;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.conn.ssl.NoopHostnameVerifier;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultHttpRequestRetryHandler;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.ssl.SSLContexts;
+import org.apache.http.ssl.TrustStrategy;
+import org.apache.http.util.EntityUtils;
+import org.mycontroller.standalone.restclient.RestFactory.TRUST_HOST_TYPE;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Writes points to an Influxdb server with the line protocol, in batches.
+ * Points are queued and written by a background thread, when the queue reaches the batch size or when the
+ * oldest point waited for the linger time. A batch is posted gzip compressed, on failure retried with
+ * exponential backoff. When the queue is full (Example: Influxdb server is slow or down), the oldest point
+ * is dropped, so callers never wait for Influxdb.
+ * Points are posted with Apache HttpClient, the http stack of the rest clients, and the server certificate
+ * and host name are not verified when the trust host type is not {@link TRUST_HOST_TYPE#DEFAULT}.
+ * A batch rejected with a client error (4xx) is not retried. Influxdb 1.x writes the valid points of a batch
+ * and reports the rest as "partial write: ... dropped=N", only those N points are counted as failed. Any
+ * other client error fails the whole batch.
+ * @author Jeeva Kandasamy (jkandasa)
+ * @since 0.0.3
+ */
+@Slf4j
+public class InfluxdbBatchWriter {
+    private static final int CONNECT_TIMEOUT = 5000;
+    private static final int READ_TIMEOUT = 30000;
+    private static final long MAX_RETRY_BACKOFF = 30000;
+    // values written as number, others written as string field
+    private static final Pattern NUMBER = Pattern.compile("-?\\d+(\\.\\d+)?([eE][-+]?\\d+)?");
+    // Influxdb 1.x partial write response, {"error":"partial write: ... dropped=2"}
+    private static final Pattern PARTIAL_WRITE_DROPPED = Pattern.compile("partial write:.*dropped=(\\d+)");
+    private static final ContentType LINE_PROTOCOL = ContentType.create("text/plain", StandardCharsets.UTF_8);
+    private static final Set<InfluxdbBatchWriter> WRITERS = Collections.newSetFromMap(
+            new ConcurrentHashMap<InfluxdbBatchWriter, Boolean>());
+
+    private final String name;
+
+    private final String writeUrl;
+    private final String authorization;
+    private final CloseableHttpClient httpClient;
+    private final int batchSize;
+    private final long lingerTime;
+    private final int retryCount;
+    private final long retryBackoff;
+    private final LinkedBlockingQueue<String> queue;
+    private final AtomicBoolean terminate = new AtomicBoolean(false);
+    private final Thread writerThread;
+
+    private final AtomicLong writtenCount = new AtomicLong(0);
+    private final AtomicLong failedCount = new AtomicLong(0);
+    private final AtomicLong droppedCount = new AtomicLong(0);
+    private final AtomicLong retryAttempts = new AtomicLong(0);
+    private final AtomicLong batchesCount = new AtomicLong(0);
+    private volatile long lastWriteDurationMs = -1;
+    private volatile String lastError = null;
+
+    public InfluxdbBatchWriter(String name, String url, String username, String password, String database,
+            TRUST_HOST_TYPE trustHostType, int batchSize, long lingerTime, int bufferSize, int retryCount,
+            long retryBackoff) {
+        this.name = name;
+        StringBuilder builder = new StringBuilder(url);
+        if (!url.endsWith("/")) {
+            builder.append('/');
+        }
+        builder.append("write?precision=ms&db=").append(encode(database));
+        this.writeUrl = builder.toString();
+        if (username != null && username.length() > 0) {
+            this.authorization = "Basic " + Base64.encodeBase64String(
+                    (username + ":" + (password == null ? "" : password)).getBytes(StandardCharsets.UTF_8));
+        } else {
+            this.authorization = null;
+        }
+        this.httpClient = createHttpClient(trustHostType);
+        this.batchSize = Math.max(batchSize, 1);
+        this.lingerTime = Math.max(lingerTime, 0);
+        this.retryCount = Math.max(retryCount, 0);
+        this.retryBackoff = Math.max(retryBackoff, 1);
+        this.queue = new LinkedBlockingQueue<String>(Math.max(bufferSize, this.batchSize));
+        this.writerThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                runWriter();
+            }
+        }, "mc-influxdb-writer-" + name);
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+        WRITERS.add(this);
+    }
+
+    /**
+     * Queues a point, measurement and tags as given on external server settings
+     */
+    public void write(String measurement, String tags, Long timestamp, String value) {
+        StringBuilder point = new StringBuilder();
+        for (int index = 0; index < measurement.length(); index++) {
+            char character = measurement.charAt(index);
+            if (character == ',' || character == ' ') {
+                point.append('\\');
+            }
+            point.append(character);
+        }
+        if (tags != null && tags.trim().length() > 0) {
+            point.append(',').append(tags.trim());
+        }
+        point.append(" value=");
+        appendValue(point, value);
+        if (timestamp != null) {
+            point.append(' ').append(timestamp);
+        }
+        add(point.toString());
+    }
+
+    void add(String point) {
+        while (!queue.offer(point)) {
+            if (queue.poll() != null) {
+                droppedCount.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Stops the writer, queued points are written with a single attempt
+     */
+    public void shutdown() {
+        WRITERS.remove(this);
+        terminate.set(true);
+        writerThread.interrupt();
+        try {
+            writerThread.join(READ_TIMEOUT);
+        } catch (InterruptedException ex) {
+            _logger.debug("Exception while waiting for writer termination,", ex);
+        }
+        try {
+            httpClient.close();
+        } catch (IOException ex) {
+            _logger.debug("Exception while closing http client,", ex);
+        }
+    }
+
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    public Map<String, Object> getStatistics() {
+        HashMap<String, Object> statistics = new HashMap<String, Object>();
+        statistics.put("name", name);
+        statistics.put("queueSize", queue.size());
+        statistics.put("batchesCount", batchesCount.get());
+        statistics.put("writtenCount", writtenCount.get());
+        statistics.put("failedCount", failedCount.get());
+        statistics.put("droppedCount", droppedCount.get());
+        statistics.put("retryAttempts", retryAttempts.get());
+        statistics.put("lastWriteDurationMs", lastWriteDurationMs);
+        statistics.put("lastError", lastError);
+        return statistics;
+    }
+
+    /**
+     * @return statistics of all the running writers
+     */
+    public static List<Map<String, Object>> getAllStatistics() {
+        List<Map<String, Object>> statistics = new ArrayList<Map<String, Object>>();
+        for (InfluxdbBatchWriter writer : WRITERS) {
+            statistics.add(writer.getStatistics());
+        }
+        return statistics;
+    }
+
+    private void runWriter() {
+        List<String> batch = new ArrayList<String>(batchSize);
+        while (!terminate.get()) {
+            String point = poll(1000);
+            if (point == null) {
+                continue;
+            }
+            batch.add(point);
+            //Wait for more points, up to linger time of the first point
+            long deadline = System.currentTimeMillis() + lingerTime;
+            while (batch.size() < batchSize && !terminate.get()) {
+                queue.drainTo(batch, batchSize - batch.size());
+                long remaining = deadline - System.currentTimeMillis();
+                if (batch.size() >= batchSize || remaining <= 0) {
+                    break;
+                }
+                point = poll(remaining);
+                if (point != null) {
+                    batch.add(point);
+                }
+            }
+            writeWithRetry(batch, terminate.get() ? 0 : retryCount);
+            batch.clear();
+        }
+        //Terminating, write remaining points without retry
+        while (!queue.isEmpty()) {
+            queue.drainTo(batch, batchSize);
+            writeWithRetry(batch, 0);
+            batch.clear();
+        }
+    }
+
+    private String poll(long timeout) {
+        try {
+            return queue.poll(timeout, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException ex) {
+            _logger.debug("Influxdb writer interrupted,", ex);
+            return null;
+        }
+    }
+
+    private void writeWithRetry(List<String> batch, int retries) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        batchesCount.incrementAndGet();
+        byte[] body;
+        try {
+            body = gzip(batch);
+        } catch (IOException ex) {
+            _logger.error("Unable to compress {} point(s),", batch.size(), ex);
+            failedCount.addAndGet(batch.size());
+            return;
+        }
+        long backoff = retryBackoff;
+        for (int attempt = 0;; attempt++) {
+            long startTime = System.currentTimeMillis();
+            boolean retryable;
+            try {
+                CloseableHttpResponse response = post(body);
+                int responseCode;
+                String content;
+                try {
+                    responseCode = response.getStatusLine().getStatusCode();
+                    HttpEntity entity = response.getEntity();
+                    //Read the response fully, to keep the connection alive
+                    content = entity == null ? null : EntityUtils.toString(entity, StandardCharsets.UTF_8);
+                } finally {
+                    response.close();
+                }
+                if (responseCode >= 200 && responseCode < 300) {
+                    writtenCount.addAndGet(batch.size());
+                    lastWriteDurationMs = System.currentTimeMillis() - startTime;
+                    return;
+                }
+                lastError = content == null || content.trim().isEmpty()
+                        ? "HTTP " + responseCode : "HTTP " + responseCode + ", " + content.trim();
+                int dropped = getDroppedPoints(responseCode, content);
+                if (dropped >= 0 && dropped < batch.size()) {
+                    _logger.warn("Partial write to {}, {} of {} point(s) dropped, error:{}", writeUrl, dropped,
+                            batch.size(), lastError);
+                    writtenCount.addAndGet(batch.size() - dropped);
+                    failedCount.addAndGet(dropped);
+                    lastWriteDurationMs = System.currentTimeMillis() - startTime;
+                    return;
+                }
+                //Bad points will fail again, retry only on server side errors and throttling
+                retryable = responseCode >= 500 || responseCode == 429;
+            } catch (IOException ex) {
+                lastError = ex.getMessage();
+                retryable = true;
+            }
+            if (!retryable || attempt >= retries || terminate.get()) {
+                _logger.error("Failed to write {} point(s) to {}, error:{}", batch.size(), writeUrl, lastError);
+                failedCount.addAndGet(batch.size());
+                return;
+            }
+            retryAttempts.incrementAndGet();
+            _logger.debug("Write failed, retrying in {} ms. error:{}", backoff, lastError);
+            try {
+                Thread.sleep(backoff);
+            } catch (InterruptedException ex) {
+                _logger.debug("Exception in sleep thread,", ex);
+            }
+            backoff = Math.min(backoff * 2, MAX_RETRY_BACKOFF);
+        }
+    }
+
+    private CloseableHttpResponse post(byte[] body) throws IOException {
+        HttpPost request = new HttpPost(writeUrl);
+        ByteArrayEntity entity = new ByteArrayEntity(body, LINE_PROTOCOL);
+        entity.setContentEncoding("gzip");
+        request.setEntity(entity);
+        if (authorization != null) {
+            request.setHeader(HttpHeaders.AUTHORIZATION, authorization);
+        }
+        //Interrupt only wakes up the writer on shutdown, should not abort the queued points write
+        Thread.interrupted();
+        return httpClient.execute(request);
+    }
+
+    /**
+     * @return number of points dropped by Influxdb on a partial write, -1 when it is not a partial write
+     */
+    static int getDroppedPoints(int responseCode, String content) {
+        if (responseCode < 400 || responseCode >= 500 || content == null) {
+            return -1;
+        }
+        Matcher matcher = PARTIAL_WRITE_DROPPED.matcher(content);
+        if (!matcher.find()) {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(matcher.group(1));
+        } catch (NumberFormatException ex) {
+            return -1;
+        }
+    }
+
+    private static byte[] gzip(List<String> points) throws IOException {
+        ByteArrayOutputStream byteStream = new ByteArrayOutputStream();
+        GZIPOutputStream gzipStream = new GZIPOutputStream(byteStream);
+        try {
+            for (String point : points) {
+                gzipStream.write(point.getBytes(StandardCharsets.UTF_8));
+                gzipStream.write('\n');
+            }
+        } finally {
+            gzipStream.close();
+        }
+        return byteStream.toByteArray();
+    }
+
+    private static void appendValue(StringBuilder builder, String value) {
+        if (value != null && NUMBER.matcher(value).matches()) {
+            builder.append(value);
+            return;
+        }
+        builder.append('"');
+        if (value != null) {
+            for (int index = 0; index < value.length(); index++) {
+                char character = value.charAt(index);
+                if (character == '"' || character == '\\') {
+                    builder.append('\\');
+                }
+                builder.append(character);
+            }
+        }
+        builder.append('"');
+    }
+
+    private static String encode(String value) {
+        try {
+            return URLEncoder.encode(value, "UTF-8");
+        } catch (IOException ex) {
+            throw new IllegalArgumentException(ex);
+        }
+    }
+
+    private static CloseableHttpClient createHttpClient(TRUST_HOST_TYPE trustHostType) {
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout(CONNECT_TIMEOUT)
+                .setSocketTimeout(READ_TIMEOUT)
+                .build();
+        //Resends once a request failed on a kept alive connection closed by the server. Points are written
+        //with timestamp, a resent point overwrites the same point
+        HttpClientBuilder builder = HttpClients.custom()
+                .setDefaultRequestConfig(requestConfig)
+                .setRetryHandler(new DefaultHttpRequestRetryHandler(1, true));
+        if (trustHostType != null && trustHostType != TRUST_HOST_TYPE.DEFAULT) {
+            try {
+                builder.setSSLSocketFactory(new SSLConnectionSocketFactory(SSLContexts.custom()
+                        .loadTrustMaterial(null, new TrustStrategy() {
+                            @Override
+                            public boolean isTrusted(X509Certificate[] chain, String authType) {
+                                return true;
+                            }
+                        }).build(), NoopHostnameVerifier.INSTANCE));
+            } catch (GeneralSecurityException ex) {
+                throw new IllegalStateException("Unable to create trust any ssl context", ex);
+            }
+        }
+        return builder.build();
+    }
+}
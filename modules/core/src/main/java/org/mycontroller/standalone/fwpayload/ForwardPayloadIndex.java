@@ -0,0 +1,107 @@
+/*
+ * Copyright 2015-2017 Jeeva Kandasamy (jkandasa@gmail.com)
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mycontroller.standalone.fwpayload;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.mycontroller.standalone.db.DaoUtils;
+import org.mycontroller.standalone.db.tables.ForwardPayload;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * In-memory index of enabled forward payloads, keyed by source sensor variable id.
+ * Index is loaded on first lookup and invalidated by forward payload DAO on every change.
+ * Each invalidate moves the generation forward, an index loaded from an older generation is not used.
+ * @author Jeeva Kandasamy (jkandasa)
+ * @since 0.0.3
+ */
+@Slf4j
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class ForwardPayloadIndex {
+    private static final AtomicLong GENERATION = new AtomicLong(0);
+    private static volatile Index index = null;
+
+    @AllArgsConstructor
+    private static class Index {
+        private final long generation;
+        private final Map<Integer, List<ForwardPayload>> forwardPayloads;
+    }
+
+    /**
+     * @return enabled forward payloads of the source sensor variable, empty list when there is none
+     */
+    public static List<ForwardPayload> getEnabled(Integer sensorVariableId) {
+        Index _index = index;
+        if (_index == null || _index.generation != GENERATION.get()) {
+            _index = load();
+        }
+        List<ForwardPayload> forwardPayloads = _index.forwardPayloads.get(sensorVariableId);
+        if (forwardPayloads == null) {
+            return Collections.emptyList();
+        }
+        return forwardPayloads;
+    }
+
+    public static void invalidate() {
+        GENERATION.incrementAndGet();
+        index = null;
+    }
+
+    private static synchronized Index load() {
+        while (true) {
+            long generation = GENERATION.get();
+            Index _index = index;
+            if (_index != null && _index.generation == generation) {
+                return _index;
+            }
+            _index = new Index(generation, query());
+            index = _index;
+            //Reload when invalidated while querying, query might not include the change
+            if (GENERATION.get() == generation) {
+                _logger.debug("Forward payload index loaded with {} source sensor variable(s)",
+                        _index.forwardPayloads.size());
+                return _index;
+            }
+        }
+    }
+
+    private static Map<Integer, List<ForwardPayload>> query() {
+        Map<Integer, List<ForwardPayload>> _index = new HashMap<Integer, List<ForwardPayload>>();
+        List<ForwardPayload> forwardPayloads = DaoUtils.getForwardPayloadDao().getAll(ForwardPayload.KEY_ENABLED,
+                true);
+        if (forwardPayloads != null) {
+            for (ForwardPayload forwardPayload : forwardPayloads) {
+                List<ForwardPayload> sourceForwardPayloads = _index.get(forwardPayload.getSource().getId());
+                if (sourceForwardPayloads == null) {
+                    sourceForwardPayloads = new ArrayList<ForwardPayload>();
+                    _index.put(forwardPayload.getSource().getId(), sourceForwardPayloads);
+                }
+                sourceForwardPayloads.add(forwardPayload);
+            }
+        }
+        return _index;
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2015-2017 Jeeva Kandasamy (jkandasa@gmail.com)
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mycontroller.standalone.gateway;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+import org.mycontroller.standalone.AppProperties.NETWORK_TYPE;
+import org.mycontroller.standalone.gateway.model.Gateway;
+import org.mycontroller.standalone.message.RawMessage;
+import org.mycontroller.standalone.message.RawMessageQueue;
+import org.mycontroller.standalone.provider.mysensors.MySensorsFrame;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Splits bytes received from a gateway (serial, ethernet) to messages and adds them to the {@link RawMessageQueue}.
+ * Bytes are collected on a fixed size buffer, reused for all the messages of the gateway.
+ * MySensors messages are validated on the buffer itself, invalid messages are not added to the queue.
+ * A valid message is added to the queue as a String, one String and one {@link RawMessage} per message.
+ * The queue persists the messages (MapDB or journal) and those are taken by the message lane thread,
+ * so the reused buffer or the parsed fields can not be handed over. Message lane parses the String again
+ * with {@link MySensorsFrame}, without creating objects other than the payload.
+ * Not thread safe, a framer should be fed by a single listener.
+ * @author Jeeva Kandasamy (jkandasa)
+ * @since 0.0.3
+ */
+@Slf4j
+public class GatewayRxFramer {
+    public static final byte MESSAGE_SPLITTER = '\n';
+    public static final int DEFAULT_MAX_SIZE = 1000;
+    private static final Charset CHARSET = StandardCharsets.UTF_8;
+
+    private final Gateway gateway;
+    private final byte[] frame;
+    private final MySensorsFrame mySensorsFrame;
+    private int length = 0;
+    // message exceeded the buffer, remaining bytes are discarded till the next splitter
+    private boolean overflow = false;
+
+    public GatewayRxFramer(Gateway gateway) {
+        this(gateway, DEFAULT_MAX_SIZE);
+    }
+
+    public GatewayRxFramer(Gateway gateway, int maxSize) {
+        this.gateway = gateway;
+        this.frame = new byte[maxSize];
+        this.mySensorsFrame = gateway.getNetworkType() == NETWORK_TYPE.MY_SENSORS ? new MySensorsFrame() : null;
+    }
+
+    public void add(byte[] data, int offset, int count) {
+        int end = offset + count;
+        for (int index = offset; index < end; index++) {
+            add(data[index]);
+        }
+    }
+
+    /**
+     * Adds all the remaining bytes of the buffer
+     * @param buffer received bytes, in read mode
+     */
+    public void add(ByteBuffer buffer) {
+        while (buffer.hasRemaining()) {
+            add(buffer.get());
+        }
+    }
+
+    private void add(byte b) {
+        if (b == MESSAGE_SPLITTER) {
+            if (overflow) {
+                overflow = false;
+            } else if (length > 0) {
+                onMessage();
+            } else {
+                _logger.debug("Received MESSAGE_SPLITTER and current message length is ZERO! Nothing to do");
+            }
+            length = 0;
+        } else if (overflow) {
+            _logger.trace("Discarded a byte:[{}]", b);
+        } else if (length == frame.length) {
+            _logger.warn("Gateway[id:{}] receive buffer size reached to MAX level[{} bytes], "
+                    + "dropping the message. Existing data:[{}]", gateway.getId(), frame.length, getMessage());
+            length = 0;
+            overflow = true;
+        } else {
+            frame[length++] = b;
+        }
+    }
+
+    public void reset() {
+        length = 0;
+        overflow = false;
+    }
+
+    private String getMessage() {
+        return new String(frame, 0, length, CHARSET);
+    }
+
+    private void onMessage() {
+        //Line may end with CR LF
+        while (length > 0 && frame[length - 1] == '\r') {
+            length--;
+        }
+        if (length == 0) {
+            return;
+        }
+        if (mySensorsFrame != null && !mySensorsFrame.parse(frame, 0, length)) {
+            _logger.warn("Gateway[id:{}] dropped a message, unknown format:[{}]", gateway.getId(), getMessage());
+            return;
+        }
+        //Only object created per message, along with the RawMessage
+        String message = getMessage();
+        _logger.debug("Received a message:[{}]", message);
+        //Send Message to message factory
+        RawMessageQueue.getInstance().putMessage(RawMessage.builder()
+                .gatewayId(gateway.getId())
+                .data(message)
+                .networkType(gateway.getNetworkType())
+                .timestamp(System.currentTimeMillis())
+                .build());
+    }
+}
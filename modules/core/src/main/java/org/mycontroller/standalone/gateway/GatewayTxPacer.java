@@ -0,0 +1,278 @@
+/*
+ * Copyright 2015-2017 Jeeva Kandasamy (jkandasa@gmail.com)
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mycontroller.standalone.gateway;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.mycontroller.standalone.AppProperties;
+import org.mycontroller.standalone.McObjectManager;
+import org.mycontroller.standalone.message.McMessageUtils;
+import org.mycontroller.standalone.message.McMessageUtils.MESSAGE_PRIORITY;
+import org.mycontroller.standalone.message.RawMessage;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Sends messages to a gateway with the gateway tx delay in between and an optional token bucket limit.
+ * Messages are written by a scheduled task of the gateway pacer, callers will not be blocked
+ * unless the pacer queue is full. When it is full, callers wait for free space, so the message lanes
+ * stop taking messages and load shedding policies of the messages queue take over.
+ * Higher priority messages are sent first, order of the messages is maintained within a priority.
+ * @author Jeeva Kandasamy (jkandasa)
+ * @since 0.0.3
+ */
+@Slf4j
+public class GatewayTxPacer {
+    private static final ConcurrentHashMap<Integer, GatewayTxPacer> PACERS =
+            new ConcurrentHashMap<Integer, GatewayTxPacer>();
+    //Pacer thread will be terminated when idle for this time, in seconds
+    private static final long IDLE_TIMEOUT = 60;
+
+    private final Integer gatewayId;
+    private final ScheduledThreadPoolExecutor executor;
+    //Queue for each priority, indexed by priority ordinal
+    private final List<ConcurrentLinkedQueue<RawMessage>> queues =
+            new ArrayList<ConcurrentLinkedQueue<RawMessage>>();
+    private final AtomicInteger queueSize = new AtomicInteger(0);
+    //Free space on the queues, null when unbounded
+    private final Semaphore space;
+    //Set when send task is scheduled or running
+    private final AtomicBoolean scheduled = new AtomicBoolean(false);
+    private final AtomicLong sentCount = new AtomicLong(0);
+    private final AtomicLong delayedCount = new AtomicLong(0);
+    private final AtomicLong blockedCount = new AtomicLong(0);
+    private final Runnable sendTask = new Runnable() {
+        @Override
+        public void run() {
+            sendMessages();
+        }
+    };
+    //Following fields are accessed only by send task
+    private long nextSendTime = 0;
+    private double tokens = -1;
+    private long lastRefillTime = 0;
+
+    private GatewayTxPacer(Integer gatewayId) {
+        this.gatewayId = gatewayId;
+        for (int index = 0; index < MESSAGE_PRIORITY.values().length; index++) {
+            queues.add(new ConcurrentLinkedQueue<RawMessage>());
+        }
+        int capacity = AppProperties.getInstance().getGatewayTxQueueCapacity();
+        space = capacity > 0 ? new Semaphore(capacity) : null;
+        final String threadName = "mc-tx-pacer-" + gatewayId;
+        executor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                return new Thread(runnable, threadName);
+            }
+        });
+        executor.setKeepAliveTime(IDLE_TIMEOUT, TimeUnit.SECONDS);
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    public static GatewayTxPacer get(Integer gatewayId) {
+        GatewayTxPacer pacer = PACERS.get(gatewayId);
+        if (pacer == null) {
+            //Create under lock, pacer owns an executor
+            synchronized (PACERS) {
+                pacer = PACERS.get(gatewayId);
+                if (pacer == null) {
+                    pacer = new GatewayTxPacer(gatewayId);
+                    PACERS.put(gatewayId, pacer);
+                }
+            }
+        }
+        return pacer;
+    }
+
+    /**
+     * Terminates the pacer of the gateway, used when the gateway is unloaded.
+     * @param gatewayId gateway id of the pacer
+     */
+    public static void remove(Integer gatewayId) {
+        GatewayTxPacer pacer;
+        synchronized (PACERS) {
+            pacer = PACERS.remove(gatewayId);
+        }
+        if (pacer != null) {
+            pacer.terminate();
+        }
+    }
+
+    public static void shutdown() {
+        synchronized (PACERS) {
+            for (GatewayTxPacer pacer : PACERS.values()) {
+                pacer.terminate();
+            }
+            PACERS.clear();
+        }
+    }
+
+    private void terminate() {
+        if (queueSize.get() > 0) {
+            _logger.warn("Gateway[id:{}] tx pacer terminating with {} message(s)!", gatewayId, queueSize.get());
+        }
+        executor.shutdownNow();
+    }
+
+    public static List<Map<String, Object>> getStatistics() {
+        List<Map<String, Object>> statistics = new ArrayList<Map<String, Object>>();
+        for (GatewayTxPacer pacer : PACERS.values()) {
+            HashMap<String, Object> pacerStatistics = new HashMap<String, Object>();
+            pacerStatistics.put("gatewayId", pacer.gatewayId);
+            pacerStatistics.put("messagesInQueue", pacer.queueSize.get());
+            pacerStatistics.put("sentCount", pacer.sentCount.get());
+            pacerStatistics.put("delayedCount", pacer.delayedCount.get());
+            pacerStatistics.put("blockedCount", pacer.blockedCount.get());
+            statistics.add(pacerStatistics);
+        }
+        return statistics;
+    }
+
+    public void send(RawMessage rawMessage) {
+        if (!waitForSpace()) {
+            _logger.warn("Gateway[id:{}] tx pacer terminated, message not sent {}", gatewayId, rawMessage);
+            return;
+        }
+        MESSAGE_PRIORITY priority = rawMessage.getPriority() == null ? MESSAGE_PRIORITY.NORMAL : rawMessage
+                .getPriority();
+        queues.get(priority.ordinal()).add(rawMessage);
+        queueSize.incrementAndGet();
+        schedule(0);
+    }
+
+    private boolean waitForSpace() {
+        if (space == null || space.tryAcquire()) {
+            return true;
+        }
+        blockedCount.incrementAndGet();
+        try {
+            //Check termination in between, pacer could be removed while waiting
+            while (!space.tryAcquire(1, TimeUnit.SECONDS)) {
+                if (executor.isShutdown()) {
+                    return false;
+                }
+            }
+            return true;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void schedule(long delayNanos) {
+        if (delayNanos > 0 || scheduled.compareAndSet(false, true)) {
+            try {
+                executor.schedule(sendTask, delayNanos, TimeUnit.NANOSECONDS);
+            } catch (RejectedExecutionException ex) {
+                _logger.warn("Gateway[id:{}] tx pacer terminated, {} message(s) not sent", gatewayId,
+                        queueSize.get());
+            }
+        }
+    }
+
+    private void sendMessages() {
+        while (true) {
+            if (isEmpty()) {
+                scheduled.set(false);
+                //A message might be added before reset the flag
+                if (isEmpty() || !scheduled.compareAndSet(false, true)) {
+                    return;
+                }
+            }
+            long waitTime = getWaitTime();
+            if (waitTime > 0) {
+                //Keep scheduled flag, this task will continue after the wait time
+                delayedCount.incrementAndGet();
+                schedule(waitTime);
+                return;
+            }
+            RawMessage rawMessage = poll();
+            queueSize.decrementAndGet();
+            if (space != null) {
+                space.release();
+            }
+            McMessageUtils.writeToGateway(rawMessage);
+            sentCount.incrementAndGet();
+            nextSendTime = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(getTxDelay());
+            if (tokens >= 1) {
+                tokens--;
+            }
+        }
+    }
+
+    //Returns the highest priority message
+    private RawMessage poll() {
+        for (ConcurrentLinkedQueue<RawMessage> queue : queues) {
+            RawMessage rawMessage = queue.poll();
+            if (rawMessage != null) {
+                return rawMessage;
+            }
+        }
+        return null;
+    }
+
+    private boolean isEmpty() {
+        for (ConcurrentLinkedQueue<RawMessage> queue : queues) {
+            if (!queue.isEmpty()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    //Returns time to wait before sending next message, in nanoseconds
+    private long getWaitTime() {
+        long now = System.nanoTime();
+        long waitTime = nextSendTime - now;
+        double rateLimit = AppProperties.getInstance().getGatewayTxRateLimit();
+        if (rateLimit > 0) {
+            int burstSize = Math.max(AppProperties.getInstance().getGatewayTxBurstSize(), 1);
+            if (tokens < 0) {
+                tokens = burstSize;
+            } else {
+                tokens = Math.min(burstSize, tokens + ((now - lastRefillTime) * rateLimit / 1E9));
+            }
+            lastRefillTime = now;
+            if (tokens < 1) {
+                waitTime = Math.max(waitTime, (long) Math.ceil((1 - tokens) * 1E9 / rateLimit));
+            }
+        }
+        return waitTime;
+    }
+
+    private long getTxDelay() {
+        IGateway gateway = McObjectManager.getGateway(gatewayId);
+        if (gateway == null || gateway.getGateway().getTxDelay() == null) {
+            return 0;
+        }
+        return gateway.getGateway().getTxDelay();
+    }
+}
@@ -29,8 +29,10 @@ import org.mycontroller.standalone.db.tables.GatewayTable;
 import org.mycontroller.standalone.db.tables.Node;
 import org.mycontroller.standalone.db.tables.Sensor;
 import org.mycontroller.standalone.gateway.ethernet.EthernetGatewayImpl;
+import org.mycontroller.standalone.gateway.loadgenerator.LoadGeneratorGatewayImpl;
 import org.mycontroller.standalone.gateway.model.Gateway;
 import org.mycontroller.standalone.gateway.model.GatewayEthernet;
+import org.mycontroller.standalone.gateway.model.GatewayLoadGenerator;
 import org.mycontroller.standalone.gateway.model.GatewayMQTT;
 import org.mycontroller.standalone.gateway.model.GatewayPhantIO;
 import org.mycontroller.standalone.gateway.model.GatewayPhilipsHue;
@@ -61,7 +63,8 @@ public class GatewayUtils {
         ETHERNET("Ethernet"),
         MQTT("MQTT"),
         PHANT_IO("Sparkfun [phant.io]"),
-        PHILIPS_HUE("Hue bridge");
+        PHILIPS_HUE("Hue bridge"),
+        LOAD_GENERATOR("Load generator");
         public static GATEWAY_TYPE get(int id) {
             for (GATEWAY_TYPE type : values()) {
                 if (type.ordinal() == id) {
@@ -145,6 +148,8 @@ public class GatewayUtils {
                 return new GatewayPhantIO(gatewayTable);
             case PHILIPS_HUE:
                 return new GatewayPhilipsHue(gatewayTable);
+            case LOAD_GENERATOR:
+                return new GatewayLoadGenerator(gatewayTable);
             default:
                 _logger.warn("Not implemented yet! GatewayTable:[{}]", gatewayTable.getType().getText());
                 return null;
@@ -195,6 +200,9 @@ public class GatewayUtils {
             case PHILIPS_HUE:
                 iGateway = new PhilipsHueGatewayImpl(gatewayTable);
                 break;
+            case LOAD_GENERATOR:
+                iGateway = new LoadGeneratorGatewayImpl(gatewayTable);
+                break;
             default:
                 _logger.warn("Not implemented yet! GatewayTable:[{}]", gatewayTable.getType().getText());
         }
@@ -209,6 +217,7 @@ public class GatewayUtils {
             McObjectManager.getGateway(gatewayId).close();
             McObjectManager.removeGateway(gatewayId);
         }
+        GatewayTxPacer.remove(gatewayId);
     }
 
     public static synchronized void loadAllGateways() {
@@ -0,0 +1,382 @@
+/*
+ * Copyright 2015-2017 Jeeva Kandasamy (jkandasa@gmail.com)
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mycontroller.standalone.gateway.ethernet;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.mycontroller.standalone.AppProperties.STATE;
+import org.mycontroller.standalone.McObjectManager;
+import org.mycontroller.standalone.executor.ExecutorUtils;
+import org.mycontroller.standalone.executor.ExecutorUtils.EXECUTOR_TYPE;
+import org.mycontroller.standalone.gateway.GatewayException;
+import org.mycontroller.standalone.gateway.GatewayRxFramer;
+import org.mycontroller.standalone.gateway.IGateway.GATEWAY_STATUS;
+import org.mycontroller.standalone.gateway.model.GatewayEthernet;
+import org.mycontroller.standalone.message.RawMessage;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Connection of an ethernet gateway, driven by {@link EthernetGatewaySelector} thread.
+ * Only {@link #write(RawMessage)} and {@link #close()} are called from other threads.
+ * @author Jeeva Kandasamy (jkandasa)
+ * @since 0.0.3
+ */
+@Slf4j
+class EthernetConnection {
+    // maximum Tx messages waiting to be written
+    private static final int WRITE_QUEUE_CAPACITY = 1000;
+
+    enum CONNECTION_STATE {
+        DISCONNECTED("Disconnected"),
+        RESOLVING("Resolving"),
+        CONNECTING("Connecting"),
+        CONNECTED("Connected");
+
+        private final String name;
+
+        private CONNECTION_STATE(String name) {
+            this.name = name;
+        }
+
+        public String getText() {
+            return this.name;
+        }
+    }
+
+    private final GatewayEthernet gateway;
+    private final EthernetGatewaySelector gatewaySelector;
+    private final GatewayRxFramer framer;
+    private final ConcurrentLinkedQueue<ByteBuffer> writeQueue = new ConcurrentLinkedQueue<ByteBuffer>();
+    private final AtomicInteger writeQueueSize = new AtomicInteger(0);
+    private volatile CONNECTION_STATE state = CONNECTION_STATE.DISCONNECTED;
+    private volatile boolean closeRequested = false;
+    private volatile boolean reconnectRequested = false;
+
+    //Following fields are accessed only by selector thread
+    private SocketChannel channel = null;
+    private SelectionKey key = null;
+    //Host name resolution of the current connect attempt
+    private Resolution resolution = null;
+    //Resolve and connect timeout on RESOLVING and CONNECTING, retry time on DISCONNECTED
+    private long deadline = 0;
+    private long nextAliveCheck = 0;
+    private boolean connectedOnce = false;
+    private boolean downStatusWritten = false;
+
+    //Statistics
+    private volatile long connectedSince = 0;
+    private volatile long lastReceivedTime = 0;
+    private volatile String lastError = null;
+    private final AtomicLong receivedBytes = new AtomicLong(0);
+    private final AtomicLong sentBytes = new AtomicLong(0);
+    private final AtomicLong reconnectCount = new AtomicLong(0);
+    private final AtomicLong droppedTxCount = new AtomicLong(0);
+
+    EthernetConnection(GatewayEthernet gateway, EthernetGatewaySelector gatewaySelector) {
+        this.gateway = gateway;
+        this.gatewaySelector = gatewaySelector;
+        this.framer = new GatewayRxFramer(gateway);
+    }
+
+    GatewayEthernet getGateway() {
+        return gateway;
+    }
+
+    boolean isCloseRequested() {
+        return closeRequested;
+    }
+
+    void write(RawMessage rawMessage) throws GatewayException {
+        if (closeRequested || state != CONNECTION_STATE.CONNECTED) {
+            throw new GatewayException(GATEWAY_STATUS.GATEWAY_ERROR.toString()
+                    + ": There is no connection with EthernetGateway!");
+        }
+        if (writeQueueSize.get() >= WRITE_QUEUE_CAPACITY) {
+            droppedTxCount.incrementAndGet();
+            throw new GatewayException(GATEWAY_STATUS.GATEWAY_ERROR.toString()
+                    + ": EthernetGateway write queue is full!");
+        }
+        writeQueue.add(ByteBuffer.wrap(rawMessage.getGWBytes()));
+        writeQueueSize.incrementAndGet();
+        gatewaySelector.wakeup();
+    }
+
+    void close() {
+        closeRequested = true;
+        gatewaySelector.wakeup();
+    }
+
+    /**
+     * Moves the connection forward: connects, handles timeouts, alive check and pending writes
+     * @return time in milliseconds, till this connection has nothing to do without an I/O event
+     */
+    long update(Selector selector, long now) {
+        switch (state) {
+            case DISCONNECTED:
+                if (now >= deadline) {
+                    resolve(now);
+                }
+                break;
+            case RESOLVING:
+                if (resolution.address != null) {
+                    connect(selector, resolution.address, now);
+                } else if (resolution.error != null) {
+                    disconnect(resolution.error, now);
+                } else if (now >= deadline) {
+                    disconnect("Resolve timeout", now);
+                }
+                break;
+            case CONNECTING:
+                if (now >= deadline) {
+                    disconnect("Connect timeout", now);
+                }
+                break;
+            case CONNECTED:
+                if (reconnectRequested) {
+                    disconnect("Alive check failed", now);
+                    break;
+                }
+                if (!writeQueue.isEmpty()) {
+                    try {
+                        flush();
+                    } catch (IOException ex) {
+                        disconnect(ex.getMessage(), now);
+                        break;
+                    }
+                }
+                if (now >= nextAliveCheck) {
+                    checkAliveState();
+                    nextAliveCheck = now + getAliveInterval();
+                }
+                return nextAliveCheck - now;
+            default:
+                break;
+        }
+        return state == CONNECTION_STATE.CONNECTED ? nextAliveCheck - now : deadline - now;
+    }
+
+    void onSelected(SelectionKey selectedKey, ByteBuffer readBuffer) {
+        long now = System.currentTimeMillis();
+        try {
+            if (selectedKey.isValid() && selectedKey.isConnectable()) {
+                if (channel.finishConnect()) {
+                    connected(now);
+                }
+            }
+            if (selectedKey.isValid() && selectedKey.isReadable()) {
+                read(readBuffer, now);
+            }
+            if (selectedKey.isValid() && selectedKey.isWritable()) {
+                flush();
+            }
+        } catch (IOException ex) {
+            disconnect(ex.getMessage(), now);
+        }
+    }
+
+    void closeChannel() {
+        if (key != null) {
+            key.cancel();
+            key = null;
+        }
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException ex) {
+                _logger.error("Exception,", ex);
+            }
+            channel = null;
+        }
+        framer.reset();
+    }
+
+    Map<String, Object> getStatistics() {
+        HashMap<String, Object> statistics = new HashMap<String, Object>();
+        statistics.put("gatewayId", gateway.getId());
+        statistics.put("host", gateway.getHost());
+        statistics.put("port", gateway.getPort());
+        statistics.put("state", state.getText());
+        statistics.put("connectedSince", connectedSince);
+        statistics.put("lastReceivedTime", lastReceivedTime);
+        statistics.put("lastError", lastError);
+        statistics.put("receivedBytes", receivedBytes.get());
+        statistics.put("sentBytes", sentBytes.get());
+        statistics.put("txQueueSize", writeQueueSize.get());
+        statistics.put("txDroppedCount", droppedTxCount.get());
+        statistics.put("reconnectCount", reconnectCount.get());
+        return statistics;
+    }
+
+    //Host name is resolved on gateway health executor, DNS lookup can take seconds and blocks the selector
+    private void resolve(long now) {
+        final Resolution _resolution = new Resolution();
+        resolution = _resolution;
+        state = CONNECTION_STATE.RESOLVING;
+        deadline = now + EthernetGatewaySelector.SOCKET_TIMEOUT;
+        ExecutorUtils.execute(EXECUTOR_TYPE.GATEWAY_HEALTH, new Runnable() {
+            @Override
+            public void run() {
+                InetSocketAddress address = new InetSocketAddress(gateway.getHost(), gateway.getPort());
+                if (address.isUnresolved()) {
+                    _resolution.error = "Unable to resolve host " + gateway.getHost();
+                } else {
+                    _resolution.address = address;
+                }
+                gatewaySelector.wakeup();
+            }
+        });
+    }
+
+    private void connect(Selector selector, InetSocketAddress address, long now) {
+        _logger.debug("Connecting to EthernetGateway[{}:{}]...", gateway.getHost(), gateway.getPort());
+        resolution = null;
+        try {
+            channel = SocketChannel.open();
+            channel.configureBlocking(false);
+            channel.socket().setKeepAlive(true);
+            if (channel.connect(address)) {
+                key = channel.register(selector, SelectionKey.OP_READ, this);
+                connected(now);
+            } else {
+                key = channel.register(selector, SelectionKey.OP_CONNECT, this);
+                state = CONNECTION_STATE.CONNECTING;
+                deadline = now + EthernetGatewaySelector.SOCKET_TIMEOUT;
+            }
+        } catch (IOException | RuntimeException ex) {
+            disconnect(ex.getMessage(), now);
+        }
+    }
+
+    private void connected(long now) {
+        state = CONNECTION_STATE.CONNECTED;
+        key.interestOps(SelectionKey.OP_READ);
+        connectedSince = now;
+        nextAliveCheck = now + getAliveInterval();
+        reconnectRequested = false;
+        downStatusWritten = false;
+        if (connectedOnce) {
+            _logger.info("Reconnected EthernetGateway[{}:{}] successfully...", gateway.getHost(), gateway.getPort());
+            updateStatus(STATE.UP, "Reconnected Successfully");
+        } else {
+            _logger.info("Connected successfully with EthernetGateway[{}:{}]", gateway.getHost(), gateway.getPort());
+            updateStatus(STATE.UP, "Connected Successfully");
+        }
+        connectedOnce = true;
+    }
+
+    private void disconnect(String reason, long now) {
+        boolean wasConnected = state == CONNECTION_STATE.CONNECTED;
+        closeChannel();
+        resolution = null;
+        state = CONNECTION_STATE.DISCONNECTED;
+        deadline = now + EthernetGatewaySelector.RETRY_WAIT_TIME;
+        connectedSince = 0;
+        reconnectRequested = false;
+        lastError = reason;
+        int dropped = 0;
+        while (writeQueue.poll() != null) {
+            writeQueueSize.decrementAndGet();
+            dropped++;
+        }
+        if (dropped > 0) {
+            droppedTxCount.addAndGet(dropped);
+            _logger.warn("EthernetGateway[{}:{}] disconnected, {} message(s) not sent", gateway.getHost(),
+                    gateway.getPort(), dropped);
+        }
+        if (wasConnected) {
+            reconnectCount.incrementAndGet();
+        }
+        _logger.error("EthernetGateway[{}:{}] Exception: {}", gateway.getHost(), gateway.getPort(), reason);
+        //Status written once per failure, not on every retry
+        if (wasConnected || !downStatusWritten) {
+            updateStatus(STATE.DOWN, "ERROR: " + reason);
+            downStatusWritten = true;
+        }
+    }
+
+    private void read(ByteBuffer buffer, long now) throws IOException {
+        int read;
+        buffer.clear();
+        while ((read = channel.read(buffer)) > 0) {
+            receivedBytes.addAndGet(read);
+            lastReceivedTime = now;
+            buffer.flip();
+            framer.add(buffer);
+            buffer.clear();
+        }
+        if (read < 0) {
+            throw new IOException("Connection closed by gateway");
+        }
+    }
+
+    private void flush() throws IOException {
+        ByteBuffer buffer;
+        while ((buffer = writeQueue.peek()) != null) {
+            sentBytes.addAndGet(channel.write(buffer));
+            if (buffer.hasRemaining()) {
+                //Socket buffer is full, continue when the channel is writable
+                key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                return;
+            }
+            writeQueue.poll();
+            writeQueueSize.decrementAndGet();
+        }
+        key.interestOps(SelectionKey.OP_READ);
+    }
+
+    private long getAliveInterval() {
+        Long aliveFrequency = gateway.getAliveFrequency();
+        return Math.max(aliveFrequency == null ? 0 : aliveFrequency, 1) * 1000;
+    }
+
+    private void checkAliveState() {
+        ExecutorUtils.execute(EXECUTOR_TYPE.GATEWAY_HEALTH, new Runnable() {
+            @Override
+            public void run() {
+                if (!McObjectManager.getMcActionEngine().checkEthernetGatewayAliveState(gateway)) {
+                    reconnectRequested = true;
+                    gatewaySelector.wakeup();
+                }
+            }
+        });
+    }
+
+    private void updateStatus(final STATE status, final String statusMessage) {
+        ExecutorUtils.execute(EXECUTOR_TYPE.GATEWAY_HEALTH, new Runnable() {
+            @Override
+            public void run() {
+                gateway.setStatus(status, statusMessage);
+            }
+        });
+    }
+
+    private static class Resolution {
+        private volatile InetSocketAddress address = null;
+        private volatile String error = null;
+    }
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2015-2016 Jeeva Kandasamy (jkandasa@gmail.com)
+ * Copyright 2015-2017 Jeeva Kandasamy (jkandasa@gmail.com)
  * and other contributors as indicated by the @author tags.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
@@ -16,42 +16,55 @@
  */
 package org.mycontroller.standalone.gateway.ethernet;
 
+import java.io.IOException;
+
+import org.mycontroller.standalone.AppProperties.STATE;
 import org.mycontroller.standalone.db.tables.GatewayTable;
 import org.mycontroller.standalone.gateway.GatewayException;
 import org.mycontroller.standalone.gateway.IGateway;
 import org.mycontroller.standalone.gateway.model.GatewayEthernet;
 import org.mycontroller.standalone.message.RawMessage;
 
+import lombok.extern.slf4j.Slf4j;
+
 /**
  * @author Jeeva Kandasamy (jkandasa)
  * @since 0.0.2
  */
+@Slf4j
 public class EthernetGatewayImpl implements IGateway {
-    private EthernetGatewayActionThread monitoringThread = null;
+    private final GatewayEthernet gateway;
+    private EthernetConnection connection = null;
 
     public EthernetGatewayImpl(GatewayTable gatewayTable) {
-        if (monitoringThread == null) {
-            monitoringThread = new EthernetGatewayActionThread(new GatewayEthernet(gatewayTable));
-            new Thread(monitoringThread).start();
+        gateway = new GatewayEthernet(gatewayTable);
+        try {
+            connection = EthernetGatewaySelector.register(gateway);
+        } catch (IOException ex) {
+            _logger.error("Exception, ", ex);
+            gateway.setStatus(STATE.DOWN, "ERROR: " + ex.getMessage());
         }
     }
 
     @Override
     public synchronized void close() {
-        monitoringThread.close();
+        if (connection != null) {
+            connection.close();
+        }
     }
 
     @Override
-    public synchronized void write(RawMessage rawMessage) throws GatewayException {
-        monitoringThread.write(rawMessage);
+    public void write(RawMessage rawMessage) throws GatewayException {
+        if (connection == null) {
+            throw new GatewayException(GATEWAY_STATUS.GATEWAY_ERROR.toString()
+                    + ": There is no connection with EthernetGateway!");
+        }
+        connection.write(rawMessage);
     }
 
     @Override
     public GatewayEthernet getGateway() {
-        if (monitoringThread != null) {
-            return monitoringThread.getGateway();
-        }
-        return null;
+        return gateway;
     }
 
 }
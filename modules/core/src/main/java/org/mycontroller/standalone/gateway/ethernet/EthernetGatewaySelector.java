@@ -0,0 +1,163 @@
+/*
+ * Copyright 2015-2017 Jeeva Kandasamy (jkandasa@gmail.com)
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mycontroller.standalone.gateway.ethernet;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.mycontroller.standalone.executor.ExecutorUtils;
+import org.mycontroller.standalone.executor.ExecutorUtils.EXECUTOR_TYPE;
+import org.mycontroller.standalone.gateway.model.GatewayEthernet;
+import org.mycontroller.standalone.utils.McUtils;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Serves all the ethernet gateways from a single I/O thread.
+ * Connects, reads and writes on non-blocking channels registered with a selector.
+ * Tx messages are queued on the gateway connection and written when the channel is writable.
+ * Host name resolution, alive check and gateway status update are executed on gateway health executor,
+ * as those can wait on DNS, message queue and database. Health executor has a thread per gateway.
+ * @author Jeeva Kandasamy (jkandasa)
+ * @since 0.0.3
+ */
+@Slf4j
+public class EthernetGatewaySelector implements Runnable {
+    public static final long RETRY_WAIT_TIME = McUtils.ONE_SECOND * 5;
+    public static final long THREAD_TERMINATION_WAIT_TIME = McUtils.ONE_SECOND * 5;
+    public static final int SOCKET_TIMEOUT = (int) (McUtils.ONE_SECOND * 7);
+    // maximum wait time on the selector, in milliseconds
+    private static final long SELECT_TIMEOUT = McUtils.ONE_SECOND;
+    private static final int READ_BUFFER_SIZE = 4096;
+
+    private static EthernetGatewaySelector instance = null;
+
+    private final Selector selector;
+    private final Thread thread;
+    private final CopyOnWriteArrayList<EthernetConnection> connections =
+            new CopyOnWriteArrayList<EthernetConnection>();
+    //Read buffer, shared by all the connections. Used only by selector thread
+    private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+    private volatile boolean terminate = false;
+
+    private EthernetGatewaySelector() throws IOException {
+        selector = Selector.open();
+        thread = new Thread(this, "mc-ethernet-selector");
+    }
+
+    public static synchronized EthernetConnection register(GatewayEthernet gateway) throws IOException {
+        if (instance == null) {
+            instance = new EthernetGatewaySelector();
+            instance.thread.start();
+            _logger.debug("Ethernet gateway selector started");
+        }
+        EthernetConnection connection = new EthernetConnection(gateway, instance);
+        instance.connections.add(connection);
+        instance.updateHealthThreads();
+        instance.wakeup();
+        return connection;
+    }
+
+    public static synchronized void shutdown() {
+        if (instance == null) {
+            return;
+        }
+        instance.terminate = true;
+        instance.wakeup();
+        try {
+            instance.thread.join(THREAD_TERMINATION_WAIT_TIME);
+        } catch (InterruptedException ex) {
+            _logger.debug("Exception while waiting for selector termination,", ex);
+        }
+        if (instance.thread.isAlive()) {
+            _logger.warn("Terminating abnormally ethernet gateway selector!");
+        }
+        instance = null;
+    }
+
+    public static synchronized List<Map<String, Object>> getStatistics() {
+        List<Map<String, Object>> statistics = new ArrayList<Map<String, Object>>();
+        if (instance != null) {
+            for (EthernetConnection connection : instance.connections) {
+                statistics.add(connection.getStatistics());
+            }
+        }
+        return statistics;
+    }
+
+    void wakeup() {
+        selector.wakeup();
+    }
+
+    //A thread per gateway, alive check of a gateway should not delay the other gateways
+    private void updateHealthThreads() {
+        ExecutorUtils.setRequiredThreads(EXECUTOR_TYPE.GATEWAY_HEALTH, connections.size());
+    }
+
+    @Override
+    public void run() {
+        while (!terminate) {
+            try {
+                long now = System.currentTimeMillis();
+                long timeout = SELECT_TIMEOUT;
+                for (EthernetConnection connection : connections) {
+                    if (connection.isCloseRequested()) {
+                        connection.closeChannel();
+                        connections.remove(connection);
+                        updateHealthThreads();
+                        _logger.info("EthernetGateway[{}:{}] closed", connection.getGateway().getHost(),
+                                connection.getGateway().getPort());
+                        continue;
+                    }
+                    timeout = Math.min(timeout, connection.update(selector, now));
+                }
+                selector.select(Math.max(timeout, 1));
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    ((EthernetConnection) key.attachment()).onSelected(key, readBuffer);
+                }
+            } catch (Exception ex) {
+                _logger.error("Exception, ", ex);
+                try {
+                    //Avoid continuous exceptions eating CPU
+                    Thread.sleep(McUtils.TEN_MILLISECONDS * 10);
+                } catch (InterruptedException iEx) {
+                    _logger.debug("Exception, ", iEx);
+                }
+            }
+        }
+        for (EthernetConnection connection : connections) {
+            connection.closeChannel();
+        }
+        connections.clear();
+        try {
+            selector.close();
+        } catch (IOException ex) {
+            _logger.error("Exception, ", ex);
+        }
+        _logger.debug("Ethernet gateway selector terminated");
+    }
+}
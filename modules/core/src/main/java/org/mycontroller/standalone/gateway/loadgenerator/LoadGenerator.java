@@ -0,0 +1,381 @@
+/*
+ * Copyright 2015-2017 Jeeva Kandasamy (jkandasa@gmail.com)
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mycontroller.standalone.gateway.loadgenerator;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.mycontroller.standalone.AppProperties.NETWORK_TYPE;
+import org.mycontroller.standalone.AppProperties.STATE;
+import org.mycontroller.standalone.McObjectManager;
+import org.mycontroller.standalone.gateway.model.GatewayLoadGenerator;
+import org.mycontroller.standalone.message.LatencyHistogram;
+import org.mycontroller.standalone.message.McMessage;
+import org.mycontroller.standalone.message.McMessageUtils.MESSAGE_TYPE;
+import org.mycontroller.standalone.message.McMessageUtils.MESSAGE_TYPE_INTERNAL;
+import org.mycontroller.standalone.message.McMessageUtils.MESSAGE_TYPE_PRESENTATION;
+import org.mycontroller.standalone.message.McMessageUtils.MESSAGE_TYPE_SET_REQ;
+import org.mycontroller.standalone.message.RawMessage;
+import org.mycontroller.standalone.message.RawMessageQueue;
+import org.mycontroller.standalone.provider.mysensors.MySensorsUtils.MYS_MESSAGE_TYPE;
+import org.mycontroller.standalone.provider.mysensors.MySensorsUtils.MYS_MESSAGE_TYPE_INTERNAL;
+import org.mycontroller.standalone.provider.mysensors.MySensorsUtils.MYS_MESSAGE_TYPE_PRESENTATION;
+import org.mycontroller.standalone.provider.mysensors.MySensorsUtils.MYS_MESSAGE_TYPE_SET_REQ;
+import org.mycontroller.standalone.utils.McUtils;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Generates messages of virtual nodes at a fixed rate, in the wire format of the gateway network type.
+ * Each node presents itself and its sensors first, then sends sensor values, heartbeats and battery level
+ * in a round robin order. Values are generated from a random seeded with gateway id, so runs are reproducible.
+ * @author Jeeva Kandasamy (jkandasa)
+ * @since 0.0.3
+ */
+@Slf4j
+public class LoadGenerator implements Runnable {
+    private static final long STATUS_UPDATE_INTERVAL = McUtils.SECOND * 10;
+    //Maximum wait time for the gateway to be added in McObjectManager, in milliseconds
+    private static final long GATEWAY_WAIT_TIMEOUT = McUtils.SECOND * 10;
+    //Maximum park time, to check terminate flag
+    private static final long MAX_PARK_TIME = TimeUnit.MILLISECONDS.toNanos(100);
+    //Steady traffic mix, on every round of a node
+    private static final int BATTERY_EVERY_ROUNDS = 20;
+    private static final int HEARTBEAT_EVERY_ROUNDS = 10;
+    private static final int MYSENSORS_MAX_NODES = 254;
+    private static final String SKETCH_NAME = "LoadGenerator";
+    private static final String SKETCH_VERSION = "1.0";
+    private static final String RFLINK_PROTOCOL = "LoadGenerator";
+
+    private final GatewayLoadGenerator gateway;
+    private final Random random;
+    private final int nodes;
+    private final int sensors;
+    private final int presentationsPerNode;
+    private final AtomicLong generatedCount = new AtomicLong(0);
+    private final AtomicLong droppedCount = new AtomicLong(0);
+    private final AtomicLong txCount = new AtomicLong(0);
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private volatile boolean terminate = false;
+    private volatile boolean terminated = false;
+    private volatile long startTime = 0;
+    private volatile long endTime = 0;
+    private int rfLinkSequence = 0;
+
+    public LoadGenerator(GatewayLoadGenerator gateway) {
+        this.gateway = gateway;
+        this.random = new Random(gateway.getId());
+        int _nodes = Math.max(gateway.getNodes(), 1);
+        if (gateway.getNetworkType() == NETWORK_TYPE.MY_SENSORS) {
+            _nodes = Math.min(_nodes, MYSENSORS_MAX_NODES);
+        }
+        this.nodes = _nodes;
+        if (gateway.getNetworkType() == NETWORK_TYPE.RF_LINK) {
+            //RFLink sends temperature and humidity in a message and has no presentation messages
+            this.sensors = 1;
+            this.presentationsPerNode = 0;
+        } else {
+            this.sensors = Math.max(gateway.getSensorsPerNode(), 1);
+            //Node presentation, sketch name, sketch version and sensors presentation
+            this.presentationsPerNode = 3 + sensors;
+        }
+    }
+
+    public static boolean isSupported(NETWORK_TYPE networkType) {
+        switch (networkType) {
+            case MY_SENSORS:
+            case MY_CONTROLLER:
+            case RF_LINK:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    @Override
+    public void run() {
+        try {
+            waitForGateway();
+            startTime = System.currentTimeMillis();
+            long startNanoTime = System.nanoTime();
+            long interval = TimeUnit.SECONDS.toNanos(1) / Math.max(gateway.getMessagesPerSecond(), 1);
+            long durationNanoTime = gateway.getDuration() != null && gateway.getDuration() > 0
+                    ? TimeUnit.SECONDS.toNanos(gateway.getDuration()) : Long.MAX_VALUE;
+            long nextStatusUpdate = startTime + STATUS_UPDATE_INTERVAL;
+            long index = 0;
+            _logger.info("Load generator started. {}", gateway);
+            while (!terminate) {
+                long elapsed = System.nanoTime() - startNanoTime;
+                if (elapsed >= durationNanoTime) {
+                    break;
+                }
+                //Catch up with messages due by now, when this thread is late
+                long due = (elapsed / interval) + 1;
+                while (index < due && !terminate) {
+                    generate(index++);
+                }
+                long waitTime = (index * interval) - (System.nanoTime() - startNanoTime);
+                if (waitTime > 0) {
+                    LockSupport.parkNanos(Math.min(waitTime, MAX_PARK_TIME));
+                }
+                if (System.currentTimeMillis() >= nextStatusUpdate) {
+                    nextStatusUpdate = System.currentTimeMillis() + STATUS_UPDATE_INTERVAL;
+                    gateway.setStatus(STATE.UP, "Running. " + getSummary());
+                }
+            }
+            endTime = System.currentTimeMillis();
+            _logger.info("Load generator completed. {}, {}", getSummary(), gateway);
+            if (!terminate) {
+                gateway.setStatus(STATE.UP, "Completed. " + getSummary());
+            }
+        } catch (Exception ex) {
+            _logger.error("Load generator terminated! {}", gateway, ex);
+            gateway.setStatus(STATE.DOWN, "ERROR: " + ex.getMessage());
+        } finally {
+            if (endTime == 0) {
+                endTime = System.currentTimeMillis();
+            }
+            terminated = true;
+        }
+    }
+
+    //Raw messages are parsed with gateway details from McObjectManager
+    private void waitForGateway() throws InterruptedException {
+        long waitTime = GATEWAY_WAIT_TIMEOUT;
+        while (McObjectManager.getGateway(gateway.getId()) == null && waitTime > 0 && !terminate) {
+            Thread.sleep(100);
+            waitTime -= 100;
+        }
+    }
+
+    private void generate(long index) {
+        long presentations = (long) nodes * presentationsPerNode;
+        RawMessage rawMessage = null;
+        if (index < presentations) {
+            rawMessage = getPresentationMessage((int) (index / presentationsPerNode),
+                    (int) (index % presentationsPerNode));
+        } else {
+            long steadyIndex = index - presentations;
+            int node = (int) (steadyIndex % nodes);
+            long round = steadyIndex / nodes;
+            if (round % BATTERY_EVERY_ROUNDS == BATTERY_EVERY_ROUNDS - 1) {
+                rawMessage = getBatteryMessage(node);
+            } else if (round % HEARTBEAT_EVERY_ROUNDS == HEARTBEAT_EVERY_ROUNDS / 2
+                    && gateway.getNetworkType() != NETWORK_TYPE.RF_LINK) {
+                rawMessage = getHeartbeatMessage(node, round);
+            } else {
+                rawMessage = getSetMessage(node, (int) (round % sensors));
+            }
+        }
+        generatedCount.incrementAndGet();
+        if (!RawMessageQueue.getInstance().putMessage(rawMessage)) {
+            droppedCount.incrementAndGet();
+        }
+    }
+
+    private RawMessage getPresentationMessage(int node, int item) {
+        switch (item) {
+            case 0:
+                return getMessage(node, null, MESSAGE_TYPE.C_PRESENTATION,
+                        MESSAGE_TYPE_PRESENTATION.S_ARDUINO_NODE.name(),
+                        MYS_MESSAGE_TYPE_PRESENTATION.S_ARDUINO_NODE.ordinal(), "2.1.1");
+            case 1:
+                return getMessage(node, null, MESSAGE_TYPE.C_INTERNAL,
+                        MESSAGE_TYPE_INTERNAL.I_SKETCH_NAME.name(),
+                        MYS_MESSAGE_TYPE_INTERNAL.I_SKETCH_NAME.ordinal(), SKETCH_NAME);
+            case 2:
+                return getMessage(node, null, MESSAGE_TYPE.C_INTERNAL,
+                        MESSAGE_TYPE_INTERNAL.I_SKETCH_VERSION.name(),
+                        MYS_MESSAGE_TYPE_INTERNAL.I_SKETCH_VERSION.ordinal(), SKETCH_VERSION);
+            default:
+                int sensor = item - 3;
+                if (isTemperatureSensor(sensor)) {
+                    return getMessage(node, sensor, MESSAGE_TYPE.C_PRESENTATION,
+                            MESSAGE_TYPE_PRESENTATION.S_TEMP.name(),
+                            MYS_MESSAGE_TYPE_PRESENTATION.S_TEMP.ordinal(), "");
+                } else {
+                    return getMessage(node, sensor, MESSAGE_TYPE.C_PRESENTATION,
+                            MESSAGE_TYPE_PRESENTATION.S_HUM.name(),
+                            MYS_MESSAGE_TYPE_PRESENTATION.S_HUM.ordinal(), "");
+                }
+        }
+    }
+
+    private RawMessage getSetMessage(int node, int sensor) {
+        if (gateway.getNetworkType() == NETWORK_TYPE.RF_LINK) {
+            return getRFLinkMessage(node, false);
+        }
+        if (isTemperatureSensor(sensor)) {
+            return getMessage(node, sensor, MESSAGE_TYPE.C_SET, MESSAGE_TYPE_SET_REQ.V_TEMP.name(),
+                    MYS_MESSAGE_TYPE_SET_REQ.V_TEMP.ordinal(), McUtils.getDoubleAsString(getTemperature()));
+        } else {
+            return getMessage(node, sensor, MESSAGE_TYPE.C_SET, MESSAGE_TYPE_SET_REQ.V_HUM.name(),
+                    MYS_MESSAGE_TYPE_SET_REQ.V_HUM.ordinal(), String.valueOf(getHumidity()));
+        }
+    }
+
+    private RawMessage getHeartbeatMessage(int node, long round) {
+        return getMessage(node, null, MESSAGE_TYPE.C_INTERNAL, MESSAGE_TYPE_INTERNAL.I_HEARTBEAT_RESPONSE.name(),
+                MYS_MESSAGE_TYPE_INTERNAL.I_HEARTBEAT_RESPONSE.ordinal(), String.valueOf(round));
+    }
+
+    private RawMessage getBatteryMessage(int node) {
+        if (gateway.getNetworkType() == NETWORK_TYPE.RF_LINK) {
+            return getRFLinkMessage(node, true);
+        }
+        return getMessage(node, null, MESSAGE_TYPE.C_INTERNAL, MESSAGE_TYPE_INTERNAL.I_BATTERY_LEVEL.name(),
+                MYS_MESSAGE_TYPE_INTERNAL.I_BATTERY_LEVEL.ordinal(), String.valueOf(50 + random.nextInt(51)));
+    }
+
+    /**
+     * Returns message of MySensors serial or MyController MQTT format.
+     * sensor null - message of the node itself
+     */
+    private RawMessage getMessage(int node, Integer sensor, MESSAGE_TYPE type, String mcSubType, int mysSubType,
+            String payload) {
+        StringBuilder builder = new StringBuilder();
+        if (gateway.getNetworkType() == NETWORK_TYPE.MY_SENSORS) {
+            //node-id;child-sensor-id;message-type;ack;sub-type;payload
+            builder.append(node + 1).append(";")
+                    .append(sensor == null ? 255 : sensor + 1).append(";")
+                    .append(MYS_MESSAGE_TYPE.valueOf(type.name()).ordinal()).append(";")
+                    .append("0;")
+                    .append(mysSubType).append(";")
+                    .append(payload);
+            return getRawMessage(builder.toString(), null);
+        } else {
+            //MY_MQTT_TOPIC_PREFIX/NODE-EUI/SENSOR_ID/MESSAGE_TYPE/MESSAGE_SUB_TYPE/ACK
+            builder.append(GatewayLoadGenerator.MC_TOPIC_PREFIX)
+                    .append("/node-").append(node + 1)
+                    .append("/").append(sensor == null ? McMessage.SENSOR_BROADCAST_ID : String.valueOf(sensor + 1))
+                    .append("/").append(type.name())
+                    .append("/").append(mcSubType)
+                    .append("/").append(McMessage.NO_ACK);
+            return getRawMessage(payload, builder.toString());
+        }
+    }
+
+    //Format: 20;2D;UPM/Esic;ID=0001;TEMP=00cf;HUM=16;BAT=OK;
+    private RawMessage getRFLinkMessage(int node, boolean withBattery) {
+        int temperature = (int) Math.round(getTemperature() * 10);
+        StringBuilder builder = new StringBuilder();
+        builder.append("20;")
+                .append(String.format("%02X", rfLinkSequence++ & 0xFF)).append(";")
+                .append(RFLINK_PROTOCOL).append(";")
+                .append("ID=").append(String.format("%04X", node + 1)).append(";")
+                .append("TEMP=").append(String.format("%04x", temperature < 0 ? 0x8000 | -temperature
+                        : temperature)).append(";")
+                .append("HUM=").append(getHumidity()).append(";");
+        if (withBattery) {
+            builder.append("BAT=OK;");
+        }
+        return getRawMessage(builder.toString(), null);
+    }
+
+    private RawMessage getRawMessage(String data, String subData) {
+        return RawMessage.builder()
+                .gatewayId(gateway.getId())
+                .data(data)
+                .subData(subData)
+                .networkType(gateway.getNetworkType())
+                .timestamp(System.currentTimeMillis())
+                .build();
+    }
+
+    private boolean isTemperatureSensor(int sensor) {
+        return sensor % 2 == 0;
+    }
+
+    private double getTemperature() {
+        return 20.0 + (random.nextGaussian() * 2.0);
+    }
+
+    private int getHumidity() {
+        return 40 + random.nextInt(21);
+    }
+
+    //End to end latency of a message, from queue entry to end of message engine
+    public void messageCompleted(long micros) {
+        latency.record(micros);
+    }
+
+    //Messages sent to this gateway
+    public void write(RawMessage rawMessage) {
+        txCount.incrementAndGet();
+        _logger.debug("Tx message received:{}", rawMessage);
+    }
+
+    public void setTerminate(boolean terminate) {
+        this.terminate = terminate;
+    }
+
+    public boolean isTerminated() {
+        return terminated;
+    }
+
+    public GatewayLoadGenerator getGateway() {
+        return gateway;
+    }
+
+    private long getElapsedTime() {
+        if (startTime == 0) {
+            return 0;
+        }
+        return (endTime != 0 ? endTime : System.currentTimeMillis()) - startTime;
+    }
+
+    private double getAchievedRate() {
+        long elapsed = getElapsedTime();
+        if (elapsed <= 0) {
+            return 0;
+        }
+        return generatedCount.get() * 1000.0 / elapsed;
+    }
+
+    private String getSummary() {
+        Map<String, Object> latencySnapshot = latency.getSnapshot();
+        StringBuilder builder = new StringBuilder();
+        builder.append("Generated:").append(generatedCount.get())
+                .append(", Dropped:").append(droppedCount.get())
+                .append(", Rate:").append(McUtils.getDoubleAsString(getAchievedRate())).append(" msg/s")
+                .append(", Latency(p50/p99/max):")
+                .append(latencySnapshot.get("p50")).append("/")
+                .append(latencySnapshot.get("p99")).append("/")
+                .append(latencySnapshot.get("max")).append(" us");
+        return builder.toString();
+    }
+
+    public Map<String, Object> getStatistics() {
+        HashMap<String, Object> statistics = new HashMap<String, Object>();
+        statistics.put("gatewayId", gateway.getId());
+        statistics.put("networkType", gateway.getNetworkType().getText());
+        statistics.put("nodes", nodes);
+        statistics.put("configuredRate", gateway.getMessagesPerSecond());
+        statistics.put("achievedRate", getAchievedRate());
+        statistics.put("generatedCount", generatedCount.get());
+        statistics.put("droppedCount", droppedCount.get());
+        statistics.put("txCount", txCount.get());
+        statistics.put("elapsedTime", getElapsedTime());
+        statistics.put("latency", latency.getSnapshot());
+        statistics.put("running", !terminated);
+        return statistics;
+    }
+}
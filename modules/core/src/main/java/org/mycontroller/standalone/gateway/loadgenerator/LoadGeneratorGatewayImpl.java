@@ -0,0 +1,105 @@
+/*
+ * Copyright 2015-2017 Jeeva Kandasamy (jkandasa@gmail.com)
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mycontroller.standalone.gateway.loadgenerator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.mycontroller.standalone.AppProperties.STATE;
+import org.mycontroller.standalone.db.tables.GatewayTable;
+import org.mycontroller.standalone.gateway.GatewayException;
+import org.mycontroller.standalone.gateway.GatewayUtils;
+import org.mycontroller.standalone.gateway.IGateway;
+import org.mycontroller.standalone.gateway.model.GatewayLoadGenerator;
+import org.mycontroller.standalone.message.IMessageCompletionListener;
+import org.mycontroller.standalone.message.MessageTracer;
+import org.mycontroller.standalone.message.RawMessage;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Load generator gateway, to test throughput of message processing without real devices.
+ * @author Jeeva Kandasamy (jkandasa)
+ * @since 0.0.3
+ */
+@Slf4j
+public class LoadGeneratorGatewayImpl implements IGateway {
+    private static final ConcurrentHashMap<Integer, LoadGenerator> GENERATORS =
+            new ConcurrentHashMap<Integer, LoadGenerator>();
+    //Registered while a load generator is running, messages are timed only when someone listens
+    private static final IMessageCompletionListener COMPLETION_LISTENER = new IMessageCompletionListener() {
+        @Override
+        public void messageCompleted(Integer gatewayId, long micros) {
+            LoadGenerator loadGenerator = GENERATORS.get(gatewayId);
+            if (loadGenerator != null) {
+                loadGenerator.messageCompleted(micros);
+            }
+        }
+    };
+    private LoadGenerator loadGenerator = null;
+
+    public LoadGeneratorGatewayImpl(GatewayTable gatewayTable) {
+        GatewayLoadGenerator gateway = (GatewayLoadGenerator) GatewayUtils.getGateway(gatewayTable);
+        loadGenerator = new LoadGenerator(gateway);
+        if (!LoadGenerator.isSupported(gateway.getNetworkType())) {
+            _logger.error("Load generator not supported for network type:{}, {}",
+                    gateway.getNetworkType().getText(), gateway);
+            gateway.setStatus(STATE.DOWN, "ERROR: Network type not supported: " + gateway.getNetworkType().getText());
+            loadGenerator.setTerminate(true);
+            return;
+        }
+        synchronized (GENERATORS) {
+            if (GENERATORS.isEmpty()) {
+                MessageTracer.addCompletionListener(COMPLETION_LISTENER);
+            }
+            GENERATORS.put(gateway.getId(), loadGenerator);
+        }
+        new Thread(loadGenerator, "mc-load-generator-" + gateway.getId()).start();
+        gateway.setStatus(STATE.UP, "Started");
+    }
+
+    public static List<Map<String, Object>> getStatistics() {
+        List<Map<String, Object>> statistics = new ArrayList<Map<String, Object>>();
+        for (LoadGenerator loadGenerator : GENERATORS.values()) {
+            statistics.add(loadGenerator.getStatistics());
+        }
+        return statistics;
+    }
+
+    @Override
+    public synchronized void close() {
+        loadGenerator.setTerminate(true);
+        synchronized (GENERATORS) {
+            if (GENERATORS.remove(loadGenerator.getGateway().getId(), loadGenerator) && GENERATORS.isEmpty()) {
+                MessageTracer.removeCompletionListener(COMPLETION_LISTENER);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void write(RawMessage rawMessage) throws GatewayException {
+        loadGenerator.write(rawMessage);
+    }
+
+    @Override
+    public GatewayLoadGenerator getGateway() {
+        return loadGenerator.getGateway();
+    }
+
+}
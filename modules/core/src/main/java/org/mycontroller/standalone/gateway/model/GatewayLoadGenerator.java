@@ -0,0 +1,85 @@
+/*
+ * Copyright 2015-2017 Jeeva Kandasamy (jkandasa@gmail.com)
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mycontroller.standalone.gateway.model;
+
+import org.mycontroller.standalone.db.tables.GatewayTable;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+
+/**
+ * Synthetic gateway, generates traffic of virtual nodes on the selected network type.
+ * @author Jeeva Kandasamy (jkandasa)
+ * @since 0.0.3
+ */
+@Data
+@EqualsAndHashCode(callSuper = true)
+@ToString(callSuper = true)
+public class GatewayLoadGenerator extends Gateway {
+    public static final String KEY_MESSAGES_PER_SECOND = "mps";
+    public static final String KEY_NODES = "nc";
+    public static final String KEY_SENSORS_PER_NODE = "spn";
+    public static final String KEY_DURATION = "d";
+    //Topic prefix of MyController network messages
+    public static final String MC_TOPIC_PREFIX = "mc-load-generator";
+
+    private Integer messagesPerSecond;
+    private Integer nodes;
+    private Integer sensorsPerNode;
+    //Run duration in seconds, 0 - runs until the gateway disabled
+    private Long duration;
+
+    public GatewayLoadGenerator() {
+
+    }
+
+    public GatewayLoadGenerator(GatewayTable gatewayTable) {
+        updateGateway(gatewayTable);
+    }
+
+    @Override
+    @JsonIgnore
+    public GatewayTable getGatewayTable() {
+        GatewayTable gatewayTable = super.getGatewayTable();
+        gatewayTable.getProperties().put(KEY_MESSAGES_PER_SECOND, messagesPerSecond);
+        gatewayTable.getProperties().put(KEY_NODES, nodes);
+        gatewayTable.getProperties().put(KEY_SENSORS_PER_NODE, sensorsPerNode);
+        gatewayTable.getProperties().put(KEY_DURATION, duration);
+        return gatewayTable;
+    }
+
+    @Override
+    @JsonIgnore
+    public void updateGateway(GatewayTable gatewayTable) {
+        super.updateGateway(gatewayTable);
+        messagesPerSecond = (Integer) gatewayTable.getProperty(KEY_MESSAGES_PER_SECOND, 10);
+        nodes = (Integer) gatewayTable.getProperty(KEY_NODES, 10);
+        sensorsPerNode = (Integer) gatewayTable.getProperty(KEY_SENSORS_PER_NODE, 2);
+        duration = (Long) gatewayTable.getProperty(KEY_DURATION, 0L);
+    }
+
+    @Override
+    public String getConnectionDetails() {
+        StringBuilder builder = new StringBuilder();
+        builder.append("Rate:").append(getMessagesPerSecond()).append(" msg/s");
+        builder.append(", Nodes:").append(getNodes());
+        return builder.toString();
+    }
+}
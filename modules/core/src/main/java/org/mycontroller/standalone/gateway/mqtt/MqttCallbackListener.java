@@ -16,8 +16,10 @@
  */
 package org.mycontroller.standalone.gateway.mqtt;
 
+import java.util.Arrays;
+
 import org.apache.commons.lang.StringUtils;
-import org.eclipse.paho.client.mqttv3.IMqttClient;
+import org.eclipse.paho.client.mqttv3.IMqttAsyncClient;
 import org.eclipse.paho.client.mqttv3.IMqttDeliveryToken;
 import org.eclipse.paho.client.mqttv3.MqttCallback;
 import org.eclipse.paho.client.mqttv3.MqttConnectOptions;
@@ -38,24 +40,37 @@ import lombok.extern.slf4j.Slf4j;
  */
 @Slf4j
 public class MqttCallbackListener implements MqttCallback {
-    private IMqttClient mqttClient;
+    //Subscribe QoS, same as default QoS of blocking client subscribe
+    private static final int SUBSCRIBE_QOS = 1;
+    private IMqttAsyncClient mqttClient;
+    private MqttGatewayImpl gatewayImpl;
     private GatewayMQTT gateway;
     private MqttConnectOptions connectOptions;
     private boolean reconnect = true;
     private boolean reconnectRunning = false;
     public static final long RECONNECT_WAIT_TIME = McUtils.SECOND * 5;
 
-    public MqttCallbackListener(IMqttClient mqttClient, GatewayMQTT gateway, MqttConnectOptions connectOptions) {
+    public MqttCallbackListener(IMqttAsyncClient mqttClient, MqttGatewayImpl gatewayImpl,
+            MqttConnectOptions connectOptions) {
         this.mqttClient = mqttClient;
-        this.gateway = gateway;
+        this.gatewayImpl = gatewayImpl;
+        this.gateway = gatewayImpl.getGateway();
         this.connectOptions = connectOptions;
     }
 
+    public static void subscribe(IMqttAsyncClient mqttClient, GatewayMQTT gateway) throws MqttException {
+        String[] topics = GatewayUtils.getMqttTopics(gateway.getTopicsSubscribe());
+        int[] qos = new int[topics.length];
+        Arrays.fill(qos, SUBSCRIBE_QOS);
+        mqttClient.subscribe(topics, qos).waitForCompletion();
+    }
+
     @Override
     public void connectionLost(Throwable throwable) {
         _logger.error("MQTT Gateway[id:{}, Name:{}, serverURI:{}] connection lost! Error:{}",
                 gateway.getId(), gateway.getName(), mqttClient.getServerURI(), throwable.getMessage());
         gateway.setStatus(STATE.DOWN, "ERROR: Connection lost! [" + throwable.getMessage() + "]");
+        gatewayImpl.resetInflightWindow();
         tryReconnect();
     }
 
@@ -78,9 +93,10 @@ public class MqttCallbackListener implements MqttCallback {
                 _logger.warn("Duplicate message received!! {}", message);
             }
             _logger.debug("Message Received, Topic:[{}], Payload:[{}]", topic, message);
+            //Payload decoded when the message is processed, keeps this callback thread free
             RawMessageQueue.getInstance().putMessage(RawMessage.builder()
                     .gatewayId(gateway.getId())
-                    .data(message.toString())
+                    .data(message.getPayload())
                     .subData(topic)
                     .networkType(gateway.getNetworkType())
                     .timestamp(System.currentTimeMillis())
@@ -116,8 +132,8 @@ public class MqttCallbackListener implements MqttCallback {
                 break;
             } else {
                 try {
-                    mqttClient.connect(connectOptions);
-                    mqttClient.subscribe(GatewayUtils.getMqttTopics(gateway.getTopicsSubscribe()));
+                    mqttClient.connect(connectOptions).waitForCompletion();
+                    subscribe(mqttClient, gateway);
                     _logger.info("MQTT Gateway[{}] Reconnected successfully...", mqttClient.getServerURI());
                     gateway.setStatus(STATE.UP, "Reconnected successfully...");
                     if (mqttClient.isConnected()) {
@@ -1,5 +1,5 @@
 /*
- * Copyright 2015-2016 Jeeva Kandasamy (jkandasa@gmail.com)
+ * Copyright 2015-2017 Jeeva Kandasamy (jkandasa@gmail.com)
  * and other contributors as indicated by the @author tags.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
@@ -16,54 +16,88 @@
  */
 package org.mycontroller.standalone.gateway.mqtt;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
 import org.apache.commons.lang.RandomStringUtils;
-import org.eclipse.paho.client.mqttv3.IMqttClient;
-import org.eclipse.paho.client.mqttv3.MqttClient;
+import org.eclipse.paho.client.mqttv3.IMqttActionListener;
+import org.eclipse.paho.client.mqttv3.IMqttAsyncClient;
+import org.eclipse.paho.client.mqttv3.IMqttToken;
+import org.eclipse.paho.client.mqttv3.MqttAsyncClient;
 import org.eclipse.paho.client.mqttv3.MqttConnectOptions;
 import org.eclipse.paho.client.mqttv3.MqttException;
-import org.eclipse.paho.client.mqttv3.MqttMessage;
+import org.mycontroller.standalone.AppProperties;
 import org.mycontroller.standalone.AppProperties.STATE;
 import org.mycontroller.standalone.db.tables.GatewayTable;
 import org.mycontroller.standalone.gateway.GatewayException;
-import org.mycontroller.standalone.gateway.GatewayUtils;
 import org.mycontroller.standalone.gateway.IGateway;
 import org.mycontroller.standalone.gateway.model.GatewayMQTT;
 import org.mycontroller.standalone.message.RawMessage;
+import org.mycontroller.standalone.utils.McUtils;
 
 import lombok.extern.slf4j.Slf4j;
 
 /**
+ * MQTT gateway on asynchronous client. Tx messages are published without waiting for the broker
+ * acknowledgement, up to the in-flight window (mcc.gateway.mqtt.max.inflight).
+ * Result of the publishes is reported on the gateway statistics as Tx status, and on the message itself
+ * the same way as the other gateways report a failed write: logged with the message. There is no other
+ * per message Tx status, Tx messages are not tracked after the write.
  * @author Jeeva Kandasamy (jkandasa)
  * @since 0.0.2
  */
 @Slf4j
 public class MqttGatewayImpl implements IGateway {
+    private static final ConcurrentHashMap<Integer, MqttGatewayImpl> GATEWAYS =
+            new ConcurrentHashMap<Integer, MqttGatewayImpl>();
 
     public static final long TIME_TO_WAIT = 100;
     public static final long DISCONNECT_TIME_OUT = 1000 * 1;
     public static final int CONNECTION_TIME_OUT = 1000 * 5;
     public static final int KEEP_ALIVE = 1000 * 5;
+    //Maximum wait time for a free slot on in-flight window
+    public static final long INFLIGHT_WAIT_TIME = McUtils.SECOND * 5;
     private GatewayMQTT gateway = null;
 
-    private IMqttClient mqttClient;
+    private IMqttAsyncClient mqttClient;
     private MqttCallbackListener mqttCallbackListener;
+    private final int maxInflight;
+    //Replaced on connection lost, completions of old connection are released to old window
+    private volatile Semaphore inflightWindow;
+    private final AtomicLong publishedCount = new AtomicLong(0);
+    private final AtomicLong deliveredCount = new AtomicLong(0);
+    private final AtomicLong failedCount = new AtomicLong(0);
+    //Tx status, updated on publish completion
+    private volatile long lastDeliveredTime = 0;
+    private volatile long lastFailedTime = 0;
+    private volatile String lastError = null;
 
     public MqttGatewayImpl(GatewayTable gatewayTable) {
+        maxInflight = Math.max(AppProperties.getInstance().getGatewayMqttMaxInflight(), 1);
+        inflightWindow = new Semaphore(maxInflight);
         try {
             this.gateway = new GatewayMQTT(gatewayTable);
-            mqttClient = new MqttClient(this.gateway.getBrokerHost(), this.gateway.getClientId()
+            mqttClient = new MqttAsyncClient(this.gateway.getBrokerHost(), this.gateway.getClientId()
                     + "_" + RandomStringUtils.randomAlphanumeric(5));
             MqttConnectOptions connectOptions = new MqttConnectOptions();
             connectOptions.setConnectionTimeout(CONNECTION_TIME_OUT);
             connectOptions.setKeepAliveInterval(KEEP_ALIVE);
+            connectOptions.setMaxInflight(maxInflight);
             if (this.gateway.getUsername() != null && this.gateway.getUsername().length() > 0) {
                 connectOptions.setUserName(this.gateway.getUsername());
                 connectOptions.setPassword(this.gateway.getPassword().toCharArray());
             }
-            mqttClient.connect(connectOptions);
-            mqttCallbackListener = new MqttCallbackListener(mqttClient, this.gateway, connectOptions);
+            mqttCallbackListener = new MqttCallbackListener(mqttClient, this, connectOptions);
             mqttClient.setCallback(mqttCallbackListener);
-            mqttClient.subscribe(GatewayUtils.getMqttTopics(gateway.getTopicsSubscribe()));
+            mqttClient.connect(connectOptions).waitForCompletion();
+            MqttCallbackListener.subscribe(mqttClient, this.gateway);
+            GATEWAYS.put(this.gateway.getId(), this);
             _logger.info("MQTT Gateway[{}] connected successfully..", mqttClient.getServerURI());
             this.gateway.setStatus(STATE.UP, "Connected Successfully");
         } catch (MqttException ex) {
@@ -71,42 +105,95 @@ public class MqttGatewayImpl implements IGateway {
                     + ", Reload this gateway when MQTT Broker comes UP");
             _logger.error("Unable to connect with MQTT broker gateway[{}], Reason Code: {}, "
                     + "Reload gateway [Id:{}, Name:{}] service when MQTT Broker comes UP!",
-                    mqttClient.getServerURI(), ex.getReasonCode(), gateway.getName(), ex);
+                    gateway.getBrokerHost(), ex.getReasonCode(), gateway.getId(), gateway.getName(), ex);
+        }
+    }
+
+    public static List<Map<String, Object>> getStatistics() {
+        List<Map<String, Object>> statistics = new ArrayList<Map<String, Object>>();
+        for (MqttGatewayImpl gatewayImpl : GATEWAYS.values()) {
+            HashMap<String, Object> gatewayStatistics = new HashMap<String, Object>();
+            gatewayStatistics.put("gatewayId", gatewayImpl.gateway.getId());
+            gatewayStatistics.put("connected", gatewayImpl.mqttClient.isConnected());
+            gatewayStatistics.put("maxInflight", gatewayImpl.maxInflight);
+            gatewayStatistics.put("inflight", gatewayImpl.maxInflight
+                    - gatewayImpl.inflightWindow.availablePermits());
+            gatewayStatistics.put("publishedCount", gatewayImpl.publishedCount.get());
+            gatewayStatistics.put("deliveredCount", gatewayImpl.deliveredCount.get());
+            gatewayStatistics.put("failedCount", gatewayImpl.failedCount.get());
+            gatewayStatistics.put("lastDeliveredTime", gatewayImpl.lastDeliveredTime);
+            gatewayStatistics.put("lastFailedTime", gatewayImpl.lastFailedTime);
+            gatewayStatistics.put("lastError", gatewayImpl.lastError);
+            statistics.add(gatewayStatistics);
         }
+        return statistics;
+    }
+
+    //Publishes waiting for completion on lost connection will not be completed by the new connection
+    void resetInflightWindow() {
+        inflightWindow = new Semaphore(maxInflight);
     }
 
+    //Not synchronized, waits for the in-flight window without holding the gateway lock
     @Override
-    public synchronized void write(RawMessage rawMessage) throws GatewayException {
+    public void write(RawMessage rawMessage) throws GatewayException {
         _logger.debug("Message about to send, Topic:[{}], PayLoad:[{}]", rawMessage.getSubData(),
                 rawMessage.getData());
+        byte[] payload = rawMessage.getGWBytes();
+        String[] topicsPublish = rawMessage.getSubData().split(GatewayMQTT.TOPICS_SPLITER);
+        for (String topic : topicsPublish) {
+            publish(rawMessage, topic, payload);
+        }
+    }
+
+    private void publish(RawMessage rawMessage, String topic, byte[] payload) throws GatewayException {
+        Semaphore window = inflightWindow;
         try {
-            MqttMessage message = new MqttMessage(((String) rawMessage.getData()).getBytes());
-            message.setQos(gateway.getQos());
-            String[] topicsPublish = rawMessage.getSubData().split(GatewayMQTT.TOPICS_SPLITER);
-            for (String topic : topicsPublish) {
-                mqttClient.publish(topic, message);
+            if (!window.tryAcquire(INFLIGHT_WAIT_TIME, TimeUnit.MILLISECONDS)) {
+                updateFailure("In-flight window full [" + maxInflight + "]");
+                throw new GatewayException(IGateway.GATEWAY_STATUS.GATEWAY_ERROR + ": In-flight window full ["
+                        + maxInflight + "], Topic: " + topic);
             }
-        } catch (MqttException ex) {
-            if (ex.getMessage().contains("Timed out waiting for a response from the server")) {
-                _logger.debug(ex.getMessage());
-            } else {
-                _logger.error("Exception, Reason Code:{}", ex.getReasonCode(), ex);
-                throw new GatewayException(IGateway.GATEWAY_STATUS.GATEWAY_ERROR + ": Reason Code: "
-                        + ex.getReasonCode() + ", Error: "
-                        + ex.getMessage());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new GatewayException(IGateway.GATEWAY_STATUS.GATEWAY_ERROR + ": Interrupted, Topic: " + topic);
+        }
+        try {
+            //Keeps the publish order of concurrent writers
+            synchronized (this) {
+                mqttClient.publish(topic, payload, gateway.getQos(), false, null,
+                        new PublishListener(rawMessage, topic, window));
             }
+            publishedCount.incrementAndGet();
+        } catch (MqttException ex) {
+            window.release();
+            updateFailure(ex.getMessage());
+            _logger.error("Exception, Reason Code:{}", ex.getReasonCode(), ex);
+            throw new GatewayException(IGateway.GATEWAY_STATUS.GATEWAY_ERROR + ": Reason Code: "
+                    + ex.getReasonCode() + ", Error: "
+                    + ex.getMessage());
         }
     }
 
+    private void updateFailure(String error) {
+        failedCount.incrementAndGet();
+        lastFailedTime = System.currentTimeMillis();
+        lastError = error;
+    }
+
     @Override
     public void close() {
         try {
+            if (gateway != null) {
+                GATEWAYS.remove(gateway.getId(), this);
+                MqttTopicRouter.remove(gateway.getId());
+            }
             if (mqttCallbackListener != null) {
                 mqttCallbackListener.stopReconnect();
             }
             if (mqttClient != null) {
                 if (mqttClient.isConnected()) {
-                    mqttClient.disconnect(DISCONNECT_TIME_OUT);
+                    mqttClient.disconnect(DISCONNECT_TIME_OUT).waitForCompletion(DISCONNECT_TIME_OUT);
                 }
                 mqttClient.close();
             }
@@ -120,4 +207,33 @@ public class MqttGatewayImpl implements IGateway {
         return gateway;
     }
 
+    private class PublishListener implements IMqttActionListener {
+        private final RawMessage rawMessage;
+        private final String topic;
+        private final Semaphore window;
+
+        private PublishListener(RawMessage rawMessage, String topic, Semaphore window) {
+            this.rawMessage = rawMessage;
+            this.topic = topic;
+            this.window = window;
+        }
+
+        @Override
+        public void onSuccess(IMqttToken token) {
+            window.release();
+            deliveredCount.incrementAndGet();
+            lastDeliveredTime = System.currentTimeMillis();
+            _logger.debug("Message delivered to MQTT Gateway, Topic:[{}], {}", topic, rawMessage);
+        }
+
+        @Override
+        public void onFailure(IMqttToken token, Throwable exception) {
+            window.release();
+            updateFailure(exception == null ? "Delivery failed" : exception.getMessage());
+            _logger.error("Message sending failed! MQTT Gateway[id:{}, Name:{}], Topic:[{}], Error:{}, {}",
+                    gateway.getId(), gateway.getName(), topic, exception == null ? null : exception.getMessage(),
+                    rawMessage);
+        }
+    }
+
 }
@@ -0,0 +1,195 @@
+/*
+ * Copyright 2015-2017 Jeeva Kandasamy (jkandasa@gmail.com)
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mycontroller.standalone.gateway.mqtt;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.mycontroller.standalone.gateway.model.GatewayMQTT;
+
+/**
+ * Topic routing table of a MQTT gateway, compiled from subscribe and publish topics of the gateway.
+ * Received topics are matched against subscribe topics in place, without splitting the topic.
+ * Outbound topic prefixes (PUBLISH-TOPIC/NODE/SENSOR/) are cached per node and sensor.
+ * Routing table is recompiled when topics of the gateway changed.
+ * @author Jeeva Kandasamy (jkandasa)
+ * @since 0.0.3
+ */
+public class MqttTopicRouter {
+    public static final char LEVEL_SEPARATOR = '/';
+    private static final String SINGLE_LEVEL_WILDCARD = "+";
+
+    private static final ConcurrentHashMap<Integer, MqttTopicRouter> ROUTERS =
+            new ConcurrentHashMap<Integer, MqttTopicRouter>();
+
+    private final String topicsSubscribe;
+    private final String topicsPublish;
+    // subscribe topics, split in to levels
+    private final String[][] subscribeLevels;
+    // publish topics, trimmed
+    private final String[] publishTopics;
+    // node -> sensor -> outbound topic prefixes
+    private final ConcurrentHashMap<String, ConcurrentHashMap<String, String[]>> publishPrefixes =
+            new ConcurrentHashMap<String, ConcurrentHashMap<String, String[]>>();
+
+    private MqttTopicRouter(String topicsSubscribe, String topicsPublish) {
+        this.topicsSubscribe = topicsSubscribe;
+        this.topicsPublish = topicsPublish;
+        if (topicsSubscribe == null) {
+            subscribeLevels = new String[0][];
+        } else {
+            String[] topics = topicsSubscribe.split(GatewayMQTT.TOPICS_SPLITER);
+            subscribeLevels = new String[topics.length][];
+            for (int index = 0; index < topics.length; index++) {
+                subscribeLevels[index] = topics[index].split(String.valueOf(LEVEL_SEPARATOR));
+            }
+        }
+        if (topicsPublish == null) {
+            publishTopics = new String[0];
+        } else {
+            publishTopics = topicsPublish.split(GatewayMQTT.TOPICS_SPLITER);
+            for (int index = 0; index < publishTopics.length; index++) {
+                publishTopics[index] = publishTopics[index].trim();
+            }
+        }
+    }
+
+    public static MqttTopicRouter get(GatewayMQTT gateway) {
+        MqttTopicRouter router = ROUTERS.get(gateway.getId());
+        if (router == null || !router.isCompiledFrom(gateway)) {
+            router = new MqttTopicRouter(gateway.getTopicsSubscribe(), gateway.getTopicsPublish());
+            ROUTERS.put(gateway.getId(), router);
+        }
+        return router;
+    }
+
+    public static void remove(Integer gatewayId) {
+        ROUTERS.remove(gatewayId);
+    }
+
+    private boolean isCompiledFrom(GatewayMQTT gateway) {
+        return equals(topicsSubscribe, gateway.getTopicsSubscribe())
+                && equals(topicsPublish, gateway.getTopicsPublish());
+    }
+
+    /**
+     * @param topic received topic, SUBSCRIBE-TOPIC/LEVELS...
+     * @return index of the first level after the subscribe topic.
+     * When the topic does not match with any subscribe topic, index after the first level
+     */
+    public int getLevelsOffset(String topic) {
+        for (String[] levels : subscribeLevels) {
+            int offset = match(topic, levels);
+            if (offset >= 0) {
+                return offset;
+            }
+        }
+        return topic.indexOf(LEVEL_SEPARATOR) + 1;
+    }
+
+    /**
+     * @param topic outbound topic, PUBLISH-TOPIC/LEVELS..., more than one topics can be separated with
+     * {@link GatewayMQTT#TOPICS_SPLITER}
+     * @return index of the first level after the publish topic.
+     * When the topic does not start with any publish topic, index after the first level
+     */
+    public int getPublishLevelsOffset(String topic) {
+        for (String prefix : publishTopics) {
+            if (topic.length() > prefix.length() && topic.startsWith(prefix)
+                    && topic.charAt(prefix.length()) == LEVEL_SEPARATOR) {
+                return prefix.length() + 1;
+            }
+        }
+        return topic.indexOf(LEVEL_SEPARATOR) + 1;
+    }
+
+    /**
+     * @return outbound topic prefixes of the node and sensor, PUBLISH-TOPIC/NODE/SENSOR/
+     */
+    public String[] getPublishPrefixes(String node, String sensor) {
+        if (node == null || sensor == null) {
+            return getPublishPrefixes(topicsPublish, node, sensor);
+        }
+        ConcurrentHashMap<String, String[]> sensors = publishPrefixes.get(node);
+        if (sensors == null) {
+            sensors = new ConcurrentHashMap<String, String[]>();
+            ConcurrentHashMap<String, String[]> existing = publishPrefixes.putIfAbsent(node, sensors);
+            if (existing != null) {
+                sensors = existing;
+            }
+        }
+        String[] prefixes = sensors.get(sensor);
+        if (prefixes == null) {
+            prefixes = getPublishPrefixes(topicsPublish, node, sensor);
+            sensors.put(sensor, prefixes);
+        }
+        return prefixes;
+    }
+
+    public static String[] getPublishPrefixes(String topicsPublish, String node, String sensor) {
+        String[] prefixes = topicsPublish.split(GatewayMQTT.TOPICS_SPLITER);
+        for (int index = 0; index < prefixes.length; index++) {
+            prefixes[index] = prefixes[index].trim() + LEVEL_SEPARATOR + node + LEVEL_SEPARATOR + sensor
+                    + LEVEL_SEPARATOR;
+        }
+        return prefixes;
+    }
+
+    /**
+     * @return topics of all the prefixes with the given tail, separated with {@link GatewayMQTT#TOPICS_SPLITER}
+     */
+    public static String getTopic(String[] prefixes, String tail) {
+        if (prefixes.length == 1) {
+            return prefixes[0].concat(tail);
+        }
+        StringBuilder builder = new StringBuilder();
+        for (String prefix : prefixes) {
+            if (builder.length() > 0) {
+                builder.append(GatewayMQTT.TOPICS_SPLITER);
+            }
+            builder.append(prefix).append(tail);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * @return end index of the level started at the given index
+     */
+    public static int getLevelEnd(String topic, int start) {
+        int end = topic.indexOf(LEVEL_SEPARATOR, start);
+        return end < 0 ? topic.length() : end;
+    }
+
+    private static int match(String topic, String[] levels) {
+        int offset = 0;
+        for (String level : levels) {
+            if (offset >= topic.length()) {
+                return -1;
+            }
+            int end = getLevelEnd(topic, offset);
+            if (!level.equals(SINGLE_LEVEL_WILDCARD)
+                    && (level.length() != end - offset || !topic.startsWith(level, offset))) {
+                return -1;
+            }
+            offset = end + 1;
+        }
+        return offset;
+    }
+
+    private static boolean equals(String first, String second) {
+        return first == null ? second == null : first.equals(second);
+    }
+}
@@ -17,9 +17,8 @@
 package org.mycontroller.standalone.gateway.serialport;
 
 import org.mycontroller.standalone.AppProperties.STATE;
+import org.mycontroller.standalone.gateway.GatewayRxFramer;
 import org.mycontroller.standalone.gateway.model.GatewaySerial;
-import org.mycontroller.standalone.message.RawMessage;
-import org.mycontroller.standalone.message.RawMessageQueue;
 
 import jssc.SerialPort;
 import jssc.SerialPortEvent;
@@ -35,51 +34,27 @@ import lombok.extern.slf4j.Slf4j;
 public class SerialDataListenerJssc implements SerialPortEventListener {
     private SerialPort serialPort;
     private GatewaySerial gateway;
+    private final GatewayRxFramer framer;
 
     public SerialDataListenerJssc(SerialPort serialPort, GatewaySerial gateway) {
         this.serialPort = serialPort;
         this.gateway = gateway;
+        this.framer = new GatewayRxFramer(gateway, MYCSerialPort.SERIAL_DATA_MAX_SIZE);
     }
 
-    StringBuilder message = new StringBuilder();
-
     @Override
     public void serialEvent(SerialPortEvent event) {
         if (event.isRXCHAR() && event.getEventValue() > 0) {
             try {
                 byte[] buffer = serialPort.readBytes();
-                for (byte b : buffer) {
-                    if ((b == SerialPortCommon.MESSAGE_SPLITTER) && message.length() > 0) {
-                        String toProcess = message.toString();
-                        _logger.debug("Received a message:[{}]", toProcess);
-                        //Send Message to message factory
-                        RawMessageQueue.getInstance().putMessage(RawMessage.builder()
-                                .gatewayId(gateway.getId())
-                                .data(toProcess)
-                                .networkType(gateway.getNetworkType())
-                                .timestamp(System.currentTimeMillis())
-                                .build());
-                        message.setLength(0);
-                    } else if (b != SerialPortCommon.MESSAGE_SPLITTER) {
-                        _logger.trace("Received a char:[{}]", ((char) b));
-                        message.append((char) b);
-                    } else if (message.length() >= MYCSerialPort.SERIAL_DATA_MAX_SIZE) {
-                        _logger.warn(
-                                "Serial receive buffer size reached to MAX level[{} chars], "
-                                        + "Now clearing the buffer. Existing data:[{}]",
-                                MYCSerialPort.SERIAL_DATA_MAX_SIZE, message.toString());
-                        message.setLength(0);
-                    } else {
-                        _logger.debug("Received MESSAGE_SPLITTER and current message length is ZERO! Nothing to do");
-                    }
-                }
+                framer.add(buffer, 0, buffer.length);
             } catch (SerialPortException ex) {
                 _logger.error("Serail Event Exception, ", ex);
                 gateway.setStatus(STATE.DOWN, "ERROR: " + ex.getMessage());
-                message.setLength(0);
+                framer.reset();
             } catch (Exception ex) {
                 _logger.error("Exception,", ex);
-                message.setLength(0);
+                framer.reset();
             }
         }
     }
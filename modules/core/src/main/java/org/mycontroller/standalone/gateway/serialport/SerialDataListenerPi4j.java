@@ -19,9 +19,8 @@ package org.mycontroller.standalone.gateway.serialport;
 import java.io.IOException;
 
 import org.mycontroller.standalone.AppProperties.STATE;
+import org.mycontroller.standalone.gateway.GatewayRxFramer;
 import org.mycontroller.standalone.gateway.model.GatewaySerial;
-import org.mycontroller.standalone.message.RawMessage;
-import org.mycontroller.standalone.message.RawMessageQueue;
 
 import com.pi4j.io.serial.SerialDataEvent;
 import com.pi4j.io.serial.SerialDataEventListener;
@@ -34,50 +33,26 @@ import lombok.extern.slf4j.Slf4j;
  */
 @Slf4j
 public class SerialDataListenerPi4j implements SerialDataEventListener {
-    StringBuilder message = new StringBuilder();
     private GatewaySerial gateway;
+    private final GatewayRxFramer framer;
 
     public SerialDataListenerPi4j(GatewaySerial gateway) {
         this.gateway = gateway;
-
+        this.framer = new GatewayRxFramer(gateway, MYCSerialPort.SERIAL_DATA_MAX_SIZE);
     }
 
     @Override
     public void dataReceived(SerialDataEvent event) {
         try {
             byte[] buffer = event.getBytes();
-            for (byte b : buffer) {
-                if ((b == SerialPortCommon.MESSAGE_SPLITTER) && message.length() > 0) {
-                    String toProcess = message.toString();
-                    _logger.debug("Received a message:[{}]", toProcess);
-                    //Send Message to message factory
-                    RawMessageQueue.getInstance().putMessage(RawMessage.builder()
-                            .gatewayId(gateway.getId())
-                            .data(toProcess)
-                            .networkType(gateway.getNetworkType())
-                            .timestamp(System.currentTimeMillis())
-                            .build());
-                    message.setLength(0);
-                } else if (b != SerialPortCommon.MESSAGE_SPLITTER) {
-                    _logger.trace("Received a char:[{}]", ((char) b));
-                    message.append((char) b);
-                } else if (message.length() >= MYCSerialPort.SERIAL_DATA_MAX_SIZE) {
-                    _logger.warn(
-                            "Serial receive buffer size reached to MAX level[{} chars], "
-                                    + "Now clearing the buffer. Existing data:[{}]",
-                            MYCSerialPort.SERIAL_DATA_MAX_SIZE, message.toString());
-                    message.setLength(0);
-                } else {
-                    _logger.debug("Received MESSAGE_SPLITTER and current message length is ZERO! Nothing to do");
-                }
-            }
+            framer.add(buffer, 0, buffer.length);
         } catch (IOException ex) {
             _logger.error("exception on pi4j data event, ", ex);
             gateway.setStatus(STATE.DOWN, "ERROR: " + ex.getMessage());
-            message.setLength(0);
+            framer.reset();
         } catch (Exception ex) {
             _logger.error("Exception,", ex.getMessage());
-            message.setLength(0);
+            framer.reset();
         }
     }
 }
@@ -16,10 +16,11 @@
  */
 package org.mycontroller.standalone.gateway.serialport;
 
+import java.io.IOException;
+
 import org.mycontroller.standalone.AppProperties.STATE;
+import org.mycontroller.standalone.gateway.GatewayRxFramer;
 import org.mycontroller.standalone.gateway.model.GatewaySerial;
-import org.mycontroller.standalone.message.RawMessage;
-import org.mycontroller.standalone.message.RawMessageQueue;
 import org.mycontroller.standalone.utils.McUtils;
 
 import com.fazecast.jSerialComm.SerialPort;
@@ -37,12 +38,15 @@ public class SerialDataListenerjSerialComm implements SerialPortDataListener {
 
     private SerialPort serialPort;
     private GatewaySerial gateway = null;
-    private StringBuilder message = new StringBuilder();
+    private final GatewayRxFramer framer;
+    //Read buffer, reused for all the events
+    private final byte[] buffer = new byte[MYCSerialPort.SERIAL_DATA_MAX_SIZE];
     private boolean failedStatusWritten = false;
 
     public SerialDataListenerjSerialComm(SerialPort serialPort, GatewaySerial gateway) {
         this.serialPort = serialPort;
         this.gateway = gateway;
+        this.framer = new GatewayRxFramer(gateway, MYCSerialPort.SERIAL_DATA_MAX_SIZE);
     }
 
     @Override
@@ -56,32 +60,17 @@ public class SerialDataListenerjSerialComm implements SerialPortDataListener {
             return;
         }
         try {
-            byte[] buffer = new byte[serialPort.bytesAvailable()];
-            serialPort.readBytes(buffer, buffer.length);
-            for (byte b : buffer) {
-                if ((b == SerialPortCommon.MESSAGE_SPLITTER) && message.length() > 0) {
-                    String toProcess = message.toString();
-                    _logger.debug("Received a message:[{}]", toProcess);
-                    //Send Message to message factory
-                    RawMessageQueue.getInstance().putMessage(RawMessage.builder()
-                            .gatewayId(gateway.getId())
-                            .data(toProcess)
-                            .networkType(gateway.getNetworkType())
-                            .timestamp(System.currentTimeMillis())
-                            .build());
-                    message.setLength(0);
-                } else if (b != SerialPortCommon.MESSAGE_SPLITTER) {
-                    _logger.trace("Received a char:[{}]", ((char) b));
-                    message.append((char) b);
-                } else if (message.length() >= MYCSerialPort.SERIAL_DATA_MAX_SIZE) {
-                    _logger.warn(
-                            "Serial receive buffer size reached to MAX level[{} chars], "
-                                    + "Now clearing the buffer. Existing data:[{}]",
-                            MYCSerialPort.SERIAL_DATA_MAX_SIZE, message.toString());
-                    message.setLength(0);
-                } else {
-                    _logger.debug("Received MESSAGE_SPLITTER and current message length is ZERO! Nothing to do");
+            int available = serialPort.bytesAvailable();
+            if (available < 0) {
+                throw new IOException("Serial port not available, bytes available:" + available);
+            }
+            while (available > 0) {
+                int read = serialPort.readBytes(buffer, Math.min(available, buffer.length));
+                if (read <= 0) {
+                    break;
                 }
+                framer.add(buffer, 0, read);
+                available -= read;
             }
             failedStatusWritten = false;
         } catch (Exception ex) {
@@ -93,9 +82,9 @@ public class SerialDataListenerjSerialComm implements SerialPortDataListener {
                 failedStatusWritten = true;
                 _logger.error("Exception, ", ex);
             }
-            message.setLength(0);
+            framer.reset();
             try {
-                //If serial port removed in between throws 'java.lang.NegativeArraySizeException: null' continuously
+                //If serial port removed in between, bytes available returns negative value continuously
                 //This continuous exception eats CPU heavily, to reduce CPU usage on this state added Thread.sleep
                 Thread.sleep(McUtils.TEN_MILLISECONDS);
             } catch (InterruptedException tE) {
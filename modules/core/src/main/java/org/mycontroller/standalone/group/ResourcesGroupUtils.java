@@ -25,6 +25,8 @@ import org.mycontroller.standalone.db.DaoUtils;
 import org.mycontroller.standalone.db.ResourceOperation;
 import org.mycontroller.standalone.db.tables.ResourcesGroup;
 import org.mycontroller.standalone.db.tables.ResourcesGroupMap;
+import org.mycontroller.standalone.executor.ExecutorUtils;
+import org.mycontroller.standalone.executor.ExecutorUtils.EXECUTOR_TYPE;
 import org.mycontroller.standalone.gateway.GatewayUtils;
 import org.mycontroller.standalone.model.ResourceModel;
 import org.mycontroller.standalone.rule.McRuleEngine;
@@ -95,7 +97,8 @@ public class ResourcesGroupUtils {
         DaoUtils.getResourcesGroupDao().update(resourcesGroup);
 
         //Execute Rules for this resources group
-        new Thread(new McRuleEngine(RESOURCE_TYPE.RESOURCES_GROUP, resourcesGroup.getId())).start();
+        ExecutorUtils.execute(EXECUTOR_TYPE.RESOURCES_GROUP,
+                new McRuleEngine(RESOURCE_TYPE.RESOURCES_GROUP, resourcesGroup.getId()));
 
         //TODO: add it in to log message
     }
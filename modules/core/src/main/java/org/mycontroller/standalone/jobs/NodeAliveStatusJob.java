@@ -24,6 +24,7 @@ import org.mycontroller.standalone.AppProperties.NETWORK_TYPE;
 import org.mycontroller.standalone.AppProperties.STATE;
 import org.mycontroller.standalone.McObjectManager;
 import org.mycontroller.standalone.db.DaoUtils;
+import org.mycontroller.standalone.db.WriteBehindUpdater;
 import org.mycontroller.standalone.db.tables.Node;
 import org.mycontroller.standalone.utils.McUtils;
 import org.slf4j.Logger;
@@ -87,8 +88,8 @@ public class NodeAliveStatusJob extends Job {
         List<Node> nodes = DaoUtils.getNodeDao().getAll();
         for (Node node : nodes) {
             STATE newState = null;
-            if (node.getLastSeen() == null
-                    || node.getLastSeen() <= (System.currentTimeMillis() - node.getAliveCheckInterval())) {
+            long lastSeenBefore = System.currentTimeMillis() - node.getAliveCheckInterval();
+            if (node.getLastSeen() == null || node.getLastSeen() <= lastSeenBefore) {
                 if (node.getGatewayTable().getEnabled()) {
                     if (node.getState() != STATE.DOWN) {
                         newState = STATE.DOWN;
@@ -96,8 +97,9 @@ public class NodeAliveStatusJob extends Job {
                 } else {
                     newState = STATE.UNAVAILABLE;
                 }
-                if (newState != null) {
-                    DaoUtils.getNodeDao().update(Node.KEY_STATE, newState, node.getId());
+                //Last seen of the node could be pending on write behind or updated after it is loaded
+                if (newState != null && WriteBehindUpdater.discardNode(node.getId(), lastSeenBefore)
+                        && DaoUtils.getNodeDao().updateState(node.getId(), newState, lastSeenBefore)) {
                     _logger.debug("Node is in not reachable state, Node:[{}]", node);
                 }
             }
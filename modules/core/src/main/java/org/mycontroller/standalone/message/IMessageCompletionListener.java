@@ -0,0 +1,33 @@
+/*
+ * Copyright 2015-2017 Jeeva Kandasamy (jkandasa@gmail.com)
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mycontroller.standalone.message;
+
+/**
+ * Notified when execution of a received message is completed on {@link McMessageEngine}.
+ * Registered with {@link MessageTracer#addCompletionListener(IMessageCompletionListener)}, called whether
+ * message tracing is enabled or not.
+ * @author Jeeva Kandasamy (jkandasa)
+ * @since 0.0.3
+ */
+public interface IMessageCompletionListener {
+
+    /**
+     * @param gatewayId gateway id of the message
+     * @param micros time taken from enqueue to the end of execution, in microseconds
+     */
+    void messageCompleted(Integer gatewayId, long micros);
+}
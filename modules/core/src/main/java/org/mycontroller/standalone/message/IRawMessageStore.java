@@ -0,0 +1,49 @@
+/*
+ * Copyright 2015-2017 Jeeva Kandasamy (jkandasa@gmail.com)
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mycontroller.standalone.message;
+
+/**
+ * Storage of a gateway messages queue. Messages should be returned in the order they were added.
+ * @author Jeeva Kandasamy (jkandasa)
+ * @since 0.0.3
+ */
+public interface IRawMessageStore {
+
+    void add(RawMessage rawMessage);
+
+    /**
+     * Retrieves and removes the oldest message of the store.
+     * @return oldest message or null when store is empty
+     */
+    RawMessage poll();
+
+    /**
+     * Removes all the messages from the store.
+     * @return number of removed messages
+     */
+    int clear();
+
+    /**
+     * Removes all the messages and the persisted data of the store. Store can not be used after destroy.
+     * @return number of removed messages
+     */
+    int destroy();
+
+    int size();
+
+    boolean isEmpty();
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2015-2017 Jeeva Kandasamy (jkandasa@gmail.com)
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mycontroller.standalone.message;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Messages store backed by in-memory ring buffer and {@link RawMessageJournal}.
+ * When the ring buffer is full, messages are kept on an overflow queue until the ring buffer is drained,
+ * so none of the messages will be lost and the order is maintained.
+ * @author Jeeva Kandasamy (jkandasa)
+ * @since 0.0.3
+ */
+@Slf4j
+public class JournalRawMessageStore implements IRawMessageStore {
+    private final Integer gatewayId;
+    private final RawMessageRingBuffer ringBuffer;
+    private final RawMessageJournal journal;
+    private final ConcurrentLinkedQueue<RawMessage> overflow = new ConcurrentLinkedQueue<RawMessage>();
+    private final AtomicInteger overflowCount = new AtomicInteger(0);
+
+    public JournalRawMessageStore(Integer gatewayId, int ringBufferSize, RawMessageJournal journal) {
+        this.gatewayId = gatewayId;
+        this.ringBuffer = new RawMessageRingBuffer(ringBufferSize);
+        this.journal = journal;
+    }
+
+    @Override
+    public void add(RawMessage rawMessage) {
+        journal.put(rawMessage);
+        //Once overflow started, keep adding on overflow until it drained to maintain the order
+        if (overflowCount.get() > 0 || !ringBuffer.offer(rawMessage)) {
+            overflow.add(rawMessage);
+            if (overflowCount.incrementAndGet() == 1) {
+                _logger.warn("Ring buffer[capacity:{}] of the gateway[id:{}] is full, using overflow queue",
+                        ringBuffer.capacity(), gatewayId);
+            }
+        }
+    }
+
+    @Override
+    public RawMessage poll() {
+        RawMessage rawMessage = ringBuffer.poll();
+        if (rawMessage == null) {
+            rawMessage = overflow.poll();
+            if (rawMessage != null) {
+                overflowCount.decrementAndGet();
+            }
+        }
+        if (rawMessage != null) {
+            journal.ack(rawMessage);
+        }
+        return rawMessage;
+    }
+
+    @Override
+    public int clear() {
+        int count = 0;
+        while (poll() != null) {
+            count++;
+        }
+        return count;
+    }
+
+    @Override
+    public int destroy() {
+        //Acknowledged messages are removed from the journal on compaction
+        return clear();
+    }
+
+    @Override
+    public int size() {
+        return ringBuffer.size() + overflowCount.get();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return ringBuffer.isEmpty() && overflowCount.get() == 0;
+    }
+}
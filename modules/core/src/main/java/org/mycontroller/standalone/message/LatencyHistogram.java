@@ -0,0 +1,132 @@
+/*
+ * Copyright 2015-2017 Jeeva Kandasamy (jkandasa@gmail.com)
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mycontroller.standalone.message;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock free latency histogram with log-linear buckets, as in HdrHistogram.
+ * Values are bucketed by power of two, each power of two is divided in to {@link #SUB_BUCKETS} linear
+ * sub buckets. Reported percentiles are within 1/{@link #SUB_BUCKETS} of the recorded value.
+ * Values are in microseconds, values beyond the range are recorded on the last bucket.
+ * @author Jeeva Kandasamy (jkandasa)
+ * @since 0.0.3
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    //Highest trackable value 2^37 microseconds, around 38 hours
+    private static final int MAX_EXPONENT = 37;
+    private static final int BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+    private static final double[] PERCENTILES = { 50.0, 90.0, 99.0, 99.9 };
+    private static final String[] PERCENTILE_NAMES = { "p50", "p90", "p99", "p999" };
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong totalCount = new AtomicLong(0);
+    private final AtomicLong totalValue = new AtomicLong(0);
+    private final AtomicLong maxValue = new AtomicLong(0);
+    private volatile long startTime = System.currentTimeMillis();
+
+    public void record(long value) {
+        if (value < 0) {
+            return;
+        }
+        counts.incrementAndGet(getIndex(value));
+        totalCount.incrementAndGet();
+        totalValue.addAndGet(value);
+        long max = maxValue.get();
+        while (value > max) {
+            if (maxValue.compareAndSet(max, value)) {
+                break;
+            }
+            max = maxValue.get();
+        }
+    }
+
+    public long getCount() {
+        return totalCount.get();
+    }
+
+    public void reset() {
+        for (int index = 0; index < BUCKETS; index++) {
+            counts.set(index, 0);
+        }
+        totalCount.set(0);
+        totalValue.set(0);
+        maxValue.set(0);
+        startTime = System.currentTimeMillis();
+    }
+
+    /**
+     * Returns count, mean, max and percentiles. Taken without lock, when values recorded in parallel
+     * the snapshot can be off by those values.
+     */
+    public Map<String, Object> getSnapshot() {
+        long[] snapshot = new long[BUCKETS];
+        long count = 0;
+        for (int index = 0; index < BUCKETS; index++) {
+            snapshot[index] = counts.get(index);
+            count += snapshot[index];
+        }
+        LinkedHashMap<String, Object> data = new LinkedHashMap<String, Object>();
+        data.put("count", count);
+        data.put("since", startTime);
+        data.put("mean", count == 0 ? 0 : totalValue.get() / Math.max(totalCount.get(), 1));
+        int percentileIndex = 0;
+        long seen = 0;
+        for (int index = 0; index < BUCKETS && percentileIndex < PERCENTILES.length; index++) {
+            seen += snapshot[index];
+            while (percentileIndex < PERCENTILES.length
+                    && seen > 0
+                    && seen >= Math.ceil(count * PERCENTILES[percentileIndex] / 100.0)) {
+                data.put(PERCENTILE_NAMES[percentileIndex], Math.min(getHighestValue(index), maxValue.get()));
+                percentileIndex++;
+            }
+        }
+        for (; percentileIndex < PERCENTILES.length; percentileIndex++) {
+            data.put(PERCENTILE_NAMES[percentileIndex], 0L);
+        }
+        data.put("max", maxValue.get());
+        return data;
+    }
+
+    private static int getIndex(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKETS - 1;
+        }
+        int shift = exponent - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> shift) & (SUB_BUCKETS - 1);
+        return (shift + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    //Highest value can be recorded on this bucket
+    private static long getHighestValue(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = (index / SUB_BUCKETS) - 1;
+        long subBucket = index % SUB_BUCKETS;
+        return ((SUB_BUCKETS + subBucket + 1) << shift) - 1;
+    }
+}
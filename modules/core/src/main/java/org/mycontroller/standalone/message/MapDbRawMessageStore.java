@@ -0,0 +1,83 @@
+/*
+ * Copyright 2015-2017 Jeeva Kandasamy (jkandasa@gmail.com)
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mycontroller.standalone.message;
+
+import java.util.concurrent.BlockingQueue;
+
+import org.mapdb.Atomic;
+import org.mycontroller.standalone.MapDbFactory;
+
+/**
+ * Messages store backed by MapDB queue. Messages are committed to the disk with {@link MapDbFactory} commit.
+ * @author Jeeva Kandasamy (jkandasa)
+ * @since 0.0.3
+ */
+public class MapDbRawMessageStore implements IRawMessageStore {
+    private final String queueName;
+    private final String counterName;
+    private final BlockingQueue<RawMessage> queue;
+    private final Atomic.Integer counter;
+
+    public MapDbRawMessageStore(String queueName, String counterName) {
+        this.queueName = queueName;
+        this.counterName = counterName;
+        queue = MapDbFactory.getDbStore().getQueue(queueName);
+        counter = MapDbFactory.getDbStore().getAtomicInteger(counterName);
+    }
+
+    @Override
+    public synchronized void add(RawMessage rawMessage) {
+        queue.add(rawMessage);
+        counter.incrementAndGet();
+    }
+
+    @Override
+    public synchronized RawMessage poll() {
+        if (queue.isEmpty()) {
+            return null;
+        }
+        RawMessage rawMessage = queue.remove();
+        counter.decrementAndGet();
+        return rawMessage;
+    }
+
+    @Override
+    public synchronized int clear() {
+        int count = counter.get();
+        queue.clear();
+        counter.set(0);
+        return count;
+    }
+
+    @Override
+    public synchronized int destroy() {
+        int count = clear();
+        MapDbFactory.getDbStore().delete(queueName);
+        MapDbFactory.getDbStore().delete(counterName);
+        return count;
+    }
+
+    @Override
+    public int size() {
+        return counter.get();
+    }
+
+    @Override
+    public synchronized boolean isEmpty() {
+        return queue.isEmpty();
+    }
+}
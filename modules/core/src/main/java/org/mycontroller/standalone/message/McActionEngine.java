@@ -29,6 +29,8 @@ import org.mycontroller.standalone.db.tables.ForwardPayload;
 import org.mycontroller.standalone.db.tables.Node;
 import org.mycontroller.standalone.db.tables.Sensor;
 import org.mycontroller.standalone.db.tables.SensorVariable;
+import org.mycontroller.standalone.executor.ExecutorUtils;
+import org.mycontroller.standalone.executor.ExecutorUtils.EXECUTOR_TYPE;
 import org.mycontroller.standalone.gateway.model.GatewayEthernet;
 import org.mycontroller.standalone.message.McMessageUtils.MESSAGE_TYPE;
 import org.mycontroller.standalone.message.McMessageUtils.MESSAGE_TYPE_INTERNAL;
@@ -96,6 +98,7 @@ public class McActionEngine implements IMcActionEngine {
                             .subType(MESSAGE_TYPE_INTERNAL.I_REBOOT.getText())
                             .payload(McMessage.PAYLOAD_EMPTY)
                             .isTxMessage(true)
+                            .priority(operation.getPriority())
                             .build();
                     break;
 
@@ -160,6 +163,7 @@ public class McActionEngine implements IMcActionEngine {
                 .subType(sensorVariable.getVariableType().getText())
                 .payload(payload)
                 .isTxMessage(true)
+                .priority(operation.getPriority())
                 .build();
         McMessageUtils.sendToMessageQueue(mcMessage);
     }
@@ -369,7 +373,7 @@ public class McActionEngine implements IMcActionEngine {
             return;
         }
         //Trigger node info update function
-        new Thread(new McNodeInfoUpdate(gatewayId, nodeIds)).run();
+        ExecutorUtils.execute(EXECUTOR_TYPE.NODE_INFO_UPDATE, new McNodeInfoUpdate(gatewayId, nodeIds));
     }
 
 }
@@ -20,6 +20,7 @@ import java.io.Serializable;
 import java.util.HashMap;
 
 import org.mycontroller.standalone.AppProperties.NETWORK_TYPE;
+import org.mycontroller.standalone.message.McMessageUtils.MESSAGE_PRIORITY;
 import org.mycontroller.standalone.message.McMessageUtils.MESSAGE_TYPE;
 
 import lombok.AllArgsConstructor;
@@ -64,6 +65,10 @@ public class McMessage implements Serializable {
     private boolean isScreeningDone = false;
     private Long timestamp;
     private HashMap<String, Object> properties = null;
+    //Overrides the priority derived from type and sub type, when set
+    private MESSAGE_PRIORITY priority;
+    //Id of the received message trace, 0 when not traced. Not persisted
+    private transient long traceId;
 
     public boolean validate() {
         if (gatewayId == null
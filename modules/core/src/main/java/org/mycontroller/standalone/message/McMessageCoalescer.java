@@ -0,0 +1,239 @@
+/*
+ * Copyright 2015-2017 Jeeva Kandasamy (jkandasa@gmail.com)
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mycontroller.standalone.message;
+
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.mycontroller.standalone.AppProperties;
+import org.mycontroller.standalone.message.McMessageUtils.MESSAGE_TYPE;
+import org.mycontroller.standalone.message.McMessageUtils.MESSAGE_TYPE_SET_REQ;
+import org.mycontroller.standalone.message.McMessageUtils.PAYLOAD_TYPE;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Merges received C_SET messages of a sensor variable within a window.
+ * First message of a sensor variable is executed immediately and opens the window. Messages received
+ * within the window are merged, when the window expires the latest merged message is executed with
+ * min, max, avg and number of the merged values in message properties, and the window is opened again.
+ * Window is closed when no message merged on it.
+ * Merged messages are handed over to the engine shards without waiting, coalescer thread never blocks.
+ * Only decimal values are merged, other messages are executed immediately.
+ * Coalescer runs only when the engine shards are enabled.
+ * @author Jeeva Kandasamy (jkandasa)
+ * @since 0.0.3
+ */
+@Slf4j
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class McMessageCoalescer {
+    public static final String KEY_SAMPLES = "coalescedSamples";
+    public static final String KEY_MIN = "coalescedMin";
+    public static final String KEY_MAX = "coalescedMax";
+    public static final String KEY_AVG = "coalescedAvg";
+
+    private static final ConcurrentHashMap<String, CoalescedMessage> MESSAGES =
+            new ConcurrentHashMap<String, CoalescedMessage>();
+    private static final AtomicLong MERGED_COUNT = new AtomicLong(0);
+    private static volatile ScheduledThreadPoolExecutor scheduler = null;
+    private static volatile long window = 0;
+
+    public static synchronized void start() {
+        window = AppProperties.getInstance().getMessageCoalesceWindow();
+        if (window <= 0 || scheduler != null) {
+            return;
+        }
+        scheduler = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                return new Thread(runnable, "mc-message-coalescer");
+            }
+        });
+        _logger.info("McMessage coalescer started with {} ms window", window);
+    }
+
+    /**
+     * Stops the coalescer and executes all the pending messages.
+     */
+    public static synchronized void shutdown() {
+        ScheduledThreadPoolExecutor _scheduler = scheduler;
+        if (_scheduler == null) {
+            return;
+        }
+        scheduler = null;
+        _scheduler.shutdownNow();
+        for (CoalescedMessage coalescedMessage : new ArrayList<CoalescedMessage>(MESSAGES.values())) {
+            coalescedMessage.flush();
+        }
+        _logger.debug("McMessage coalescer terminated");
+    }
+
+    /**
+     * Adds the message to the coalescing window.
+     * @param mcMessage received message
+     * @return false when the message is not eligible or opens a window, and should be executed by the caller
+     */
+    public static boolean coalesce(McMessage mcMessage) {
+        if (scheduler == null || !isEligible(mcMessage)) {
+            return false;
+        }
+        double value = Double.valueOf(mcMessage.getPayload());
+        String key = mcMessage.getGatewayId() + "_" + mcMessage.getNodeEui() + "_" + mcMessage.getSensorId() + "_"
+                + mcMessage.getSubType();
+        while (true) {
+            CoalescedMessage coalescedMessage = MESSAGES.get(key);
+            if (coalescedMessage == null) {
+                coalescedMessage = new CoalescedMessage(key);
+                if (MESSAGES.putIfAbsent(key, coalescedMessage) == null) {
+                    if (!coalescedMessage.schedule()) {
+                        //Coalescer terminated in between
+                        coalescedMessage.take(true);
+                    }
+                    return false;
+                }
+            } else if (coalescedMessage.merge(mcMessage, value)) {
+                MERGED_COUNT.incrementAndGet();
+                return true;
+            }
+        }
+    }
+
+    public static long getMergedCount() {
+        return MERGED_COUNT.get();
+    }
+
+    public static int getPendingCount() {
+        return MESSAGES.size();
+    }
+
+    private static boolean isEligible(McMessage mcMessage) {
+        if (mcMessage.isTxMessage() || mcMessage.getType() != MESSAGE_TYPE.C_SET || mcMessage.isAckResponse()
+                || mcMessage.getPayload() == null) {
+            return false;
+        }
+        MESSAGE_TYPE_SET_REQ setType = MESSAGE_TYPE_SET_REQ.fromString(mcMessage.getSubType());
+        if (setType == null || McMessageUtils.getPayLoadType(setType) != PAYLOAD_TYPE.PL_DOUBLE) {
+            return false;
+        }
+        try {
+            Double.valueOf(mcMessage.getPayload());
+            return true;
+        } catch (NumberFormatException ex) {
+            return false;
+        }
+    }
+
+    private static void execute(McMessage mcMessage) {
+        if (mcMessage != null) {
+            McMessageEngineExecutor.executeNow(mcMessage, false);
+        }
+    }
+
+    private static class CoalescedMessage implements Runnable {
+        private final String key;
+        //Latest merged message, null when nothing merged after the last execution
+        private McMessage mcMessage = null;
+        private double min;
+        private double max;
+        private double sum;
+        private int samples = 0;
+        private boolean closed = false;
+
+        private CoalescedMessage(String key) {
+            this.key = key;
+        }
+
+        private synchronized boolean merge(McMessage mcMessage, double value) {
+            if (closed) {
+                return false;
+            }
+            if (samples == 0) {
+                min = value;
+                max = value;
+                sum = 0;
+            }
+            this.mcMessage = mcMessage;
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+            sum += value;
+            samples++;
+            return true;
+        }
+
+        //Takes the merged message, window is closed when nothing merged
+        private synchronized McMessage take(boolean close) {
+            if (closed) {
+                return null;
+            }
+            McMessage merged = mcMessage;
+            if (merged == null || close) {
+                closed = true;
+                MESSAGES.remove(key, this);
+            }
+            if (merged != null) {
+                if (samples > 1) {
+                    merged.getProperties().put(KEY_SAMPLES, samples);
+                    merged.getProperties().put(KEY_MIN, min);
+                    merged.getProperties().put(KEY_MAX, max);
+                    merged.getProperties().put(KEY_AVG, sum / samples);
+                }
+                mcMessage = null;
+                samples = 0;
+            }
+            return merged;
+        }
+
+        private boolean schedule() {
+            ScheduledThreadPoolExecutor _scheduler = scheduler;
+            if (_scheduler == null) {
+                return false;
+            }
+            try {
+                _scheduler.schedule(this, window, TimeUnit.MILLISECONDS);
+                return true;
+            } catch (RejectedExecutionException ex) {
+                return false;
+            }
+        }
+
+        private void flush() {
+            execute(take(true));
+        }
+
+        @Override
+        public void run() {
+            try {
+                McMessage merged = take(false);
+                if (merged != null) {
+                    //Window is opened again, as messages are still received. Closed when coalescer terminated
+                    McMessage pending = schedule() ? null : take(true);
+                    execute(merged);
+                    execute(pending);
+                }
+            } catch (Exception ex) {
+                _logger.error("Exception while executing coalesced message, {}", mcMessage, ex);
+            }
+        }
+    }
+}
@@ -27,10 +27,13 @@ import org.mycontroller.standalone.AppProperties;
 import org.mycontroller.standalone.AppProperties.NETWORK_TYPE;
 import org.mycontroller.standalone.AppProperties.RESOURCE_TYPE;
 import org.mycontroller.standalone.AppProperties.STATE;
+import org.mycontroller.standalone.McObjectManager;
 import org.mycontroller.standalone.db.DaoUtils;
 import org.mycontroller.standalone.db.NodeUtils.NODE_REGISTRATION_STATE;
 import org.mycontroller.standalone.db.ResourcesLogsUtils;
 import org.mycontroller.standalone.db.ResourcesLogsUtils.LOG_LEVEL;
+import org.mycontroller.standalone.db.TopologyCache;
+import org.mycontroller.standalone.db.WriteBehindUpdater;
 import org.mycontroller.standalone.db.tables.Firmware;
 import org.mycontroller.standalone.db.tables.FirmwareData;
 import org.mycontroller.standalone.db.tables.ForwardPayload;
@@ -45,15 +48,19 @@ import org.mycontroller.standalone.db.tables.Sensor;
 import org.mycontroller.standalone.db.tables.SensorVariable;
 import org.mycontroller.standalone.exceptions.McBadRequestException;
 import org.mycontroller.standalone.exceptions.NodeIdException;
+import org.mycontroller.standalone.executor.ExecutorUtils;
+import org.mycontroller.standalone.executor.ExecutorUtils.EXECUTOR_TYPE;
 import org.mycontroller.standalone.externalserver.ExternalServerEngine;
 import org.mycontroller.standalone.firmware.FirmwareUtils;
-import org.mycontroller.standalone.fwpayload.ExecuteForwardPayload;
+import org.mycontroller.standalone.fwpayload.ForwardPayloadIndex;
 import org.mycontroller.standalone.message.McMessageUtils.MESSAGE_TYPE;
 import org.mycontroller.standalone.message.McMessageUtils.MESSAGE_TYPE_INTERNAL;
 import org.mycontroller.standalone.message.McMessageUtils.MESSAGE_TYPE_PRESENTATION;
 import org.mycontroller.standalone.message.McMessageUtils.MESSAGE_TYPE_SET_REQ;
 import org.mycontroller.standalone.message.McMessageUtils.MESSAGE_TYPE_STREAM;
 import org.mycontroller.standalone.message.McMessageUtils.PAYLOAD_TYPE;
+import org.mycontroller.standalone.message.MessageStageLatency.STAGE;
+import org.mycontroller.standalone.metrics.MetricsIngestBuffer;
 import org.mycontroller.standalone.metrics.MetricsUtils.AGGREGATION_TYPE;
 import org.mycontroller.standalone.metrics.MetricsUtils.METRIC_TYPE;
 import org.mycontroller.standalone.provider.mc.structs.McFirmwareConfig;
@@ -103,6 +110,7 @@ public class McMessageEngine implements Runnable {
             return;
         }
         mcMessage.setScreeningDone(true);
+        long startNanoTime = System.nanoTime();
         switch (mcMessage.getType()) {
             case C_PRESENTATION:
                 if (mcMessage.isTxMessage()) {
@@ -150,9 +158,11 @@ public class McMessageEngine implements Runnable {
         //update node last seen and status as UP
         if (!mcMessage.isTxMessage()) {
             if (!mcMessage.getNodeEui().equalsIgnoreCase(McMessage.NODE_BROADCAST_ID)) {
+                long nodeUpdateStartTime = System.nanoTime();
                 Node node = getNode(mcMessage);
                 node.setState(STATE.UP);
-                updateNode(node);
+                touchNode(node);
+                MessageStageLatency.record(STAGE.NODE_UPDATE, nodeUpdateStartTime);
             }
         } else {
             if (mcMessage.getNetworkType() == NETWORK_TYPE.RF_LINK) {
@@ -160,6 +170,7 @@ public class McMessageEngine implements Runnable {
                 mcMessage.setProperties(node.getProperties());
             }
         }
+        MessageStageLatency.record(STAGE.ENGINE, startNanoTime);
     }
 
     private void unauthorizedSensor(McMessage mcMessage) {
@@ -171,7 +182,9 @@ public class McMessageEngine implements Runnable {
     }
 
     private boolean isNodeRegistered(McMessage mcMessage) {
+        long startNanoTime = System.nanoTime();
         Node node = getNode(mcMessage);
+        MessageStageLatency.record(STAGE.LOOKUP, startNanoTime);
         if (node.getRegistrationState() == NODE_REGISTRATION_STATE.BLOCKED) {
             return false;
         } else if (node.getRegistrationState() == NODE_REGISTRATION_STATE.REGISTERED) {
@@ -198,7 +211,8 @@ public class McMessageEngine implements Runnable {
             updateNode(node);
         } else {
             Node node = getNode(mcMessage);
-            Sensor sensor = DaoUtils.getSensorDao().get(node.getId(), mcMessage.getSensorId());
+            Sensor sensor = TopologyCache.getSensor(mcMessage.getGatewayId(), mcMessage.getNodeEui(),
+                    mcMessage.getSensorId());
             if (sensor == null) {
                 sensor = Sensor.builder()
                         .sensorId(String.valueOf(mcMessage.getSensorId()))
@@ -251,7 +265,7 @@ public class McMessageEngine implements Runnable {
                         mcMessage.getNodeEui(),
                         mcMessage.getPayload());
                 node.setBatteryLevel(mcMessage.getPayload());
-                updateNode(node);
+                touchNode(node);
                 //Update battery level in to metrics table
                 MetricsBatteryUsage batteryUsage = MetricsBatteryUsage.builder()
                         .node(node)
@@ -263,7 +277,7 @@ public class McMessageEngine implements Runnable {
                         .samples(1)
                         .build();
 
-                DaoUtils.getMetricsBatteryUsageDao().create(batteryUsage);
+                MetricsIngestBuffer.add(batteryUsage);
 
                 break;
             case I_TIME:
@@ -379,10 +393,10 @@ public class McMessageEngine implements Runnable {
                 }
                 node = getNode(mcMessage);
                 node.setState(STATE.UP);
-                updateNode(node);
+                touchNode(node);
                 if (node.getSmartSleepEnabled()) {
-                    new Thread(new SmartSleepMessageTxThread(
-                            mcMessage.getGatewayId(), mcMessage.getNodeEui())).start();
+                    ExecutorUtils.execute(EXECUTOR_TYPE.SMART_SLEEP, new SmartSleepMessageTxThread(
+                            mcMessage.getGatewayId(), mcMessage.getNodeEui()));
                 }
                 break;
             case I_DISCOVER:
@@ -435,7 +449,7 @@ public class McMessageEngine implements Runnable {
                 }
                 node = getNode(mcMessage);
                 node.setRssi(mcMessage.getPayload());
-                updateNode(node);
+                touchNode(node);
                 return;
             case I_PROPERTIES:
                 if (mcMessage.isTxMessage()) {
@@ -673,8 +687,7 @@ public class McMessageEngine implements Runnable {
             Firmware firmware = null;
 
             //Check firmware is configured for this particular node
-            Node node = DaoUtils.getNodeDao()
-                    .get(mcMessage.getGatewayId(), mcMessage.getNodeEui());
+            Node node = TopologyCache.getNode(mcMessage.getGatewayId(), mcMessage.getNodeEui());
             if (node != null && node.getEraseConfig() != null && node.getEraseConfig()) {
                 bootLoaderCommand = true;
                 _logger.debug("Erase EEPROM has been set...");
@@ -754,7 +767,7 @@ public class McMessageEngine implements Runnable {
             Firmware firmware = null;
 
             //Check firmware is configured for this particular node
-            Node node = DaoUtils.getNodeDao().get(mcMessage.getGatewayId(), mcMessage.getNodeEui());
+            Node node = TopologyCache.getNode(mcMessage.getGatewayId(), mcMessage.getNodeEui());
             if (node != null && node.getFirmware() != null) {
                 firmware = DaoUtils.getFirmwareDao().getById(node.getFirmware().getId());
                 _logger.debug("Firmware selected based on node configuration...");
@@ -813,8 +826,9 @@ public class McMessageEngine implements Runnable {
     }
 
     private void responseReqTypeData(McMessage mcMessage) throws McBadRequestException {
-        Sensor sensor = this.getSensor(mcMessage);
-        SensorVariable sensorVariable = DaoUtils.getSensorVariableDao().get(sensor.getId(),
+        this.getSensor(mcMessage);
+        SensorVariable sensorVariable = TopologyCache.getSensorVariable(mcMessage.getGatewayId(),
+                mcMessage.getNodeEui(), mcMessage.getSensorId(),
                 MESSAGE_TYPE_SET_REQ.fromString(mcMessage.getSubType()));
         if (mcMessage.isTxMessage()) {
             if (sensorVariable != null) {
@@ -855,7 +869,8 @@ public class McMessageEngine implements Runnable {
 
     private SensorVariable updateSensorVariable(McMessage mcMessage, Sensor sensor,
             PAYLOAD_TYPE payloadType) throws McBadRequestException {
-        SensorVariable sensorVariable = DaoUtils.getSensorVariableDao().get(sensor.getId(),
+        SensorVariable sensorVariable = TopologyCache.getSensorVariable(mcMessage.getGatewayId(),
+                mcMessage.getNodeEui(), mcMessage.getSensorId(),
                 MESSAGE_TYPE_SET_REQ.fromString(mcMessage.getSubType()));
         METRIC_TYPE metricType = McMessageUtils.getMetricType(payloadType);
         if (sensorVariable == null) {
@@ -888,7 +903,8 @@ public class McMessageEngine implements Runnable {
                     sensorVariable, sensor);
 
             DaoUtils.getSensorVariableDao().create(sensorVariable);
-            sensorVariable = DaoUtils.getSensorVariableDao().get(sensorVariable);
+            sensorVariable = TopologyCache.getSensorVariable(mcMessage.getGatewayId(), mcMessage.getNodeEui(),
+                    mcMessage.getSensorId(), sensorVariable.getVariableType());
         } else {
             switch (sensorVariable.getMetricType()) {
                 case COUNTER:
@@ -930,7 +946,7 @@ public class McMessageEngine implements Runnable {
     }
 
     private Sensor getSensor(McMessage mcMessage) {
-        Sensor sensor = DaoUtils.getSensorDao().get(
+        Sensor sensor = TopologyCache.getSensor(
                 mcMessage.getGatewayId(),
                 mcMessage.getNodeEui(),
                 mcMessage.getSensorId());
@@ -941,7 +957,7 @@ public class McMessageEngine implements Runnable {
             sensor = Sensor.builder().sensorId(mcMessage.getSensorId()).build();
             sensor.setNode(this.getNode(mcMessage));
             DaoUtils.getSensorDao().create(sensor);
-            sensor = DaoUtils.getSensorDao().get(
+            sensor = TopologyCache.getSensor(
                     mcMessage.getGatewayId(),
                     mcMessage.getNodeEui(),
                     mcMessage.getSensorId());
@@ -950,7 +966,7 @@ public class McMessageEngine implements Runnable {
     }
 
     private Node getNode(McMessage mcMessage) {
-        Node node = DaoUtils.getNodeDao().get(mcMessage.getGatewayId(), mcMessage.getNodeEui());
+        Node node = TopologyCache.getNode(mcMessage.getGatewayId(), mcMessage.getNodeEui());
         if (node == null) {
             _logger.debug("This Node[{}] not available in our DB, Adding...", mcMessage.getNodeEui());
             node = Node
@@ -964,7 +980,7 @@ public class McMessageEngine implements Runnable {
                     .build();
             node.setLastSeen(System.currentTimeMillis());
             DaoUtils.getNodeDao().create(node);
-            node = DaoUtils.getNodeDao().get(mcMessage.getGatewayId(), mcMessage.getNodeEui());
+            node = TopologyCache.getNode(mcMessage.getGatewayId(), mcMessage.getNodeEui());
         }
         _logger.debug("Node:[{}], message:[{}]", node, mcMessage);
         return node;
@@ -975,10 +991,18 @@ public class McMessageEngine implements Runnable {
         DaoUtils.getNodeDao().update(node);
     }
 
+    //Last seen, state, rssi and battery level are written behind
+    private void touchNode(Node node) {
+        node.setLastSeen(System.currentTimeMillis());
+        WriteBehindUpdater.updateNode(node);
+    }
+
     private void recordSetTypeData(McMessage mcMessage) throws McBadRequestException {
         PAYLOAD_TYPE payloadType = McMessageUtils.getPayLoadType(MESSAGE_TYPE_SET_REQ.fromString(mcMessage
                 .getSubType()));
+        long startNanoTime = System.nanoTime();
         Sensor sensor = this.getSensor(mcMessage);
+        MessageStageLatency.record(STAGE.LOOKUP, startNanoTime);
         //Before updating value into table convert payload types
         //Change RGB and RGBW values
         if (MESSAGE_TYPE_SET_REQ.V_RGB == MESSAGE_TYPE_SET_REQ.fromString(mcMessage.getSubType())
@@ -988,7 +1012,9 @@ public class McMessageEngine implements Runnable {
             }
         }
 
+        startNanoTime = System.nanoTime();
         SensorVariable sensorVariable = this.updateSensorVariable(mcMessage, sensor, payloadType);
+        MessageStageLatency.record(STAGE.SENSOR_VARIABLE_UPDATE, startNanoTime);
         _logger.debug(
                 "GatewayName:{}, SensorName:{}, NodeId:{}, SesnorId:{}, SubType:{}, PayloadType:{}, Payload:{}",
                 sensor.getName(),
@@ -1012,42 +1038,52 @@ public class McMessageEngine implements Runnable {
         }
 
         sensor.setLastSeen(System.currentTimeMillis());
-        DaoUtils.getSensorDao().update(sensor);
+        WriteBehindUpdater.updateSensor(sensor);
 
+        startNanoTime = System.nanoTime();
         switch (sensorVariable.getMetricType()) {
             case DOUBLE:
-                DaoUtils.getMetricsDoubleTypeDeviceDao()
-                        .create(MetricsDoubleTypeDevice.builder()
-                                .sensorVariable(sensorVariable)
-                                .aggregationType(AGGREGATION_TYPE.RAW)
-                                .timestamp(sensorVariable.getTimestamp())
-                                .avg(McUtils.getDouble(sensorVariable.getValue()))
-                                .min(McUtils.getDouble(sensorVariable.getValue()))
-                                .max(McUtils.getDouble(sensorVariable.getValue()))
-                                .samples(1).build());
-
+                if (mcMessage.getProperties().get(McMessageCoalescer.KEY_SAMPLES) != null) {
+                    //Merged values of the coalescing window
+                    MetricsIngestBuffer.add(MetricsDoubleTypeDevice.builder()
+                            .sensorVariable(sensorVariable)
+                            .aggregationType(AGGREGATION_TYPE.RAW)
+                            .timestamp(sensorVariable.getTimestamp())
+                            .avg(McUtils.getDouble(mcMessage.getProperties().get(McMessageCoalescer.KEY_AVG)))
+                            .min(McUtils.getDouble(mcMessage.getProperties().get(McMessageCoalescer.KEY_MIN)))
+                            .max(McUtils.getDouble(mcMessage.getProperties().get(McMessageCoalescer.KEY_MAX)))
+                            .samples((Integer) mcMessage.getProperties().get(McMessageCoalescer.KEY_SAMPLES))
+                            .build());
+                } else {
+                    MetricsIngestBuffer.add(MetricsDoubleTypeDevice.builder()
+                            .sensorVariable(sensorVariable)
+                            .aggregationType(AGGREGATION_TYPE.RAW)
+                            .timestamp(sensorVariable.getTimestamp())
+                            .avg(McUtils.getDouble(sensorVariable.getValue()))
+                            .min(McUtils.getDouble(sensorVariable.getValue()))
+                            .max(McUtils.getDouble(sensorVariable.getValue()))
+                            .samples(1).build());
+                }
                 break;
             case BINARY:
-                DaoUtils.getMetricsBinaryTypeDeviceDao()
-                        .create(MetricsBinaryTypeDevice.builder()
-                                .sensorVariable(sensorVariable)
-                                .timestamp(sensorVariable.getTimestamp())
-                                .state(McUtils.getBoolean(sensorVariable.getValue())).build());
+                MetricsIngestBuffer.add(MetricsBinaryTypeDevice.builder()
+                        .sensorVariable(sensorVariable)
+                        .timestamp(sensorVariable.getTimestamp())
+                        .state(McUtils.getBoolean(sensorVariable.getValue())).build());
                 break;
             case COUNTER:
-                DaoUtils.getMetricsCounterTypeDeviceDao()
-                        .create(MetricsCounterTypeDevice.builder()
-                                .sensorVariable(sensorVariable)
-                                .aggregationType(AGGREGATION_TYPE.RAW)
-                                .timestamp(sensorVariable.getTimestamp())
-                                .value(McUtils.getLong(mcMessage.getPayload()))
-                                .samples(1).build());
+                MetricsIngestBuffer.add(MetricsCounterTypeDevice.builder()
+                        .sensorVariable(sensorVariable)
+                        .aggregationType(AGGREGATION_TYPE.RAW)
+                        .timestamp(sensorVariable.getTimestamp())
+                        .value(McUtils.getLong(mcMessage.getPayload()))
+                        .samples(1).build());
                 break;
             case GPS:
                 MetricsGPSTypeDevice gpsData = MetricsGPSTypeDevice.get(mcMessage.getPayload(),
                         mcMessage.getTimestamp());
                 gpsData.setSensorVariable(sensorVariable);
-                DaoUtils.getMetricsGPSTypeDeviceDao().create(gpsData);
+                MetricsIngestBuffer.add(gpsData);
                 break;
             case NONE:
                 //For None type nothing to do.
@@ -1059,6 +1095,7 @@ public class McMessageEngine implements Runnable {
                         mcMessage.getPayload());
                 break;
         }
+        MessageStageLatency.record(STAGE.METRIC_INSERT, startNanoTime);
 
         //ResourcesLogs message data
         if (ResourcesLogsUtils.isOnAllowedLevel(LOG_LEVEL.INFO)) {
@@ -1071,32 +1108,66 @@ public class McMessageEngine implements Runnable {
                     && sensor.getType() != null
                     && sensor.getType() == MESSAGE_TYPE_PRESENTATION.S_CUSTOM
                     && sensorVariable.getVariableType() == MESSAGE_TYPE_SET_REQ.V_ID) {
-                ExecuteUidTag executeUidTag = new ExecuteUidTag(sensorVariable);
-                new Thread(executeUidTag).start();
+                //Sensor variable is updated by next messages, task takes a copy of this value
+                ExecuteUidTag executeUidTag = new ExecuteUidTag(sensorVariable.copy());
+                ExecutorUtils.execute(EXECUTOR_TYPE.UID_TAG, executeUidTag);
             }
         }
 
         //TODO: Forward Payload to another node, if any and only on receive from gateway
-        List<ForwardPayload> forwardPayloads = DaoUtils.getForwardPayloadDao().getAllEnabled(sensorVariable.getId());
-        if (forwardPayloads != null && !forwardPayloads.isEmpty()) {
-            ExecuteForwardPayload executeForwardPayload =
-                    new ExecuteForwardPayload(forwardPayloads, sensor, sensorVariable);
-            new Thread(executeForwardPayload).run();
+        List<ForwardPayload> forwardPayloads = ForwardPayloadIndex.getEnabled(sensorVariable.getId());
+        if (!forwardPayloads.isEmpty()) {
+            startNanoTime = System.nanoTime();
+            executeForwardPayloads(forwardPayloads, sensor, sensorVariable);
+            MessageStageLatency.record(STAGE.FORWARD_PAYLOAD, startNanoTime);
         }
 
         //Execute Rules for this sensor variable
         //DO NOT START NEW THREAD
+        startNanoTime = System.nanoTime();
         try {
             new McRuleEngine(RESOURCE_TYPE.SENSOR_VARIABLE, sensorVariable.getId()).run();
         } catch (Exception ex) {
             _logger.error("Exception,", ex);
         }
+        MessageStageLatency.record(STAGE.RULE_ENGINE, startNanoTime);
 
         //Execute Send Payload to external server
-        new Thread(new ExternalServerEngine(sensorVariable)).start();
+        startNanoTime = System.nanoTime();
+        ExecutorUtils.execute(EXECUTOR_TYPE.EXTERNAL_SERVER, new ExternalServerEngine(sensorVariable.copy()));
+        MessageStageLatency.record(STAGE.EXTERNAL_SERVER, startNanoTime);
 
     }
 
+    private void executeForwardPayloads(List<ForwardPayload> forwardPayloads, Sensor sensor,
+            SensorVariable sensorVariable) {
+        for (ForwardPayload forwardPayload : forwardPayloads) {
+            try {
+                //Indexed destination may have stale read only flag, resolve the current one from topology
+                SensorVariable destination = forwardPayload.getDestination();
+                destination = TopologyCache.getSensorVariable(
+                        destination.getSensor().getNode().getGatewayTable().getId(),
+                        destination.getSensor().getNode().getEui(),
+                        destination.getSensor().getSensorId(),
+                        destination.getVariableType());
+                if (destination == null || destination.getReadOnly()) {
+                    continue;
+                }
+                _logger.debug("Sensor:[{}], Details of ForwardPayload:[{}]", sensor, forwardPayload);
+                McObjectManager.getMcActionEngine().executeForwardPayload(
+                        ForwardPayload.builder()
+                                .id(forwardPayload.getId())
+                                .enabled(true)
+                                .source(sensorVariable)
+                                .destination(destination)
+                                .build(),
+                        sensorVariable.getValue());
+            } catch (Exception ex) {
+                _logger.error("Unable to execute ForwardPayload:[{}], Sensor:[{}]", forwardPayload, sensor, ex);
+            }
+        }
+    }
+
     private void setSensorVariableData(LOG_LEVEL logLevel, MESSAGE_TYPE type, SensorVariable sensorVariable,
             McMessage mcMessage, String extraMessage) {
         this.setSensorOtherData(RESOURCE_TYPE.SENSOR_VARIABLE, sensorVariable.getId(),
@@ -1114,7 +1185,7 @@ public class McMessageEngine implements Runnable {
                     messageSubType, mcMessage.isTxMessage(),
                     mcMessage.getPayload(), extraMessage);
         } else if (mcMessage.getSensorId().equalsIgnoreCase(McMessage.SENSOR_BROADCAST_ID)) {
-            Node node = DaoUtils.getNodeDao().get(
+            Node node = TopologyCache.getNode(
                     mcMessage.getGatewayId(), mcMessage.getNodeEui());
             this.setSensorOtherData(
                     RESOURCE_TYPE.NODE, node.getId(),
@@ -1122,7 +1193,7 @@ public class McMessageEngine implements Runnable {
                     messageSubType, mcMessage.isTxMessage(),
                     mcMessage.getPayload(), extraMessage);
         } else {
-            Sensor sensor = DaoUtils.getSensorDao().get(mcMessage.getGatewayId(),
+            Sensor sensor = TopologyCache.getSensor(mcMessage.getGatewayId(),
                     mcMessage.getNodeEui(), mcMessage.getSensorId());
             //TODO: For now creating sensor, if it's not available, we should remove this once this issue resolved
             //http://forum.mysensors.org/topic/2669/gateway-ready-message-with-sensor-id-0-v-1-6-beta
@@ -1150,16 +1221,22 @@ public class McMessageEngine implements Runnable {
         if (extraMessage != null) {
             builder.append(" ").append(extraMessage);
         }
+        long startNanoTime = System.nanoTime();
         ResourcesLogsUtils.recordSensorsResourcesLog(resourceType, resourceId, logLevel, messageType, isTxMessage,
                 builder.toString());
+        MessageStageLatency.record(STAGE.RESOURCES_LOG, startNanoTime);
     }
 
     @Override
     public void run() {
+        long previousTraceId = MessageTracer.enter(mcMessage);
         try {
             this.execute();
         } catch (McBadRequestException ex) {
             _logger.error("Exception on processing {}", mcMessage, ex);
+        } finally {
+            MessageTracer.complete(mcMessage);
+            MessageTracer.exit(previousTraceId);
         }
 
     }
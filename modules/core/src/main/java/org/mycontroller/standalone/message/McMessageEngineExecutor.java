@@ -0,0 +1,282 @@
+/*
+ * Copyright 2015-2017 Jeeva Kandasamy (jkandasa@gmail.com)
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mycontroller.standalone.message;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.mycontroller.standalone.AppProperties;
+import org.mycontroller.standalone.utils.McUtils;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Executes received messages on {@link McMessageEngine} with a set of single threaded shards.
+ * Shard is selected by gateway id and node eui, so messages from a node are executed in the received order
+ * and messages from different nodes are executed in parallel.
+ * Tx messages are executed on the caller thread, as those messages has to be screened before sending.
+ * When a shard queue is full, caller waits for free space. So the message lane stops taking messages
+ * and messages are kept on {@link RawMessageQueue}, where the load shedding policies are applied.
+ * Messages submitted by a shard never wait, a shard waiting for another shard could end up in a deadlock.
+ * Those and the messages of {@link McMessageCoalescer} are queued beyond the capacity and counted as overflow.
+ * @author Jeeva Kandasamy (jkandasa)
+ * @since 0.0.3
+ */
+@Slf4j
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class McMessageEngineExecutor {
+    private static volatile Shard[] shards = null;
+    private static final ThreadGroup SHARDS_GROUP = new ThreadGroup("mc-engine-shards");
+    //Waits for free space on the shard queue, in milliseconds. Checks shard status on each wait
+    private static final long SPACE_WAIT = 1000;
+
+    public static synchronized void start() {
+        if (shards != null) {
+            _logger.debug("McMessageEngine shards already running");
+            return;
+        }
+        int shardsCount = AppProperties.getInstance().getMessageEngineShards();
+        if (shardsCount <= 0) {
+            _logger.info("McMessageEngine shards disabled, messages will be executed on message lanes");
+            if (AppProperties.getInstance().getMessageCoalesceWindow() > 0) {
+                _logger.warn("Messages coalescing requires McMessageEngine shards, coalescing disabled");
+            }
+            return;
+        }
+        int queueCapacity = AppProperties.getInstance().getMessageEngineShardQueueCapacity();
+        Shard[] _shards = new Shard[shardsCount];
+        for (int index = 0; index < shardsCount; index++) {
+            _shards[index] = new Shard(index, queueCapacity);
+        }
+        shards = _shards;
+        _logger.info("McMessageEngine started with {} shard(s)", shardsCount);
+        //Coalescer hands over merged messages to shards, should not execute those on its own thread
+        McMessageCoalescer.start();
+    }
+
+    public static synchronized void shutdown() {
+        //Execute pending coalesced messages before terminate shards
+        McMessageCoalescer.shutdown();
+        Shard[] _shards = shards;
+        if (_shards == null) {
+            return;
+        }
+        shards = null;
+        for (Shard shard : _shards) {
+            shard.shutdown();
+        }
+        long start = System.currentTimeMillis();
+        for (Shard shard : _shards) {
+            long remaining = McUtils.ONE_MINUTE - (System.currentTimeMillis() - start);
+            shard.awaitTermination(Math.max(remaining, 0));
+        }
+        _logger.debug("McMessageEngine shards terminated");
+    }
+
+    public static void execute(McMessage mcMessage) {
+        if (McMessageCoalescer.coalesce(mcMessage)) {
+            //Will be executed when the coalescing window expires
+            return;
+        }
+        executeNow(mcMessage);
+    }
+
+    static void executeNow(McMessage mcMessage) {
+        executeNow(mcMessage, true);
+    }
+
+    /**
+     * Executes the message on the shard of the node.
+     * @param mcMessage message to be executed
+     * @param wait when false, message is queued beyond the capacity instead of waiting for free space
+     */
+    static void executeNow(McMessage mcMessage, boolean wait) {
+        McMessageEngine mcMessageEngine = new McMessageEngine(mcMessage);
+        Shard[] _shards = shards;
+        if (_shards == null || mcMessage.isTxMessage()) {
+            mcMessageEngine.run();
+            return;
+        }
+        Shard shard = _shards[getShardIndex(mcMessage, _shards.length)];
+        try {
+            shard.execute(mcMessageEngine, wait);
+        } catch (RejectedExecutionException ex) {
+            //Executing on the caller thread breaks the order of the node messages, shard is terminating anyway
+            shard.rejected();
+            _logger.warn("Shard not accepting messages, dropped {}", mcMessage);
+        }
+    }
+
+    private static int getShardIndex(McMessage mcMessage, int shardsCount) {
+        int hash = 31 * mcMessage.getGatewayId().hashCode()
+                + (mcMessage.getNodeEui() == null ? 0 : mcMessage.getNodeEui().hashCode());
+        return (hash & Integer.MAX_VALUE) % shardsCount;
+    }
+
+    public static List<Map<String, Object>> getStatistics() {
+        List<Map<String, Object>> statistics = new ArrayList<Map<String, Object>>();
+        Shard[] _shards = shards;
+        if (_shards == null) {
+            return statistics;
+        }
+        for (int index = 0; index < _shards.length; index++) {
+            HashMap<String, Object> shardStatistics = new HashMap<String, Object>();
+            shardStatistics.put("shard", index);
+            shardStatistics.put("backlog", _shards[index].getBacklog());
+            shardStatistics.put("active", _shards[index].isActive());
+            shardStatistics.put("executedCount", _shards[index].getExecutedCount());
+            shardStatistics.put("overflowCount", _shards[index].getOverflowCount());
+            shardStatistics.put("rejectedCount", _shards[index].getRejectedCount());
+            statistics.add(shardStatistics);
+        }
+        return statistics;
+    }
+
+    public static int getBacklog() {
+        int backlog = 0;
+        Shard[] _shards = shards;
+        if (_shards != null) {
+            for (Shard shard : _shards) {
+                backlog += shard.getBacklog();
+            }
+        }
+        return backlog;
+    }
+
+    /**
+     * Single threaded executor of a shard. Queue is unbounded, the capacity is applied on the callers
+     * with permits. Permit of a message is released once it is executed.
+     */
+    static class Shard {
+        private final ThreadPoolExecutor executor;
+        //null when the capacity is unbounded
+        private final Semaphore space;
+        private final AtomicLong overflowCount = new AtomicLong(0);
+        private final AtomicLong rejectedCount = new AtomicLong(0);
+
+        Shard(int index, int capacity) {
+            final String threadName = "mc-engine-shard-" + index;
+            executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(),
+                    new ThreadFactory() {
+                        @Override
+                        public Thread newThread(Runnable runnable) {
+                            return new Thread(SHARDS_GROUP, runnable, threadName);
+                        }
+                    });
+            space = capacity > 0 ? new Semaphore(capacity) : null;
+        }
+
+        void execute(final Runnable runnable, boolean wait) {
+            if (space == null) {
+                executor.execute(runnable);
+                return;
+            }
+            final boolean acquired = acquire(wait);
+            try {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            runnable.run();
+                        } finally {
+                            if (acquired) {
+                                space.release();
+                            }
+                        }
+                    }
+                });
+            } catch (RejectedExecutionException ex) {
+                if (acquired) {
+                    space.release();
+                }
+                throw ex;
+            }
+        }
+
+        //Returns false, when the message goes beyond the capacity
+        private boolean acquire(boolean wait) {
+            if (!wait || Thread.currentThread().getThreadGroup() == SHARDS_GROUP) {
+                if (space.tryAcquire()) {
+                    return true;
+                }
+                overflowCount.incrementAndGet();
+                return false;
+            }
+            try {
+                while (!space.tryAcquire(SPACE_WAIT, TimeUnit.MILLISECONDS)) {
+                    if (executor.isShutdown()) {
+                        throw new RejectedExecutionException("Shard not accepting messages");
+                    }
+                }
+                return true;
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new RejectedExecutionException("Interrupted while waiting for shard queue", ex);
+            }
+        }
+
+        int getBacklog() {
+            return executor.getQueue().size();
+        }
+
+        boolean isActive() {
+            return executor.getActiveCount() > 0;
+        }
+
+        long getExecutedCount() {
+            return executor.getCompletedTaskCount();
+        }
+
+        long getOverflowCount() {
+            return overflowCount.get();
+        }
+
+        void rejected() {
+            rejectedCount.incrementAndGet();
+        }
+
+        long getRejectedCount() {
+            return rejectedCount.get();
+        }
+
+        void shutdown() {
+            executor.shutdown();
+        }
+
+        void awaitTermination(long timeout) {
+            try {
+                if (!executor.awaitTermination(timeout, TimeUnit.MILLISECONDS)) {
+                    _logger.warn("McMessageEngine shard terminating with {} message(s) in queue!", getBacklog());
+                    executor.shutdownNow();
+                }
+            } catch (InterruptedException ex) {
+                _logger.debug("Exception while waiting for shard termination,", ex);
+            }
+        }
+    }
+}
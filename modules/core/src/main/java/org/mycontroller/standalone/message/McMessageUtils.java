@@ -26,7 +26,9 @@ import org.mycontroller.standalone.db.DaoUtils;
 import org.mycontroller.standalone.db.tables.Node;
 import org.mycontroller.standalone.db.tables.Sensor;
 import org.mycontroller.standalone.exceptions.McBadRequestException;
+import org.mycontroller.standalone.gateway.GatewayTxPacer;
 import org.mycontroller.standalone.gateway.GatewayUtils;
+import org.mycontroller.standalone.gateway.IGateway;
 import org.mycontroller.standalone.metrics.MetricsUtils.METRIC_TYPE;
 import org.mycontroller.standalone.provider.mc.McProviderBridge;
 import org.mycontroller.standalone.provider.mysensors.MySensorsProviderBridge;
@@ -378,10 +380,55 @@ public class McMessageUtils {
         }
     }
 
+    // Priority of Tx messages, higher priority messages are sent ahead of lower priority messages
+    public enum MESSAGE_PRIORITY {
+        HIGH("High"),
+        NORMAL("Normal"),
+        LOW("Low");
+
+        private String text;
+
+        public String getText() {
+            return this.text;
+        }
+
+        private MESSAGE_PRIORITY(String text) {
+            this.text = text;
+        }
+
+        public static MESSAGE_PRIORITY fromString(String text) {
+            if (text != null) {
+                for (MESSAGE_PRIORITY type : MESSAGE_PRIORITY.values()) {
+                    if (text.equalsIgnoreCase(type.getText())) {
+                        return type;
+                    }
+                }
+            }
+            return null;
+        }
+    }
+
     public enum PAYLOAD_TYPE {
         PL_DOUBLE, PL_BOOLEAN, PL_HEX, PL_STRING, PL_LONG, PL_GPS;
     }
 
+    /**
+     * Returns priority of the message. When priority not set on the message, derived from type and sub type.
+     * C_SET commands are high priority, firmware responses are low priority and others are normal priority.
+     */
+    public static MESSAGE_PRIORITY getPriority(McMessage mcMessage) {
+        if (mcMessage.getPriority() != null) {
+            return mcMessage.getPriority();
+        }
+        if (mcMessage.getType() == MESSAGE_TYPE.C_SET) {
+            return MESSAGE_PRIORITY.HIGH;
+        } else if (mcMessage.getType() == MESSAGE_TYPE.C_STREAM
+                && MESSAGE_TYPE_STREAM.ST_FIRMWARE_RESPONSE.getText().equals(mcMessage.getSubType())) {
+            return MESSAGE_PRIORITY.LOW;
+        }
+        return MESSAGE_PRIORITY.NORMAL;
+    }
+
     public static METRIC_TYPE getMetricType(PAYLOAD_TYPE payloadType) {
         switch (payloadType) {
             case PL_BOOLEAN:
@@ -550,11 +597,31 @@ public class McMessageUtils {
     private static IProviderBridge rfLinkBridge = new RFLinkProviderBridge();
     private static IProviderBridge philipsHueProviderBridge = new PhilipsHueProviderBridge();
 
-    public static synchronized void sendToGateway(RawMessage rawMessage) {
-        //Send message to nodes [going out from MyController]
+    public static void sendToGateway(RawMessage rawMessage) {
+        //Send message to nodes [going out from MyController], paced with gateway tx delay
+        if (McObjectManager.getGateway(rawMessage.getGatewayId()) != null) {
+            GatewayTxPacer.get(rawMessage.getGatewayId()).send(rawMessage);
+        } else {
+            _logger.error("Message sending failed, Selected gateway not available! {}, {}",
+                    rawMessage, GatewayUtils.getGateway(rawMessage.getGatewayId()));
+        }
+    }
+
+    public static void sendToGateway(McMessage mcMessage, RawMessage rawMessage) {
+        rawMessage.setPriority(getPriority(mcMessage));
+        sendToGateway(rawMessage);
+    }
+
+    /**
+     * Writes the message to the gateway immediately. Should be called only by {@link GatewayTxPacer}.
+     */
+    public static void writeToGateway(RawMessage rawMessage) {
         try {
-            if (McObjectManager.getGateway(rawMessage.getGatewayId()) != null) {
-                McObjectManager.getGateway(rawMessage.getGatewayId()).write(rawMessage);
+            IGateway gateway = McObjectManager.getGateway(rawMessage.getGatewayId());
+            if (gateway != null) {
+                //Writes to a gateway are serialized by its tx pacer, gateways guard their own state
+                gateway.write(rawMessage);
+                //Asynchronous gateways(MQTT) report the delivery on completion
                 _logger.debug("Message sent to gateway, {}", rawMessage);
             } else {
                 _logger.error("Message sending failed, Selected gateway not available! {}, {}",
@@ -565,7 +632,7 @@ public class McMessageUtils {
         }
     }
 
-    public static synchronized void sendToProviderBridge(RawMessage rawMessage) {
+    public static void sendToProviderBridge(RawMessage rawMessage) {
         switch (rawMessage.getNetworkType()) {
             case MY_SENSORS:
                 mySensorsBridge.executeRawMessage(rawMessage);
@@ -589,7 +656,7 @@ public class McMessageUtils {
 
     }
 
-    public static synchronized void sendToMessageQueue(McMessage mcMessage) {
+    public static void sendToMessageQueue(McMessage mcMessage) {
         if (mcMessage.getNetworkType() == null) {
             mcMessage.setNetworkType(GatewayUtils.getNetworkType(mcMessage.getGatewayId()));
         }
@@ -606,13 +673,15 @@ public class McMessageUtils {
         }
         //Get Raw Message and add it on Message queue
         try {
-            RawMessageQueue.getInstance().putMessage(getRawMessage(mcMessage));
+            RawMessage rawMessage = getRawMessage(mcMessage);
+            rawMessage.setPriority(getPriority(mcMessage));
+            RawMessageQueue.getInstance().putMessage(rawMessage);
         } catch (McBadRequestException | RawMessageException ex) {
             _logger.error("Unable to process this {}", mcMessage, ex);
         }
     }
 
-    private static RawMessage getRawMessage(McMessage mcMessage) throws RawMessageException, McBadRequestException {
+    public static RawMessage getRawMessage(McMessage mcMessage) throws RawMessageException, McBadRequestException {
         switch (mcMessage.getNetworkType()) {
             case MY_SENSORS:
                 return mySensorsBridge.getRawMessage(mcMessage);
@@ -632,7 +701,7 @@ public class McMessageUtils {
         }
     }
 
-    public static synchronized void sendToProviderBridgeFinal(McMessage mcMessage) {
+    public static void sendToProviderBridgeFinal(McMessage mcMessage) {
         switch (mcMessage.getNetworkType()) {
             case MY_SENSORS:
                 mySensorsBridge.executeMcMessage(mcMessage);
@@ -656,10 +725,9 @@ public class McMessageUtils {
 
     }
 
-    public static synchronized void sendToMcMessageEngine(McMessage mcMessage) {
-        //Do not run new thread. for testing
-        //new Thread(new McMessageEngine(mcMessage)).start();
-        new McMessageEngine(mcMessage).run();
+    public static void sendToMcMessageEngine(McMessage mcMessage) {
+        //Received messages executed on node based shards, Tx messages on this thread
+        McMessageEngineExecutor.execute(mcMessage);
     }
 
     public static synchronized boolean validateNodeIdByProvider(Node node) {
@@ -0,0 +1,189 @@
+/*
+ * Copyright 2015-2017 Jeeva Kandasamy (jkandasa@gmail.com)
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mycontroller.standalone.message;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.mycontroller.standalone.AppProperties;
+import org.mycontroller.standalone.AppProperties.MESSAGE_DISPATCHER_MODE;
+import org.mycontroller.standalone.McObjectManager;
+import org.mycontroller.standalone.db.DaoUtils;
+import org.mycontroller.standalone.db.tables.GatewayTable;
+import org.mycontroller.standalone.gateway.GatewayUtils;
+import org.mycontroller.standalone.message.MessageStageLatency.STAGE;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Processes messages of a single gateway, in the received order.
+ * Each gateway has its own lane, so a slow gateway will not stall other gateways.
+ * @author Jeeva Kandasamy (jkandasa)
+ * @since 0.0.3
+ */
+@Slf4j
+public class MessageLane implements Runnable {
+    // maximum wait time on the queue in event driven mode, in milliseconds
+    private static final long EVENT_WAIT_TIMEOUT = 1000;
+
+    private final Integer gatewayId;
+    private final AtomicBoolean terminate = new AtomicBoolean(false);
+    private final AtomicBoolean terminated = new AtomicBoolean(false);
+    private final AtomicLong processedCount = new AtomicLong(0);
+    private volatile long lastProcessingTime = -1;
+    private volatile long avgProcessingTime = 0;
+    private long timeSamples = 0;
+
+    public MessageLane(Integer gatewayId) {
+        this.gatewayId = gatewayId;
+    }
+
+    public Integer getGatewayId() {
+        return gatewayId;
+    }
+
+    public boolean isTerminated() {
+        return terminated.get();
+    }
+
+    public void shutdown() {
+        terminate.set(true);
+    }
+
+    public Map<String, Object> getStatistics() {
+        HashMap<String, Object> statistics = new HashMap<String, Object>();
+        statistics.put("gatewayId", gatewayId);
+        statistics.put("messagesInQueue", RawMessageQueue.getInstance().getQueueSize(gatewayId));
+        statistics.put("queueShed", RawMessageQueue.getInstance().getShedStatistics(gatewayId));
+        statistics.put("processedCount", processedCount.get());
+        statistics.put("processingTimeLastMessage", lastProcessingTime);
+        statistics.put("processingTimeAverage", avgProcessingTime);
+        statistics.put("running", !terminated.get());
+        return statistics;
+    }
+
+    private void processRawMessages() {
+        while (!RawMessageQueue.getInstance().isEmpty(gatewayId) && !terminate.get()) {
+            if (!GatewayUtils.GATEWAYS_READY.get()) {
+                //Gateways not ready
+                return;
+            }
+            if (!processRawMessage(RawMessageQueue.getInstance().getMessage(gatewayId))) {
+                return;
+            }
+        }
+    }
+
+    private boolean processRawMessage(RawMessage rawMessage) {
+        if (rawMessage == null) {
+            return false;
+        }
+        _logger.debug("Processing:[{}]", rawMessage);
+        MessageMonitorThread.updateQueueLatency(rawMessage);
+        if (McObjectManager.getGateway(rawMessage.getGatewayId()) == null && rawMessage.isTxMessage()) {
+            GatewayTable gatewayTable = DaoUtils.getGatewayDao().getById(rawMessage.getGatewayId());
+            _logger.error("Gateway not available! dropping message... {}, {}", gatewayTable, rawMessage);
+            return false;
+        }
+        long startTime = System.currentTimeMillis();
+        long startNanoTime = System.nanoTime();
+        MessageTracer.begin(rawMessage);
+        try {
+            McMessageUtils.sendToProviderBridge(rawMessage);
+            processedCount.incrementAndGet();
+            MessageMonitorThread.messageProcessed();
+            //Tx delay is applied by gateway tx pacer, receive path will not wait for it
+            if (AppProperties.getInstance().getMessageDispatcherMode() == MESSAGE_DISPATCHER_MODE.POLLING) {
+                //This sleep to reduce CPU load, in nanoseconds
+                Thread.sleep(0, 333333);
+            }
+        } catch (Exception ex) {
+            _logger.error("Throws exception while processing!, [{}]", rawMessage, ex);
+        }
+        MessageTracer.end();
+        updateProcessingTime(System.currentTimeMillis() - startTime);
+        MessageStageLatency.record(STAGE.PROCESSING, startNanoTime);
+        _logger.debug("Process done in {} ms for:[{}]", lastProcessingTime, rawMessage);
+        return true;
+    }
+
+    private void updateProcessingTime(long lastMessageTime) {
+        lastProcessingTime = lastMessageTime;
+        avgProcessingTime = ((avgProcessingTime * timeSamples) + lastProcessingTime) / (timeSamples + 1);
+        timeSamples++;
+        //if sample goes beyond 10000, reset it to avoid big calculations.
+        if (timeSamples > 10000 || avgProcessingTime == 0) {
+            timeSamples = 1;
+            avgProcessingTime = lastProcessingTime;
+        }
+        MessageMonitorThread.updateProcessingTime(lastMessageTime);
+    }
+
+    private void runPolling() {
+        while (!terminate.get()) {
+            try {
+                this.processRawMessages();
+                Thread.sleep(10);
+            } catch (InterruptedException ex) {
+                _logger.debug("Exception in sleep thread,", ex);
+            }
+        }
+    }
+
+    private void runEventDriven() {
+        while (!terminate.get()) {
+            try {
+                if (!GatewayUtils.GATEWAYS_READY.get()) {
+                    //Gateways not ready
+                    Thread.sleep(10);
+                    continue;
+                }
+                RawMessage rawMessage = RawMessageQueue.getInstance().takeMessage(gatewayId, EVENT_WAIT_TIMEOUT,
+                        TimeUnit.MILLISECONDS);
+                if (rawMessage != null) {
+                    this.processRawMessage(rawMessage);
+                }
+            } catch (InterruptedException ex) {
+                _logger.debug("Exception in sleep thread,", ex);
+            }
+        }
+    }
+
+    @Override
+    public void run() {
+        try {
+            _logger.debug("MessageLane[gatewayId:{}] started. Mode:{}", gatewayId,
+                    AppProperties.getInstance().getMessageDispatcherMode());
+            if (AppProperties.getInstance().getMessageDispatcherMode() == MESSAGE_DISPATCHER_MODE.EVENT_DRIVEN) {
+                this.runEventDriven();
+            } else {
+                this.runPolling();
+            }
+            if (!RawMessageQueue.getInstance().isEmpty(gatewayId)) {
+                _logger.warn("MessageLane[gatewayId:{}] terminating with {} message(s) in queue!", gatewayId,
+                        RawMessageQueue.getInstance().getQueueSize(gatewayId));
+            }
+        } catch (Exception ex) {
+            _logger.error("MessageLane[gatewayId:{}] terminated!, ", gatewayId, ex);
+        } finally {
+            terminated.set(true);
+        }
+    }
+}
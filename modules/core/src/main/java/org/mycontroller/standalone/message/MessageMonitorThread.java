@@ -16,19 +16,33 @@
  */
 package org.mycontroller.standalone.message;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
-import org.mycontroller.standalone.McObjectManager;
-import org.mycontroller.standalone.db.DaoUtils;
-import org.mycontroller.standalone.db.tables.GatewayTable;
-import org.mycontroller.standalone.gateway.GatewayUtils;
+import org.mycontroller.standalone.AppProperties;
+import org.mycontroller.standalone.db.ResourcesLogsWriter;
+import org.mycontroller.standalone.db.TopologyCache;
+import org.mycontroller.standalone.db.WriteBehindUpdater;
+import org.mycontroller.standalone.executor.ExecutorUtils;
+import org.mycontroller.standalone.externalserver.ExternalServerRoutingTable;
+import org.mycontroller.standalone.externalserver.InfluxdbBatchWriter;
+import org.mycontroller.standalone.gateway.GatewayTxPacer;
+import org.mycontroller.standalone.gateway.ethernet.EthernetGatewaySelector;
+import org.mycontroller.standalone.gateway.loadgenerator.LoadGeneratorGatewayImpl;
+import org.mycontroller.standalone.gateway.mqtt.MqttGatewayImpl;
+import org.mycontroller.standalone.message.MessageStageLatency.STAGE;
+import org.mycontroller.standalone.metrics.MetricsIngestBuffer;
 import org.mycontroller.standalone.utils.McUtils;
 
 import lombok.extern.slf4j.Slf4j;
 
 /**
+ * Monitors raw message queue and runs a {@link MessageLane} for each gateway.
  * @author Jeeva Kandasamy (jkandasa)
  * @since 0.0.1
  */
@@ -39,6 +53,9 @@ public class MessageMonitorThread implements Runnable {
     // delay time to avoid collisions on network,
     // in milliseconds, Like my sensors network
     public static final long MC_MSG_DELAY = 20;
+    // maximum wait time to look for new lanes, in milliseconds
+    private static final long LANE_WAIT_TIMEOUT = 1000;
+    private static final ConcurrentHashMap<Integer, MessageLane> LANES = new ConcurrentHashMap<Integer, MessageLane>();
     private static long CURRENT_PROCESSING_RATE = -1;
     private static long AVERAGE_PROCESSING_RATE = -1;
     private static long RATE_SAMPLES = 0;
@@ -47,6 +64,9 @@ public class MessageMonitorThread implements Runnable {
     private static long LAST_MESSAGE_PROCESSING_TIME = -1;
     private static long AVG_MESSAGE_PROCESSING_TIME = 0;
     private static long TIME_SAMPLES = 0;
+    private static long LAST_QUEUE_LATENCY = -1;
+    private static long AVG_QUEUE_LATENCY = 0;
+    private static long QUEUE_LATENCY_SAMPLES = 0;
 
     public static long getCurrentProcessingRate() {
         return CURRENT_PROCESSING_RATE;
@@ -64,6 +84,15 @@ public class MessageMonitorThread implements Runnable {
         return AVG_MESSAGE_PROCESSING_TIME;
     }
 
+    // time spent by a message on the queue, in microseconds
+    public static long getLastQueueLatency() {
+        return LAST_QUEUE_LATENCY;
+    }
+
+    public static long getAvgQueueLatency() {
+        return AVG_QUEUE_LATENCY;
+    }
+
     public static int getMessagesInQueue() {
         return RawMessageQueue.getInstance().getQueueSize();
     }
@@ -73,6 +102,8 @@ public class MessageMonitorThread implements Runnable {
             return;
         }
         TERMINATE.set(true);
+        //Release monitor and lanes, if those are waiting on the queue
+        RawMessageQueue.getInstance().wakeUpAll();
         long start = System.currentTimeMillis();
         long waitTime = McUtils.ONE_MINUTE;
         while (!TERMINATED.get()) {
@@ -89,41 +120,33 @@ public class MessageMonitorThread implements Runnable {
         _logger.debug("MessageMonitorThread terminated");
     }
 
-    private void processRawMessage() {
-        while (!RawMessageQueue.getInstance().isEmpty() && !TERMINATE.get()) {
-            if (!GatewayUtils.GATEWAYS_READY.get()) {
-                //Gateways not ready
-                return;
-            }
-            RawMessage rawMessage = RawMessageQueue.getInstance().getMessage();
-            _logger.debug("Processing:[{}]", rawMessage);
-            if (McObjectManager.getGateway(rawMessage.getGatewayId()) == null && rawMessage.isTxMessage()) {
-                GatewayTable gatewayTable = DaoUtils.getGatewayDao().getById(rawMessage.getGatewayId());
-                _logger.error("Gateway not available! dropping message... {}, {}", gatewayTable, rawMessage);
-                return;
-            }
-            long startTime = System.currentTimeMillis();
-            try {
-                McMessageUtils.sendToProviderBridge(rawMessage);
-                messageDoneCount++;
-                calculateProcessingRate();
-                //A delay to avoid collisions on any networks with continues messages. Only for Tx message
-                if (rawMessage.isTxMessage()) {
-                    Thread.sleep(McObjectManager.getGateway(rawMessage.getGatewayId()).getGateway().getTxDelay(),
-                            333333);
-                } else {
-                    //This sleep to reduce CPU load, in nanoseconds
-                    Thread.sleep(0, 333333);
-                }
-            } catch (Exception ex) {
-                _logger.error("Throws exception while processing!, [{}]", rawMessage, ex);
-            }
-            updateProcessingTime(System.currentTimeMillis() - startTime);
-            _logger.debug("Process done in {} ms for:[{}]", getLastMessageProcessingTime(), rawMessage);
+    static synchronized void messageProcessed() {
+        messageDoneCount++;
+        calculateProcessingRate();
+    }
+
+    static synchronized void updateQueueLatency(RawMessage rawMessage) {
+        if (rawMessage.getQueuedTime() == null) {
+            return;
+        }
+        long latency = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - rawMessage.getQueuedTime());
+        //Messages restored from persistent store carries queued time of previous JVM, ignore them
+        if (latency < 0 || latency > TimeUnit.HOURS.toMicros(1)) {
+            return;
+        }
+        MessageStageLatency.recordMicros(STAGE.QUEUE, latency);
+        LAST_QUEUE_LATENCY = latency;
+        AVG_QUEUE_LATENCY = ((AVG_QUEUE_LATENCY * QUEUE_LATENCY_SAMPLES) + LAST_QUEUE_LATENCY)
+                / (QUEUE_LATENCY_SAMPLES + 1);
+        QUEUE_LATENCY_SAMPLES++;
+        //if sample goes beyond 10000, reset it to avoid big calculations.
+        if (QUEUE_LATENCY_SAMPLES > 10000) {
+            QUEUE_LATENCY_SAMPLES = 1;
+            AVG_QUEUE_LATENCY = LAST_QUEUE_LATENCY;
         }
     }
 
-    private void updateProcessingTime(long lastMessageTime) {
+    static synchronized void updateProcessingTime(long lastMessageTime) {
         LAST_MESSAGE_PROCESSING_TIME = lastMessageTime;
         AVG_MESSAGE_PROCESSING_TIME = ((AVG_MESSAGE_PROCESSING_TIME * TIME_SAMPLES) + LAST_MESSAGE_PROCESSING_TIME)
                 / (TIME_SAMPLES + 1);
@@ -135,7 +158,7 @@ public class MessageMonitorThread implements Runnable {
         }
     }
 
-    private void calculateProcessingRate() {
+    private static synchronized void calculateProcessingRate() {
         if ((System.currentTimeMillis() - referanceTime) >= McUtils.MINUTE) {
             referanceTime = System.currentTimeMillis();
             CURRENT_PROCESSING_RATE = messageDoneCount;
@@ -151,12 +174,25 @@ public class MessageMonitorThread implements Runnable {
         }
     }
 
+    public static List<Map<String, Object>> getLanesStatistics() {
+        List<Map<String, Object>> lanes = new ArrayList<Map<String, Object>>();
+        for (MessageLane lane : LANES.values()) {
+            lanes.add(lane.getStatistics());
+        }
+        return lanes;
+    }
+
     public static void printStatistics() {
         _logger.info(
                 "Message engine statistics, Rate[Last minute:{}, {}/s, Avg:{}, Samples:{}], "
-                        + "Time:[Last:{} ms, Avg:{} ms, Samples:{}], In queue:{}",
+                        + "Time:[Last:{} ms, Avg:{} ms, Samples:{}], "
+                        + "Queue latency:[Last:{} us, Avg:{} us, Samples:{}], In queue:{}, Mode:{}, Lanes:{}, "
+                        + "Engine shards:{}, Queue shed:{}",
                 getCurrentProcessingRate(), getCurrentProcessingRate() / 60, getAvgProcessingRate(), RATE_SAMPLES,
-                getLastMessageProcessingTime(), getAvgtMessageProcessingTime(), TIME_SAMPLES, getMessagesInQueue());
+                getLastMessageProcessingTime(), getAvgtMessageProcessingTime(), TIME_SAMPLES,
+                getLastQueueLatency(), getAvgQueueLatency(), QUEUE_LATENCY_SAMPLES, getMessagesInQueue(),
+                AppProperties.getInstance().getMessageDispatcherMode(), getLanesStatistics(),
+                McMessageEngineExecutor.getStatistics(), RawMessageQueue.getInstance().getShedStatistics());
     }
 
     public static Map<String, Object> getStatistics() {
@@ -167,25 +203,109 @@ public class MessageMonitorThread implements Runnable {
         statistics.put("processingTimeLastMessage", getLastMessageProcessingTime());
         statistics.put("processingTimeAverage", getAvgtMessageProcessingTime());
         statistics.put("processingTimeSamples", TIME_SAMPLES);
+        statistics.put("queueLatencyLastMessage", getLastQueueLatency());
+        statistics.put("queueLatencyAverage", getAvgQueueLatency());
+        statistics.put("queueLatencySamples", QUEUE_LATENCY_SAMPLES);
         statistics.put("messagesInQueue", getMessagesInQueue());
+        statistics.put("dispatcherMode", AppProperties.getInstance().getMessageDispatcherMode().getText());
+        statistics.put("queueType", RawMessageQueue.getInstance().getQueueType().getText());
+        statistics.put("lanes", getLanesStatistics());
+        statistics.put("engineBacklog", McMessageEngineExecutor.getBacklog());
+        statistics.put("engineShards", McMessageEngineExecutor.getStatistics());
+        statistics.put("queueCapacity", AppProperties.getInstance().getMessageQueueCapacity());
+        statistics.put("queueShed", RawMessageQueue.getInstance().getShedStatistics());
+        statistics.put("txPacers", GatewayTxPacer.getStatistics());
+        statistics.put("coalescedMessages", McMessageCoalescer.getMergedCount());
+        statistics.put("coalescePending", McMessageCoalescer.getPendingCount());
+        statistics.put("executors", ExecutorUtils.getStatistics());
+        statistics.put("topologyCache", TopologyCache.getStatistics());
+        statistics.put("writeBehind", WriteBehindUpdater.getStatistics());
+        statistics.put("metricsIngest", MetricsIngestBuffer.getStatistics());
+        statistics.put("resourcesLogs", ResourcesLogsWriter.getStatistics());
+        statistics.put("externalServerRoutes", ExternalServerRoutingTable.getStatistics());
+        statistics.put("influxdbWriters", InfluxdbBatchWriter.getAllStatistics());
+        statistics.put("ethernetGateways", EthernetGatewaySelector.getStatistics());
+        statistics.put("mqttGateways", MqttGatewayImpl.getStatistics());
+        statistics.put("loadGenerators", LoadGeneratorGatewayImpl.getStatistics());
         statistics.put("timestamp", System.currentTimeMillis());
         return statistics;
     }
 
+    /**
+     * Stops the lane of the gateway and removes the gateway queue along with the queued messages.
+     * Used when the gateway is deleted. On reload, lane and queued messages are retained for the gateway.
+     * @param gatewayId gateway id of the lane
+     */
+    public static void removeLane(Integer gatewayId) {
+        //Avoid starting the lane again by monitor thread, while removing
+        synchronized (LANES) {
+            MessageLane lane = LANES.get(gatewayId);
+            if (lane != null) {
+                lane.shutdown();
+                RawMessageQueue.getInstance().wakeUp(gatewayId);
+                waitForTermination(lane, System.currentTimeMillis());
+            }
+            int removedCount = RawMessageQueue.getInstance().removeGatewayQueue(gatewayId);
+            LANES.remove(gatewayId);
+            if (removedCount > 0) {
+                _logger.warn("Removed the lane of gateway[id:{}] with {} message(s) in queue", gatewayId,
+                        removedCount);
+            }
+        }
+    }
+
+    private static void waitForTermination(MessageLane lane, long start) {
+        while (!lane.isTerminated() && (System.currentTimeMillis() - start) < McUtils.ONE_MINUTE) {
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException ex) {
+                _logger.debug("Exception in sleep thread,", ex);
+            }
+        }
+    }
+
+    private void startNewLanes() {
+        synchronized (LANES) {
+            for (Integer gatewayId : RawMessageQueue.getInstance().getGatewayIds()) {
+                if (!LANES.containsKey(gatewayId)) {
+                    MessageLane lane = new MessageLane(gatewayId);
+                    LANES.put(gatewayId, lane);
+                    new Thread(lane, "mc-message-lane-" + gatewayId).start();
+                }
+            }
+        }
+    }
+
+    private void stopLanes() {
+        for (MessageLane lane : LANES.values()) {
+            lane.shutdown();
+        }
+        RawMessageQueue.getInstance().wakeUpAll();
+        long start = System.currentTimeMillis();
+        for (MessageLane lane : LANES.values()) {
+            waitForTermination(lane, start);
+        }
+        LANES.clear();
+    }
+
     @Override
     public void run() {
         try {
-            _logger.debug("MessageMonitorThread new thread started.");
+            _logger.debug("MessageMonitorThread new thread started. Mode:{}",
+                    AppProperties.getInstance().getMessageDispatcherMode());
             referanceTime = System.currentTimeMillis();
+            McMessageEngineExecutor.start();
             while (!TERMINATE.get()) {
                 try {
-                    this.processRawMessage();
-                    Thread.sleep(10);
+                    this.startNewLanes();
+                    RawMessageQueue.getInstance().waitForNewLane(LANES.size(), LANE_WAIT_TIMEOUT);
                     calculateProcessingRate();
                 } catch (InterruptedException ex) {
                     _logger.debug("Exception in sleep thread,", ex);
                 }
             }
+            this.stopLanes();
+            McMessageEngineExecutor.shutdown();
             if (!RawMessageQueue.getInstance().isEmpty()) {
                 _logger.warn("MessageMonitorThread terminating with {} message(s) in queue!",
                         RawMessageQueue.getInstance().getQueueSize());
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2015-2017 Jeeva Kandasamy (jkandasa@gmail.com)
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mycontroller.standalone.message;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+
+/**
+ * Latency histograms of message pipeline stages, in microseconds.
+ * Usage: take {@link System#nanoTime()} before the stage and call {@link #record(STAGE, long)} after the stage.
+ * @author Jeeva Kandasamy (jkandasa)
+ * @since 0.0.3
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class MessageStageLatency {
+    public enum STAGE {
+        QUEUE("Queue wait"),
+        PARSE("Parse"),
+        LOOKUP("Node/sensor lookup"),
+        SENSOR_VARIABLE_UPDATE("Sensor variable update"),
+        METRIC_INSERT("Metric insert"),
+        RESOURCES_LOG("Resources log"),
+        RULE_ENGINE("Rule engine"),
+        FORWARD_PAYLOAD("Forward payload"),
+        EXTERNAL_SERVER("External server hand-off"),
+        NODE_UPDATE("Node last seen update"),
+        ENGINE("Message engine"),
+        PROCESSING("Message processing");
+
+        private final String name;
+
+        private STAGE(String name) {
+            this.name = name;
+        }
+
+        public String getText() {
+            return this.name;
+        }
+    }
+
+    private static final LatencyHistogram[] HISTOGRAMS = new LatencyHistogram[STAGE.values().length];
+
+    static {
+        for (int index = 0; index < HISTOGRAMS.length; index++) {
+            HISTOGRAMS[index] = new LatencyHistogram();
+        }
+    }
+
+    public static void record(STAGE stage, long startNanoTime) {
+        long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanoTime);
+        recordMicros(stage, micros);
+        //Add to the trace of the message executing on this thread
+        MessageTracer.addStage(stage, micros);
+    }
+
+    public static void recordMicros(STAGE stage, long micros) {
+        HISTOGRAMS[stage.ordinal()].record(micros);
+    }
+
+    public static void reset() {
+        for (LatencyHistogram histogram : HISTOGRAMS) {
+            histogram.reset();
+        }
+    }
+
+    public static Map<String, Object> getStatistics() {
+        LinkedHashMap<String, Object> statistics = new LinkedHashMap<String, Object>();
+        statistics.put("unit", "microseconds");
+        LinkedHashMap<String, Object> stages = new LinkedHashMap<String, Object>();
+        for (STAGE stage : STAGE.values()) {
+            stages.put(stage.getText(), HISTOGRAMS[stage.ordinal()].getSnapshot());
+        }
+        statistics.put("stages", stages);
+        return statistics;
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2015-2017 Jeeva Kandasamy (jkandasa@gmail.com)
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mycontroller.standalone.message;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.mycontroller.standalone.message.MessageStageLatency.STAGE;
+
+/**
+ * Timestamps and stage latencies of a message, from enqueue to the end of {@link McMessageEngine}.
+ * Preallocated slot of {@link MessageTracer}, reused for a new message identified by trace id.
+ * Fields are written by the lane before publishing the trace id, stages and completion can be updated
+ * from any thread. Updates with an old trace id are ignored.
+ * @author Jeeva Kandasamy (jkandasa)
+ * @since 0.0.3
+ */
+class MessageTrace {
+    //Id of the current message, published after the other fields are set
+    private volatile long id = 0;
+    private long receivedTime;
+    private Integer gatewayId;
+    //Queue entry time in nanoseconds, not known for messages restored from persistent store
+    private boolean enqueued;
+    private long enqueueNanoTime;
+    private long dequeueNanoTime;
+    private final AtomicLong engineStartNanoTime = new AtomicLong(0);
+    private final AtomicLongArray stageMicros = new AtomicLongArray(STAGE.values().length);
+    //Id of the last completed message, a trace can be shared by more than one McMessage
+    private final AtomicLong completedId = new AtomicLong(0);
+
+    //Called by the lane, before the id is handed over to the other threads
+    void reset(long id, RawMessage rawMessage) {
+        this.receivedTime = rawMessage.getTimestamp() != null ? rawMessage.getTimestamp()
+                : System.currentTimeMillis();
+        this.gatewayId = rawMessage.getGatewayId();
+        this.enqueued = rawMessage.getQueuedTime() != null;
+        this.enqueueNanoTime = enqueued ? rawMessage.getQueuedTime() : 0;
+        this.dequeueNanoTime = System.nanoTime();
+        engineStartNanoTime.set(0);
+        for (int index = 0; index < stageMicros.length(); index++) {
+            stageMicros.set(index, 0);
+        }
+        this.id = id;
+    }
+
+    boolean isCurrent(long id) {
+        return id != 0 && this.id == id;
+    }
+
+    void addStage(long id, STAGE stage, long micros) {
+        if (isCurrent(id)) {
+            stageMicros.addAndGet(stage.ordinal(), micros);
+        }
+    }
+
+    void engineStarted(long id) {
+        if (isCurrent(id)) {
+            engineStartNanoTime.compareAndSet(0, System.nanoTime());
+        }
+    }
+
+    //Returns true only for the first call of the message
+    boolean complete(long id) {
+        long lastCompletedId = completedId.get();
+        return isCurrent(id) && lastCompletedId != id && completedId.compareAndSet(lastCompletedId, id);
+    }
+
+    long getReceivedTime() {
+        return receivedTime;
+    }
+
+    Integer getGatewayId() {
+        return gatewayId;
+    }
+
+    long getStageMicros(STAGE stage) {
+        return stageMicros.get(stage.ordinal());
+    }
+
+    //Time spent on the queue in microseconds, -1 when not known
+    long getQueueMicros() {
+        if (!enqueued) {
+            return -1;
+        }
+        return (dequeueNanoTime - enqueueNanoTime) / 1000;
+    }
+
+    //Time between dequeue and start of McMessageEngine, waiting on shard or coalescing window
+    long getEngineWaitMicros() {
+        long engineStart = engineStartNanoTime.get();
+        if (engineStart == 0) {
+            return 0;
+        }
+        return (engineStart - dequeueNanoTime) / 1000;
+    }
+
+    long getTotalMicros(long endNanoTime) {
+        return (endNanoTime - (enqueued ? enqueueNanoTime : dequeueNanoTime)) / 1000;
+    }
+}
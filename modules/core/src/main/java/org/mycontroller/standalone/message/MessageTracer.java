@@ -0,0 +1,418 @@
+/*
+ * Copyright 2015-2017 Jeeva Kandasamy (jkandasa@gmail.com)
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mycontroller.standalone.message;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.mycontroller.standalone.AppProperties;
+import org.mycontroller.standalone.message.McMessageUtils.MESSAGE_TYPE;
+import org.mycontroller.standalone.message.MessageStageLatency.STAGE;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+
+/**
+ * Keeps traces of the slowest and the most recent messages.
+ * Traces are kept on preallocated slots and copied in to preallocated records, tracing a message does not
+ * allocate memory. A message carries only the trace id, slot of a trace is reused by a later message.
+ * Trace of the message under execution is available on the executing thread, stage latencies recorded
+ * with {@link MessageStageLatency} are added to that trace.
+ * Completed traces are recorded on stripes selected by the thread, engine shards do not contend on a lock.
+ * When tracing is disabled, messages are timed only while a {@link IMessageCompletionListener} is registered.
+ * @author Jeeva Kandasamy (jkandasa)
+ * @since 0.0.3
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class MessageTracer {
+    public enum TRACE_TYPE {
+        SLOWEST("Slowest"),
+        RECENT("Recent");
+
+        private final String name;
+
+        private TRACE_TYPE(String name) {
+            this.name = name;
+        }
+
+        public String getText() {
+            return this.name;
+        }
+
+        public static TRACE_TYPE fromString(String text) {
+            if (text != null) {
+                for (TRACE_TYPE type : TRACE_TYPE.values()) {
+                    if (text.equalsIgnoreCase(type.getText())) {
+                        return type;
+                    }
+                }
+            }
+            return null;
+        }
+    }
+
+    //Messages in flight beyond this count reuse the slots of the oldest messages, those are not recorded
+    private static final int TRACES_SIZE = 4096;
+    private static final int MAX_STRIPES = 8;
+    private static final boolean ENABLED = AppProperties.getInstance().isMessageTraceEnabled();
+    private static final int RECENT_SIZE = Math.max(AppProperties.getInstance().getMessageTraceRecentSize(), 0);
+    private static final int SLOWEST_SIZE = Math.max(AppProperties.getInstance().getMessageTraceSlowestSize(), 0);
+    private static final MessageTrace[] TRACES = createTraces(TRACES_SIZE);
+    private static final AtomicLong TRACE_ID = new AtomicLong(0);
+    //Trace id of the message executing on this thread, 0 when none
+    private static final ThreadLocal<long[]> CURRENT = new ThreadLocal<long[]>() {
+        @Override
+        protected long[] initialValue() {
+            return new long[1];
+        }
+    };
+    private static final TraceStripe[] STRIPES = createStripes();
+    //Copied on update, iterated without allocation
+    private static volatile IMessageCompletionListener[] listeners = new IMessageCompletionListener[0];
+
+    private static MessageTrace[] createTraces(int size) {
+        MessageTrace[] traces = new MessageTrace[size];
+        for (int index = 0; index < traces.length; index++) {
+            traces[index] = new MessageTrace();
+        }
+        return traces;
+    }
+
+    private static TraceRecord[] createRecords(int size) {
+        TraceRecord[] records = new TraceRecord[size];
+        for (int index = 0; index < records.length; index++) {
+            records[index] = new TraceRecord();
+        }
+        return records;
+    }
+
+    //Stripes count is a power of two, up to the number of processors
+    private static TraceStripe[] createStripes() {
+        int count = ENABLED ? Math.min(Runtime.getRuntime().availableProcessors(), MAX_STRIPES) : 1;
+        TraceStripe[] stripes = new TraceStripe[Integer.highestOneBit(Math.max(count, 1) * 2 - 1)];
+        for (int index = 0; index < stripes.length; index++) {
+            stripes[index] = new TraceStripe();
+        }
+        return stripes;
+    }
+
+    private static MessageTrace getTrace(long id) {
+        return TRACES[(int) (id & (TRACES.length - 1))];
+    }
+
+    //Each engine shard is a single thread, records on its own stripe
+    private static TraceStripe getStripe() {
+        return STRIPES[(int) (Thread.currentThread().getId() & (STRIPES.length - 1))];
+    }
+
+    public static boolean isEnabled() {
+        return ENABLED;
+    }
+
+    //Messages are timed when tracing enabled or someone listens for the completion
+    private static boolean isActive() {
+        return ENABLED || listeners.length > 0;
+    }
+
+    public static synchronized void addCompletionListener(IMessageCompletionListener listener) {
+        IMessageCompletionListener[] _listeners = Arrays.copyOf(listeners, listeners.length + 1);
+        _listeners[_listeners.length - 1] = listener;
+        listeners = _listeners;
+    }
+
+    public static synchronized void removeCompletionListener(IMessageCompletionListener listener) {
+        List<IMessageCompletionListener> _listeners = new ArrayList<IMessageCompletionListener>(
+                Arrays.asList(listeners));
+        _listeners.remove(listener);
+        listeners = _listeners.toArray(new IMessageCompletionListener[_listeners.size()]);
+    }
+
+    /**
+     * Starts a trace for the message taken from the queue, trace is set as current trace of this thread.
+     */
+    static void begin(RawMessage rawMessage) {
+        if (!isActive()) {
+            return;
+        }
+        long id = TRACE_ID.incrementAndGet();
+        getTrace(id).reset(id, rawMessage);
+        CURRENT.get()[0] = id;
+    }
+
+    static void end() {
+        if (isActive()) {
+            CURRENT.get()[0] = 0;
+        }
+    }
+
+    /**
+     * Attaches trace of the message under execution on this thread to the {@link McMessage}.
+     */
+    public static void attach(McMessage mcMessage) {
+        if (isActive()) {
+            mcMessage.setTraceId(CURRENT.get()[0]);
+        }
+    }
+
+    /**
+     * Sets trace of the message as current trace of this thread and returns previous trace id, to be restored
+     * with {@link #exit(long)}
+     */
+    static long enter(McMessage mcMessage) {
+        if (!isActive()) {
+            return 0;
+        }
+        long[] current = CURRENT.get();
+        long previousId = current[0];
+        long id = mcMessage.getTraceId();
+        if (id != 0) {
+            getTrace(id).engineStarted(id);
+        }
+        current[0] = id;
+        return previousId;
+    }
+
+    static void exit(long previousId) {
+        if (isActive()) {
+            CURRENT.get()[0] = previousId;
+        }
+    }
+
+    static void addStage(STAGE stage, long micros) {
+        if (!isActive()) {
+            return;
+        }
+        long id = CURRENT.get()[0];
+        if (id != 0) {
+            getTrace(id).addStage(id, stage, micros);
+        }
+    }
+
+    static void complete(McMessage mcMessage) {
+        long id = mcMessage.getTraceId();
+        if (id == 0) {
+            return;
+        }
+        MessageTrace trace = getTrace(id);
+        if (!trace.complete(id)) {
+            return;
+        }
+        long totalMicros = trace.getTotalMicros(System.nanoTime());
+        IMessageCompletionListener[] _listeners = listeners;
+        for (int index = 0; index < _listeners.length; index++) {
+            _listeners[index].messageCompleted(trace.getGatewayId(), totalMicros);
+        }
+        if (ENABLED) {
+            getStripe().record(id, trace, mcMessage, totalMicros);
+        }
+    }
+
+    public static void clear() {
+        for (TraceStripe stripe : STRIPES) {
+            stripe.clear();
+        }
+    }
+
+    /**
+     * Returns traces filtered by gateway, node and sensor. Slowest traces are sorted by total time,
+     * recent traces by received order, in descending order.
+     */
+    public static List<Map<String, Object>> getTraces(TRACE_TYPE traceType, Integer gatewayId, String nodeEui,
+            String sensorId, Integer limit) {
+        List<TraceRecord> records = new ArrayList<TraceRecord>();
+        for (TraceStripe stripe : STRIPES) {
+            stripe.collect(traceType, records, gatewayId, nodeEui, sensorId);
+        }
+        int size;
+        if (traceType == TRACE_TYPE.RECENT) {
+            size = RECENT_SIZE;
+            Collections.sort(records, new Comparator<TraceRecord>() {
+                @Override
+                public int compare(TraceRecord record1, TraceRecord record2) {
+                    return Long.compare(record2.id, record1.id);
+                }
+            });
+        } else {
+            size = SLOWEST_SIZE;
+            Collections.sort(records, new Comparator<TraceRecord>() {
+                @Override
+                public int compare(TraceRecord record1, TraceRecord record2) {
+                    return Long.compare(record2.totalMicros, record1.totalMicros);
+                }
+            });
+        }
+        if (limit != null) {
+            size = Math.min(size, limit);
+        }
+        List<Map<String, Object>> traces = new ArrayList<Map<String, Object>>();
+        for (TraceRecord record : records) {
+            if (traces.size() >= size) {
+                break;
+            }
+            traces.add(record.toMap());
+        }
+        return traces;
+    }
+
+    private static void addIfMatches(List<TraceRecord> records, TraceRecord record, Integer gatewayId,
+            String nodeEui, String sensorId) {
+        if (gatewayId != null && !gatewayId.equals(record.gatewayId)) {
+            return;
+        }
+        if (nodeEui != null && !nodeEui.equals(record.nodeEui)) {
+            return;
+        }
+        if (sensorId != null && !sensorId.equals(record.sensorId)) {
+            return;
+        }
+        records.add(record.copy());
+    }
+
+    //Slowest and recent traces recorded by a set of threads
+    private static class TraceStripe {
+        private final TraceRecord[] recent = createRecords(RECENT_SIZE);
+        private final TraceRecord[] slowest = createRecords(SLOWEST_SIZE);
+        private long recentCount = 0;
+        private int slowestCount = 0;
+        private int slowestMinIndex = 0;
+        //Total time of the fastest message on the slowest traces, when slowest traces are full
+        private long slowestThreshold = -1;
+
+        private synchronized void record(long id, MessageTrace trace, McMessage mcMessage, long totalMicros) {
+            if (recent.length > 0) {
+                recent[(int) (recentCount++ % recent.length)].update(id, trace, mcMessage, totalMicros);
+            }
+            if (slowest.length == 0 || totalMicros <= slowestThreshold) {
+                return;
+            }
+            if (slowestCount < slowest.length) {
+                slowest[slowestCount++].update(id, trace, mcMessage, totalMicros);
+            } else {
+                slowest[slowestMinIndex].update(id, trace, mcMessage, totalMicros);
+            }
+            if (slowestCount == slowest.length) {
+                slowestMinIndex = 0;
+                for (int index = 1; index < slowest.length; index++) {
+                    if (slowest[index].totalMicros < slowest[slowestMinIndex].totalMicros) {
+                        slowestMinIndex = index;
+                    }
+                }
+                slowestThreshold = slowest[slowestMinIndex].totalMicros;
+            }
+        }
+
+        private synchronized void clear() {
+            recentCount = 0;
+            slowestCount = 0;
+            slowestMinIndex = 0;
+            slowestThreshold = -1;
+        }
+
+        private synchronized void collect(TRACE_TYPE traceType, List<TraceRecord> records, Integer gatewayId,
+                String nodeEui, String sensorId) {
+            if (traceType == TRACE_TYPE.RECENT) {
+                int count = (int) Math.min(recentCount, recent.length);
+                for (int index = 1; index <= count; index++) {
+                    addIfMatches(records, recent[(int) ((recentCount - index) % recent.length)], gatewayId,
+                            nodeEui, sensorId);
+                }
+            } else {
+                for (int index = 0; index < slowestCount; index++) {
+                    addIfMatches(records, slowest[index], gatewayId, nodeEui, sensorId);
+                }
+            }
+        }
+    }
+
+    //Preallocated slot of a trace, updated in place
+    private static class TraceRecord {
+        private long id;
+        private long receivedTime;
+        private Integer gatewayId;
+        private String nodeEui;
+        private String sensorId;
+        private MESSAGE_TYPE type;
+        private String subType;
+        private boolean isTxMessage;
+        private long queueMicros;
+        private long engineWaitMicros;
+        private long totalMicros;
+        private final long[] stageMicros = new long[STAGE.values().length];
+
+        private void update(long id, MessageTrace trace, McMessage mcMessage, long totalMicros) {
+            this.id = id;
+            this.receivedTime = trace.getReceivedTime();
+            this.gatewayId = trace.getGatewayId();
+            this.nodeEui = mcMessage.getNodeEui();
+            this.sensorId = mcMessage.getSensorId();
+            this.type = mcMessage.getType();
+            this.subType = mcMessage.getSubType();
+            this.isTxMessage = mcMessage.isTxMessage();
+            this.queueMicros = trace.getQueueMicros();
+            this.engineWaitMicros = trace.getEngineWaitMicros();
+            this.totalMicros = totalMicros;
+            for (STAGE stage : STAGE.values()) {
+                stageMicros[stage.ordinal()] = trace.getStageMicros(stage);
+            }
+        }
+
+        private TraceRecord copy() {
+            TraceRecord record = new TraceRecord();
+            record.id = id;
+            record.receivedTime = receivedTime;
+            record.gatewayId = gatewayId;
+            record.nodeEui = nodeEui;
+            record.sensorId = sensorId;
+            record.type = type;
+            record.subType = subType;
+            record.isTxMessage = isTxMessage;
+            record.queueMicros = queueMicros;
+            record.engineWaitMicros = engineWaitMicros;
+            record.totalMicros = totalMicros;
+            System.arraycopy(stageMicros, 0, record.stageMicros, 0, stageMicros.length);
+            return record;
+        }
+
+        private Map<String, Object> toMap() {
+            LinkedHashMap<String, Object> data = new LinkedHashMap<String, Object>();
+            data.put("receivedTime", receivedTime);
+            data.put("gatewayId", gatewayId);
+            data.put("nodeEui", nodeEui);
+            data.put("sensorId", sensorId);
+            data.put("type", type != null ? type.getText() : null);
+            data.put("subType", subType);
+            data.put("isTxMessage", isTxMessage);
+            data.put("queueTime", queueMicros);
+            data.put("engineWaitTime", engineWaitMicros);
+            data.put("totalTime", totalMicros);
+            LinkedHashMap<String, Object> stages = new LinkedHashMap<String, Object>();
+            for (STAGE stage : STAGE.values()) {
+                if (stageMicros[stage.ordinal()] > 0) {
+                    stages.put(stage.getText(), stageMicros[stage.ordinal()]);
+                }
+            }
+            data.put("stages", stages);
+            return data;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2015-2017 Jeeva Kandasamy (jkandasa@gmail.com)
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mycontroller.standalone.message;
+
+import org.mycontroller.standalone.message.McMessageUtils.MESSAGE_PRIORITY;
+
+/**
+ * Keeps a store per message priority. Messages are returned from the highest priority store first,
+ * order is maintained within a priority. Messages without priority are kept as normal priority.
+ * @author Jeeva Kandasamy (jkandasa)
+ * @since 0.0.3
+ */
+public class PriorityRawMessageStore implements IRawMessageStore {
+    private final IRawMessageStore[] stores;
+
+    /**
+     * @param stores store for each priority, indexed by {@link MESSAGE_PRIORITY} ordinal
+     */
+    public PriorityRawMessageStore(IRawMessageStore[] stores) {
+        if (stores.length != MESSAGE_PRIORITY.values().length) {
+            throw new IllegalArgumentException("Required a store for each priority");
+        }
+        this.stores = stores;
+    }
+
+    @Override
+    public void add(RawMessage rawMessage) {
+        MESSAGE_PRIORITY priority = rawMessage.getPriority() == null ? MESSAGE_PRIORITY.NORMAL : rawMessage
+                .getPriority();
+        stores[priority.ordinal()].add(rawMessage);
+    }
+
+    @Override
+    public RawMessage poll() {
+        for (IRawMessageStore store : stores) {
+            RawMessage rawMessage = store.poll();
+            if (rawMessage != null) {
+                return rawMessage;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public int clear() {
+        int count = 0;
+        for (IRawMessageStore store : stores) {
+            count += store.clear();
+        }
+        return count;
+    }
+
+    @Override
+    public int destroy() {
+        int count = 0;
+        for (IRawMessageStore store : stores) {
+            count += store.destroy();
+        }
+        return count;
+    }
+
+    @Override
+    public int size() {
+        int size = 0;
+        for (IRawMessageStore store : stores) {
+            size += store.size();
+        }
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        for (IRawMessageStore store : stores) {
+            if (!store.isEmpty()) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -17,15 +17,16 @@
 package org.mycontroller.standalone.message;
 
 import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
 
 import org.mycontroller.standalone.AppProperties.NETWORK_TYPE;
 import org.mycontroller.standalone.gateway.GatewayUtils;
+import org.mycontroller.standalone.message.McMessageUtils.MESSAGE_PRIORITY;
 
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
-import lombok.ToString;
 
 /**
  * @author Jeeva Kandasamy (jkandasa)
@@ -33,7 +34,6 @@ import lombok.ToString;
  */
 @Data
 @Builder
-@ToString
 @NoArgsConstructor
 @AllArgsConstructor
 public class RawMessage implements Serializable {
@@ -45,6 +45,12 @@ public class RawMessage implements Serializable {
     private boolean isTxMessage = false;
     private NETWORK_TYPE networkType;
     private Long timestamp;
+    //Queue entry time in nanoseconds(System.nanoTime), updated by RawMessageQueue
+    private Long queuedTime;
+    //Queue sequence number, unique across restarts. Assigned by RawMessageQueue
+    private Long sequence;
+    //Priority of Tx message, null treated as normal priority
+    private MESSAGE_PRIORITY priority;
 
     public NETWORK_TYPE getNetworkType() {
         if (networkType == null) {
@@ -58,4 +64,28 @@ public class RawMessage implements Serializable {
         return ((String) this.data).getBytes();
     }
 
+    //Payload of received MQTT messages kept as bytes, decoded when the message is processed
+    public String getDataString() {
+        if (data instanceof byte[]) {
+            return new String((byte[]) data, StandardCharsets.UTF_8);
+        }
+        return (String) data;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append("RawMessage(gatewayId=").append(gatewayId);
+        builder.append(", data=").append(data instanceof byte[] ? getDataString() : data);
+        builder.append(", subData=").append(subData);
+        builder.append(", isTxMessage=").append(isTxMessage);
+        builder.append(", networkType=").append(networkType);
+        builder.append(", timestamp=").append(timestamp);
+        builder.append(", queuedTime=").append(queuedTime);
+        builder.append(", sequence=").append(sequence);
+        builder.append(", priority=").append(priority);
+        builder.append(")");
+        return builder.toString();
+    }
+
 }
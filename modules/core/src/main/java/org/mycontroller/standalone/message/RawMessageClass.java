@@ -0,0 +1,131 @@
+/*
+ * Copyright 2015-2017 Jeeva Kandasamy (jkandasa@gmail.com)
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mycontroller.standalone.message;
+
+import org.mycontroller.standalone.AppProperties.NETWORK_TYPE;
+import org.mycontroller.standalone.McObjectManager;
+import org.mycontroller.standalone.gateway.IGateway;
+import org.mycontroller.standalone.gateway.model.GatewayMQTT;
+import org.mycontroller.standalone.gateway.mqtt.MqttTopicRouter;
+import org.mycontroller.standalone.message.McMessageUtils.MESSAGE_TYPE;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Class of a raw message, used by {@link RawMessageQueue} to apply load shedding policies.
+ * Parses only the fields required from the raw data, without creating provider messages.
+ * @author Jeeva Kandasamy (jkandasa)
+ * @since 0.0.3
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class RawMessageClass {
+    public enum TYPE {
+        TX,
+        TX_STREAM,
+        RX_TELEMETRY,
+        RX_STREAM,
+        RX_OTHER;
+    }
+
+    private static final RawMessageClass TX = new RawMessageClass(TYPE.TX, null);
+    private static final RawMessageClass TX_STREAM = new RawMessageClass(TYPE.TX_STREAM, null);
+    private static final RawMessageClass RX_STREAM = new RawMessageClass(TYPE.RX_STREAM, null);
+    private static final RawMessageClass RX_OTHER = new RawMessageClass(TYPE.RX_OTHER, null);
+    // MySensors message type id of C_SET and C_STREAM
+    private static final String MYS_C_SET = "1";
+    private static final String MYS_C_STREAM = "4";
+
+    private final TYPE type;
+    // node, sensor and sub type of a telemetry message. Used to coalesce messages
+    private final String key;
+
+    public static RawMessageClass get(RawMessage rawMessage) {
+        RawMessageClass messageClass = parse(rawMessage);
+        if (rawMessage.isTxMessage()) {
+            // firmware responses are part of a transfer in progress on the node
+            return messageClass == RX_STREAM ? TX_STREAM : TX;
+        }
+        return messageClass;
+    }
+
+    private static RawMessageClass parse(RawMessage rawMessage) {
+        if (!(rawMessage.getData() instanceof String) && rawMessage.getSubData() == null) {
+            return RX_OTHER;
+        }
+        NETWORK_TYPE networkType = rawMessage.getNetworkType();
+        if (networkType == NETWORK_TYPE.MY_SENSORS) {
+            if (rawMessage.getSubData() != null) {
+                // MY_MQTT_TOPIC_PREFIX/NODE-KEY_ID/SENSOR_VARIABLE-KEY_ID/CMD-OPERATION_TYPE/ACK-FLAG/SUB-OPERATION_TYPE
+                return get(rawMessage.getSubData(), getTopicLevelsOffset(rawMessage),
+                        MqttTopicRouter.LEVEL_SEPARATOR, 0, 1, 2, 4, MYS_C_SET, MYS_C_STREAM);
+            }
+            // NODE-ID;SENSOR-ID;CMD;ACK;SUB-TYPE;PAYLOAD
+            return get((String) rawMessage.getData(), 0, ';', 0, 1, 2, 4, MYS_C_SET, MYS_C_STREAM);
+        } else if (networkType == NETWORK_TYPE.MY_CONTROLLER && rawMessage.getSubData() != null) {
+            // MY_MQTT_TOPIC_PREFIX/NODE-EUI/SENSOR_ID/MESSAGE_TYPE/MESSAGE_SUB_TYPE/ACK
+            return get(rawMessage.getSubData(), getTopicLevelsOffset(rawMessage), MqttTopicRouter.LEVEL_SEPARATOR,
+                    0, 1, 2, 3, MESSAGE_TYPE.C_SET.name(), MESSAGE_TYPE.C_STREAM.name());
+        }
+        return RX_OTHER;
+    }
+
+    // topic prefix can have more than one level, node level offset is taken from the gateway topic router
+    private static int getTopicLevelsOffset(RawMessage rawMessage) {
+        String topic = rawMessage.getSubData();
+        IGateway gateway = McObjectManager.getGateway(rawMessage.getGatewayId());
+        if (gateway != null && gateway.getGateway() instanceof GatewayMQTT) {
+            MqttTopicRouter router = MqttTopicRouter.get((GatewayMQTT) gateway.getGateway());
+            return rawMessage.isTxMessage() ? router.getPublishLevelsOffset(topic) : router.getLevelsOffset(topic);
+        }
+        return topic.indexOf(MqttTopicRouter.LEVEL_SEPARATOR) + 1;
+    }
+
+    private static RawMessageClass get(String data, int start, char separator, int nodeIndex, int sensorIndex,
+            int typeIndex, int subTypeIndex, String setType, String streamType) {
+        // start index of each field
+        int[] fields = new int[7];
+        fields[0] = start;
+        int count = 1;
+        for (int index = start; index < data.length() && count < fields.length; index++) {
+            if (data.charAt(index) == separator) {
+                fields[count++] = index + 1;
+            }
+        }
+        int maxIndex = Math.max(Math.max(nodeIndex, sensorIndex), Math.max(typeIndex, subTypeIndex));
+        if (count <= maxIndex) {
+            return RX_OTHER;
+        }
+        String type = field(data, fields, count, typeIndex);
+        if (type.equals(streamType)) {
+            return RX_STREAM;
+        } else if (type.equals(setType)) {
+            String key = field(data, fields, count, nodeIndex) + separator + field(data, fields, count, sensorIndex)
+                    + separator + field(data, fields, count, subTypeIndex);
+            return new RawMessageClass(TYPE.RX_TELEMETRY, key);
+        }
+        return RX_OTHER;
+    }
+
+    private static String field(String data, int[] fields, int count, int index) {
+        int end = index + 1 < count ? fields[index + 1] - 1 : data.length();
+        return data.substring(fields[index], end).trim();
+    }
+}
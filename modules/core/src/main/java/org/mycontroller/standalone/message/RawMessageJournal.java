@@ -0,0 +1,344 @@
+/*
+ * Copyright 2015-2017 Jeeva Kandasamy (jkandasa@gmail.com)
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mycontroller.standalone.message;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.zip.CRC32;
+
+import org.apache.commons.lang.SerializationException;
+import org.apache.commons.lang.SerializationUtils;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Append-only write-ahead journal of the raw messages queue.
+ * Every added message is written as PUT record and every removed message as ACK record.
+ * Records are written by a single writer thread, all the records collected while the previous write
+ * was in progress are written and synced to the disk together (group commit).
+ * On start, PUT records without ACK record are replayed. Journal is compacted when it grows.
+ * @author Jeeva Kandasamy (jkandasa)
+ * @since 0.0.3
+ */
+@Slf4j
+public class RawMessageJournal {
+    public static final String JOURNAL_FILE_NAME = "mc_raw_messages.journal";
+    private static final byte RECORD_PUT = 1;
+    private static final byte RECORD_ACK = 2;
+    //Compact the journal once it grows beyond this size and twice of the size after last compaction
+    private static final long COMPACT_THRESHOLD = 8 * 1024 * 1024;
+    //Write a batch once it reaches this size, in bytes
+    private static final int MAX_BATCH_SIZE = 1024 * 1024;
+    //Maximum record size accepted on replay, to detect corrupted records
+    private static final int MAX_RECORD_SIZE = 16 * 1024 * 1024;
+    //Writer idle wait, in milliseconds
+    private static final long WRITER_IDLE_WAIT = 1000;
+
+    private final Path journalFile;
+    private final Path compactFile;
+    private final ConcurrentLinkedQueue<JournalRecord> pendingRecords = new ConcurrentLinkedQueue<JournalRecord>();
+    private final ConcurrentHashMap<Long, RawMessage> liveMessages = new ConcurrentHashMap<Long, RawMessage>();
+    private final ByteArrayOutputStream batch = new ByteArrayOutputStream(64 * 1024);
+    private final DataOutputStream batchStream = new DataOutputStream(batch);
+    private final CRC32 crc32 = new CRC32();
+    private FileChannel channel;
+    private Thread writer;
+    private volatile boolean running = false;
+    private long sizeAfterCompaction = 0;
+
+    public RawMessageJournal(String location) {
+        journalFile = new File(location, JOURNAL_FILE_NAME).toPath();
+        compactFile = new File(location, JOURNAL_FILE_NAME + ".compact").toPath();
+    }
+
+    /**
+     * Opens the journal and starts the writer thread.
+     * @param clear when true, existing journal will be discarded
+     * @return not acknowledged messages of the existing journal, in the added order
+     * @throws IOException when unable to read or write the journal
+     */
+    public synchronized List<RawMessage> open(boolean clear) throws IOException {
+        if (running) {
+            throw new IllegalStateException("Journal already opened");
+        }
+        Files.deleteIfExists(compactFile);
+        if (clear) {
+            Files.deleteIfExists(journalFile);
+        } else if (Files.exists(journalFile)) {
+            replay();
+        }
+        List<RawMessage> rawMessages = new ArrayList<RawMessage>();
+        List<Long> sequences = new ArrayList<Long>(liveMessages.keySet());
+        Collections.sort(sequences);
+        for (Long sequence : sequences) {
+            rawMessages.add(liveMessages.get(sequence));
+        }
+        //Rewrite the journal only with not acknowledged messages
+        compact();
+        running = true;
+        writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                writeRecords();
+            }
+        }, "mc-raw-messages-journal");
+        writer.start();
+        _logger.info("Messages journal opened. Location:{}, replayed messages:{}", journalFile,
+                rawMessages.size());
+        return rawMessages;
+    }
+
+    public void close() {
+        Thread _writer;
+        synchronized (this) {
+            if (!running) {
+                return;
+            }
+            running = false;
+            _writer = writer;
+        }
+        LockSupport.unpark(_writer);
+        try {
+            _writer.join(TimeUnit.MINUTES.toMillis(1));
+        } catch (InterruptedException ex) {
+            _logger.debug("Exception while waiting for journal writer,", ex);
+        }
+        synchronized (this) {
+            try {
+                channel.close();
+            } catch (IOException ex) {
+                _logger.error("Unable to close messages journal,", ex);
+            }
+        }
+        _logger.info("Messages journal closed with {} message(s)", liveMessages.size());
+    }
+
+    /**
+     * Records the message as added. Message should have the sequence number.
+     * Calling again with the same message has no effect.
+     */
+    public void put(RawMessage rawMessage) {
+        if (!running) {
+            return;
+        }
+        if (liveMessages.putIfAbsent(rawMessage.getSequence(), rawMessage) == null) {
+            append(new JournalRecord(RECORD_PUT, rawMessage.getSequence(), rawMessage));
+        }
+    }
+
+    /**
+     * Records the message as removed.
+     */
+    public void ack(RawMessage rawMessage) {
+        if (!running) {
+            return;
+        }
+        if (liveMessages.remove(rawMessage.getSequence()) != null) {
+            append(new JournalRecord(RECORD_ACK, rawMessage.getSequence(), null));
+        }
+    }
+
+    private void append(JournalRecord record) {
+        pendingRecords.add(record);
+        LockSupport.unpark(writer);
+    }
+
+    private void writeRecords() {
+        while (running || !pendingRecords.isEmpty()) {
+            if (pendingRecords.isEmpty()) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(WRITER_IDLE_WAIT));
+                continue;
+            }
+            try {
+                synchronized (this) {
+                    flush();
+                    if (pendingRecords.isEmpty()) {
+                        if (liveMessages.isEmpty() && channel.size() > 0) {
+                            //All the written messages acknowledged
+                            channel.truncate(0);
+                            sizeAfterCompaction = 0;
+                        } else if (channel.size() > Math.max(COMPACT_THRESHOLD, sizeAfterCompaction * 2)) {
+                            compact();
+                        }
+                    }
+                }
+            } catch (Exception ex) {
+                _logger.error("Unable to write messages journal,", ex);
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(WRITER_IDLE_WAIT));
+            }
+        }
+        _logger.debug("Messages journal writer terminated");
+    }
+
+    private void flush() throws IOException {
+        JournalRecord record;
+        while ((record = pendingRecords.poll()) != null) {
+            writeRecord(record);
+            if (batch.size() >= MAX_BATCH_SIZE) {
+                break;
+            }
+        }
+        if (batch.size() > 0) {
+            writeBatch(channel);
+            channel.force(false);
+        }
+    }
+
+    private void writeRecord(JournalRecord record) throws IOException {
+        if (record.type == RECORD_PUT) {
+            byte[] data;
+            try {
+                data = SerializationUtils.serialize(record.rawMessage);
+            } catch (SerializationException ex) {
+                _logger.error("Unable to serialize {}, not added in to journal", record.rawMessage, ex);
+                return;
+            }
+            crc32.reset();
+            crc32.update(data);
+            batchStream.writeByte(RECORD_PUT);
+            batchStream.writeLong(record.sequence);
+            batchStream.writeInt(data.length);
+            batchStream.writeInt((int) crc32.getValue());
+            batchStream.write(data);
+        } else {
+            batchStream.writeByte(RECORD_ACK);
+            batchStream.writeLong(record.sequence);
+        }
+    }
+
+    private void writeBatch(FileChannel fileChannel) throws IOException {
+        batchStream.flush();
+        ByteBuffer buffer = ByteBuffer.wrap(batch.toByteArray());
+        batch.reset();
+        while (buffer.hasRemaining()) {
+            fileChannel.write(buffer);
+        }
+    }
+
+    private void compact() throws IOException {
+        List<Long> sequences = new ArrayList<Long>(liveMessages.keySet());
+        Collections.sort(sequences);
+        FileChannel compactChannel = FileChannel.open(compactFile, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            for (Long sequence : sequences) {
+                RawMessage rawMessage = liveMessages.get(sequence);
+                if (rawMessage != null) {
+                    writeRecord(new JournalRecord(RECORD_PUT, sequence, rawMessage));
+                    if (batch.size() >= MAX_BATCH_SIZE) {
+                        writeBatch(compactChannel);
+                    }
+                }
+            }
+            writeBatch(compactChannel);
+            compactChannel.force(true);
+        } finally {
+            compactChannel.close();
+        }
+        if (channel != null) {
+            channel.close();
+        }
+        Files.move(compactFile, journalFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        channel = FileChannel.open(journalFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        sizeAfterCompaction = channel.size();
+        _logger.debug("Messages journal compacted. Messages:{}, size:{} bytes", sequences.size(),
+                sizeAfterCompaction);
+    }
+
+    private void replay() throws IOException {
+        TreeMap<Long, RawMessage> rawMessages = new TreeMap<Long, RawMessage>();
+        DataInputStream inputStream = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(journalFile.toFile())));
+        try {
+            while (true) {
+                int type = inputStream.read();
+                if (type == -1) {
+                    break;
+                }
+                long sequence = inputStream.readLong();
+                if (type == RECORD_ACK) {
+                    rawMessages.remove(sequence);
+                } else if (type == RECORD_PUT) {
+                    int length = inputStream.readInt();
+                    int crc = inputStream.readInt();
+                    if (length < 0 || length > MAX_RECORD_SIZE) {
+                        _logger.warn("Invalid record length:{} on messages journal, ignoring rest of the journal",
+                                length);
+                        break;
+                    }
+                    byte[] data = new byte[length];
+                    inputStream.readFully(data);
+                    crc32.reset();
+                    crc32.update(data);
+                    if ((int) crc32.getValue() != crc) {
+                        _logger.warn("Checksum mismatch on messages journal, ignoring rest of the journal");
+                        break;
+                    }
+                    rawMessages.put(sequence, (RawMessage) SerializationUtils.deserialize(data));
+                } else {
+                    _logger.warn("Invalid record type:{} on messages journal, ignoring rest of the journal", type);
+                    break;
+                }
+            }
+        } catch (EOFException ex) {
+            //Incomplete record, crashed while writing
+            _logger.warn("Incomplete record on messages journal, ignoring it");
+        } catch (SerializationException ex) {
+            _logger.warn("Unable to read a message from journal, ignoring rest of the journal,", ex);
+        } finally {
+            inputStream.close();
+        }
+        liveMessages.putAll(rawMessages);
+    }
+
+    public int size() {
+        return liveMessages.size();
+    }
+
+    private static class JournalRecord {
+        private final byte type;
+        private final long sequence;
+        private final RawMessage rawMessage;
+
+        private JournalRecord(byte type, long sequence, RawMessage rawMessage) {
+            this.type = type;
+            this.sequence = sequence;
+            this.rawMessage = rawMessage;
+        }
+    }
+}
@@ -16,15 +16,38 @@
  */
 package org.mycontroller.standalone.message;
 
-import java.util.concurrent.BlockingQueue;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
-import org.mapdb.Atomic.Integer;
 import org.mycontroller.standalone.AppProperties;
+import org.mycontroller.standalone.AppProperties.MESSAGE_QUEUE_TELEMETRY_POLICY;
+import org.mycontroller.standalone.AppProperties.MESSAGE_QUEUE_TX_POLICY;
+import org.mycontroller.standalone.AppProperties.MESSAGE_QUEUE_TYPE;
 import org.mycontroller.standalone.MapDbFactory;
+import org.mycontroller.standalone.message.McMessageUtils.MESSAGE_PRIORITY;
 
 import lombok.extern.slf4j.Slf4j;
 
 /**
+ * Raw messages queue. Messages are kept on independent queues(lanes) per gateway,
+ * so that a slow gateway will not block messages of other gateways.
+ * Order of the messages is guaranteed only within a gateway.
+ * Messages are stored on MapDB or on in-memory ring buffers with a write-ahead journal,
+ * selected by {@link AppProperties#getMessageQueueType()}.
+ * When a gateway queue reaches the capacity, messages are shed by the message class:
+ * Rx C_SET messages are dropped(oldest first) or coalesced, Tx messages are blocked or rejected
+ * and C_STREAM messages(Rx and Tx) are never dropped or blocked.
+ * Within a gateway, Tx messages are taken by priority and then by the order.
  * @author Jeeva Kandasamy (jkandasa)
  * @since 0.0.1
  */
@@ -32,8 +55,19 @@ import lombok.extern.slf4j.Slf4j;
 public class RawMessageQueue {
     public static final String RAW_MESSAGES_QUEUE_NAME = "mc_raw_messages_queue";
     public static final String RAW_MESSAGES_QUEUE_COUNTER_NAME = "mc_raw_messages_queue_counter";
-    BlockingQueue<RawMessage> rawMessagesQueue;
-    private final Integer counter;
+    public static final String RAW_MESSAGES_QUEUE_LANES_NAME = "mc_raw_messages_queue_lanes";
+    private final ConcurrentHashMap<Integer, GatewayQueue> gatewayQueues =
+            new ConcurrentHashMap<Integer, GatewayQueue>();
+    private final Set<Integer> lanes;
+    private final MESSAGE_QUEUE_TYPE queueType;
+    private final AtomicLong sequence;
+    private RawMessageJournal journal = null;
+    //Shed statistics keys
+    public static final String SHED_RX_TELEMETRY_DROPPED = "rxTelemetryDropped";
+    public static final String SHED_RX_TELEMETRY_COALESCED = "rxTelemetryCoalesced";
+    public static final String SHED_RX_DROPPED = "rxDropped";
+    public static final String SHED_TX_BLOCKED = "txBlocked";
+    public static final String SHED_TX_REJECTED = "txRejected";
 
     //Do not load until some calls getInstance
     private static class RawMessageQueueHelper {
@@ -45,43 +79,559 @@ public class RawMessageQueue {
     }
 
     private RawMessageQueue() {
-        counter = MapDbFactory.getDbStore().getAtomicInteger(RAW_MESSAGES_QUEUE_COUNTER_NAME);
-        rawMessagesQueue = MapDbFactory.getDbStore().getQueue(RAW_MESSAGES_QUEUE_NAME);
-        if (AppProperties.getInstance().getClearMessagesQueueOnStart()) {
-            int offlineMessagesCount = counter.get();
-            rawMessagesQueue.clear();
-            counter.set(0);
+        queueType = AppProperties.getInstance().getMessageQueueType();
+        boolean clearOnStart = AppProperties.getInstance().getClearMessagesQueueOnStart();
+        //Sequence based on time, to keep it unique across restarts
+        long lastSequence = System.currentTimeMillis() * 1000;
+        List<RawMessage> journalMessages = new ArrayList<RawMessage>();
+        if (queueType == MESSAGE_QUEUE_TYPE.JOURNAL) {
+            journal = new RawMessageJournal(AppProperties.getInstance().getMcPersistentStoresLocation());
+            try {
+                journalMessages = journal.open(clearOnStart);
+                if (!journalMessages.isEmpty()) {
+                    lastSequence = Math.max(lastSequence,
+                            journalMessages.get(journalMessages.size() - 1).getSequence());
+                }
+            } catch (IOException ex) {
+                _logger.error("Unable to open messages journal! Messages will not be recovered on restart.", ex);
+            }
+        }
+        sequence = new AtomicLong(lastSequence);
+        lanes = MapDbFactory.getDbStore().getHashSet(RAW_MESSAGES_QUEUE_LANES_NAME);
+        //MapDB stores not used by the current mode
+        List<IRawMessageStore> staleStores = new ArrayList<IRawMessageStore>();
+        //Messages queue used by older versions, all the gateways shared single queue
+        staleStores.add(new MapDbRawMessageStore(RAW_MESSAGES_QUEUE_NAME, RAW_MESSAGES_QUEUE_COUNTER_NAME));
+        for (Integer gatewayId : new ArrayList<Integer>(lanes)) {
+            if (queueType == MESSAGE_QUEUE_TYPE.MAPDB) {
+                getGatewayQueue(gatewayId);
+            } else {
+                staleStores.add(createMapDbStore(gatewayId));
+            }
+        }
+        if (clearOnStart) {
+            int offlineMessagesCount = 0;
+            for (IRawMessageStore store : staleStores) {
+                offlineMessagesCount += store.clear();
+            }
+            for (GatewayQueue gatewayQueue : gatewayQueues.values()) {
+                offlineMessagesCount += gatewayQueue.clear();
+            }
             _logger.info("Cleared offline messages[{}] from the queue.", offlineMessagesCount);
         } else {
-            _logger.info("Continuing with offline messages[{}] in queue", counter.get());
-            //Allow some time for gateways to get ready
+            //Restore messages from journal, those are already in the journal
+            for (RawMessage rawMessage : journalMessages) {
+                restoreMessage(rawMessage);
+            }
+            //Move messages from older queues to gateway queues
+            for (IRawMessageStore store : staleStores) {
+                RawMessage rawMessage;
+                while ((rawMessage = store.poll()) != null) {
+                    restoreMessage(rawMessage);
+                }
+            }
+            _logger.info("Continuing with offline messages[{}] in queue", getQueueSize());
         }
+        _logger.debug("Raw message queue type:{}", queueType);
+    }
 
+    //Normal priority store uses the name of the store used before priorities
+    private static String getStoreName(String name, Integer gatewayId, MESSAGE_PRIORITY priority) {
+        if (priority == MESSAGE_PRIORITY.NORMAL) {
+            return name + "_" + gatewayId;
+        }
+        return name + "_" + gatewayId + "_" + priority.name().toLowerCase();
     }
 
-    public synchronized void putMessage(RawMessage rawMessage) {
-        rawMessagesQueue.add(rawMessage);
-        counter.incrementAndGet();
-        _logger.debug("Added new {}, queue size:{}", rawMessage, counter.get());
+    private IRawMessageStore createMapDbStore(Integer gatewayId) {
+        IRawMessageStore[] stores = new IRawMessageStore[MESSAGE_PRIORITY.values().length];
+        for (MESSAGE_PRIORITY priority : MESSAGE_PRIORITY.values()) {
+            stores[priority.ordinal()] = new MapDbRawMessageStore(
+                    getStoreName(RAW_MESSAGES_QUEUE_NAME, gatewayId, priority),
+                    getStoreName(RAW_MESSAGES_QUEUE_COUNTER_NAME, gatewayId, priority));
+        }
+        return new PriorityRawMessageStore(stores);
     }
 
-    public synchronized RawMessage getMessage() {
-        if (!rawMessagesQueue.isEmpty()) {
-            RawMessage rawMessage = this.rawMessagesQueue.remove();
-            counter.decrementAndGet();
-            _logger.debug("Removed a {}, queue size:{}", rawMessage, counter.get());
-            return rawMessage;
-        } else {
-            _logger.warn("There is no message in the queue, returning null");
-            return null;
+    private IRawMessageStore createStore(Integer gatewayId) {
+        if (queueType == MESSAGE_QUEUE_TYPE.JOURNAL) {
+            IRawMessageStore[] stores = new IRawMessageStore[MESSAGE_PRIORITY.values().length];
+            for (MESSAGE_PRIORITY priority : MESSAGE_PRIORITY.values()) {
+                stores[priority.ordinal()] = new JournalRawMessageStore(gatewayId,
+                        AppProperties.getInstance().getMessageQueueRingBufferSize(), journal);
+            }
+            return new PriorityRawMessageStore(stores);
+        }
+        return createMapDbStore(gatewayId);
+    }
+
+    private GatewayQueue getGatewayQueue(Integer gatewayId) {
+        GatewayQueue gatewayQueue = gatewayQueues.get(gatewayId);
+        if (gatewayQueue == null) {
+            synchronized (this) {
+                gatewayQueue = gatewayQueues.get(gatewayId);
+                if (gatewayQueue == null) {
+                    gatewayQueue = new GatewayQueue(gatewayId, createStore(gatewayId));
+                    gatewayQueues.put(gatewayId, gatewayQueue);
+                    lanes.add(gatewayId);
+                    _logger.debug("New message lane created for the gateway[id:{}]", gatewayId);
+                    //Notify lane listeners
+                    notifyAll();
+                }
+            }
+        }
+        return gatewayQueue;
+    }
+
+    private void restoreMessage(RawMessage rawMessage) {
+        if (rawMessage.getSequence() == null) {
+            rawMessage.setSequence(sequence.incrementAndGet());
+        }
+        //Queued time of previous run is not valid anymore
+        rawMessage.setQueuedTime(System.nanoTime());
+        getGatewayQueue(rawMessage.getGatewayId()).put(rawMessage);
+    }
+
+    /**
+     * Adds the message in to the gateway queue.
+     * @param rawMessage message to be added
+     * @return false when the message is rejected, as the gateway queue is full
+     */
+    public boolean putMessage(RawMessage rawMessage) {
+        rawMessage.setQueuedTime(System.nanoTime());
+        rawMessage.setSequence(sequence.incrementAndGet());
+        return getGatewayQueue(rawMessage.getGatewayId()).put(rawMessage);
+    }
+
+    /**
+     * Waits until a message is available on the gateway queue or the timeout expires.
+     * @param gatewayId gateway id of the queue
+     * @param timeout maximum time to wait
+     * @param unit unit of the timeout
+     * @return received message or null when timeout expired
+     * @throws InterruptedException when waiting thread interrupted
+     */
+    public RawMessage takeMessage(Integer gatewayId, long timeout, TimeUnit unit) throws InterruptedException {
+        //Queue of a removed gateway will not be created again by the consumer
+        GatewayQueue gatewayQueue = gatewayQueues.get(gatewayId);
+        return gatewayQueue == null ? null : gatewayQueue.take(unit.toNanos(timeout));
+    }
+
+    public RawMessage getMessage(Integer gatewayId) {
+        GatewayQueue gatewayQueue = gatewayQueues.get(gatewayId);
+        return gatewayQueue == null ? null : gatewayQueue.get();
+    }
+
+    /**
+     * Removes the queue of the gateway along with the queued messages and the persisted data.
+     * Used when the gateway is deleted, lane of the gateway should be stopped before.
+     * @param gatewayId gateway id of the queue
+     * @return number of removed messages
+     */
+    public int removeGatewayQueue(Integer gatewayId) {
+        GatewayQueue gatewayQueue;
+        synchronized (this) {
+            gatewayQueue = gatewayQueues.remove(gatewayId);
+            lanes.remove(gatewayId);
+        }
+        if (gatewayQueue == null) {
+            return 0;
         }
+        _logger.debug("Message lane removed for the gateway[id:{}]", gatewayId);
+        return gatewayQueue.destroy();
+    }
+
+    /**
+     * Waits until number of lanes goes beyond the known count or the timeout expires.
+     * @param knownLanes lanes count known by the caller
+     * @param timeout maximum time to wait, in milliseconds
+     * @throws InterruptedException when waiting thread interrupted
+     */
+    public synchronized void waitForNewLane(int knownLanes, long timeout) throws InterruptedException {
+        if (gatewayQueues.size() <= knownLanes) {
+            wait(timeout);
+        }
+    }
+
+    /**
+     * Releases the threads waiting on this queue, used on shutdown.
+     */
+    public void wakeUpAll() {
+        synchronized (this) {
+            notifyAll();
+        }
+        for (GatewayQueue gatewayQueue : gatewayQueues.values()) {
+            gatewayQueue.wakeUp();
+        }
+    }
+
+    /**
+     * Releases the lane waiting on the gateway queue.
+     * @param gatewayId gateway id of the queue
+     */
+    public void wakeUp(Integer gatewayId) {
+        GatewayQueue gatewayQueue = gatewayQueues.get(gatewayId);
+        if (gatewayQueue != null) {
+            gatewayQueue.wakeUp();
+        }
+    }
+
+    /**
+     * Closes the journal, if any. Messages added after close will not be recovered on restart.
+     */
+    public void close() {
+        if (journal != null) {
+            journal.close();
+        }
+    }
+
+    public MESSAGE_QUEUE_TYPE getQueueType() {
+        return queueType;
+    }
+
+    public List<Integer> getGatewayIds() {
+        return new ArrayList<Integer>(gatewayQueues.keySet());
     }
 
     public int getQueueSize() {
-        return counter.get();
+        int size = 0;
+        for (GatewayQueue gatewayQueue : gatewayQueues.values()) {
+            size += gatewayQueue.size();
+        }
+        return size;
     }
 
-    public synchronized boolean isEmpty() {
-        return rawMessagesQueue.isEmpty();
+    public int getQueueSize(Integer gatewayId) {
+        GatewayQueue gatewayQueue = gatewayQueues.get(gatewayId);
+        return gatewayQueue == null ? 0 : gatewayQueue.size();
+    }
+
+    public Map<String, Long> getShedStatistics() {
+        Map<String, Long> statistics = new HashMap<String, Long>();
+        for (GatewayQueue gatewayQueue : gatewayQueues.values()) {
+            for (Map.Entry<String, Long> entry : gatewayQueue.getShedStatistics().entrySet()) {
+                Long count = statistics.get(entry.getKey());
+                statistics.put(entry.getKey(), count == null ? entry.getValue() : count + entry.getValue());
+            }
+        }
+        return statistics;
+    }
+
+    public Map<String, Long> getShedStatistics(Integer gatewayId) {
+        GatewayQueue gatewayQueue = gatewayQueues.get(gatewayId);
+        return gatewayQueue == null ? new HashMap<String, Long>() : gatewayQueue.getShedStatistics();
+    }
+
+    public boolean isEmpty() {
+        for (GatewayQueue gatewayQueue : gatewayQueues.values()) {
+            if (!gatewayQueue.isEmpty()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public boolean isEmpty(Integer gatewayId) {
+        GatewayQueue gatewayQueue = gatewayQueues.get(gatewayId);
+        return gatewayQueue == null || gatewayQueue.isEmpty();
+    }
+
+    private static class GatewayQueue {
+        private final Integer gatewayId;
+        private final IRawMessageStore store;
+        private final int capacity;
+        private final MESSAGE_QUEUE_TELEMETRY_POLICY telemetryPolicy;
+        private final MESSAGE_QUEUE_TX_POLICY txPolicy;
+        private final long txBlockTimeout;
+        //Set while the lane waits for a message, producers notify only when it is set
+        private volatile boolean waiting = false;
+        //Thread consuming this queue, should not be blocked by its own Tx messages
+        private volatile Thread consumer = null;
+
+        //Shedding state, guarded by admission lock. Used only when the queue is bounded
+        private final Object admission = new Object();
+        //Queued Rx C_SET messages in the queue order, sequence to coalesce key
+        private final LinkedHashMap<Long, String> telemetry = new LinkedHashMap<Long, String>();
+        //Latest queued Rx C_SET message of a coalesce key
+        private final HashMap<String, Long> telemetryKeys = new HashMap<String, Long>();
+        //Dropped messages, still in the store. Will be skipped when removed from the store
+        private final Set<Long> tombstones = new HashSet<Long>();
+        //Dropped messages are skipped by the lane. Store is compacted only when dropped messages reach
+        //the capacity, the lane is not keeping up then. Keeps the store size within twice the capacity
+        private final int compactThreshold;
+        private int blockedProducers = 0;
+        //Set when the gateway is removed, blocked producers will be rejected
+        private boolean destroyed = false;
+
+        private final AtomicLong telemetryDropped = new AtomicLong(0);
+        private final AtomicLong telemetryCoalesced = new AtomicLong(0);
+        private final AtomicLong rxDropped = new AtomicLong(0);
+        private final AtomicLong txBlocked = new AtomicLong(0);
+        private final AtomicLong txRejected = new AtomicLong(0);
+
+        private GatewayQueue(Integer gatewayId, IRawMessageStore store) {
+            this.gatewayId = gatewayId;
+            this.store = store;
+            capacity = AppProperties.getInstance().getMessageQueueCapacity();
+            telemetryPolicy = AppProperties.getInstance().getMessageQueueTelemetryPolicy();
+            txPolicy = AppProperties.getInstance().getMessageQueueTxPolicy();
+            txBlockTimeout = AppProperties.getInstance().getMessageQueueTxBlockTimeout();
+            compactThreshold = Math.max(capacity, 1);
+        }
+
+        private boolean put(RawMessage rawMessage) {
+            if (capacity > 0) {
+                if (!admit(rawMessage)) {
+                    return false;
+                }
+            } else {
+                store.add(rawMessage);
+            }
+            _logger.debug("Added new {}, gateway[id:{}] queue size:{}", rawMessage, gatewayId, store.size());
+            //Wake up the lane, if it is waiting for a message
+            if (waiting) {
+                wakeUp();
+            }
+            return true;
+        }
+
+        private boolean admit(RawMessage rawMessage) {
+            RawMessageClass messageClass = RawMessageClass.get(rawMessage);
+            synchronized (admission) {
+                if (destroyed) {
+                    _logger.warn("Gateway[id:{}] queue removed, dropped {}", gatewayId, rawMessage);
+                    return false;
+                }
+                if (isFull()) {
+                    switch (messageClass.getType()) {
+                        case RX_STREAM:
+                        case TX_STREAM:
+                            //Firmware messages are never dropped or blocked
+                            break;
+                        case RX_TELEMETRY:
+                            if (telemetryPolicy == MESSAGE_QUEUE_TELEMETRY_POLICY.COALESCE
+                                    && telemetryKeys.containsKey(messageClass.getKey())) {
+                                drop(telemetryKeys.get(messageClass.getKey()));
+                                telemetryCoalesced.incrementAndGet();
+                            } else if (dropOldestTelemetry()) {
+                                telemetryDropped.incrementAndGet();
+                            } else {
+                                telemetryDropped.incrementAndGet();
+                                _logger.debug("Queue full, dropped {}", rawMessage);
+                                return false;
+                            }
+                            break;
+                        case RX_OTHER:
+                            if (dropOldestTelemetry()) {
+                                telemetryDropped.incrementAndGet();
+                            } else {
+                                rxDropped.incrementAndGet();
+                                _logger.warn("Gateway[id:{}] queue full, dropped {}", gatewayId, rawMessage);
+                                return false;
+                            }
+                            break;
+                        case TX:
+                            if (!waitForSpace() || destroyed) {
+                                txRejected.incrementAndGet();
+                                _logger.warn("Gateway[id:{}] queue full, rejected {}", gatewayId, rawMessage);
+                                return false;
+                            }
+                            break;
+                        default:
+                            break;
+                    }
+                }
+                store.add(rawMessage);
+                if (messageClass.getType() == RawMessageClass.TYPE.RX_TELEMETRY) {
+                    telemetry.put(rawMessage.getSequence(), messageClass.getKey());
+                    telemetryKeys.put(messageClass.getKey(), rawMessage.getSequence());
+                }
+            }
+            return true;
+        }
+
+        private boolean isFull() {
+            return store.size() - tombstones.size() >= capacity;
+        }
+
+        private boolean waitForSpace() {
+            if (txPolicy == MESSAGE_QUEUE_TX_POLICY.REJECT || Thread.currentThread() == consumer) {
+                return false;
+            }
+            txBlocked.incrementAndGet();
+            long deadline = System.currentTimeMillis() + txBlockTimeout;
+            blockedProducers++;
+            try {
+                while (isFull()) {
+                    long remaining = deadline - System.currentTimeMillis();
+                    if (remaining <= 0) {
+                        return false;
+                    }
+                    admission.wait(remaining);
+                }
+                return true;
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return false;
+            } finally {
+                blockedProducers--;
+            }
+        }
+
+        private boolean dropOldestTelemetry() {
+            Iterator<Long> iterator = telemetry.keySet().iterator();
+            if (!iterator.hasNext()) {
+                return false;
+            }
+            drop(iterator.next());
+            return true;
+        }
+
+        private void drop(Long sequence) {
+            removeTelemetry(sequence);
+            tombstones.add(sequence);
+            if (tombstones.size() >= compactThreshold) {
+                compact();
+            }
+        }
+
+        //Removes dropped messages from the store, keeps the order within a priority.
+        //Holds admission lock, lane can not take a message while the store is drained and added back
+        private void compact() {
+            int dropped = tombstones.size();
+            List<RawMessage> rawMessages = new ArrayList<RawMessage>(store.size());
+            RawMessage rawMessage;
+            while ((rawMessage = store.poll()) != null) {
+                if (!tombstones.remove(rawMessage.getSequence())) {
+                    rawMessages.add(rawMessage);
+                }
+            }
+            for (RawMessage liveMessage : rawMessages) {
+                store.add(liveMessage);
+            }
+            _logger.debug("Gateway[id:{}] queue compacted, removed:{}, queue size:{}", gatewayId,
+                    dropped - tombstones.size(), rawMessages.size());
+        }
+
+        private void removeTelemetry(Long sequence) {
+            String key = telemetry.remove(sequence);
+            if (key != null && sequence.equals(telemetryKeys.get(key))) {
+                telemetryKeys.remove(key);
+            }
+        }
+
+        //Removes the next message from the store, skips dropped messages
+        private RawMessage poll() {
+            consumer = Thread.currentThread();
+            if (capacity <= 0) {
+                return store.poll();
+            }
+            //Taken under admission lock, compaction should not reorder the store behind the lane
+            synchronized (admission) {
+                while (true) {
+                    RawMessage rawMessage = store.poll();
+                    if (rawMessage == null) {
+                        return null;
+                    }
+                    boolean dropped = tombstones.remove(rawMessage.getSequence());
+                    if (!dropped) {
+                        removeTelemetry(rawMessage.getSequence());
+                    }
+                    if (blockedProducers > 0) {
+                        admission.notifyAll();
+                    }
+                    if (!dropped) {
+                        return rawMessage;
+                    }
+                }
+            }
+        }
+
+        private RawMessage take(long timeoutNanos) throws InterruptedException {
+            long deadline = System.nanoTime() + timeoutNanos;
+            RawMessage rawMessage = poll();
+            while (rawMessage == null) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return null;
+                }
+                synchronized (this) {
+                    waiting = true;
+                    try {
+                        //Check again after set waiting flag, to avoid missing a message added in between
+                        if (store.isEmpty()) {
+                            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+                        }
+                    } finally {
+                        waiting = false;
+                    }
+                }
+                rawMessage = poll();
+            }
+            _logger.debug("Removed a {}, gateway[id:{}] queue size:{}", rawMessage, gatewayId, store.size());
+            return rawMessage;
+        }
+
+        private RawMessage get() {
+            RawMessage rawMessage = poll();
+            if (rawMessage != null) {
+                _logger.debug("Removed a {}, gateway[id:{}] queue size:{}", rawMessage, gatewayId, store.size());
+            } else {
+                _logger.warn("There is no message in the gateway[id:{}] queue, returning null", gatewayId);
+            }
+            return rawMessage;
+        }
+
+        private int clear() {
+            synchronized (admission) {
+                int count = store.clear() - tombstones.size();
+                telemetry.clear();
+                telemetryKeys.clear();
+                tombstones.clear();
+                admission.notifyAll();
+                return count;
+            }
+        }
+
+        private int destroy() {
+            int count;
+            synchronized (admission) {
+                destroyed = true;
+                count = store.destroy() - tombstones.size();
+                telemetry.clear();
+                telemetryKeys.clear();
+                tombstones.clear();
+                admission.notifyAll();
+            }
+            wakeUp();
+            return count;
+        }
+
+        private synchronized void wakeUp() {
+            notifyAll();
+        }
+
+        private Map<String, Long> getShedStatistics() {
+            Map<String, Long> statistics = new HashMap<String, Long>();
+            statistics.put(SHED_RX_TELEMETRY_DROPPED, telemetryDropped.get());
+            statistics.put(SHED_RX_TELEMETRY_COALESCED, telemetryCoalesced.get());
+            statistics.put(SHED_RX_DROPPED, rxDropped.get());
+            statistics.put(SHED_TX_BLOCKED, txBlocked.get());
+            statistics.put(SHED_TX_REJECTED, txRejected.get());
+            return statistics;
+        }
+
+        private int size() {
+            if (capacity <= 0) {
+                return store.size();
+            }
+            synchronized (admission) {
+                return store.size() - tombstones.size();
+            }
+        }
+
+        private boolean isEmpty() {
+            return size() == 0;
+        }
     }
 }
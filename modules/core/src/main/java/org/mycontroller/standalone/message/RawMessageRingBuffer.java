@@ -1,5 +1,5 @@
 /*
- * Copyright 2015-2016 Jeeva Kandasamy (jkandasa@gmail.com)
+ * Copyright 2015-2017 Jeeva Kandasamy (jkandasa@gmail.com)
  * and other contributors as indicated by the @author tags.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
@@ -14,12 +14,18 @@
  * See the License for the specific language governing permissions and
  * limitations under the License.
  */
-package org.mycontroller.standalone.gateway.serialport;
+package org.mycontroller.standalone.message;
+
+import org.mycontroller.standalone.utils.RingBuffer;
 
 /**
+ * Ring buffer of raw messages, used by journal store of the raw message queue.
  * @author Jeeva Kandasamy (jkandasa)
- * @since 0.0.2
+ * @since 0.0.3
  */
-public class SerialPortCommon {
-    public static final byte MESSAGE_SPLITTER = '\n';   // Message splitter char for serial message
+public class RawMessageRingBuffer extends RingBuffer<RawMessage> {
+
+    public RawMessageRingBuffer(int requestedCapacity) {
+        super(requestedCapacity);
+    }
 }
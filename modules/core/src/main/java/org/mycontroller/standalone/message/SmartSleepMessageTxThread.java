@@ -18,8 +18,6 @@ package org.mycontroller.standalone.message;
 
 import java.util.ArrayList;
 
-import org.mycontroller.standalone.McObjectManager;
-
 import lombok.extern.slf4j.Slf4j;
 
 /**
@@ -61,9 +59,8 @@ public class SmartSleepMessageTxThread implements Runnable {
                 McMessage mcMessage = SmartSleepMessageQueue.getInstance().getMessage(gatewayId, nodeEui);
                 if (mcMessage != null) {
                     McMessageUtils.sendToProviderBridgeFinal(mcMessage);
+                    //Tx delay is applied by gateway tx pacer
                     _logger.debug("Smart sleep message sent {}", mcMessage);
-                    Thread.sleep(McObjectManager.getGateway(mcMessage.getGatewayId()).getGateway().getTxDelay(),
-                            333333);
                 } else {
                     break;
                 }
@@ -0,0 +1,269 @@
+/*
+ * Copyright 2015-2017 Jeeva Kandasamy (jkandasa@gmail.com)
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mycontroller.standalone.metrics;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.mycontroller.standalone.AppProperties;
+import org.mycontroller.standalone.AppProperties.METRICS_INGEST_OVERFLOW_POLICY;
+import org.mycontroller.standalone.db.DaoUtils;
+import org.mycontroller.standalone.db.DataBaseUtils;
+import org.mycontroller.standalone.db.dao.BaseDao;
+import org.mycontroller.standalone.db.tables.MetricsBatteryUsage;
+import org.mycontroller.standalone.db.tables.MetricsBinaryTypeDevice;
+import org.mycontroller.standalone.db.tables.MetricsCounterTypeDevice;
+import org.mycontroller.standalone.db.tables.MetricsDoubleTypeDevice;
+import org.mycontroller.standalone.db.tables.MetricsGPSTypeDevice;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Collects rows of metrics tables and inserts them with JDBC batch inserts, one transaction per table on a flush.
+ * Buffer is flushed when it reaches the batch size, on every flush interval and on shutdown.
+ * Inserts are done only on the flush thread. When the buffer is full, caller waits for free space up to
+ * the block timeout (BLOCK policy) or the row is dropped immediately (DROP_NEWEST policy). Rows not added
+ * within the timeout are dropped and counted. When a batch fails (Example: duplicate row),
+ * rows of the batch are inserted one by one, so only the failed rows are dropped.
+ * @author Jeeva Kandasamy (jkandasa)
+ * @since 0.0.3
+ */
+@Slf4j
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class MetricsIngestBuffer {
+    private static volatile LinkedBlockingQueue<Object> buffer = null;
+    private static volatile ScheduledThreadPoolExecutor scheduler = null;
+    private static volatile int batchSize = 0;
+    private static volatile METRICS_INGEST_OVERFLOW_POLICY overflowPolicy = METRICS_INGEST_OVERFLOW_POLICY.BLOCK;
+    private static volatile long blockTimeout = 0;
+    private static final AtomicBoolean FLUSH_REQUESTED = new AtomicBoolean(false);
+
+    private static final AtomicLong INSERTED_COUNT = new AtomicLong(0);
+    private static final AtomicLong FAILED_COUNT = new AtomicLong(0);
+    private static final AtomicLong FALLBACK_COUNT = new AtomicLong(0);
+    private static final AtomicLong BUFFER_FULL_COUNT = new AtomicLong(0);
+    private static final AtomicLong DROPPED_COUNT = new AtomicLong(0);
+    private static final AtomicLong BATCH_COUNT = new AtomicLong(0);
+    private static volatile long lastFlushLatency = -1;
+    private static volatile long maxFlushLatency = -1;
+    private static volatile long avgFlushLatency = 0;
+
+    private static final Runnable FLUSH_TASK = new Runnable() {
+        @Override
+        public void run() {
+            FLUSH_REQUESTED.set(false);
+            try {
+                flush();
+            } catch (Exception ex) {
+                _logger.error("Exception while flushing metrics,", ex);
+            }
+        }
+    };
+
+    public static synchronized void start() {
+        long interval = AppProperties.getInstance().getMetricsIngestFlushInterval();
+        if (interval <= 0 || scheduler != null) {
+            return;
+        }
+        batchSize = Math.max(AppProperties.getInstance().getMetricsIngestBatchSize(), 1);
+        overflowPolicy = AppProperties.getInstance().getMetricsIngestOverflowPolicy();
+        blockTimeout = Math.max(AppProperties.getInstance().getMetricsIngestBlockTimeout(), 0);
+        buffer = new LinkedBlockingQueue<Object>(Math.max(AppProperties.getInstance().getMetricsIngestBufferSize(),
+                batchSize));
+        scheduler = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                return new Thread(runnable, "mc-metrics-ingest");
+            }
+        });
+        scheduler.scheduleWithFixedDelay(FLUSH_TASK, interval, interval, TimeUnit.MILLISECONDS);
+        _logger.info("Metrics ingest buffer started with batch size:{}, flush interval:{} ms, overflow policy:{}",
+                batchSize, interval, overflowPolicy);
+    }
+
+    /**
+     * Stops the flush thread and inserts all the buffered rows.
+     */
+    public static synchronized void shutdown() {
+        ScheduledThreadPoolExecutor _scheduler = scheduler;
+        if (_scheduler == null) {
+            return;
+        }
+        scheduler = null;
+        _scheduler.shutdown();
+        try {
+            _scheduler.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException ex) {
+            _logger.debug("Exception while waiting for metrics ingest termination,", ex);
+        }
+        flush();
+        _logger.debug("Metrics ingest buffer terminated");
+    }
+
+    /**
+     * Adds a row of a metrics table. Inserted immediately when the buffer is disabled.
+     */
+    public static void add(Object row) {
+        LinkedBlockingQueue<Object> _buffer = buffer;
+        if (scheduler == null || _buffer == null) {
+            create(getDao(row.getClass()), row);
+            return;
+        }
+        if (!_buffer.offer(row)) {
+            //Buffer is full, flush thread is behind. Caller does not insert, to keep message processing off JDBC
+            BUFFER_FULL_COUNT.incrementAndGet();
+            requestFlush();
+            if (!offerOnFull(_buffer, row)) {
+                DROPPED_COUNT.incrementAndGet();
+                _logger.debug("Metrics buffer is full, dropped row:[{}]", row);
+                return;
+            }
+        }
+        if (_buffer.size() >= batchSize) {
+            requestFlush();
+        }
+    }
+
+    private static boolean offerOnFull(LinkedBlockingQueue<Object> _buffer, Object row) {
+        if (overflowPolicy != METRICS_INGEST_OVERFLOW_POLICY.BLOCK) {
+            return false;
+        }
+        try {
+            return _buffer.offer(row, blockTimeout, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private static void requestFlush() {
+        ScheduledThreadPoolExecutor _scheduler = scheduler;
+        if (_scheduler != null && FLUSH_REQUESTED.compareAndSet(false, true)) {
+            try {
+                _scheduler.execute(FLUSH_TASK);
+            } catch (RejectedExecutionException ex) {
+                //Shutdown in progress, rows will be flushed on shutdown
+                FLUSH_REQUESTED.set(false);
+            }
+        }
+    }
+
+    public static synchronized void flush() {
+        LinkedBlockingQueue<Object> _buffer = buffer;
+        if (_buffer == null || _buffer.isEmpty()) {
+            return;
+        }
+        long startTime = System.currentTimeMillis();
+        List<Object> rows = new ArrayList<Object>(_buffer.size());
+        _buffer.drainTo(rows);
+        //Group rows by table
+        LinkedHashMap<Class<?>, List<Object>> tables = new LinkedHashMap<Class<?>, List<Object>>();
+        for (Object row : rows) {
+            List<Object> tableRows = tables.get(row.getClass());
+            if (tableRows == null) {
+                tableRows = new ArrayList<Object>();
+                tables.put(row.getClass(), tableRows);
+            }
+            tableRows.add(row);
+        }
+        for (Map.Entry<Class<?>, List<Object>> entry : tables.entrySet()) {
+            insert(getDao(entry.getKey()), entry.getValue());
+        }
+        updateFlushLatency(System.currentTimeMillis() - startTime);
+    }
+
+    private static void insert(BaseDao<?, ?> dao, List<Object> rows) {
+        try {
+            DataBaseUtils.insertBatch(dao, rows);
+            INSERTED_COUNT.addAndGet(rows.size());
+            BATCH_COUNT.incrementAndGet();
+            _logger.debug("Inserted {} row(s) into {}", rows.size(), dao.getDao().getTableName());
+        } catch (SQLException ex) {
+            _logger.warn("Unable to insert batch of {} row(s) into {}, inserting one by one. Error:{}", rows.size(),
+                    dao.getDao().getTableName(), ex.getMessage());
+            FALLBACK_COUNT.addAndGet(rows.size());
+            for (Object row : rows) {
+                create(dao, row);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void create(BaseDao<?, ?> dao, Object row) {
+        try {
+            ((BaseDao<Object, ?>) dao).getDao().create(row);
+            INSERTED_COUNT.incrementAndGet();
+        } catch (SQLException ex) {
+            FAILED_COUNT.incrementAndGet();
+            _logger.error("unable to add new item:[{}]", row, ex);
+        }
+    }
+
+    private static BaseDao<?, ?> getDao(Class<?> clazz) {
+        if (clazz == MetricsDoubleTypeDevice.class) {
+            return DaoUtils.getMetricsDoubleTypeDeviceDao();
+        } else if (clazz == MetricsBinaryTypeDevice.class) {
+            return DaoUtils.getMetricsBinaryTypeDeviceDao();
+        } else if (clazz == MetricsCounterTypeDevice.class) {
+            return DaoUtils.getMetricsCounterTypeDeviceDao();
+        } else if (clazz == MetricsGPSTypeDevice.class) {
+            return DaoUtils.getMetricsGPSTypeDeviceDao();
+        } else if (clazz == MetricsBatteryUsage.class) {
+            return DaoUtils.getMetricsBatteryUsageDao();
+        }
+        throw new IllegalArgumentException("Not a metrics table: " + clazz.getName());
+    }
+
+    private static void updateFlushLatency(long latency) {
+        lastFlushLatency = latency;
+        maxFlushLatency = Math.max(maxFlushLatency, latency);
+        //Exponential moving average
+        avgFlushLatency = avgFlushLatency == 0 ? latency : (avgFlushLatency * 7 + latency) / 8;
+    }
+
+    public static Map<String, Object> getStatistics() {
+        LinkedBlockingQueue<Object> _buffer = buffer;
+        HashMap<String, Object> statistics = new HashMap<String, Object>();
+        statistics.put("enabled", scheduler != null);
+        statistics.put("batchSize", batchSize);
+        statistics.put("pending", _buffer == null ? 0 : _buffer.size());
+        statistics.put("insertedCount", INSERTED_COUNT.get());
+        statistics.put("failedCount", FAILED_COUNT.get());
+        statistics.put("fallbackCount", FALLBACK_COUNT.get());
+        statistics.put("overflowPolicy", overflowPolicy);
+        statistics.put("bufferFullCount", BUFFER_FULL_COUNT.get());
+        statistics.put("droppedCount", DROPPED_COUNT.get());
+        statistics.put("batchCount", BATCH_COUNT.get());
+        statistics.put("flushLatencyLast", lastFlushLatency);
+        statistics.put("flushLatencyMax", maxFlushLatency);
+        statistics.put("flushLatencyAverage", avgFlushLatency);
+        return statistics;
+    }
+}
@@ -28,6 +28,7 @@ import org.mycontroller.standalone.db.tables.OperationTable;
 import org.mycontroller.standalone.db.tables.Timer;
 import org.mycontroller.standalone.gateway.GatewayUtils;
 import org.mycontroller.standalone.group.ResourcesGroupUtils;
+import org.mycontroller.standalone.message.McMessageUtils.MESSAGE_PRIORITY;
 import org.mycontroller.standalone.model.ResourceModel;
 import org.mycontroller.standalone.operation.OperationUtils;
 import org.mycontroller.standalone.rule.RuleUtils;
@@ -62,11 +63,14 @@ public class OperationSendPayload extends Operation {
     public static final String KEY_RESOURCE_ID = "resourceId";
     public static final String KEY_PAYLOAD = "payload";
     public static final String KEY_DELAY_TIME = "delayTime";
+    public static final String KEY_PRIORITY = "priority";
 
     private RESOURCE_TYPE resourceType;
     private Integer resourceId;
     private String payload;
     private Long delayTime;
+    //Overrides priority of the messages, when null derived from the message
+    private MESSAGE_PRIORITY priority;
 
     public OperationSendPayload(OperationTable operationTable) {
         this.updateOperation(operationTable);
@@ -82,6 +86,7 @@ public class OperationSendPayload extends Operation {
         if (delayTime == null) {
             delayTime = 0L;
         }
+        priority = MESSAGE_PRIORITY.fromString((String) operationTable.getProperties().get(KEY_PRIORITY));
 
     }
 
@@ -94,6 +99,7 @@ public class OperationSendPayload extends Operation {
         properties.put(KEY_RESOURCE_ID, resourceId);
         properties.put(KEY_PAYLOAD, payload);
         properties.put(KEY_DELAY_TIME, delayTime);
+        properties.put(KEY_PRIORITY, priority != null ? priority.getText() : null);
         operationTable.setProperties(properties);
         return operationTable;
     }
@@ -105,7 +111,11 @@ public class OperationSendPayload extends Operation {
             stringBuilder.append(super.getType().getText()).append(" [ ");
             stringBuilder.append(new ResourceModel(resourceType, resourceId).getResourceLessDetails());
             stringBuilder.append(", Payload:").append(payload).append(", Delay time:")
-                    .append(McUtils.getFriendlyTime(delayTime, true, "No delay")).append(" ]");
+                    .append(McUtils.getFriendlyTime(delayTime, true, "No delay"));
+            if (priority != null) {
+                stringBuilder.append(", Priority:").append(priority.getText());
+            }
+            stringBuilder.append(" ]");
         } catch (Exception ex) {
             stringBuilder.append(" *** ")
                     .append(McObjectManager.getMcLocale().getString(MC_LOCALE.CORRUPTED_DATA))
@@ -122,6 +132,11 @@ public class OperationSendPayload extends Operation {
         return resourceType.getText();
     }
 
+    @JsonGetter("priority")
+    private String getPriorityString() {
+        return priority != null ? priority.getText() : null;
+    }
+
     @Override
     public void execute(RuleDefinition ruleDefinition) {
         sendPayload(ruleDefinition);
@@ -138,7 +153,7 @@ public class OperationSendPayload extends Operation {
             return;
         }
         if (getDelayTime() == 0) { //Send payload immediately
-            sendPayload(getResourceType(), getResourceId(), getPayload());
+            sendPayload(getResourceType(), getResourceId(), getPayload(), getPriority());
         } else {  //Create timer to send payload
             String jobName = null;
             if (ruleDefinition != null) {
@@ -152,6 +167,7 @@ public class OperationSendPayload extends Operation {
             properties.put(TimerJob.KEY_RESOURCE_TYPE, getResourceType());
             properties.put(TimerJob.KEY_RESOURCE_ID, getResourceId());
             properties.put(TimerJob.KEY_PAYLOAD, getPayload());
+            properties.put(TimerJob.KEY_PRIORITY, getPriority());
             TimerSimple timerSimple = new TimerSimple(
                     jobName,//Job Name
                     this.getDelayTime(),
@@ -167,8 +183,14 @@ public class OperationSendPayload extends Operation {
     }
 
     public void sendPayload(RESOURCE_TYPE resourceType, Integer resourceId, String payload) {
+        sendPayload(resourceType, resourceId, payload, null);
+    }
+
+    public void sendPayload(RESOURCE_TYPE resourceType, Integer resourceId, String payload,
+            MESSAGE_PRIORITY priority) {
         ResourceModel resourceModel = new ResourceModel(resourceType, resourceId);
         ResourceOperation resourceOperation = new ResourceOperation(payload);
+        resourceOperation.setPriority(priority);
         //we have to handle gateway,alarm,resource groups and timer operations
         switch (resourceModel.getResourceType()) {
             case GATEWAY:
@@ -19,7 +19,11 @@ package org.mycontroller.standalone.provider.mc;
 import org.mycontroller.standalone.AppProperties.NETWORK_TYPE;
 import org.mycontroller.standalone.McObjectManager;
 import org.mycontroller.standalone.gateway.GatewayUtils;
+import org.mycontroller.standalone.gateway.GatewayUtils.GATEWAY_TYPE;
+import org.mycontroller.standalone.gateway.model.Gateway;
+import org.mycontroller.standalone.gateway.model.GatewayLoadGenerator;
 import org.mycontroller.standalone.gateway.model.GatewayMQTT;
+import org.mycontroller.standalone.gateway.mqtt.MqttTopicRouter;
 import org.mycontroller.standalone.message.McMessage;
 import org.mycontroller.standalone.message.McMessageUtils.MESSAGE_TYPE;
 import org.mycontroller.standalone.message.McMessageUtils.MESSAGE_TYPE_INTERNAL;
@@ -42,6 +46,8 @@ import lombok.extern.slf4j.Slf4j;
 @ToString
 @Slf4j
 public class McpRawMessage implements Cloneable {
+    // levels after topic prefix, NODE-EUI/SENSOR_ID/MESSAGE_TYPE/MESSAGE_SUB_TYPE/ACK
+    private static final int TOPIC_LEVELS = 5;
 
     private Integer gatewayId;
     private String nodeEui;
@@ -61,7 +67,7 @@ public class McpRawMessage implements Cloneable {
     public McpRawMessage(RawMessage rawMessage) throws RawMessageException {
         gatewayId = rawMessage.getGatewayId();
         isTxMessage = rawMessage.isTxMessage();
-        updateMQTTMessage(rawMessage.getSubData(), (String) rawMessage.getData());
+        updateMQTTMessage(rawMessage.getSubData(), rawMessage.getDataString());
         McpEngine.updateMessage(this);
     }
 
@@ -83,48 +89,64 @@ public class McpRawMessage implements Cloneable {
         }
         // Topic structure:
         // MY_MQTT_TOPIC_PREFIX/NODE-EUI/SENSOR_ID/MESSAGE_TYPE/MESSAGE_SUB_TYPE/ACK
-        String[] msgArry = topic.split("/");
-        if (msgArry.length == 6) {
-            nodeEui = msgArry[1];
-            sensorId = msgArry[2];
-            messageType = MESSAGE_TYPE.valueOf(msgArry[3]);
-            subType = msgArry[4];
-            ack = McUtils.getInteger(msgArry[5]);
-            _logger.debug("Message: {}", toString());
+        String[] levels = topic == null ? null : getTopicLevels(topic);
+        if (levels != null) {
+            nodeEui = levels[0];
+            sensorId = levels[1];
+            messageType = MESSAGE_TYPE.valueOf(levels[2]);
+            subType = levels[3];
+            ack = McUtils.getInteger(levels[4]);
+            _logger.debug("Message: {}", this);
         } else {
             _logger.debug("Unknown message format, Topic:[{}], Payload:[{}]", topic, message);
             throw new RawMessageException("Unknown message format, Topic:" + topic + ", Payload:" + message);
         }
     }
 
+    //Returns levels after topic prefix, null when the topic does not have exactly the required levels
+    private String[] getTopicLevels(String topic) {
+        int start;
+        if (McObjectManager.getGateway(gatewayId) != null
+                && McObjectManager.getGateway(gatewayId).getGateway() instanceof GatewayMQTT) {
+            start = MqttTopicRouter.get((GatewayMQTT) McObjectManager.getGateway(gatewayId).getGateway())
+                    .getLevelsOffset(topic);
+        } else {
+            start = topic.indexOf(MqttTopicRouter.LEVEL_SEPARATOR) + 1;
+        }
+        String[] levels = new String[TOPIC_LEVELS];
+        for (int index = 0; index < TOPIC_LEVELS; index++) {
+            int end = MqttTopicRouter.getLevelEnd(topic, start);
+            if (end == start) {
+                return null;
+            }
+            levels[index] = topic.substring(start, end);
+            start = end + 1;
+        }
+        return start > topic.length() ? levels : null;
+    }
+
     public String getMqttTopic() {
         // Topic structure:
         // MY_MQTT_TOPIC_PREFIX/NODE-EUI/SENSOR_ID/MESSAGE_TYPE/MESSAGE_SUB_TYPE/ACK
-        String[] topicsPublishList = null;
+        String[] prefixes = null;
         if (topicsPublish != null) {
-            topicsPublishList = topicsPublish.split(GatewayMQTT.TOPICS_SPLITER);
+            prefixes = MqttTopicRouter.getPublishPrefixes(topicsPublish, getNodeEui(), getSensorId());
         } else {
-            GatewayMQTT gateway = null;
+            Gateway gateway = null;
             if (McObjectManager.getGateway(gatewayId) != null) {
-                gateway = (GatewayMQTT) McObjectManager.getGateway(gatewayId).getGateway();
+                gateway = McObjectManager.getGateway(gatewayId).getGateway();
             } else {
-                gateway = (GatewayMQTT) GatewayUtils.getGateway(gatewayId);
+                gateway = GatewayUtils.getGateway(gatewayId);
             }
-            topicsPublishList = gateway.getTopicsPublish().split(GatewayMQTT.TOPICS_SPLITER);
-        }
-        StringBuilder builder = new StringBuilder();
-        for (String topic : topicsPublishList) {
-            if (builder.length() > 0) {
-                builder.append(GatewayMQTT.TOPICS_SPLITER);
+            if (gateway.getType() == GATEWAY_TYPE.LOAD_GENERATOR) {
+                prefixes = MqttTopicRouter.getPublishPrefixes(GatewayLoadGenerator.MC_TOPIC_PREFIX, getNodeEui(),
+                        getSensorId());
+            } else {
+                prefixes = MqttTopicRouter.get((GatewayMQTT) gateway).getPublishPrefixes(getNodeEui(), getSensorId());
             }
-            builder.append(topic.trim());
-            builder.append("/").append(getNodeEui());
-            builder.append("/").append(getSensorId());
-            builder.append("/").append(getMessageType());
-            builder.append("/").append(getSubType());
-            builder.append("/").append(getAck());
         }
-        return builder.toString();
+        return MqttTopicRouter.getTopic(prefixes, String.valueOf(getMessageType())
+                + MqttTopicRouter.LEVEL_SEPARATOR + getSubType() + MqttTopicRouter.LEVEL_SEPARATOR + getAck());
     }
 
     public RawMessage getRawMessage() {
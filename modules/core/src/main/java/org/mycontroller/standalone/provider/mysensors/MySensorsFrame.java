@@ -0,0 +1,207 @@
+/*
+ * Copyright 2015-2017 Jeeva Kandasamy (jkandasa@gmail.com)
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mycontroller.standalone.provider.mysensors;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Parses MySensors serial message, NODE-ID;SENSOR-ID;CMD;ACK;SUB-TYPE;PAYLOAD
+ * and levels of MySensors MQTT topic, NODE-ID/SENSOR-ID/CMD/ACK/SUB-TYPE
+ * Numeric fields are parsed to primitives and payload is kept as a slice (offset, length) of the source,
+ * so parsing does not create any object. A frame can be reused for the next message.
+ * Parser can be fed with gateway byte buffers or with a string.
+ * @author Jeeva Kandasamy (jkandasa)
+ * @since 0.0.3
+ */
+@Getter
+@ToString(exclude = { "field", "value", "digits", "separator" })
+public class MySensorsFrame {
+    private static final int FIELDS_NUMERIC = 5;
+    // field value limit, avoids integer overflow on corrupted messages
+    private static final int FIELD_VALUE_MAX = 0xFFFF;
+    private static final char SERIAL_SEPARATOR = ';';
+    private static final char TOPIC_SEPARATOR = '/';
+
+    private static final ThreadLocal<MySensorsFrame> FRAMES = new ThreadLocal<MySensorsFrame>() {
+        @Override
+        protected MySensorsFrame initialValue() {
+            return new MySensorsFrame();
+        }
+    };
+
+    private int nodeId;
+    private int childSensorId;
+    private int messageType;
+    private int ack;
+    private int subType;
+    // payload slice on the source, payloadOffset is -1 when the message does not have payload field
+    private int payloadOffset;
+    private int payloadLength;
+
+    // parser state
+    @Getter(AccessLevel.NONE)
+    private int field;
+    @Getter(AccessLevel.NONE)
+    private int value;
+    @Getter(AccessLevel.NONE)
+    private boolean digits;
+    @Getter(AccessLevel.NONE)
+    private char separator;
+
+    /**
+     * @return a frame for the current thread, reused on the subsequent calls
+     */
+    public static MySensorsFrame get() {
+        return FRAMES.get();
+    }
+
+    public boolean parse(byte[] data, int offset, int length) {
+        int end = trimEnd(data, offset, offset + length);
+        reset(SERIAL_SEPARATOR);
+        for (int index = offset; index < end; index++) {
+            if (!accept((char) data[index], index)) {
+                return false;
+            }
+        }
+        return complete(end);
+    }
+
+    public boolean parse(CharSequence data) {
+        int end = data.length();
+        while (end > 0 && isLineEnd(data.charAt(end - 1))) {
+            end--;
+        }
+        reset(SERIAL_SEPARATOR);
+        for (int index = 0; index < end; index++) {
+            if (!accept(data.charAt(index), index)) {
+                return false;
+            }
+        }
+        return complete(end);
+    }
+
+    /**
+     * @param topic MQTT topic, MY_MQTT_TOPIC_PREFIX/NODE-ID/SENSOR-ID/CMD/ACK/SUB-TYPE
+     * @param offset index of NODE-ID level on the topic
+     * @return true when the topic has exactly the five numeric levels after offset
+     */
+    public boolean parseTopic(String topic, int offset) {
+        reset(TOPIC_SEPARATOR);
+        for (int index = offset; index < topic.length(); index++) {
+            if (!accept(topic.charAt(index), index) || field >= FIELDS_NUMERIC) {
+                return false;
+            }
+        }
+        return complete(topic.length());
+    }
+
+    public boolean hasPayload() {
+        return payloadOffset >= 0 && payloadLength > 0;
+    }
+
+    /**
+     * @param data string used to parse this frame
+     * @return payload of this frame, null when the frame does not have payload
+     */
+    public String getPayload(String data) {
+        return hasPayload() ? data.substring(payloadOffset, payloadOffset + payloadLength) : null;
+    }
+
+    private void reset(char separator) {
+        this.separator = separator;
+        nodeId = 0;
+        childSensorId = 0;
+        messageType = 0;
+        ack = 0;
+        subType = 0;
+        payloadOffset = -1;
+        payloadLength = 0;
+        field = 0;
+        value = 0;
+        digits = false;
+    }
+
+    private boolean accept(char ch, int index) {
+        if (field >= FIELDS_NUMERIC) {
+            //Payload, takes everything till the end
+            return true;
+        }
+        if (ch >= '0' && ch <= '9') {
+            value = value * 10 + (ch - '0');
+            digits = true;
+            return value <= FIELD_VALUE_MAX;
+        } else if (ch == separator && digits) {
+            store();
+            if (field == FIELDS_NUMERIC) {
+                payloadOffset = index + 1;
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private boolean complete(int end) {
+        if (field < FIELDS_NUMERIC) {
+            //Last numeric field without separator, message without payload
+            if (field != FIELDS_NUMERIC - 1 || !digits) {
+                return false;
+            }
+            store();
+        } else if (payloadOffset >= 0) {
+            payloadLength = end - payloadOffset;
+        }
+        return true;
+    }
+
+    private void store() {
+        switch (field) {
+            case 0:
+                nodeId = value;
+                break;
+            case 1:
+                childSensorId = value;
+                break;
+            case 2:
+                messageType = value;
+                break;
+            case 3:
+                ack = value;
+                break;
+            case 4:
+                subType = value;
+                break;
+            default:
+                break;
+        }
+        field++;
+        value = 0;
+        digits = false;
+    }
+
+    private static int trimEnd(byte[] data, int offset, int end) {
+        while (end > offset && isLineEnd((char) data[end - 1])) {
+            end--;
+        }
+        return end;
+    }
+
+    private static boolean isLineEnd(char ch) {
+        return ch == '\n' || ch == '\r';
+    }
+}
@@ -22,6 +22,9 @@ import org.mycontroller.standalone.db.tables.Sensor;
 import org.mycontroller.standalone.message.IProviderBridge;
 import org.mycontroller.standalone.message.McMessage;
 import org.mycontroller.standalone.message.McMessageUtils;
+import org.mycontroller.standalone.message.MessageStageLatency;
+import org.mycontroller.standalone.message.MessageStageLatency.STAGE;
+import org.mycontroller.standalone.message.MessageTracer;
 import org.mycontroller.standalone.message.RawMessage;
 import org.mycontroller.standalone.message.RawMessageException;
 import org.mycontroller.standalone.utils.McUtils;
@@ -42,7 +45,7 @@ public class MySensorsProviderBridge implements IProviderBridge {
         }
         try {
             _logger.debug("McMessage about to send to gateway: [{}]", mcMessage);
-            McMessageUtils.sendToGateway(new MySensorsRawMessage(mcMessage).getRawMessage());
+            McMessageUtils.sendToGateway(mcMessage, new MySensorsRawMessage(mcMessage).getRawMessage());
         } catch (RawMessageException ex) {
             _logger.error("Unable to process this McMessage:{}", mcMessage, ex);
         }
@@ -55,7 +58,11 @@ public class MySensorsProviderBridge implements IProviderBridge {
         }
         try {
             _logger.debug("Received raw message: [{}]", rawMessage);
+            long startNanoTime = System.nanoTime();
             McMessage mcMessage = new MySensorsRawMessage(rawMessage).getMcMessage();
+            MessageStageLatency.record(STAGE.PARSE, startNanoTime);
+            mcMessage.setPriority(rawMessage.getPriority());
+            MessageTracer.attach(mcMessage);
             McMessageUtils.sendToMcMessageEngine(mcMessage);
             if (rawMessage.isTxMessage()) {
                 executeMcMessage(mcMessage);
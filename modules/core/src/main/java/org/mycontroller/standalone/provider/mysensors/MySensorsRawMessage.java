@@ -20,7 +20,9 @@ import org.mycontroller.standalone.AppProperties.NETWORK_TYPE;
 import org.mycontroller.standalone.McObjectManager;
 import org.mycontroller.standalone.db.DaoUtils;
 import org.mycontroller.standalone.db.tables.GatewayTable;
+import org.mycontroller.standalone.gateway.GatewayUtils.GATEWAY_TYPE;
 import org.mycontroller.standalone.gateway.model.GatewayMQTT;
+import org.mycontroller.standalone.gateway.mqtt.MqttTopicRouter;
 import org.mycontroller.standalone.message.McMessage;
 import org.mycontroller.standalone.message.McMessageUtils.MESSAGE_TYPE;
 import org.mycontroller.standalone.message.McMessageUtils.MESSAGE_TYPE_INTERNAL;
@@ -61,10 +63,12 @@ public class MySensorsRawMessage {
         isTxMessage = rawMessage.isTxMessage();
         switch (McObjectManager.getGateway(rawMessage.getGatewayId()).getGateway().getType()) {
             case MQTT:
-                updateMQTTMessage(rawMessage.getSubData(), (String) rawMessage.getData());
+                updateMQTTMessage((GatewayMQTT) McObjectManager.getGateway(gatewayId).getGateway(),
+                        rawMessage.getSubData(), rawMessage.getDataString());
                 break;
             case ETHERNET:
             case SERIAL:
+            case LOAD_GENERATOR:
                 updateSerialMessage((String) rawMessage.getData());
                 break;
             default:
@@ -99,20 +103,21 @@ public class MySensorsRawMessage {
         MySensorsEngine.updateMessage(this);
     }
 
-    private void updateMQTTMessage(String topic, String message) throws RawMessageException {
+    private void updateMQTTMessage(GatewayMQTT gateway, String topic, String message)
+            throws RawMessageException {
         if (message != null) {
             payload = message;
         }
         // Topic structure:
         // MY_MQTT_TOPIC_PREFIX/NODE-KEY_ID/SENSOR_VARIABLE-KEY_ID/CMD-OPERATION_TYPE/ACK-FLAG/SUB-OPERATION_TYPE
-        String[] msgArry = topic.split("/");
-        if (msgArry.length == 6) {
-            nodeId = Integer.valueOf(msgArry[1]);
-            childSensorId = Integer.valueOf(msgArry[2]);
-            messageType = Integer.valueOf(msgArry[3]);
-            ack = Integer.valueOf(msgArry[4]);
-            subType = Integer.valueOf(msgArry[5]);
-            _logger.debug("Message: {}", toString());
+        MySensorsFrame frame = MySensorsFrame.get();
+        if (topic != null && frame.parseTopic(topic, MqttTopicRouter.get(gateway).getLevelsOffset(topic))) {
+            nodeId = frame.getNodeId();
+            childSensorId = frame.getChildSensorId();
+            messageType = frame.getMessageType();
+            ack = frame.getAck();
+            subType = frame.getSubType();
+            _logger.debug("Message: {}", this);
         } else {
             _logger.debug("Unknown message format, Topic:[{}], PayLoad:[{}]", topic, message);
             throw new RawMessageException("Unknown message format, Topic:" + topic + ", PayLoad:" + message);
@@ -120,32 +125,28 @@ public class MySensorsRawMessage {
     }
 
     private void updateSerialMessage(String gateWayMessage) throws RawMessageException {
-        if (gateWayMessage.endsWith("\n")) {
-            gateWayMessage = gateWayMessage.substring(0, gateWayMessage.length() - 1);
-        }
-        String[] msgArry = gateWayMessage.split(";");
-        if (msgArry.length == 6) {
-            payload = msgArry[5];
-        }
-        if (msgArry.length >= 5) {
-            nodeId = Integer.valueOf(msgArry[0]);
-            childSensorId = Integer.valueOf(msgArry[1]);
-            messageType = Integer.valueOf(msgArry[2]);
-            ack = Integer.valueOf(msgArry[3]);
-            subType = Integer.valueOf(msgArry[4]);
-            _logger.debug("Message: {}", toString());
-        } else {
+        MySensorsFrame frame = MySensorsFrame.get();
+        if (!frame.parse(gateWayMessage)) {
             _logger.debug("Unknown message format: [{}]", gateWayMessage);
             throw new RawMessageException("Unknown message format:[" + gateWayMessage + "]");
         }
+        nodeId = frame.getNodeId();
+        childSensorId = frame.getChildSensorId();
+        messageType = frame.getMessageType();
+        ack = frame.getAck();
+        subType = frame.getSubType();
+        if (frame.hasPayload()) {
+            payload = frame.getPayload(gateWayMessage);
+        }
+        _logger.debug("Message: {}", this);
     }
 
     public String getNodeEui() {
-        return String.valueOf(nodeId);
+        return MySensorsUtils.getIdString(nodeId);
     }
 
     public String getChildSensorIdString() {
-        return String.valueOf(childSensorId);
+        return MySensorsUtils.getIdString(childSensorId);
     }
 
     public void setPayload(Object payload) {
@@ -177,26 +178,22 @@ public class MySensorsRawMessage {
     public String getMqttTopic() {
         // Topic structure:
         // MY_MQTT_TOPIC_PREFIX/NODE-KEY_ID/SENSOR_VARIABLE-KEY_ID/CMD-OPERATION_TYPE/ACK-FLAG/SUB-OPERATION_TYPE
-        StringBuilder builder = new StringBuilder();
-        String[] topicsPublish = ((GatewayMQTT) McObjectManager.getGateway(gatewayId).getGateway())
-                .getTopicsPublish().split(GatewayMQTT.TOPICS_SPLITER);
-        for (String topic : topicsPublish) {
-            if (builder.length() > 0) {
-                builder.append(GatewayMQTT.TOPICS_SPLITER);
-            }
-            builder.append(topic.trim());
-            builder.append("/").append(getNodeId());
-            builder.append("/").append(getChildSensorId());
-            builder.append("/").append(getMessageType());
-            builder.append("/").append(getAck());
-            builder.append("/").append(getSubType());
-        }
-        return builder.toString();
+        String[] prefixes = MqttTopicRouter.get((GatewayMQTT) McObjectManager.getGateway(gatewayId).getGateway())
+                .getPublishPrefixes(getNodeEui(), getChildSensorIdString());
+        return MqttTopicRouter.getTopic(prefixes, String.valueOf(messageType) + MqttTopicRouter.LEVEL_SEPARATOR
+                + ack + MqttTopicRouter.LEVEL_SEPARATOR + subType);
     }
 
     public RawMessage getRawMessage() {
-        GatewayTable gatewayTable = DaoUtils.getGatewayDao().getById(gatewayId);
-        switch (gatewayTable.getType()) {
+        //Take gateway type from loaded gateway, avoids a database lookup for each Tx message
+        GATEWAY_TYPE gatewayType = null;
+        if (McObjectManager.getGateway(gatewayId) != null) {
+            gatewayType = McObjectManager.getGateway(gatewayId).getGateway().getType();
+        } else {
+            GatewayTable gatewayTable = DaoUtils.getGatewayDao().getById(gatewayId);
+            gatewayType = gatewayTable.getType();
+        }
+        switch (gatewayType) {
             case MQTT:
                 return RawMessage.builder()
                         .gatewayId(gatewayId)
@@ -207,6 +204,7 @@ public class MySensorsRawMessage {
                         .build();
             case ETHERNET:
             case SERIAL:
+            case LOAD_GENERATOR:
                 return RawMessage.builder()
                         .gatewayId(gatewayId)
                         .data(getGWString())
@@ -214,7 +212,7 @@ public class MySensorsRawMessage {
                         .timestamp(timestamp)
                         .build();
             default:
-                _logger.warn("This type not implemented yet, Type:[{}]", gatewayTable.getType().name());
+                _logger.warn("This type not implemented yet, Type:[{}]", gatewayType.name());
         }
         return null;
     }
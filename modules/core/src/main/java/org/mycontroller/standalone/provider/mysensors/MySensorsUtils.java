@@ -39,6 +39,22 @@ public class MySensorsUtils {
     public static final int NODE_ID_MIN = 1;
     public static final int NODE_ID_MAX = 254;
 
+    // node and sensor id strings, avoids a new string for each received message
+    private static final String[] ID_STRINGS = new String[256];
+
+    static {
+        for (int id = 0; id < ID_STRINGS.length; id++) {
+            ID_STRINGS[id] = String.valueOf(id);
+        }
+    }
+
+    public static String getIdString(int id) {
+        if (id >= 0 && id < ID_STRINGS.length) {
+            return ID_STRINGS[id];
+        }
+        return String.valueOf(id);
+    }
+
     public static String getMetricType() {
         if (AppProperties.getInstance().getControllerSettings().getUnitConfig() != null) {
             if (AppProperties.getInstance().getControllerSettings().getUnitConfig()
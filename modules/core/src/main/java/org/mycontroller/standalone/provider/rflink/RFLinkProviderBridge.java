@@ -18,6 +18,7 @@ package org.mycontroller.standalone.provider.rflink;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 
 import org.mycontroller.standalone.AppProperties.NETWORK_TYPE;
 import org.mycontroller.standalone.db.tables.Node;
@@ -26,6 +27,9 @@ import org.mycontroller.standalone.message.IProviderBridge;
 import org.mycontroller.standalone.message.McMessage;
 import org.mycontroller.standalone.message.McMessageUtils;
 import org.mycontroller.standalone.message.McMessageUtils.MESSAGE_TYPE_INTERNAL;
+import org.mycontroller.standalone.message.MessageStageLatency;
+import org.mycontroller.standalone.message.MessageStageLatency.STAGE;
+import org.mycontroller.standalone.message.MessageTracer;
 import org.mycontroller.standalone.message.RawMessage;
 import org.mycontroller.standalone.message.RawMessageException;
 
@@ -45,7 +49,7 @@ public class RFLinkProviderBridge implements IProviderBridge {
         }
         try {
             _logger.debug("McMessage about to send to gateway: [{}]", mcMessage);
-            McMessageUtils.sendToGateway(new RFLinkRawMessage(mcMessage).getRawMessage());
+            McMessageUtils.sendToGateway(mcMessage, new RFLinkRawMessage(mcMessage).getRawMessage());
         } catch (RawMessageException ex) {
             _logger.error("Unable to process this McMessage:{}", mcMessage, ex);
         }
@@ -64,84 +68,95 @@ public class RFLinkProviderBridge implements IProviderBridge {
         }
         try {
             _logger.debug("Received a {}", rawMessage);
-            if (rawMessage.isTxMessage()) {
-                //Already crossed McMessageEngine, we can send directly to gateway
-                McMessageUtils.sendToGateway(rawMessage);
-                return;
+            long startNanoTime = System.nanoTime();
+            List<McMessage> mcMessages = getMcMessages(rawMessage);
+            MessageStageLatency.record(STAGE.PARSE, startNanoTime);
+            for (McMessage mcMessage : mcMessages) {
+                MessageTracer.attach(mcMessage);
+                McMessageUtils.sendToMcMessageEngine(mcMessage);
             }
-            String rawData = (String) rawMessage.getData();
-            rawData = rawData.replaceAll("(\\r|\\n)", ""); //Replace \n and \r
-            if (!rawData.endsWith(";")) {
-                throw new RawMessageException("Cannot take this message. This is invalid or incomplete: ["
-                        + rawData + "]");
-            }
-            HashMap<String, String> properties = new HashMap<String, String>();
+        } catch (RawMessageException ex) {
+            _logger.error("Unable to process this rawMessage:{}", rawMessage, ex);
+        }
+    }
 
-            //20;2D;UPM/Esic;ID=0001;TEMP=00cf;HUM=16;BAT=OK;
-            //RX;SN;PROTOCOL;
-            ArrayList<String> dataList = new ArrayList<String>();
-            for (String _rawData : rawData.split(";")) {
-                dataList.add(_rawData);
-            }
-            if (dataList.size() < 2) {
-                throw new RawMessageException("data size should be greater than 2, Current data: " + rawData);
-            }
+    /**
+     * Converts received RFLink message to McMessages, in the order to be executed.
+     * Protocol message, battery message (if any) and then a set message per property
+     * @param rawMessage received RFLink message
+     * @return McMessages of this message, empty list for ack message of RFLink
+     * @throws RawMessageException when the message is invalid
+     */
+    public List<McMessage> getMcMessages(RawMessage rawMessage) throws RawMessageException {
+        List<McMessage> mcMessages = new ArrayList<McMessage>();
+        String rawData = (String) rawMessage.getData();
+        rawData = rawData.replaceAll("(\\r|\\n)", ""); //Replace \n and \r
+        if (!rawData.endsWith(";")) {
+            throw new RawMessageException("Cannot take this message. This is invalid or incomplete: ["
+                    + rawData + "]");
+        }
+        HashMap<String, String> properties = new HashMap<String, String>();
 
-            if (!dataList.get(0).equals("20") && !rawMessage.isTxMessage()) {
-                throw new RawMessageException("RFLink Rx message should start with '20', RawMessage:["
-                        + rawMessage.getData() + "]");
-            }
+        //20;2D;UPM/Esic;ID=0001;TEMP=00cf;HUM=16;BAT=OK;
+        //RX;SN;PROTOCOL;
+        ArrayList<String> dataList = new ArrayList<String>();
+        for (String _rawData : rawData.split(";")) {
+            dataList.add(_rawData);
+        }
+        if (dataList.size() < 2) {
+            throw new RawMessageException("data size should be greater than 2, Current data: " + rawData);
+        }
 
-            //Format: 20;2D;UPM/Esic;ID=0001;TEMP=00cf;HUM=16;BAT=OK;
-            //Refer: http://www.nemcon.nl/blog2/protref
-            dataList.remove(0);//Remove 20
-            dataList.remove(0);//Remove RFLink serial number
-            //Update protocol
-            String protocol = dataList.remove(0);
-            if (protocol.equalsIgnoreCase("ok")) {
-                //This is ack message from RFLink. Just ignore
-                return;
-            }
+        if (!dataList.get(0).equals("20") && !rawMessage.isTxMessage()) {
+            throw new RawMessageException("RFLink Rx message should start with '20', RawMessage:["
+                    + rawMessage.getData() + "]");
+        }
 
-            properties.clear();
-            for (String data : dataList) {
-                if (data.contains("=")) {
-                    String[] prop = data.split("=", 2);
-                    properties.put(prop[0].toLowerCase(), prop[1]);
-                } else if (data.trim().length() > 0) {
-                    _logger.warn("Unknown property:[{}] from {}", data, rawMessage);
-                }
-            }
+        //Format: 20;2D;UPM/Esic;ID=0001;TEMP=00cf;HUM=16;BAT=OK;
+        //Refer: http://www.nemcon.nl/blog2/protref
+        dataList.remove(0);//Remove 20
+        dataList.remove(0);//Remove RFLink serial number
+        //Update protocol
+        String protocol = dataList.remove(0);
+        if (protocol.equalsIgnoreCase("ok")) {
+            //This is ack message from RFLink. Just ignore
+            return mcMessages;
+        }
 
-            //Update nodeEui
-            String nodeEui = properties.remove(RFLinkRawMessage.KEY_ID.toLowerCase());
-            if (nodeEui == null) {
-                throw new RawMessageException("NodeEui can not be NULL. Message:[" + rawMessage.getData() + "]");
-            }
-            String switchName = properties.remove("switch");
-            //Send protocol message
-            RFLinkRawMessage rfLinkRawMessage = new RFLinkRawMessage(rawMessage, nodeEui, protocol);
-            McMessageUtils.sendToMcMessageEngine(rfLinkRawMessage.getMcMessage());
-            //BAT message, if we have
-            String bat = properties.remove("bat");
-            if (bat != null) {
-                rfLinkRawMessage.setSubType(MESSAGE_TYPE_INTERNAL.I_BATTERY_LEVEL.getText());
-                rfLinkRawMessage.setPayload(bat.equalsIgnoreCase("OK") ? "100" : "0");
-                //Send battery message
-                McMessageUtils.sendToMcMessageEngine(rfLinkRawMessage.getMcMessage());
-            }
-            for (String key : properties.keySet()) {
-                rfLinkRawMessage = new RFLinkRawMessage(rawMessage, nodeEui, key, properties.get(key));
-                if (switchName != null) {
-                    rfLinkRawMessage.setSensorId(switchName);
-                }
-                //Send normal set messages
-                McMessageUtils.sendToMcMessageEngine(rfLinkRawMessage.getMcMessage());
+        for (String data : dataList) {
+            if (data.contains("=")) {
+                String[] prop = data.split("=", 2);
+                properties.put(prop[0].toLowerCase(), prop[1]);
+            } else if (data.trim().length() > 0) {
+                _logger.warn("Unknown property:[{}] from {}", data, rawMessage);
             }
+        }
 
-        } catch (RawMessageException ex) {
-            _logger.error("Unable to process this rawMessage:{}", rawMessage, ex);
+        //Update nodeEui
+        String nodeEui = properties.remove(RFLinkRawMessage.KEY_ID.toLowerCase());
+        if (nodeEui == null) {
+            throw new RawMessageException("NodeEui can not be NULL. Message:[" + rawMessage.getData() + "]");
+        }
+        String switchName = properties.remove("switch");
+        //Protocol message
+        RFLinkRawMessage rfLinkRawMessage = new RFLinkRawMessage(rawMessage, nodeEui, protocol);
+        mcMessages.add(rfLinkRawMessage.getMcMessage());
+        //BAT message, if we have
+        String bat = properties.remove("bat");
+        if (bat != null) {
+            rfLinkRawMessage.setSubType(MESSAGE_TYPE_INTERNAL.I_BATTERY_LEVEL.getText());
+            rfLinkRawMessage.setPayload(bat.equalsIgnoreCase("OK") ? "100" : "0");
+            mcMessages.add(rfLinkRawMessage.getMcMessage());
+        }
+        for (String key : properties.keySet()) {
+            rfLinkRawMessage = new RFLinkRawMessage(rawMessage, nodeEui, key, properties.get(key));
+            if (switchName != null) {
+                rfLinkRawMessage.setSensorId(switchName);
+            }
+            //Normal set messages
+            mcMessages.add(rfLinkRawMessage.getMcMessage());
         }
+        return mcMessages;
     }
 
     @Override
@@ -26,6 +26,7 @@ import org.mycontroller.standalone.db.DaoUtils;
 import org.mycontroller.standalone.db.ResourcesLogsUtils;
 import org.mycontroller.standalone.db.ResourcesLogsUtils.LOG_LEVEL;
 import org.mycontroller.standalone.db.tables.Timer;
+import org.mycontroller.standalone.message.McMessageUtils.MESSAGE_PRIORITY;
 import org.mycontroller.standalone.operation.model.Operation;
 import org.mycontroller.standalone.operation.model.OperationSendPayload;
 import org.mycontroller.standalone.scheduler.SchedulerUtils;
@@ -44,6 +45,7 @@ public class TimerJob extends Job {
     public static final String KEY_RESOURCE_TYPE = "resourceType";
     public static final String KEY_RESOURCE_ID = "resourceId";
     public static final String KEY_PAYLOAD = "payload";
+    public static final String KEY_PRIORITY = "priority";
 
     private void executeTimer(Timer timer, Map<String, Object> properties) {
         if (timer.getId() != null) {
@@ -72,7 +74,8 @@ public class TimerJob extends Job {
                 new OperationSendPayload().sendPayload(
                         (RESOURCE_TYPE) properties.get(KEY_RESOURCE_TYPE),
                         (Integer) properties.get(KEY_RESOURCE_ID),
-                        (String) properties.get(KEY_PAYLOAD));
+                        (String) properties.get(KEY_PAYLOAD),
+                        (MESSAGE_PRIORITY) properties.get(KEY_PRIORITY));
             } else {
                 _logger.error("Can not run this job without properties! {}", timer);
             }
@@ -1102,7 +1102,8 @@ public class TypesUtils {
                     case MY_SENSORS:
                         if (gatewayType == GATEWAY_TYPE.SERIAL
                                 || gatewayType == GATEWAY_TYPE.ETHERNET
-                                || gatewayType == GATEWAY_TYPE.MQTT) {
+                                || gatewayType == GATEWAY_TYPE.MQTT
+                                || gatewayType == GATEWAY_TYPE.LOAD_GENERATOR) {
                             include = true;
                         }
                         break;
@@ -1112,12 +1113,12 @@ public class TypesUtils {
                         }
                         break;
                     case MY_CONTROLLER:
-                        if (gatewayType == GATEWAY_TYPE.MQTT) {
+                        if (gatewayType == GATEWAY_TYPE.MQTT || gatewayType == GATEWAY_TYPE.LOAD_GENERATOR) {
                             include = true;
                         }
                         break;
                     case RF_LINK:
-                        if (gatewayType == GATEWAY_TYPE.SERIAL) {
+                        if (gatewayType == GATEWAY_TYPE.SERIAL || gatewayType == GATEWAY_TYPE.LOAD_GENERATOR) {
                             include = true;
                         }
                         break;
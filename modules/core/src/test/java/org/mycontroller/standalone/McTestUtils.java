@@ -0,0 +1,79 @@
+/*
+ * Copyright 2015-2017 Jeeva Kandasamy (jkandasa@gmail.com)
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mycontroller.standalone;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Properties;
+
+import org.mycontroller.standalone.db.DaoUtils;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+
+/**
+ * Loads application properties for unit tests, all the locations are created on a temporary directory.
+ * @author Jeeva Kandasamy (jkandasa)
+ * @since 0.0.3
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class McTestUtils {
+    private static File testDirectory = null;
+
+    public static synchronized File getTestDirectory() throws IOException {
+        if (testDirectory == null) {
+            testDirectory = Files.createTempDirectory("mc-test").toFile();
+        }
+        return testDirectory;
+    }
+
+    /**
+     * Loads the properties in to {@link AppProperties}, locations are set to the test directory.
+     * @param properties properties to be loaded, locations given here are not overridden
+     */
+    public static synchronized void loadProperties(Properties properties) throws IOException {
+        Properties appProperties = new Properties();
+        String location = getTestDirectory().getAbsolutePath();
+        appProperties.setProperty("mcc.tmp.location", location + "/tmp");
+        appProperties.setProperty("mcc.resources.location", location + "/resources");
+        appProperties.setProperty("mcc.web.file.location", location + "/www");
+        appProperties.setProperty("mcc.persistent.stores.location", location + "/persistent_stores");
+        appProperties.putAll(properties);
+        AppProperties.getInstance().loadProperties(appProperties);
+    }
+
+    /**
+     * Loads the properties and starts MapDB, if it is not started already.
+     */
+    public static synchronized void loadPropertiesAndMapDb(Properties properties) throws IOException {
+        loadProperties(properties);
+        MapDbFactory.init();
+    }
+
+    /**
+     * Loads the properties and creates the tables on an in-memory H2 database, if it is not loaded already.
+     */
+    public static synchronized void loadPropertiesAndDatabase(Properties properties) throws IOException {
+        Properties dbProperties = new Properties();
+        dbProperties.setProperty("mcc.db.type", "H2DB_EMBEDDED");
+        dbProperties.setProperty("mcc.db.url", "jdbc:h2:mem:mc-test;DB_CLOSE_DELAY=-1");
+        dbProperties.putAll(properties);
+        loadProperties(dbProperties);
+        DaoUtils.loadAllDao();
+    }
+}
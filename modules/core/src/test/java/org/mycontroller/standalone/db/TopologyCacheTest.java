@@ -0,0 +1,200 @@
+/*
+ * Copyright 2015-2017 Jeeva Kandasamy (jkandasa@gmail.com)
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mycontroller.standalone.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.Properties;
+
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.mycontroller.standalone.AppProperties.NETWORK_TYPE;
+import org.mycontroller.standalone.AppProperties.STATE;
+import org.mycontroller.standalone.McTestUtils;
+import org.mycontroller.standalone.db.NodeUtils.NODE_REGISTRATION_STATE;
+import org.mycontroller.standalone.db.tables.GatewayTable;
+import org.mycontroller.standalone.db.tables.Node;
+import org.mycontroller.standalone.db.tables.Sensor;
+import org.mycontroller.standalone.db.tables.SensorVariable;
+import org.mycontroller.standalone.gateway.GatewayUtils.GATEWAY_TYPE;
+import org.mycontroller.standalone.message.McMessageUtils.MESSAGE_TYPE_SET_REQ;
+
+/**
+ * @author Jeeva Kandasamy (jkandasa)
+ * @since 0.0.3
+ */
+public class TopologyCacheTest {
+    private static Integer gatewayId;
+    private static int nodeIndex = 0;
+    private String nodeEui;
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        Properties properties = new Properties();
+        properties.setProperty("mcc.topology.cache.enable", "true");
+        McTestUtils.loadPropertiesAndDatabase(properties);
+        GatewayTable gatewayTable = GatewayTable.builder()
+                .enabled(false)
+                .name("topology-cache-test")
+                .type(GATEWAY_TYPE.SERIAL)
+                .networkType(NETWORK_TYPE.MY_SENSORS)
+                .state(STATE.UNAVAILABLE)
+                .build();
+        DaoUtils.getGatewayDao().create(gatewayTable);
+        gatewayId = gatewayTable.getId();
+    }
+
+    @Before
+    public void createNode() {
+        TopologyCache.clear();
+        //Each test works on a new node, database is shared by the tests
+        nodeEui = String.valueOf(++nodeIndex);
+        DaoUtils.getNodeDao().create(newNode(nodeEui));
+        DaoUtils.getSensorDao().create(gatewayId, nodeEui, "1");
+        DaoUtils.getSensorDao().create(gatewayId, nodeEui, "2");
+        Sensor sensor = DaoUtils.getSensorDao().get(gatewayId, nodeEui, "1");
+        DaoUtils.getSensorVariableDao().create(SensorVariable.builder()
+                .sensor(sensor)
+                .variableType(MESSAGE_TYPE_SET_REQ.V_TEMP)
+                .value("20.0")
+                .build().updateUnitAndMetricType());
+    }
+
+    private static Node newNode(String eui) {
+        return Node.builder()
+                .gatewayTable(GatewayTable.builder().id(gatewayId).build())
+                .eui(eui)
+                .state(STATE.UP)
+                .registrationState(NODE_REGISTRATION_STATE.NEW)
+                .build();
+    }
+
+    private SensorVariable getSensorVariable() {
+        return TopologyCache.getSensorVariable(gatewayId, nodeEui, "1", MESSAGE_TYPE_SET_REQ.V_TEMP);
+    }
+
+    private static long getClears() {
+        return (Long) TopologyCache.getStatistics().get("clears");
+    }
+
+    @Test
+    public void testLookupReturnsCachedInstance() {
+        SensorVariable variable = getSensorVariable();
+        assertNotNull(variable);
+        assertSame(variable, getSensorVariable());
+        assertSame(variable.getSensor(), TopologyCache.getSensor(gatewayId, nodeEui, "1"));
+        assertSame(variable.getSensor().getNode(), TopologyCache.getNode(gatewayId, nodeEui));
+        assertNull(TopologyCache.getSensor(gatewayId, nodeEui, "3"));
+    }
+
+    @Test
+    public void testUpdateWithCachedInstanceKeepsEntry() {
+        Node node = TopologyCache.getNode(gatewayId, nodeEui);
+        node.setName("cached");
+        DaoUtils.getNodeDao().update(node);
+        assertSame(node, TopologyCache.getNode(gatewayId, nodeEui));
+    }
+
+    @Test
+    public void testUpdateWithAnotherInstanceEvictsEntry() {
+        Node node = TopologyCache.getNode(gatewayId, nodeEui);
+        Sensor sensor = TopologyCache.getSensor(gatewayId, nodeEui, "1");
+        Node storedNode = DaoUtils.getNodeDao().get(gatewayId, nodeEui);
+        storedNode.setName("edited");
+        DaoUtils.getNodeDao().update(storedNode);
+
+        Node reloaded = TopologyCache.getNode(gatewayId, nodeEui);
+        assertNotSame(node, reloaded);
+        assertEquals("edited", reloaded.getName());
+        //Children evicted with the node
+        assertNotSame(sensor, TopologyCache.getSensor(gatewayId, nodeEui, "1"));
+    }
+
+    @Test
+    public void testUpdateStateEvictsOnlyTheNode() {
+        Node node = TopologyCache.getNode(gatewayId, nodeEui);
+        String otherEui = nodeEui + "-other";
+        DaoUtils.getNodeDao().create(newNode(otherEui));
+        Node otherNode = TopologyCache.getNode(gatewayId, otherEui);
+        long clears = getClears();
+
+        assertEquals(true, DaoUtils.getNodeDao().updateState(node.getId(), STATE.DOWN,
+                System.currentTimeMillis()));
+        Node reloaded = TopologyCache.getNode(gatewayId, nodeEui);
+        assertNotSame(node, reloaded);
+        assertEquals(STATE.DOWN, reloaded.getState());
+        assertSame(otherNode, TopologyCache.getNode(gatewayId, otherEui));
+        assertEquals(clears, getClears());
+    }
+
+    @Test
+    public void testBulkUpdateOfGatewayEvictsItsNodes() {
+        Node node = TopologyCache.getNode(gatewayId, nodeEui);
+        long clears = getClears();
+        DaoUtils.getNodeDao().updateBulk(Node.KEY_PARENT_NODE_EUI, null, Node.KEY_GATEWAY_ID, gatewayId);
+        assertNotSame(node, TopologyCache.getNode(gatewayId, nodeEui));
+        assertEquals(clears, getClears());
+    }
+
+    @Test
+    public void testDeleteEvictsOnlyTheSensor() {
+        Node node = TopologyCache.getNode(gatewayId, nodeEui);
+        Sensor sensor = TopologyCache.getSensor(gatewayId, nodeEui, "1");
+        Sensor otherSensor = TopologyCache.getSensor(gatewayId, nodeEui, "2");
+        long clears = getClears();
+
+        DaoUtils.getSensorDao().delete(sensor);
+        assertNull(TopologyCache.getSensor(gatewayId, nodeEui, "1"));
+        assertSame(otherSensor, TopologyCache.getSensor(gatewayId, nodeEui, "2"));
+        assertSame(node, TopologyCache.getNode(gatewayId, nodeEui));
+        assertEquals(clears, getClears());
+    }
+
+    @Test
+    public void testDeleteEvictsOnlyTheVariable() {
+        SensorVariable variable = getSensorVariable();
+        Sensor sensor = TopologyCache.getSensor(gatewayId, nodeEui, "1");
+        long clears = getClears();
+
+        DaoUtils.getSensorVariableDao().delete(variable);
+        assertNull(getSensorVariable());
+        assertSame(sensor, TopologyCache.getSensor(gatewayId, nodeEui, "1"));
+        assertEquals(clears, getClears());
+    }
+
+    @Test
+    public void testDeleteByIdEvictsTheNode() {
+        Node node = TopologyCache.getNode(gatewayId, nodeEui);
+        DaoUtils.getNodeDao().deleteById(node.getId());
+        assertNull(TopologyCache.getNode(gatewayId, nodeEui));
+    }
+
+    @Test
+    public void testCopyIsNotChangedByNextValue() {
+        SensorVariable variable = getSensorVariable();
+        SensorVariable copy = variable.copy();
+        variable.setValue("21.0");
+        assertEquals("20.0", copy.getValue());
+        assertEquals("21.0", getSensorVariable().getValue());
+        assertEquals(variable.getId(), copy.getId());
+    }
+}
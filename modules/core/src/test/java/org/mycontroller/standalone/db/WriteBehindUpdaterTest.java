@@ -0,0 +1,165 @@
+/*
+ * Copyright 2015-2017 Jeeva Kandasamy (jkandasa@gmail.com)
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mycontroller.standalone.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Properties;
+
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.mycontroller.standalone.AppProperties.NETWORK_TYPE;
+import org.mycontroller.standalone.AppProperties.STATE;
+import org.mycontroller.standalone.McTestUtils;
+import org.mycontroller.standalone.db.NodeUtils.NODE_REGISTRATION_STATE;
+import org.mycontroller.standalone.db.tables.GatewayTable;
+import org.mycontroller.standalone.db.tables.Node;
+import org.mycontroller.standalone.db.tables.Sensor;
+import org.mycontroller.standalone.gateway.GatewayUtils.GATEWAY_TYPE;
+
+/**
+ * @author Jeeva Kandasamy (jkandasa)
+ * @since 0.0.3
+ */
+public class WriteBehindUpdaterTest {
+    private static Integer gatewayId;
+    private static int nodeIndex = 0;
+    private String nodeEui;
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        Properties properties = new Properties();
+        //Flushed only by the tests
+        properties.setProperty("mcc.db.write.behind.interval", "3600000");
+        McTestUtils.loadPropertiesAndDatabase(properties);
+        GatewayTable gatewayTable = GatewayTable.builder()
+                .enabled(false)
+                .name("write-behind-test")
+                .type(GATEWAY_TYPE.SERIAL)
+                .networkType(NETWORK_TYPE.MY_SENSORS)
+                .state(STATE.UNAVAILABLE)
+                .build();
+        DaoUtils.getGatewayDao().create(gatewayTable);
+        gatewayId = gatewayTable.getId();
+        WriteBehindUpdater.start();
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        WriteBehindUpdater.shutdown();
+    }
+
+    @Before
+    public void createNode() {
+        WriteBehindUpdater.flush();
+        nodeEui = String.valueOf(++nodeIndex);
+        DaoUtils.getNodeDao().create(Node.builder()
+                .gatewayTable(GatewayTable.builder().id(gatewayId).build())
+                .eui(nodeEui)
+                .state(STATE.UP)
+                .registrationState(NODE_REGISTRATION_STATE.NEW)
+                .build());
+        DaoUtils.getSensorDao().create(gatewayId, nodeEui, "1");
+    }
+
+    private Node getStoredNode() {
+        return DaoUtils.getNodeDao().get(gatewayId, nodeEui);
+    }
+
+    private static int getPendingNodes() {
+        return (Integer) WriteBehindUpdater.getStatistics().get("pendingNodes");
+    }
+
+    @Test
+    public void testNodeWrittenOnFlush() {
+        Node node = getStoredNode();
+        node.setLastSeen(1000L);
+        node.setState(STATE.DOWN);
+        node.setRssi("-60");
+        node.setBatteryLevel("80");
+        WriteBehindUpdater.updateNode(node);
+        assertEquals(1, getPendingNodes());
+        assertNull(getStoredNode().getLastSeen());
+
+        WriteBehindUpdater.flush();
+        assertEquals(0, getPendingNodes());
+        Node stored = getStoredNode();
+        assertEquals(Long.valueOf(1000L), stored.getLastSeen());
+        assertEquals(STATE.DOWN, stored.getState());
+        assertEquals("-60", stored.getRssi());
+        assertEquals("80", stored.getBatteryLevel());
+    }
+
+    @Test
+    public void testLatestNodeUpdateWritten() {
+        Node node = getStoredNode();
+        for (long lastSeen = 1000L; lastSeen <= 5000L; lastSeen += 1000L) {
+            node.setLastSeen(lastSeen);
+            WriteBehindUpdater.updateNode(node);
+        }
+        assertEquals(1, getPendingNodes());
+        WriteBehindUpdater.flush();
+        assertEquals(Long.valueOf(5000L), getStoredNode().getLastSeen());
+    }
+
+    @Test
+    public void testSensorWrittenOnFlush() {
+        Sensor sensor = DaoUtils.getSensorDao().get(gatewayId, nodeEui, "1");
+        sensor.setLastSeen(2000L);
+        WriteBehindUpdater.updateSensor(sensor);
+        assertNull(DaoUtils.getSensorDao().get(gatewayId, nodeEui, "1").getLastSeen());
+
+        WriteBehindUpdater.flush();
+        assertEquals(Long.valueOf(2000L), DaoUtils.getSensorDao().get(gatewayId, nodeEui, "1").getLastSeen());
+    }
+
+    @Test
+    public void testDiscardNodeSeenBefore() {
+        Node node = getStoredNode();
+        node.setLastSeen(1000L);
+        node.setState(STATE.UP);
+        WriteBehindUpdater.updateNode(node);
+
+        assertTrue(WriteBehindUpdater.discardNode(node.getId(), 2000L));
+        assertEquals(0, getPendingNodes());
+        WriteBehindUpdater.flush();
+        assertNull(getStoredNode().getLastSeen());
+    }
+
+    @Test
+    public void testDiscardNodeSeenAfter() {
+        Node node = getStoredNode();
+        node.setLastSeen(3000L);
+        WriteBehindUpdater.updateNode(node);
+
+        //Pending update is newer, immediate state update is superseded
+        assertFalse(WriteBehindUpdater.discardNode(node.getId(), 2000L));
+        assertEquals(1, getPendingNodes());
+        WriteBehindUpdater.flush();
+        assertEquals(Long.valueOf(3000L), getStoredNode().getLastSeen());
+    }
+
+    @Test
+    public void testDiscardNodeWithoutPendingUpdate() {
+        assertTrue(WriteBehindUpdater.discardNode(getStoredNode().getId(), 2000L));
+    }
+}
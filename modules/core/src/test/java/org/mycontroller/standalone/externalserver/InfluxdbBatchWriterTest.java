@@ -0,0 +1,219 @@
+/*
+ * Copyright 2015-2017 Jeeva Kandasamy (jkandasa@gmail.com)
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mycontroller.standalone.externalserver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mycontroller.standalone.restclient.RestFactory.TRUST_HOST_TYPE;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Runs {@link InfluxdbBatchWriter} against a stub Influxdb write endpoint.
+ * @author Jeeva Kandasamy (jkandasa)
+ * @since 0.0.3
+ */
+public class InfluxdbBatchWriterTest {
+    private static final long TIMEOUT = 10000;
+
+    private HttpServer server;
+    private String url;
+    private InfluxdbBatchWriter writer;
+    // response codes of the next requests, 204 when empty
+    private final ConcurrentLinkedQueue<Integer> responseCodes = new ConcurrentLinkedQueue<Integer>();
+    private final List<String> lines = Collections.synchronizedList(new ArrayList<String>());
+    private volatile int requestsCount = 0;
+    private volatile String query = null;
+    private volatile String authorization = null;
+    private volatile String contentEncoding = null;
+    // when set, requests wait for this latch
+    private volatile CountDownLatch release = null;
+    private final CountDownLatch requested = new CountDownLatch(1);
+
+    @Before
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/write", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                handleWrite(exchange);
+            }
+        });
+        server.start();
+        url = "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @After
+    public void stopServer() {
+        if (release != null) {
+            release.countDown();
+        }
+        if (writer != null) {
+            writer.shutdown();
+        }
+        server.stop(0);
+    }
+
+    private void handleWrite(HttpExchange exchange) throws IOException {
+        requestsCount++;
+        requested.countDown();
+        try {
+            if (release != null && !release.await(TIMEOUT, TimeUnit.MILLISECONDS)) {
+                throw new IOException("Request not released");
+            }
+        } catch (InterruptedException ex) {
+            throw new IOException(ex);
+        }
+        query = exchange.getRequestURI().getRawQuery();
+        authorization = exchange.getRequestHeaders().getFirst("Authorization");
+        contentEncoding = exchange.getRequestHeaders().getFirst("Content-Encoding");
+        Integer responseCode = responseCodes.poll();
+        if (responseCode == null) {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(new GZIPInputStream(
+                    exchange.getRequestBody()), StandardCharsets.UTF_8));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+            }
+            responseCode = 204;
+        }
+        exchange.sendResponseHeaders(responseCode, -1);
+        exchange.close();
+    }
+
+    private InfluxdbBatchWriter getWriter(int batchSize, long lingerTime, int bufferSize, int retryCount) {
+        writer = new InfluxdbBatchWriter("test", url, "user", "secret", "my db", TRUST_HOST_TYPE.DEFAULT,
+                batchSize, lingerTime, bufferSize, retryCount, 10);
+        return writer;
+    }
+
+    private static void waitFor(InfluxdbBatchWriter writer, String key, long expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT;
+        while (!Long.valueOf(expected).equals(writer.getStatistics().get(key))
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(key, expected, writer.getStatistics().get(key));
+    }
+
+    @Test
+    public void testBatchWrittenWithLineProtocol() throws InterruptedException {
+        getWriter(3, 60000, 100, 0);
+        writer.write("node 1,temp", "host=a", 1000L, "23.5");
+        writer.write("node 1,temp", " host=a ", 1001L, "on \"x\"");
+        writer.write("status", null, null, "-1.5e3");
+        waitFor(writer, "writtenCount", 3);
+        assertEquals("one batch for the batch size", 1, requestsCount);
+        assertEquals("precision=ms&db=my+db", query);
+        assertEquals("Basic dXNlcjpzZWNyZXQ=", authorization);
+        assertEquals("gzip", contentEncoding);
+        assertEquals("node\\ 1\\,temp,host=a value=23.5 1000", lines.get(0));
+        assertEquals("node\\ 1\\,temp,host=a value=\"on \\\"x\\\"\" 1001", lines.get(1));
+        assertEquals("status value=-1.5e3", lines.get(2));
+    }
+
+    @Test
+    public void testBatchWrittenAfterLingerTime() throws InterruptedException {
+        getWriter(100, 50, 100, 0);
+        writer.write("temp", null, 1000L, "1");
+        waitFor(writer, "writtenCount", 1);
+        assertEquals(1, lines.size());
+    }
+
+    @Test
+    public void testRetryOnServerError() throws InterruptedException {
+        responseCodes.add(503);
+        responseCodes.add(429);
+        getWriter(1, 0, 100, 3);
+        writer.write("temp", null, 1000L, "1");
+        waitFor(writer, "writtenCount", 1);
+        assertEquals(2L, writer.getStatistics().get("retryAttempts"));
+        assertEquals(0L, writer.getStatistics().get("failedCount"));
+        assertEquals(3, requestsCount);
+    }
+
+    @Test
+    public void testNoRetryOnBadRequest() throws InterruptedException {
+        responseCodes.add(400);
+        getWriter(1, 0, 100, 3);
+        writer.write("temp", null, 1000L, "1");
+        waitFor(writer, "failedCount", 1);
+        assertEquals(0L, writer.getStatistics().get("retryAttempts"));
+        assertEquals("HTTP 400", writer.getStatistics().get("lastError"));
+        assertEquals(1, requestsCount);
+    }
+
+    @Test
+    public void testPartialWriteDroppedPoints() {
+        assertEquals(2, InfluxdbBatchWriter.getDroppedPoints(400, "{\"error\":\"partial write: field type conflict:"
+                + " input field \\\"value\\\" on measurement \\\"temp\\\" is type string, already exists as type"
+                + " float dropped=2\"}"));
+        assertEquals(-1, InfluxdbBatchWriter.getDroppedPoints(400, "{\"error\":\"unable to parse 'temp value='\"}"));
+        assertEquals(-1, InfluxdbBatchWriter.getDroppedPoints(400, null));
+        assertEquals(-1, InfluxdbBatchWriter.getDroppedPoints(500, "partial write: dropped=2"));
+    }
+
+    @Test
+    public void testOldestDroppedWhenQueueFull() throws InterruptedException {
+        release = new CountDownLatch(1);
+        //Retry, connection held by the stub server might not be reused
+        getWriter(1, 0, 10, 3);
+        writer.write("first", null, null, "0");
+        //Writer thread is waiting for the response of the first point
+        assertTrue(requested.await(TIMEOUT, TimeUnit.MILLISECONDS));
+        for (int value = 1; value <= 20; value++) {
+            writer.write("temp", null, null, String.valueOf(value));
+        }
+        assertEquals(10, writer.getQueueSize());
+        assertEquals(10L, writer.getStatistics().get("droppedCount"));
+        release.countDown();
+        waitFor(writer, "writtenCount", 11);
+        assertEquals("first value=0", lines.get(0));
+        assertEquals("temp value=11", lines.get(1));
+        assertEquals("temp value=20", lines.get(10));
+    }
+
+    @Test
+    public void testQueuedPointsWrittenOnShutdown() throws InterruptedException {
+        getWriter(100, 60000, 100, 0);
+        for (int value = 0; value < 5; value++) {
+            writer.write("temp", null, null, String.valueOf(value));
+        }
+        writer.shutdown();
+        assertEquals(5L, writer.getStatistics().get("writtenCount"));
+        assertEquals(5, lines.size());
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2015-2017 Jeeva Kandasamy (jkandasa@gmail.com)
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mycontroller.standalone.gateway.mqtt;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import org.junit.After;
+import org.junit.Test;
+import org.mycontroller.standalone.gateway.model.GatewayMQTT;
+
+/**
+ * @author Jeeva Kandasamy (jkandasa)
+ * @since 0.0.3
+ */
+public class MqttTopicRouterTest {
+    private static final Integer GATEWAY_ID = 1001;
+
+    @After
+    public void removeRouter() {
+        MqttTopicRouter.remove(GATEWAY_ID);
+    }
+
+    private static GatewayMQTT getGateway(String topicsSubscribe, String topicsPublish) {
+        GatewayMQTT gateway = new GatewayMQTT();
+        gateway.setId(GATEWAY_ID);
+        gateway.setTopicsSubscribe(topicsSubscribe);
+        gateway.setTopicsPublish(topicsPublish);
+        return gateway;
+    }
+
+    @Test
+    public void testLevelsOffset() {
+        MqttTopicRouter router = MqttTopicRouter.get(getGateway("mygateway1-out,home/+/sensors-out", null));
+        String topic = "mygateway1-out/1/2/1/0/0";
+        assertEquals("mygateway1-out/".length(), router.getLevelsOffset(topic));
+        topic = "home/first-floor/sensors-out/1/2/1/0/0";
+        assertEquals("home/first-floor/sensors-out/".length(), router.getLevelsOffset(topic));
+    }
+
+    @Test
+    public void testLevelsOffsetWithoutMatch() {
+        MqttTopicRouter router = MqttTopicRouter.get(getGateway("home/+/sensors-out", null));
+        //Falls back to the first level
+        assertEquals("other/".length(), router.getLevelsOffset("other/1/2/1/0/0"));
+        //A level has to match fully, not only a prefix
+        assertEquals("home/".length(), router.getLevelsOffset("home/first/sensors-out-2/1/2/1/0/0"));
+    }
+
+    @Test
+    public void testPublishLevelsOffset() {
+        MqttTopicRouter router = MqttTopicRouter.get(getGateway(null, "mygateway1-in, home/sensors-in"));
+        assertEquals("mygateway1-in/".length(), router.getPublishLevelsOffset("mygateway1-in/1/2/1/0/0"));
+        assertEquals("home/sensors-in/".length(), router.getPublishLevelsOffset("home/sensors-in/1/2/1/0/0"));
+        //Publish topic has to end on a level separator
+        assertEquals("home/".length(), router.getPublishLevelsOffset("home/sensors-in-2/1/2/1/0/0"));
+    }
+
+    @Test
+    public void testPublishPrefixes() {
+        MqttTopicRouter router = MqttTopicRouter.get(getGateway(null, "mygateway1-in, home/sensors-in"));
+        String[] prefixes = router.getPublishPrefixes("1", "2");
+        assertArrayEquals(new String[] { "mygateway1-in/1/2/", "home/sensors-in/1/2/" }, prefixes);
+        assertSame("prefixes are cached", prefixes, router.getPublishPrefixes("1", "2"));
+        assertEquals("mygateway1-in/1/2/1/0/0,home/sensors-in/1/2/1/0/0", MqttTopicRouter.getTopic(prefixes,
+                "1/0/0"));
+        assertEquals("mygateway1-in/1/255/3/0/6", MqttTopicRouter.getTopic(
+                new String[] { "mygateway1-in/1/255/" }, "3/0/6"));
+    }
+
+    @Test
+    public void testRecompiledOnTopicsChange() {
+        MqttTopicRouter router = MqttTopicRouter.get(getGateway("mygateway1-out", "mygateway1-in"));
+        assertSame(router, MqttTopicRouter.get(getGateway("mygateway1-out", "mygateway1-in")));
+        MqttTopicRouter changed = MqttTopicRouter.get(getGateway("home/sensors-out", "mygateway1-in"));
+        assertNotSame(router, changed);
+        assertEquals("home/sensors-out/".length(), changed.getLevelsOffset("home/sensors-out/1/2/1/0/0"));
+    }
+
+    @Test
+    public void testLevelEnd() {
+        assertEquals(4, MqttTopicRouter.getLevelEnd("home/sensors", 0));
+        assertEquals("home/sensors".length(), MqttTopicRouter.getLevelEnd("home/sensors", 5));
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright 2015-2017 Jeeva Kandasamy (jkandasa@gmail.com)
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mycontroller.standalone.message;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+import org.mycontroller.standalone.message.McMessageEngineExecutor.Shard;
+
+/**
+ * @author Jeeva Kandasamy (jkandasa)
+ * @since 0.0.3
+ */
+public class McMessageEngineExecutorTest {
+    private static final long TIMEOUT = 5000;
+    private final List<Shard> shards = new ArrayList<Shard>();
+
+    @After
+    public void tearDown() {
+        for (Shard shard : shards) {
+            shard.shutdown();
+            shard.awaitTermination(TIMEOUT);
+        }
+    }
+
+    private Shard createShard(int capacity) {
+        Shard shard = new Shard(shards.size(), capacity);
+        shards.add(shard);
+        return shard;
+    }
+
+    private static Runnable await(final CountDownLatch latch) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    latch.await(TIMEOUT, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+    }
+
+    @Test
+    public void testExecutedInOrder() throws Exception {
+        Shard shard = createShard(10);
+        final List<Integer> executed = Collections.synchronizedList(new ArrayList<Integer>());
+        final CountDownLatch done = new CountDownLatch(1000);
+        for (int index = 0; index < 1000; index++) {
+            final int value = index;
+            shard.execute(new Runnable() {
+                @Override
+                public void run() {
+                    executed.add(value);
+                    done.countDown();
+                }
+            }, true);
+        }
+        assertTrue(done.await(TIMEOUT, TimeUnit.MILLISECONDS));
+        for (int index = 0; index < 1000; index++) {
+            assertEquals(Integer.valueOf(index), executed.get(index));
+        }
+        assertEquals(0, shard.getOverflowCount());
+    }
+
+    @Test
+    public void testCallerWaitsWhenFull() throws Exception {
+        final Shard shard = createShard(1);
+        CountDownLatch release = new CountDownLatch(1);
+        shard.execute(await(release), true);
+        final CountDownLatch submitted = new CountDownLatch(1);
+        Thread lane = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                shard.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                    }
+                }, true);
+                submitted.countDown();
+            }
+        });
+        lane.start();
+        assertFalse("caller should wait for free space", submitted.await(200, TimeUnit.MILLISECONDS));
+        release.countDown();
+        assertTrue(submitted.await(TIMEOUT, TimeUnit.MILLISECONDS));
+        assertEquals(0, shard.getOverflowCount());
+    }
+
+    @Test
+    public void testShardDoesNotWaitForAnotherShard() throws Exception {
+        final Shard source = createShard(1);
+        final Shard target = createShard(1);
+        CountDownLatch release = new CountDownLatch(1);
+        //Fills the target shard
+        target.execute(await(release), true);
+        final CountDownLatch submitted = new CountDownLatch(1);
+        final CountDownLatch executed = new CountDownLatch(1);
+        source.execute(new Runnable() {
+            @Override
+            public void run() {
+                target.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        executed.countDown();
+                    }
+                }, true);
+                submitted.countDown();
+            }
+        }, true);
+        assertTrue("shard should not wait", submitted.await(TIMEOUT, TimeUnit.MILLISECONDS));
+        assertEquals(1, target.getOverflowCount());
+        release.countDown();
+        assertTrue(executed.await(TIMEOUT, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testCallerWithoutWaitGoesBeyondCapacity() throws Exception {
+        Shard shard = createShard(1);
+        CountDownLatch release = new CountDownLatch(1);
+        shard.execute(await(release), true);
+        final CountDownLatch executed = new CountDownLatch(2);
+        for (int index = 0; index < 2; index++) {
+            shard.execute(new Runnable() {
+                @Override
+                public void run() {
+                    executed.countDown();
+                }
+            }, false);
+        }
+        assertEquals(2, shard.getOverflowCount());
+        release.countDown();
+        assertTrue(executed.await(TIMEOUT, TimeUnit.MILLISECONDS));
+    }
+
+    @Test(expected = RejectedExecutionException.class)
+    public void testRejectedAfterShutdown() {
+        Shard shard = createShard(1);
+        shard.shutdown();
+        shard.execute(new Runnable() {
+            @Override
+            public void run() {
+            }
+        }, true);
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2015-2017 Jeeva Kandasamy (jkandasa@gmail.com)
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mycontroller.standalone.message;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mycontroller.standalone.AppProperties.NETWORK_TYPE;
+
+/**
+ * @author Jeeva Kandasamy (jkandasa)
+ * @since 0.0.3
+ */
+public class RawMessageJournalTest {
+    private static final Integer GATEWAY_ID = 1;
+    private File location;
+    private RawMessageJournal journal;
+
+    @Before
+    public void setUp() throws Exception {
+        location = Files.createTempDirectory("mc-journal").toFile();
+        journal = new RawMessageJournal(location.getAbsolutePath());
+        assertTrue(journal.open(false).isEmpty());
+    }
+
+    @After
+    public void tearDown() {
+        journal.close();
+    }
+
+    private static RawMessage rawMessage(long sequence) {
+        return RawMessage.builder()
+                .gatewayId(GATEWAY_ID)
+                .data("1;1;1;0;0;" + sequence)
+                .networkType(NETWORK_TYPE.MY_SENSORS)
+                .sequence(sequence)
+                .build();
+    }
+
+    private List<RawMessage> reopen(boolean clear) throws Exception {
+        journal.close();
+        journal = new RawMessageJournal(location.getAbsolutePath());
+        return journal.open(clear);
+    }
+
+    @Test
+    public void testNotAcknowledgedMessagesReplayedInOrder() throws Exception {
+        List<RawMessage> rawMessages = new ArrayList<RawMessage>();
+        for (long sequence = 1; sequence <= 10; sequence++) {
+            rawMessages.add(rawMessage(sequence));
+            journal.put(rawMessages.get(rawMessages.size() - 1));
+        }
+        //Acknowledge odd messages
+        for (RawMessage rawMessage : rawMessages) {
+            if (rawMessage.getSequence() % 2 == 1) {
+                journal.ack(rawMessage);
+            }
+        }
+        assertEquals(5, journal.size());
+        List<RawMessage> replayed = reopen(false);
+        assertEquals(5, replayed.size());
+        for (int index = 0; index < replayed.size(); index++) {
+            assertEquals(Long.valueOf((index + 1) * 2), replayed.get(index).getSequence());
+            assertEquals("1;1;1;0;0;" + (index + 1) * 2, replayed.get(index).getData());
+        }
+    }
+
+    @Test
+    public void testClearOnOpen() throws Exception {
+        journal.put(rawMessage(1));
+        assertTrue(reopen(true).isEmpty());
+        assertTrue(reopen(false).isEmpty());
+    }
+
+    @Test
+    public void testIncompleteRecordIgnored() throws Exception {
+        journal.put(rawMessage(1));
+        journal.put(rawMessage(2));
+        journal.close();
+        //Partially written record, crashed while writing
+        FileOutputStream outputStream = new FileOutputStream(
+                new File(location, RawMessageJournal.JOURNAL_FILE_NAME), true);
+        try {
+            outputStream.write(new byte[] { 1, 0, 0, 0 });
+        } finally {
+            outputStream.close();
+        }
+        List<RawMessage> replayed = reopen(false);
+        assertEquals(2, replayed.size());
+        assertEquals(Long.valueOf(1), replayed.get(0).getSequence());
+        assertEquals(Long.valueOf(2), replayed.get(1).getSequence());
+    }
+
+    @Test
+    public void testStoreKeepsOrderOnRingBufferOverflow() throws Exception {
+        JournalRawMessageStore store = new JournalRawMessageStore(GATEWAY_ID, 4, journal);
+        for (long sequence = 1; sequence <= 20; sequence++) {
+            store.add(rawMessage(sequence));
+            //Take some in between, overflow should be drained before the ring buffer is used again
+            if (sequence % 5 == 0) {
+                assertEquals(Long.valueOf(sequence / 5), store.poll().getSequence());
+            }
+        }
+        assertEquals(16, store.size());
+        assertEquals(16, journal.size());
+        for (long sequence = 5; sequence <= 20; sequence++) {
+            assertEquals(Long.valueOf(sequence), store.poll().getSequence());
+        }
+        assertNull(store.poll());
+        assertTrue(store.isEmpty());
+        assertEquals(0, journal.size());
+        assertTrue(reopen(false).isEmpty());
+    }
+}
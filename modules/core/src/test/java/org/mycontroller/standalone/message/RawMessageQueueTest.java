@@ -0,0 +1,277 @@
+/*
+ * Copyright 2015-2017 Jeeva Kandasamy (jkandasa@gmail.com)
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mycontroller.standalone.message;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mycontroller.standalone.AppProperties.NETWORK_TYPE;
+import org.mycontroller.standalone.McTestUtils;
+
+/**
+ * @author Jeeva Kandasamy (jkandasa)
+ * @since 0.0.3
+ */
+public class RawMessageQueueTest {
+    private static final Integer GATEWAY_A = 2001;
+    private static final Integer GATEWAY_B = 2002;
+    private static final long TAKE_TIMEOUT = 5000;
+
+    private Properties properties;
+
+    @Before
+    public void setUp() throws Exception {
+        properties = new Properties();
+        properties.setProperty("mcc.clear.message.queue.on.start", "true");
+        properties.setProperty("mcc.message.queue.type", "MAPDB");
+        properties.setProperty("mcc.message.queue.capacity", "0");
+        McTestUtils.loadPropertiesAndMapDb(properties);
+    }
+
+    @After
+    public void tearDown() {
+        RawMessageQueue.getInstance().removeGatewayQueue(GATEWAY_A);
+        RawMessageQueue.getInstance().removeGatewayQueue(GATEWAY_B);
+    }
+
+    static RawMessage rxMessage(Integer gatewayId, String data) {
+        return RawMessage.builder()
+                .gatewayId(gatewayId)
+                .data(data)
+                .networkType(NETWORK_TYPE.MY_SENSORS)
+                .timestamp(System.currentTimeMillis())
+                .build();
+    }
+
+    static RawMessage txMessage(Integer gatewayId, String data) {
+        return RawMessage.builder()
+                .gatewayId(gatewayId)
+                .data(data)
+                .networkType(NETWORK_TYPE.MY_SENSORS)
+                .isTxMessage(true)
+                .timestamp(System.currentTimeMillis())
+                .build();
+    }
+
+    private void loadQueuePolicies(int capacity, String telemetryPolicy, String txPolicy) throws Exception {
+        properties.setProperty("mcc.message.queue.capacity", String.valueOf(capacity));
+        properties.setProperty("mcc.message.queue.telemetry.policy", telemetryPolicy);
+        properties.setProperty("mcc.message.queue.tx.policy", txPolicy);
+        properties.setProperty("mcc.message.queue.tx.block.timeout", "100");
+        McTestUtils.loadProperties(properties);
+    }
+
+    static List<String> takeAll(Integer gatewayId) throws InterruptedException {
+        List<String> data = new ArrayList<String>();
+        RawMessage rawMessage;
+        while ((rawMessage = RawMessageQueue.getInstance().takeMessage(gatewayId, 100, TimeUnit.MILLISECONDS))
+                != null) {
+            data.add(rawMessage.getDataString());
+        }
+        return data;
+    }
+
+    @Test
+    public void testMessagesTakenInOrder() throws Exception {
+        List<String> expected = new ArrayList<String>();
+        for (int index = 0; index < 100; index++) {
+            String data = "1;1;2;0;2;" + index;
+            expected.add(data);
+            assertTrue(RawMessageQueue.getInstance().putMessage(rxMessage(GATEWAY_A, data)));
+        }
+        assertEquals(100, RawMessageQueue.getInstance().getQueueSize(GATEWAY_A));
+        assertEquals(expected, takeAll(GATEWAY_A));
+        assertTrue(RawMessageQueue.getInstance().isEmpty(GATEWAY_A));
+    }
+
+    @Test
+    public void testGatewayQueuesAreIndependent() throws Exception {
+        for (int index = 0; index < 10; index++) {
+            RawMessageQueue.getInstance().putMessage(rxMessage(GATEWAY_A, "1;1;2;0;2;a" + index));
+            RawMessageQueue.getInstance().putMessage(rxMessage(GATEWAY_B, "1;1;2;0;2;b" + index));
+        }
+        //Gateway B is not consumed, should not hold the messages of gateway A
+        List<String> gatewayA = takeAll(GATEWAY_A);
+        assertEquals(10, gatewayA.size());
+        for (int index = 0; index < 10; index++) {
+            assertEquals("1;1;2;0;2;a" + index, gatewayA.get(index));
+        }
+        assertEquals(10, RawMessageQueue.getInstance().getQueueSize(GATEWAY_B));
+        assertEquals("1;1;2;0;2;b0", RawMessageQueue.getInstance().getMessage(GATEWAY_B).getDataString());
+        assertTrue(RawMessageQueue.getInstance().getGatewayIds().contains(GATEWAY_B));
+    }
+
+    @Test
+    public void testTakeWaitsForMessage() throws Exception {
+        //Creates the queue of the gateway
+        RawMessageQueue.getInstance().putMessage(rxMessage(GATEWAY_A, "1;1;2;0;2;0"));
+        RawMessageQueue.getInstance().getMessage(GATEWAY_A);
+        final CountDownLatch waiting = new CountDownLatch(1);
+        final List<RawMessage> received = new ArrayList<RawMessage>();
+        Thread lane = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                waiting.countDown();
+                try {
+                    received.add(RawMessageQueue.getInstance().takeMessage(GATEWAY_A, TAKE_TIMEOUT,
+                            TimeUnit.MILLISECONDS));
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        lane.start();
+        waiting.await();
+        Thread.sleep(100);
+        long start = System.currentTimeMillis();
+        RawMessageQueue.getInstance().putMessage(rxMessage(GATEWAY_A, "1;1;2;0;2;1"));
+        lane.join(TAKE_TIMEOUT);
+        assertTrue("lane should be woken up on new message", System.currentTimeMillis() - start < TAKE_TIMEOUT);
+        assertEquals(1, received.size());
+        assertEquals("1;1;2;0;2;1", received.get(0).getDataString());
+    }
+
+    @Test
+    public void testTakeOnRemovedGateway() throws Exception {
+        RawMessageQueue.getInstance().putMessage(rxMessage(GATEWAY_A, "1;1;2;0;2;0"));
+        RawMessageQueue.getInstance().putMessage(rxMessage(GATEWAY_A, "1;1;2;0;2;1"));
+        assertEquals(2, RawMessageQueue.getInstance().removeGatewayQueue(GATEWAY_A));
+        assertNull(RawMessageQueue.getInstance().takeMessage(GATEWAY_A, 10, TimeUnit.MILLISECONDS));
+        assertTrue(RawMessageQueue.getInstance().isEmpty(GATEWAY_A));
+    }
+
+    @Test
+    public void testTelemetryCoalescedWhenFull() throws Exception {
+        loadQueuePolicies(3, "COALESCE", "BLOCK");
+        RawMessageQueue queue = RawMessageQueue.getInstance();
+        assertTrue(queue.putMessage(rxMessage(GATEWAY_A, "1;1;1;0;0;10")));
+        assertTrue(queue.putMessage(rxMessage(GATEWAY_A, "1;2;1;0;0;20")));
+        assertTrue(queue.putMessage(rxMessage(GATEWAY_A, "1;3;1;0;0;30")));
+        //Replaces the queued value of the same node, sensor and type
+        assertTrue(queue.putMessage(rxMessage(GATEWAY_A, "1;1;1;0;0;11")));
+        assertEquals(3, queue.getQueueSize(GATEWAY_A));
+        assertEquals(Long.valueOf(1),
+                queue.getShedStatistics(GATEWAY_A).get(RawMessageQueue.SHED_RX_TELEMETRY_COALESCED));
+        assertEquals(Arrays.asList("1;2;1;0;0;20", "1;3;1;0;0;30", "1;1;1;0;0;11"), takeAll(GATEWAY_A));
+    }
+
+    @Test
+    public void testOldestTelemetryDroppedWhenFull() throws Exception {
+        loadQueuePolicies(3, "DROP_OLDEST", "BLOCK");
+        RawMessageQueue queue = RawMessageQueue.getInstance();
+        for (int index = 0; index < 5; index++) {
+            assertTrue(queue.putMessage(rxMessage(GATEWAY_A, "1;1;1;0;0;" + index)));
+        }
+        assertEquals(Long.valueOf(2),
+                queue.getShedStatistics(GATEWAY_A).get(RawMessageQueue.SHED_RX_TELEMETRY_DROPPED));
+        assertEquals(Arrays.asList("1;1;1;0;0;2", "1;1;1;0;0;3", "1;1;1;0;0;4"), takeAll(GATEWAY_A));
+    }
+
+    @Test
+    public void testStreamNeverDropped() throws Exception {
+        loadQueuePolicies(2, "COALESCE", "REJECT");
+        RawMessageQueue queue = RawMessageQueue.getInstance();
+        //Internal messages, not telemetry
+        assertTrue(queue.putMessage(rxMessage(GATEWAY_A, "1;255;3;0;6;0")));
+        assertTrue(queue.putMessage(rxMessage(GATEWAY_A, "1;255;3;0;6;1")));
+        assertFalse(queue.putMessage(rxMessage(GATEWAY_A, "1;255;3;0;6;2")));
+        assertTrue(queue.putMessage(rxMessage(GATEWAY_A, "1;255;4;0;0;stream")));
+        assertTrue(queue.putMessage(txMessage(GATEWAY_A, "1;255;4;0;1;stream")));
+        assertFalse(queue.putMessage(txMessage(GATEWAY_A, "1;1;1;0;2;1")));
+        Map<String, Long> statistics = queue.getShedStatistics(GATEWAY_A);
+        assertEquals(Long.valueOf(1), statistics.get(RawMessageQueue.SHED_RX_DROPPED));
+        assertEquals(Long.valueOf(1), statistics.get(RawMessageQueue.SHED_TX_REJECTED));
+        assertEquals(4, queue.getQueueSize(GATEWAY_A));
+    }
+
+    @Test
+    public void testTxBlockedUntilSpace() throws Exception {
+        loadQueuePolicies(1, "COALESCE", "BLOCK");
+        final RawMessageQueue queue = RawMessageQueue.getInstance();
+        assertTrue(queue.putMessage(rxMessage(GATEWAY_A, "1;255;3;0;6;0")));
+        //Blocked until the timeout, queue stays full
+        assertFalse(queue.putMessage(txMessage(GATEWAY_A, "1;1;1;0;2;0")));
+        Thread lane = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(20);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                queue.getMessage(GATEWAY_A);
+            }
+        });
+        lane.start();
+        assertTrue(queue.putMessage(txMessage(GATEWAY_A, "1;1;1;0;2;1")));
+        lane.join(TAKE_TIMEOUT);
+        Map<String, Long> statistics = queue.getShedStatistics(GATEWAY_A);
+        assertEquals(Long.valueOf(2), statistics.get(RawMessageQueue.SHED_TX_BLOCKED));
+        assertEquals(Long.valueOf(1), statistics.get(RawMessageQueue.SHED_TX_REJECTED));
+        assertEquals(Arrays.asList("1;1;1;0;2;1"), takeAll(GATEWAY_A));
+    }
+
+    @Test
+    public void testOrderKeptWhileShedding() throws Exception {
+        loadQueuePolicies(10, "COALESCE", "BLOCK");
+        final RawMessageQueue queue = RawMessageQueue.getInstance();
+        final int count = 20000;
+        //Creates the queue of the gateway, before the lane starts
+        queue.putMessage(rxMessage(GATEWAY_A, "1;255;3;0;6;0"));
+        Thread producer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (int index = 1; index <= count; index++) {
+                    queue.putMessage(rxMessage(GATEWAY_A, "1;" + (index % 25) + ";1;0;0;" + index));
+                }
+            }
+        });
+        producer.start();
+        long lastSequence = 0;
+        int lastValue = 0;
+        int received = 0;
+        RawMessage rawMessage;
+        while ((rawMessage = queue.takeMessage(GATEWAY_A, 1000, TimeUnit.MILLISECONDS)) != null) {
+            assertTrue("messages should be taken in order", rawMessage.getSequence() > lastSequence);
+            lastSequence = rawMessage.getSequence();
+            String data = rawMessage.getDataString();
+            int value = Integer.valueOf(data.substring(data.lastIndexOf(';') + 1));
+            assertTrue("messages should be taken in order", value >= lastValue);
+            lastValue = value;
+            received++;
+        }
+        producer.join(TAKE_TIMEOUT);
+        //Last message is never dropped
+        assertEquals(count, lastValue);
+        Map<String, Long> statistics = queue.getShedStatistics(GATEWAY_A);
+        assertEquals(count + 1, received + statistics.get(RawMessageQueue.SHED_RX_TELEMETRY_COALESCED)
+                + statistics.get(RawMessageQueue.SHED_RX_TELEMETRY_DROPPED));
+    }
+}
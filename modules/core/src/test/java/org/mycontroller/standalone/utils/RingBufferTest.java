@@ -0,0 +1,120 @@
+/*
+ * Copyright 2015-2017 Jeeva Kandasamy (jkandasa@gmail.com)
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mycontroller.standalone.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import org.junit.Test;
+
+/**
+ * @author Jeeva Kandasamy (jkandasa)
+ * @since 0.0.3
+ */
+public class RingBufferTest {
+
+    @Test
+    public void testCapacityRoundedToPowerOfTwo() {
+        assertEquals(2, new RingBuffer<Integer>(1).capacity());
+        assertEquals(8, new RingBuffer<Integer>(5).capacity());
+        assertEquals(16, new RingBuffer<Integer>(16).capacity());
+    }
+
+    @Test
+    public void testOfferAndPollInOrder() {
+        RingBuffer<Integer> buffer = new RingBuffer<Integer>(4);
+        assertTrue(buffer.isEmpty());
+        assertNull(buffer.poll());
+        for (int value = 0; value < 4; value++) {
+            assertTrue(buffer.offer(value));
+        }
+        assertFalse("buffer is full", buffer.offer(4));
+        assertEquals(4, buffer.size());
+        for (int value = 0; value < 4; value++) {
+            assertEquals(Integer.valueOf(value), buffer.poll());
+        }
+        assertNull(buffer.poll());
+        assertTrue(buffer.isEmpty());
+    }
+
+    @Test
+    public void testWrapAround() {
+        RingBuffer<Integer> buffer = new RingBuffer<Integer>(4);
+        for (int value = 0; value < 100; value++) {
+            assertTrue(buffer.offer(value));
+            assertTrue(buffer.offer(value + 1000));
+            assertEquals(Integer.valueOf(value), buffer.poll());
+            assertEquals(Integer.valueOf(value + 1000), buffer.poll());
+        }
+        assertEquals(0, buffer.size());
+    }
+
+    @Test(timeout = 30000)
+    public void testConcurrentProducersAndConsumers() throws InterruptedException {
+        final int producers = 4;
+        final int consumers = 4;
+        final int perProducer = 50000;
+        final RingBuffer<Integer> buffer = new RingBuffer<Integer>(64);
+        final AtomicIntegerArray received = new AtomicIntegerArray(producers * perProducer);
+        final AtomicInteger receivedCount = new AtomicInteger(0);
+        final CountDownLatch done = new CountDownLatch(producers + consumers);
+        for (int producer = 0; producer < producers; producer++) {
+            final int first = producer * perProducer;
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int value = first; value < first + perProducer; value++) {
+                        while (!buffer.offer(value)) {
+                            Thread.yield();
+                        }
+                    }
+                    done.countDown();
+                }
+            }).start();
+        }
+        for (int consumer = 0; consumer < consumers; consumer++) {
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    while (receivedCount.get() < producers * perProducer) {
+                        Integer value = buffer.poll();
+                        if (value == null) {
+                            Thread.yield();
+                            continue;
+                        }
+                        received.incrementAndGet(value);
+                        receivedCount.incrementAndGet();
+                    }
+                    done.countDown();
+                }
+            }).start();
+        }
+        assertTrue(done.await(25, TimeUnit.SECONDS));
+        assertEquals(producers * perProducer, receivedCount.get());
+        for (int index = 0; index < received.length(); index++) {
+            assertEquals("value " + index + " received once", 1, received.get(index));
+        }
+        assertTrue(buffer.isEmpty());
+    }
+}